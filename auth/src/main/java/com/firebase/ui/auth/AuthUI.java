@@ -78,6 +78,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.CallSuper;
 import androidx.annotation.DrawableRes;
@@ -86,6 +87,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.StringDef;
 import androidx.annotation.StyleRes;
+import androidx.annotation.VisibleForTesting;
 
 /**
  * The entry point to the AuthUI authentication flow, and related utility methods. If your
@@ -160,7 +162,11 @@ public final class AuthUI {
 
     private static final IdentityHashMap<FirebaseApp, AuthUI> INSTANCES = new IdentityHashMap<>();
 
-    private static Context sApplicationContext;
+    private static final Set<String> LEGACY_PROVIDERS_CHECKED =
+            Collections.synchronizedSet(new HashSet<String>());
+
+    // Set lazily from any thread if AuthUiInitProvider was removed
+    private static volatile Context sApplicationContext;
     private static String layoutLanguage = "en";
 
     private final FirebaseApp mApp;
@@ -191,7 +197,14 @@ public final class AuthUI {
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
     @NonNull
     public static Context getApplicationContext() {
-        return sApplicationContext;
+        Context context = sApplicationContext;
+        if (context == null) {
+            // AuthUiInitProvider was removed from the manifest and nothing has initialized
+            // FirebaseUI yet, use the context the default app was initialized with.
+            context = FirebaseApp.getInstance().getApplicationContext().getApplicationContext();
+            sApplicationContext = context;
+        }
+        return context;
     }
 
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
@@ -200,6 +213,24 @@ public final class AuthUI {
                 .getApplicationContext();
     }
 
+    /**
+     * Initializes FirebaseUI for apps that remove {@code AuthUiInitProvider} from their manifest
+     * to keep it off process start. Calling this is only needed if an {@link IdpConfig} is built
+     * before the first call to {@link #getInstance()} and the default {@link FirebaseApp} isn't
+     * initialized either.
+     */
+    public static void initialize(@NonNull Context context) {
+        setApplicationContext(context);
+    }
+
+    /**
+     * Forget the application context, as if {@code AuthUiInitProvider} had been removed.
+     */
+    @VisibleForTesting
+    static void resetApplicationContext() {
+        sApplicationContext = null;
+    }
+
     /**
      * Retrieves the {@link AuthUI} instance associated with the default app, as returned by {@code
      * FirebaseApp.getInstance()}.
@@ -226,21 +257,13 @@ public final class AuthUI {
      */
     @NonNull
     public static AuthUI getInstance(@NonNull FirebaseApp app) {
-        String releaseUrl = "https://github.com/firebase/FirebaseUI-Android/releases/tag/6.2.0";
-        String devWarning = "Beginning with FirebaseUI 6.2.0 you no longer need to include %s to " +
-                "sign in with %s. Go to %s for more information";
-        if (ProviderAvailability.IS_TWITTER_AVAILABLE) {
-            Log.w(TAG, String.format(devWarning, "the TwitterKit SDK", "Twitter", releaseUrl));
-        }
-        if (ProviderAvailability.IS_GITHUB_AVAILABLE) {
-            Log.w(TAG, String.format(devWarning, "com.firebaseui:firebase-ui-auth-github",
-                    "GitHub", releaseUrl));
-        }
-
         AuthUI authUi;
         synchronized (INSTANCES) {
             authUi = INSTANCES.get(app);
             if (authUi == null) {
+                if (sApplicationContext == null) {
+                    setApplicationContext(app.getApplicationContext());
+                }
                 authUi = new AuthUI(app);
                 INSTANCES.put(app, authUi);
             }
@@ -248,6 +271,28 @@ public final class AuthUI {
         return authUi;
     }
 
+    /**
+     * Warn if the app still includes the SDK that was needed to sign in with a provider before
+     * FirebaseUI 6.2.0. Only checked once per provider, when the app first configures it.
+     */
+    private static void warnAboutLegacyProvider(@NonNull String providerId) {
+        if (!LEGACY_PROVIDERS_CHECKED.add(providerId)) {
+            return;
+        }
+
+        String releaseUrl = "https://github.com/firebase/FirebaseUI-Android/releases/tag/6.2.0";
+        String devWarning = "Beginning with FirebaseUI 6.2.0 you no longer need to include %s to " +
+                "sign in with %s. Go to %s for more information";
+        if (providerId.equals(TwitterAuthProvider.PROVIDER_ID)
+                && ProviderAvailability.isTwitterAvailable()) {
+            Log.w(TAG, String.format(devWarning, "the TwitterKit SDK", "Twitter", releaseUrl));
+        } else if (providerId.equals(GithubAuthProvider.PROVIDER_ID)
+                && ProviderAvailability.isGitHubAvailable()) {
+            Log.w(TAG, String.format(devWarning, "com.firebaseui:firebase-ui-auth-github",
+                    "GitHub", releaseUrl));
+        }
+    }
+
     @NonNull
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
     public FirebaseApp getApp() {
@@ -447,6 +492,7 @@ public final class AuthUI {
             public Void then(@NonNull Task<Void> task) {
                 task.getResult(); // Propagate exceptions
                 mAuth.signOut();
+                ProviderUtils.clearSignInMethods();
                 return null;
             }
         });
@@ -511,6 +557,7 @@ public final class AuthUI {
             @Override
             public Task<Void> then(@NonNull Task<Void> task) {
                 task.getResult(); // Propagate exception if there was one
+                ProviderUtils.clearSignInMethods();
                 return currentUser.delete();
             }
         });
@@ -545,7 +592,7 @@ public final class AuthUI {
     }
 
     private Task<Void> signOutIdps(@NonNull Context context) {
-        if (ProviderAvailability.IS_FACEBOOK_AVAILABLE) {
+        if (ProviderAvailability.isFacebookAvailable()) {
             LoginManager.getInstance().logOut();
         }
         if (GoogleApiUtils.isPlayServicesAvailable(context)) {
@@ -724,6 +771,18 @@ public final class AuthUI {
                 return this;
             }
 
+            /**
+             * Looks up the accounts of the email being entered once the user pauses typing, so
+             * that tapping "Next" usually doesn't wait on the network.
+             * <p>
+             * This makes an extra request for most emails typed and is disabled by default.
+             */
+            @NonNull
+            public EmailBuilder setLookupWhileTyping(boolean lookupWhileTyping) {
+                getParams().putBoolean(ExtraConstants.LOOKUP_WHILE_TYPING, lookupWhileTyping);
+                return this;
+            }
+
             /**
              * Enables email link sign in instead of password based sign in. Once enabled, you must
              * pass a valid {@link ActionCodeSettings} object using
@@ -1141,7 +1200,7 @@ public final class AuthUI {
 
             public FacebookBuilder() {
                 super(FacebookAuthProvider.PROVIDER_ID);
-                if (!ProviderAvailability.IS_FACEBOOK_AVAILABLE) {
+                if (!ProviderAvailability.isFacebookAvailable()) {
                     throw new RuntimeException(
                             "Facebook provider cannot be configured " +
                                     "without dependency. Did you forget to add " +
@@ -1191,6 +1250,7 @@ public final class AuthUI {
             public TwitterBuilder() {
                 super(TwitterAuthProvider.PROVIDER_ID, PROVIDER_NAME,
                         R.layout.fui_idp_button_twitter);
+                warnAboutLegacyProvider(TwitterAuthProvider.PROVIDER_ID);
             }
         }
 
@@ -1203,6 +1263,7 @@ public final class AuthUI {
             public GitHubBuilder() {
                 super(GithubAuthProvider.PROVIDER_ID, PROVIDER_NAME,
                         R.layout.fui_idp_button_github);
+                warnAboutLegacyProvider(GithubAuthProvider.PROVIDER_ID);
             }
 
             /**
@@ -1563,6 +1624,11 @@ public final class AuthUI {
 
         private String mEmailLink;
         private boolean mEnableAnonymousUpgrade;
+        private long mCredentialRequestTimeoutMillis;
+        private boolean mSingleActivityFlow;
+        private boolean mInProcessParameters;
+        private boolean mWarmUpCustomTabs;
+        private boolean mSaveCredentialsInBackground;
 
         private SignInIntentBuilder() {
             super();
@@ -1592,6 +1658,93 @@ public final class AuthUI {
             return this;
         }
 
+        /**
+         * Sets how long the sign in flow waits for a Smart Lock credential before showing the
+         * sign in methods. A credential retrieved after that is offered on the sign in method
+         * screen instead of signing the user in right away.
+         * <p>
+         * By default, the flow waits for the credential request to finish, which can take
+         * several seconds on devices where Google Play services is slow to respond.
+         *
+         * @param timeout how long to wait, or 0 to wait for the request to finish.
+         * @param unit    the unit of {@code timeout}.
+         * @throws IllegalArgumentException if the timeout is negative.
+         */
+        @NonNull
+        public SignInIntentBuilder setCredentialRequestTimeout(long timeout,
+                                                               @NonNull TimeUnit unit) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("Timeout cannot be negative: " + timeout);
+            }
+            mCredentialRequestTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Avoids two of the activities launched during the email sign-in flow: the password
+         * prompt of returning email users is shown inside the email screen, and Smart Lock
+         * credentials are saved without an extra invisible activity.
+         * <p>
+         * <p>Every other step, including the provider choice, phone sign-in and each identity
+         * provider, still runs in its own activity.
+         * <p>
+         * <p>This is false by default.
+         *
+         * @param enabled if true, run the two steps above inside the current activity.
+         */
+        @NonNull
+        public SignInIntentBuilder setSingleActivityFlow(boolean enabled) {
+            mSingleActivityFlow = enabled;
+            return this;
+        }
+
+        /**
+         * Shares the configuration of the flow between its screens through an in-process store
+         * instead of parcelling it into the intent of every screen, which keeps intents small and
+         * screens quick to start with many providers or custom layouts. The configuration is only
+         * parcelled to survive the process being recreated.
+         * <p>
+         * <p>This is false by default.
+         *
+         * @param enabled if true, pass a handle to the configuration between screens.
+         */
+        @NonNull
+        public SignInIntentBuilder setInProcessParameters(boolean enabled) {
+            mInProcessParameters = enabled;
+            return this;
+        }
+
+        /**
+         * Warms up the browser used by the Microsoft, Apple, Yahoo, GitHub and Twitter providers
+         * while the sign in methods are shown, and pre-resolves the pages they open, so that the
+         * sign in page shows up sooner once the user picks one of them.
+         * <p>
+         * <p>This is false by default.
+         *
+         * @param enabled if true, warm up Custom Tabs on the sign in method screen.
+         */
+        @NonNull
+        public SignInIntentBuilder setCustomTabsWarmUp(boolean enabled) {
+            mWarmUpCustomTabs = enabled;
+            return this;
+        }
+
+        /**
+         * Returns the sign in result as soon as the user is signed in, and saves their credential
+         * to Smart Lock afterwards. If the user has to confirm the save, they are asked over the
+         * screen your app shows after sign in.
+         * <p>
+         * <p>This is false by default, in which case the result is returned once the credential
+         * is saved.
+         *
+         * @param enabled if true, don't wait for Smart Lock before returning the result.
+         */
+        @NonNull
+        public SignInIntentBuilder setSaveCredentialsInBackground(boolean enabled) {
+            mSaveCredentialsInBackground = enabled;
+            return this;
+        }
+
         private void validateEmailBuilderConfig() {
             for (int i = 0; i < mProviders.size(); i++) {
                 IdpConfig config = mProviders.get(i);
@@ -1625,7 +1778,12 @@ public final class AuthUI {
                     mPasswordSettings,
                     mAuthMethodPickerLayout,
                     mPhoneNumberCustomLayout,
-                    mEmailCustomLayout);
+                    mEmailCustomLayout,
+                    mCredentialRequestTimeoutMillis,
+                    mSingleActivityFlow,
+                    mInProcessParameters,
+                    mWarmUpCustomTabs,
+                    mSaveCredentialsInBackground);
         }
     }
 }
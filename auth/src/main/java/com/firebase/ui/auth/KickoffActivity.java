@@ -3,6 +3,8 @@ package com.firebase.ui.auth;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
 
 import com.firebase.ui.auth.data.model.FlowParameters;
 import com.firebase.ui.auth.data.model.UserCancellationException;
@@ -25,20 +27,37 @@ import androidx.lifecycle.ViewModelProvider;
 
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public class KickoffActivity extends InvisibleActivityBase {
+    private static final String TAG = "KickoffActivity";
+    private static final String EXTRA_START_TIME = "extra_start_time";
+
     private SignInKickstarter mKickstarter;
+    private long mStartTime;
 
     public static Intent createIntent(Context context, FlowParameters flowParams) {
-        return createBaseIntent(context, KickoffActivity.class, flowParams);
+        // The app holds on to this intent, so it keeps the whole parcel even if the screens of
+        // the flow only pass a handle: the registry doesn't outlive the process
+        return createBaseIntent(context, KickoffActivity.class, flowParams)
+                .putExtra(ExtraConstants.FLOW_PARAMS, flowParams);
     }
 
     @Override
     protected void onCreate(@Nullable final Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mStartTime = savedInstanceState == null
+                ? SystemClock.elapsedRealtime()
+                : savedInstanceState.getLong(EXTRA_START_TIME);
+
         mKickstarter = new ViewModelProvider(this).get(SignInKickstarter.class);
         mKickstarter.init(getFlowParams());
         mKickstarter.getOperation().observe(this, new ResourceObserver<IdpResponse>(this) {
             @Override
             protected void onSuccess(@NonNull IdpResponse response) {
+                // Time to signed in, to compare the single and multiple activity flows
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Signed in with " + response.getProviderType() + " after "
+                            + (SystemClock.elapsedRealtime() - mStartTime) + " ms, single "
+                            + "activity flow: " + getFlowParams().singleActivityFlow);
+                }
                 finish(RESULT_OK, response.toIntent());
             }
 
@@ -80,6 +99,12 @@ public class KickoffActivity extends InvisibleActivityBase {
                 });
     }
 
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong(EXTRA_START_TIME, mStartTime);
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -0,0 +1,39 @@
+package com.firebase.ui.auth.data.model;
+
+import com.google.android.gms.auth.api.credentials.Credential;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+/**
+ * A Smart Lock credential which arrived after the sign in methods were already shown. The sign in
+ * method screen offers it to the user instead of interrupting them with it.
+ *
+ * The credential may hold a password, so it is only kept while the flow that requested it is
+ * running: it is cleared when a flow starts, when the offer is accepted, and when the flow ends.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class CredentialOffer {
+    private static final MutableLiveData<Credential> OFFER = new MutableLiveData<>();
+
+    private CredentialOffer() {
+        throw new AssertionError("No instance for you!");
+    }
+
+    /**
+     * @return the offered credential, or null if there is none.
+     */
+    @NonNull
+    public static LiveData<Credential> get() {
+        return OFFER;
+    }
+
+    @MainThread
+    public static void set(@Nullable Credential credential) {
+        OFFER.setValue(credential);
+    }
+}
@@ -25,6 +25,7 @@ import com.firebase.ui.auth.ui.email.EmailCustomLayout;
 import com.firebase.ui.auth.ui.phone.PhoneNumberCustomLayout;
 import com.firebase.ui.auth.util.ExtraConstants;
 import com.firebase.ui.auth.util.Preconditions;
+import com.firebase.ui.auth.util.data.FlowParametersRegistry;
 import com.google.firebase.auth.ActionCodeSettings;
 import com.google.firebase.auth.GoogleAuthProvider;
 
@@ -64,6 +65,11 @@ public class FlowParameters implements Parcelable {
             AuthMethodPickerLayout customLayout = in.readParcelable(AuthMethodPickerLayout.class.getClassLoader());
             PhoneNumberCustomLayout phoneNumberCustomLayout = in.readParcelable(PhoneNumberCustomLayout.class.getClassLoader());
             EmailCustomLayout emailCustomLayout = in.readParcelable(EmailCustomLayout.class.getClassLoader());
+            long credentialRequestTimeoutMillis = in.readLong();
+            boolean singleActivityFlow = in.readInt() != 0;
+            boolean inProcessParameters = in.readInt() != 0;
+            boolean warmUpCustomTabs = in.readInt() != 0;
+            boolean saveCredentialsInBackground = in.readInt() != 0;
 
             return new FlowParameters(
                     appName,
@@ -82,7 +88,12 @@ public class FlowParameters implements Parcelable {
                     passwordResetSettings,
                     customLayout,
                     phoneNumberCustomLayout,
-                    emailCustomLayout);
+                    emailCustomLayout,
+                    credentialRequestTimeoutMillis,
+                    singleActivityFlow,
+                    inProcessParameters,
+                    warmUpCustomTabs,
+                    saveCredentialsInBackground);
         }
 
         @Override
@@ -133,6 +144,36 @@ public class FlowParameters implements Parcelable {
     @Nullable
     public final EmailCustomLayout emailCustomLayout;
 
+    /**
+     * How long to wait for a Smart Lock credential before showing the sign in methods, or 0 to
+     * wait for the credential request to finish.
+     */
+    public final long credentialRequestTimeoutMillis;
+
+    /**
+     * Whether the welcome back password prompt and the Smart Lock save run inside the current
+     * activity instead of launching a new one.
+     */
+    public final boolean singleActivityFlow;
+
+    /**
+     * Whether the screens of the flow share these parameters through the {@link
+     * FlowParametersRegistry} instead of parcelling them into every intent.
+     */
+    public final boolean inProcessParameters;
+
+    /**
+     * Whether to warm up Custom Tabs for the generic OAuth providers when the sign in methods are
+     * shown.
+     */
+    public final boolean warmUpCustomTabs;
+
+    /**
+     * Whether to return the sign in result right away and save the Smart Lock credential once the
+     * flow is done.
+     */
+    public final boolean saveCredentialsInBackground;
+
     public FlowParameters(
             @NonNull String appName,
             @NonNull List<IdpConfig> providers,
@@ -150,7 +191,12 @@ public class FlowParameters implements Parcelable {
             @Nullable ActionCodeSettings passwordResetSettings,
             @Nullable AuthMethodPickerLayout authMethodPickerLayout,
             @Nullable PhoneNumberCustomLayout phoneNumberCustomLayout,
-            @Nullable EmailCustomLayout emailCustomLayout
+            @Nullable EmailCustomLayout emailCustomLayout,
+            long credentialRequestTimeoutMillis,
+            boolean singleActivityFlow,
+            boolean inProcessParameters,
+            boolean warmUpCustomTabs,
+            boolean saveCredentialsInBackground
             ) {
         this.appName = Preconditions.checkNotNull(appName, "appName cannot be null");
         this.providers = Collections.unmodifiableList(
@@ -170,12 +216,28 @@ public class FlowParameters implements Parcelable {
         this.authMethodPickerLayout = authMethodPickerLayout;
         this.phoneNumberCustomLayout = phoneNumberCustomLayout;
         this.emailCustomLayout = emailCustomLayout;
+        this.credentialRequestTimeoutMillis = credentialRequestTimeoutMillis;
+        this.singleActivityFlow = singleActivityFlow;
+        this.inProcessParameters = inProcessParameters;
+        this.warmUpCustomTabs = warmUpCustomTabs;
+        this.saveCredentialsInBackground = saveCredentialsInBackground;
     }
 
     /**
      * Extract FlowParameters from an Intent.
+     *
+     * @return the parameters, or null if the intent only has a handle to parameters which were
+     * lost with the process.
      */
+    @Nullable
     public static FlowParameters fromIntent(Intent intent) {
+        String handle = intent.getStringExtra(ExtraConstants.FLOW_PARAMS_HANDLE);
+        if (handle != null) {
+            FlowParameters params = FlowParametersRegistry.get(handle);
+            if (params != null) {
+                return params;
+            }
+        }
         return intent.getParcelableExtra(ExtraConstants.FLOW_PARAMS);
     }
 
@@ -198,6 +260,11 @@ public class FlowParameters implements Parcelable {
         dest.writeParcelable(authMethodPickerLayout, flags);
         dest.writeParcelable(phoneNumberCustomLayout, flags);
         dest.writeParcelable(emailCustomLayout, flags);
+        dest.writeLong(credentialRequestTimeoutMillis);
+        dest.writeInt(singleActivityFlow ? 1 : 0);
+        dest.writeInt(inProcessParameters ? 1 : 0);
+        dest.writeInt(warmUpCustomTabs ? 1 : 0);
+        dest.writeInt(saveCredentialsInBackground ? 1 : 0);
     }
 
     @Override
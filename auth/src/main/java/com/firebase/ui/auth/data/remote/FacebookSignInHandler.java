@@ -63,6 +63,13 @@ public class FacebookSignInHandler extends SingleProviderSignInHandler<AuthUI.Id
                 .build();
     }
 
+    /**
+     * Load the Facebook login SDK ahead of a sign in. May be called from any thread.
+     */
+    public static void warmUp() {
+        LoginManager.getInstance();
+    }
+
     @Override
     protected void onCreate() {
         List<String> permissions = getArguments().getParams()
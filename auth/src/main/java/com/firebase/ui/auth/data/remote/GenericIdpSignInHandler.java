@@ -10,6 +10,8 @@ import com.firebase.ui.auth.data.model.FlowParameters;
 
 import android.app.Application;
 import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -28,8 +30,10 @@ import com.firebase.ui.auth.util.data.AuthOperationManager;
 import com.firebase.ui.auth.util.data.ProviderUtils;
 import com.firebase.ui.auth.viewmodel.ProviderSignInBase;
 import com.firebase.ui.auth.viewmodel.RequestCodes;
+import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
 import com.google.firebase.auth.AuthCredential;
 import com.google.firebase.auth.AuthResult;
 import com.google.firebase.auth.FacebookAuthProvider;
@@ -46,6 +50,7 @@ import java.util.List;
 
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public class GenericIdpSignInHandler extends ProviderSignInBase<AuthUI.IdpConfig> {
+    private static final String TAG = "GenericIdpSignInHandler";
 
     public GenericIdpSignInHandler(Application application) {
         super(application);
@@ -96,7 +101,20 @@ public class GenericIdpSignInHandler extends ProviderSignInBase<AuthUI.IdpConfig
                                           final HelperActivityBase activity,
                                           final OAuthProvider provider) {
         final boolean useEmulator = activity.getAuthUI().isUseEmulator();
+        final long startTime = SystemClock.elapsedRealtime();
         auth.startActivityForSignInWithProvider(activity, provider)
+                .addOnCompleteListener(new OnCompleteListener<AuthResult>() {
+                    @Override
+                    public void onComplete(@NonNull Task<AuthResult> task) {
+                        // Time spent in the browser, see AuthUI.SignInIntentBuilder
+                        // #setCustomTabsWarmUp
+                        if (Log.isLoggable(TAG, Log.DEBUG)) {
+                            Log.d(TAG, "Web sign in with " + provider.getProviderId()
+                                    + " took " + (SystemClock.elapsedRealtime() - startTime)
+                                    + " ms");
+                        }
+                    }
+                })
                 .addOnSuccessListener(
                         new OnSuccessListener<AuthResult>() {
                             @Override
@@ -3,12 +3,17 @@ package com.firebase.ui.auth.data.remote;
 import android.app.Activity;
 import android.app.Application;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
+import android.util.Log;
 
 import com.firebase.ui.auth.AuthUI;
 import com.firebase.ui.auth.ErrorCodes;
 import com.firebase.ui.auth.IdpResponse;
+import com.firebase.ui.auth.data.model.CredentialOffer;
 import com.firebase.ui.auth.data.model.IntentRequiredException;
 import com.firebase.ui.auth.data.model.PendingIntentRequiredException;
 import com.firebase.ui.auth.data.model.Resource;
@@ -20,13 +25,14 @@ import com.firebase.ui.auth.ui.idp.AuthMethodPickerActivity;
 import com.firebase.ui.auth.ui.idp.SingleSignInActivity;
 import com.firebase.ui.auth.ui.phone.PhoneActivity;
 import com.firebase.ui.auth.util.ExtraConstants;
-import com.firebase.ui.auth.util.GoogleApiUtils;
+import com.firebase.ui.auth.util.data.ProviderAvailability;
 import com.firebase.ui.auth.util.data.ProviderUtils;
 import com.firebase.ui.auth.viewmodel.RequestCodes;
 import com.firebase.ui.auth.viewmodel.SignInViewModelBase;
 import com.google.android.gms.auth.api.credentials.Credential;
 import com.google.android.gms.auth.api.credentials.CredentialRequest;
 import com.google.android.gms.auth.api.credentials.CredentialRequestResponse;
+import com.google.android.gms.auth.api.signin.GoogleSignIn;
 import com.google.android.gms.common.api.ApiException;
 import com.google.android.gms.common.api.CommonStatusCodes;
 import com.google.android.gms.common.api.ResolvableApiException;
@@ -36,6 +42,7 @@ import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 import com.google.firebase.auth.AuthResult;
 import com.google.firebase.auth.EmailAuthProvider;
+import com.google.firebase.auth.FacebookAuthProvider;
 import com.google.firebase.auth.FirebaseAuthInvalidCredentialsException;
 import com.google.firebase.auth.FirebaseAuthInvalidUserException;
 import com.google.firebase.auth.GoogleAuthProvider;
@@ -50,6 +57,20 @@ import androidx.annotation.Nullable;
 import static com.firebase.ui.auth.AuthUI.EMAIL_LINK_PROVIDER;
 
 public class SignInKickstarter extends SignInViewModelBase {
+    private static final String TAG = "SignInKickstarter";
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mCredentialTimeout = new Runnable() {
+        @Override
+        public void run() {
+            mWaitingForCredential = false;
+            startAuthMethodChoice();
+        }
+    };
+
+    // True while the flow is waiting on the credential request, false once it moved on
+    private boolean mWaitingForCredential;
+
     public SignInKickstarter(Application application) {
         super(application);
     }
@@ -99,10 +120,20 @@ public class SignInKickstarter extends SignInViewModelBase {
         // If the request will be empty, avoid the step entirely
         boolean willRequestCredentials = supportPasswords || accountTypes.size() > 0;
 
+        // Don't offer a credential left over from a previous flow
+        CredentialOffer.set(null);
+        warmUpProviders();
+
         if (getArguments().enableCredentials && willRequestCredentials) {
             setResult(Resource.<IdpResponse>forLoading());
 
-            GoogleApiUtils.getCredentialsClient(getApplication())
+            mWaitingForCredential = true;
+            long timeout = getArguments().credentialRequestTimeoutMillis;
+            if (timeout > 0) {
+                mHandler.postDelayed(mCredentialTimeout, timeout);
+            }
+
+            getCredentialsClient()
                     .request(new CredentialRequest.Builder()
                             .setPasswordLoginSupported(supportPasswords)
                             .setAccountTypes(accountTypes.toArray(new String[accountTypes.size()]))
@@ -110,6 +141,13 @@ public class SignInKickstarter extends SignInViewModelBase {
                     .addOnCompleteListener(new OnCompleteListener<CredentialRequestResponse>() {
                         @Override
                         public void onComplete(@NonNull Task<CredentialRequestResponse> task) {
+                            mHandler.removeCallbacks(mCredentialTimeout);
+                            if (!mWaitingForCredential) {
+                                offerLateCredential(task);
+                                return;
+                            }
+                            mWaitingForCredential = false;
+
                             try {
                                 handleCredential(
                                         task.getResult(ApiException.class).getCredential());
@@ -131,6 +169,56 @@ public class SignInKickstarter extends SignInViewModelBase {
         }
     }
 
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        mHandler.removeCallbacks(mCredentialTimeout);
+
+        // The flow is over, don't keep the offered password around
+        CredentialOffer.set(null);
+    }
+
+    /**
+     * The sign in methods are already showing, so only offer a credential that can be used
+     * without more prompts. Credentials needing the account picker are dropped.
+     */
+    private void offerLateCredential(@NonNull Task<CredentialRequestResponse> task) {
+        if (task.isSuccessful() && getArguments().shouldShowProviderChoice()) {
+            CredentialOffer.set(task.getResult().getCredential());
+        }
+    }
+
+    /**
+     * Load the provider SDKs in the background while the credential request is in flight, so
+     * they are ready by the time the user picks a provider.
+     */
+    private void warmUpProviders() {
+        final boolean google = getArguments().isProviderEnabled(GoogleAuthProvider.PROVIDER_ID);
+        final boolean facebook = ProviderAvailability.isFacebookAvailable()
+                && getArguments().isProviderEnabled(FacebookAuthProvider.PROVIDER_ID);
+        if (!google && !facebook) {
+            return;
+        }
+
+        final Application application = getApplication();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (google) {
+                        GoogleSignIn.getLastSignedInAccount(application);
+                    }
+                    if (facebook) {
+                        FacebookSignInHandler.warmUp();
+                    }
+                } catch (RuntimeException e) {
+                    // The sign in itself will report any problem with the SDK
+                    Log.w(TAG, "Could not warm up provider SDKs", e);
+                }
+            }
+        });
+    }
+
     private void startAuthMethodChoice() {
         if (!getArguments().shouldShowProviderChoice()) {
             AuthUI.IdpConfig firstIdpConfig = getArguments().getDefaultOrFirstProvider();
@@ -208,6 +296,10 @@ public class SignInKickstarter extends SignInViewModelBase {
                 break;
             case RequestCodes.EMAIL_FLOW:
             case RequestCodes.AUTH_PICKER_FLOW:
+                if (resultCode == RequestCodes.CREDENTIAL_OFFER_ACCEPTED) {
+                    handleCredential((Credential) data.getParcelableExtra(Credential.EXTRA_KEY));
+                    return;
+                }
             case RequestCodes.PHONE_FLOW:
             case RequestCodes.PROVIDER_FLOW:
                 if (resultCode == RequestCodes.EMAIL_LINK_WRONG_DEVICE_FLOW || resultCode == RequestCodes.EMAIL_LINK_INVALID_LINK_FLOW) {
@@ -259,8 +351,7 @@ public class SignInKickstarter extends SignInViewModelBase {
                                 // In this case the credential saved in SmartLock was not
                                 // a valid credential, we should delete it from SmartLock
                                 // before continuing.
-                                GoogleApiUtils.getCredentialsClient(getApplication())
-                                        .delete(credential);
+                                getCredentialsClient().delete(credential);
                             }
                             startAuthMethodChoice();
                         }
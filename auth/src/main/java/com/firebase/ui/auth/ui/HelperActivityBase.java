@@ -4,16 +4,23 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.net.ConnectivityManager;
+import android.os.Bundle;
 
 import com.firebase.ui.auth.AuthUI;
 import com.firebase.ui.auth.ErrorCodes;
 import com.firebase.ui.auth.IdpResponse;
 import com.firebase.ui.auth.data.model.FlowParameters;
+import com.firebase.ui.auth.data.model.Resource;
+import com.firebase.ui.auth.data.model.State;
 import com.firebase.ui.auth.ui.credentials.CredentialSaveActivity;
 import com.firebase.ui.auth.util.CredentialUtils;
 import com.firebase.ui.auth.util.ExtraConstants;
+import com.firebase.ui.auth.util.data.FlowParametersRegistry;
 import com.firebase.ui.auth.util.data.ProviderUtils;
+import com.firebase.ui.auth.util.ui.FlowUtils;
 import com.firebase.ui.auth.viewmodel.RequestCodes;
+import com.firebase.ui.auth.viewmodel.smartlock.BackgroundCredentialSaver;
+import com.firebase.ui.auth.viewmodel.smartlock.SmartLockHandler;
 import com.google.android.gms.auth.api.credentials.Credential;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -22,12 +29,17 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.ViewModelProvider;
 
 import static com.firebase.ui.auth.util.Preconditions.checkNotNull;
 
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public abstract class HelperActivityBase extends AppCompatActivity implements ProgressView {
+    private static final String SMART_LOCK_SAVING = "smart_lock_saving";
+
     private FlowParameters mParams;
+    private SmartLockHandler mSmartLockHandler;
 
     protected static Intent createBaseIntent(
             @NonNull Context context,
@@ -35,13 +47,51 @@ public abstract class HelperActivityBase extends AppCompatActivity implements Pr
             @NonNull FlowParameters flowParams) {
         Intent intent = new Intent(
                 checkNotNull(context, "context cannot be null"),
-                checkNotNull(target, "target activity cannot be null"))
-                .putExtra(ExtraConstants.FLOW_PARAMS,
-                        checkNotNull(flowParams, "flowParams cannot be null"));
+                checkNotNull(target, "target activity cannot be null"));
+        checkNotNull(flowParams, "flowParams cannot be null");
+        if (flowParams.inProcessParameters) {
+            intent.putExtra(ExtraConstants.FLOW_PARAMS_HANDLE,
+                    FlowParametersRegistry.register(flowParams));
+        } else {
+            intent.putExtra(ExtraConstants.FLOW_PARAMS, flowParams);
+        }
         intent.setExtrasClassLoader(AuthUI.class.getClassLoader());
         return intent;
     }
 
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        // Restore the parameters before fragments are recreated, if they only lived in the
+        // registry of a previous process
+        String handle = getIntent().getStringExtra(ExtraConstants.FLOW_PARAMS_HANDLE);
+        if (savedInstanceState != null && handle != null
+                && FlowParametersRegistry.get(handle) == null) {
+            savedInstanceState.setClassLoader(AuthUI.class.getClassLoader());
+            FlowParameters params = savedInstanceState.getParcelable(ExtraConstants.FLOW_PARAMS);
+            if (params != null) {
+                FlowParametersRegistry.restore(handle, params);
+            }
+        }
+        super.onCreate(savedInstanceState);
+
+        if (savedInstanceState != null && savedInstanceState.getBoolean(SMART_LOCK_SAVING)
+                && getFlowParams().singleActivityFlow) {
+            // Observe the save started by the previous instance, or its result would be dropped
+            getSmartLockHandler();
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (getIntent().hasExtra(ExtraConstants.FLOW_PARAMS_HANDLE)) {
+            // Only parcelled if the system needs to keep the state, i.e. after this activity
+            // is stopped, which is off the path of starting the next screen
+            outState.putParcelable(ExtraConstants.FLOW_PARAMS, getFlowParams());
+        }
+        outState.putBoolean(SMART_LOCK_SAVING, mSmartLockHandler != null);
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -49,12 +99,20 @@ public abstract class HelperActivityBase extends AppCompatActivity implements Pr
         if (requestCode == RequestCodes.CRED_SAVE_FLOW
                 || resultCode == ErrorCodes.ANONYMOUS_UPGRADE_MERGE_CONFLICT) {
             finish(resultCode, data);
+        } else if (requestCode == RequestCodes.CRED_SAVE && getFlowParams().singleActivityFlow) {
+            // Forward the resolution of a Smart Lock save made by this activity
+            getSmartLockHandler().onActivityResult(requestCode, resultCode);
         }
     }
 
+    @NonNull
     public FlowParameters getFlowParams() {
         if (mParams == null) {
             mParams = FlowParameters.fromIntent(getIntent());
+            if (mParams == null) {
+                throw new IllegalStateException("The parameters of this sign-in flow were lost "
+                        + "with the process, start a new flow from AuthUI.SignInIntentBuilder.");
+            }
         }
         return mParams;
     }
@@ -81,12 +139,56 @@ public abstract class HelperActivityBase extends AppCompatActivity implements Pr
         Credential credential = CredentialUtils.buildCredential(
                 firebaseUser, password, accountType);
 
+        if (getFlowParams().saveCredentialsInBackground) {
+            BackgroundCredentialSaver.save(getApplication(), getFlowParams(), credential, response);
+            finish(RESULT_OK, response.toIntent());
+            return;
+        }
+
+        if (getFlowParams().singleActivityFlow) {
+            // Save from this activity to avoid launching another one
+            SmartLockHandler handler = getSmartLockHandler();
+            handler.setResponse(response);
+            handler.saveCredentials(credential);
+            return;
+        }
+
         // Start the dedicated SmartLock Activity
         Intent intent = CredentialSaveActivity.createIntent(
                 this, getFlowParams(), credential, response);
         startActivityForResult(intent, RequestCodes.CRED_SAVE_FLOW);
     }
 
+    @NonNull
+    private SmartLockHandler getSmartLockHandler() {
+        if (mSmartLockHandler != null) {
+            return mSmartLockHandler;
+        }
+
+        mSmartLockHandler = new ViewModelProvider(this).get(SmartLockHandler.class);
+        mSmartLockHandler.init(getFlowParams());
+        mSmartLockHandler.getOperation().observe(this, new Observer<Resource<IdpResponse>>() {
+            @Override
+            public void onChanged(Resource<IdpResponse> resource) {
+                if (resource.getState() == State.LOADING || resource.isUsed()) {
+                    return;
+                }
+
+                if (resource.getState() == State.FAILURE
+                        && !FlowUtils.unhandled(HelperActivityBase.this, resource.getException())) {
+                    // Waiting for the user to resolve the save
+                    return;
+                }
+
+                // RESULT_OK even on failure since we don't want to halt sign-in just because of a
+                // credential save error.
+                IdpResponse response = mSmartLockHandler.getResponse();
+                finish(RESULT_OK, response == null ? null : response.toIntent());
+            }
+        });
+        return mSmartLockHandler;
+    }
+
     /**
      * Check if there is an active or soon-to-be-active network connection.
      *
@@ -3,7 +3,10 @@ package com.firebase.ui.auth.ui.email;
 import android.content.Intent;
 import android.os.Build;
 import android.os.Bundle;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.util.Patterns;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -12,6 +15,7 @@ import android.widget.EditText;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import com.firebase.ui.auth.AuthUI;
 import com.firebase.ui.auth.ErrorCodes;
 import com.firebase.ui.auth.FirebaseUiException;
 import com.firebase.ui.auth.R;
@@ -20,6 +24,7 @@ import com.firebase.ui.auth.data.model.User;
 import com.firebase.ui.auth.ui.FragmentBase;
 import com.firebase.ui.auth.util.ExtraConstants;
 import com.firebase.ui.auth.util.data.PrivacyDisclosureUtils;
+import com.firebase.ui.auth.util.data.ProviderUtils;
 import com.firebase.ui.auth.util.ui.ImeHelper;
 import com.firebase.ui.auth.util.ui.fieldvalidators.EmailFieldValidator;
 import com.firebase.ui.auth.viewmodel.ResourceObserver;
@@ -50,6 +55,10 @@ public class CheckEmailFragment extends FragmentBase implements
         ImeHelper.DonePressedListener {
 
     public static final String TAG = "CheckEmailFragment";
+
+    // How long the user has to stop typing before the email is looked up
+    private static final long LOOKUP_DELAY_MILLIS = 500;
+
     private CheckEmailHandler mHandler;
     private Button mNextButton;
     private ProgressBar mProgressBar;
@@ -61,6 +70,16 @@ public class CheckEmailFragment extends FragmentBase implements
 
     private HashMap<String, Integer> defaultIds;
 
+    private final Runnable mLookupRunnable = new Runnable() {
+        @Override
+        public void run() {
+            String email = mEmailEditText.getText().toString();
+            if (Patterns.EMAIL_ADDRESS.matcher(email).matches()) {
+                mHandler.prefetchProvider(email);
+            }
+        }
+    };
+
     public static CheckEmailFragment newInstance(@Nullable String email) {
         CheckEmailFragment fragment = new CheckEmailFragment();
         Bundle args = new Bundle();
@@ -138,6 +157,24 @@ public class CheckEmailFragment extends FragmentBase implements
         }
         mListener = (CheckEmailListener) activity;
 
+        if (isLookupWhileTypingEnabled()) {
+            mEmailEditText.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    mEmailEditText.removeCallbacks(mLookupRunnable);
+                    mEmailEditText.postDelayed(mLookupRunnable, LOOKUP_DELAY_MILLIS);
+                }
+            });
+        }
+
         mHandler.getOperation().observe(getViewLifecycleOwner(), new ResourceObserver<User>(
                 this, R.string.fui_progress_dialog_checking_accounts) {
             @Override
@@ -189,6 +226,12 @@ public class CheckEmailFragment extends FragmentBase implements
         }
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mEmailEditText.removeCallbacks(mLookupRunnable);
+    }
+
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
         mHandler.onActivityResult(requestCode, resultCode, data);
@@ -218,6 +261,18 @@ public class CheckEmailFragment extends FragmentBase implements
     }
 
 
+    private boolean isLookupWhileTypingEnabled() {
+        FlowParameters params = getFlowParams();
+        AuthUI.IdpConfig emailConfig = ProviderUtils.getConfigFromIdps(params.providers,
+                EmailAuthProvider.PROVIDER_ID);
+        if (emailConfig == null) {
+            emailConfig = ProviderUtils.getConfigFromIdps(params.providers, EMAIL_LINK_PROVIDER);
+        }
+
+        return emailConfig != null
+                && emailConfig.getParams().getBoolean(ExtraConstants.LOOKUP_WHILE_TYPING, false);
+    }
+
     /**
      * @return EmailCustomLayout set from public API.
      * @throws IllegalStateException if email custom layout is not set from public API.
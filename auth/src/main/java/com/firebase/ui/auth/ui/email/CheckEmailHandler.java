@@ -20,6 +20,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 public class CheckEmailHandler extends AuthViewModelBase<User> {
+    // The email of the latest lookup, whose result supersedes those of earlier lookups
+    private String mEmail;
+
     public CheckEmailHandler(Application application) {
         super(application);
     }
@@ -32,12 +35,25 @@ public class CheckEmailHandler extends AuthViewModelBase<User> {
         )));
     }
 
+    /**
+     * Start looking up the accounts of an email the user may be about to submit, so that
+     * {@link #fetchProvider(String)} can reuse the result.
+     */
+    public void prefetchProvider(String email) {
+        ProviderUtils.fetchSignInMethods(getAuth(), email);
+    }
+
     public void fetchProvider(final String email) {
+        mEmail = email;
         setResult(Resource.<User>forLoading());
         ProviderUtils.fetchTopProvider(getAuth(), getArguments(), email)
                 .addOnCompleteListener(new OnCompleteListener<String>() {
                     @Override
                     public void onComplete(@NonNull Task<String> task) {
+                        if (!email.equals(mEmail)) {
+                            return;
+                        }
+
                         if (task.isSuccessful()) {
                             setResult(Resource.forSuccess(
                                     new User.Builder(task.getResult(), email).build()));
@@ -54,10 +70,15 @@ public class CheckEmailHandler extends AuthViewModelBase<User> {
         setResult(Resource.<User>forLoading());
         final Credential credential = data.getParcelableExtra(Credential.EXTRA_KEY);
         final String email = credential.getId();
+        mEmail = email;
         ProviderUtils.fetchTopProvider(getAuth(), getArguments(), email)
                 .addOnCompleteListener(new OnCompleteListener<String>() {
                     @Override
                     public void onComplete(@NonNull Task<String> task) {
+                        if (!email.equals(mEmail)) {
+                            return;
+                        }
+
                         if (task.isSuccessful()) {
                             setResult(Resource.forSuccess(new User.Builder(task.getResult(), email)
                                     .setName(credential.getName())
@@ -46,7 +46,8 @@ import static com.firebase.ui.auth.AuthUI.EMAIL_LINK_PROVIDER;
 /**
  * Activity to control the entire email sign up flow. Plays host to {@link CheckEmailFragment} and
  * {@link RegisterEmailFragment} and triggers {@link WelcomeBackPasswordPrompt} and {@link
- * WelcomeBackIdpPrompt}.
+ * WelcomeBackIdpPrompt}. In the single activity flow, it also hosts {@link
+ * WelcomeBackPasswordFragment} instead of triggering {@link WelcomeBackPasswordPrompt}.
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public class EmailActivity extends AppCompatBase implements CheckEmailFragment.CheckEmailListener,
@@ -126,6 +127,13 @@ public class EmailActivity extends AppCompatBase implements CheckEmailFragment.C
                     getFlowParams().providers, EMAIL_LINK_PROVIDER);
             showRegisterEmailLinkFragment(
                     emailConfig, user.getEmail());
+        } else if (getFlowParams().singleActivityFlow) {
+            switchFragment(
+                    WelcomeBackPasswordFragment.newInstance(new IdpResponse.Builder(user).build()),
+                    R.id.fragment_register_email,
+                    WelcomeBackPasswordFragment.TAG,
+                    true,
+                    true);
         } else {
             startActivityForResult(
                     WelcomeBackPasswordPrompt.createIntent(
@@ -17,55 +17,23 @@ package com.firebase.ui.auth.ui.email;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
-import android.text.SpannableStringBuilder;
-import android.text.TextUtils;
-import android.view.View;
-import android.view.WindowManager;
-import android.widget.Button;
-import android.widget.EditText;
-import android.widget.ProgressBar;
-import android.widget.TextView;
 
-import com.firebase.ui.auth.ErrorCodes;
-import com.firebase.ui.auth.FirebaseAuthAnonymousUpgradeException;
-import com.firebase.ui.auth.FirebaseUiException;
 import com.firebase.ui.auth.IdpResponse;
 import com.firebase.ui.auth.R;
 import com.firebase.ui.auth.data.model.FlowParameters;
 import com.firebase.ui.auth.ui.AppCompatBase;
 import com.firebase.ui.auth.util.ExtraConstants;
-import com.firebase.ui.auth.util.FirebaseAuthError;
-import com.firebase.ui.auth.util.data.PrivacyDisclosureUtils;
-import com.firebase.ui.auth.util.data.ProviderUtils;
-import com.firebase.ui.auth.util.ui.ImeHelper;
-import com.firebase.ui.auth.util.ui.TextHelper;
-import com.firebase.ui.auth.viewmodel.ResourceObserver;
-import com.firebase.ui.auth.viewmodel.email.WelcomeBackPasswordHandler;
-import com.google.android.material.textfield.TextInputLayout;
-import com.google.firebase.auth.AuthCredential;
-import com.google.firebase.auth.FirebaseAuthException;
-import com.google.firebase.auth.FirebaseAuthInvalidCredentialsException;
 
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.StringRes;
-import androidx.lifecycle.ViewModelProvider;
 
 /**
  * Activity to link a pre-existing email/password account to a new IDP sign-in by confirming the
- * password before initiating a link.
+ * password before initiating a link. Plays host to {@link WelcomeBackPasswordFragment}.
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
-public class WelcomeBackPasswordPrompt extends AppCompatBase
-        implements View.OnClickListener, ImeHelper.DonePressedListener {
-    private IdpResponse mIdpResponse;
-    private WelcomeBackPasswordHandler mHandler;
-
-    private Button mDoneButton;
-    private ProgressBar mProgressBar;
-    private TextInputLayout mPasswordLayout;
-    private EditText mPasswordField;
+public class WelcomeBackPasswordPrompt extends AppCompatBase {
 
     public static Intent createIntent(
             Context context, FlowParameters flowParams, IdpResponse response) {
@@ -76,132 +44,24 @@ public class WelcomeBackPasswordPrompt extends AppCompatBase
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.fui_welcome_back_password_prompt_layout);
-
-        // Show keyboard
-        getWindow().setSoftInputMode(WindowManager.LayoutParams.SOFT_INPUT_STATE_VISIBLE);
-
-        mIdpResponse = IdpResponse.fromResultIntent(getIntent());
-        String email = mIdpResponse.getEmail();
-
-        mDoneButton = findViewById(R.id.button_done);
-        mProgressBar = findViewById(R.id.top_progress_bar);
-        mPasswordLayout = findViewById(R.id.password_layout);
-        mPasswordField = findViewById(R.id.password);
-
-        ImeHelper.setImeOnDoneListener(mPasswordField, this);
-
-        // Create welcome back text with email bolded.
-        String bodyText =
-                getString(R.string.fui_welcome_back_password_prompt_body, email);
-
-        SpannableStringBuilder spannableStringBuilder = new SpannableStringBuilder(bodyText);
-        TextHelper.boldAllOccurencesOfText(spannableStringBuilder, bodyText, email);
-
-        TextView bodyTextView = findViewById(R.id.welcome_back_password_body);
-        bodyTextView.setText(spannableStringBuilder);
-
-        // Click listeners
-        mDoneButton.setOnClickListener(this);
-        findViewById(R.id.trouble_signing_in).setOnClickListener(this);
-
-        // Initialize ViewModel with arguments
-        mHandler = new ViewModelProvider(this).get(WelcomeBackPasswordHandler.class);
-        mHandler.init(getFlowParams());
-
-        // Observe the state of the main auth operation
-        mHandler.getOperation().observe(this, new ResourceObserver<IdpResponse>(
-                this, R.string.fui_progress_dialog_signing_in) {
-            @Override
-            protected void onSuccess(@NonNull IdpResponse response) {
-                startSaveCredentials(
-                        mHandler.getCurrentUser(), response, mHandler.getPendingPassword());
-            }
-
-            @Override
-            protected void onFailure(@NonNull Exception e) {
-                if (e instanceof FirebaseAuthAnonymousUpgradeException) {
-                    IdpResponse response = ((FirebaseAuthAnonymousUpgradeException) e).getResponse();
-                    finish(ErrorCodes.ANONYMOUS_UPGRADE_MERGE_CONFLICT, response.toIntent());
-                    return;
-                }
-
-                if (e instanceof FirebaseAuthException) {
-                    FirebaseAuthException authEx = (FirebaseAuthException) e;
-                    FirebaseAuthError error = FirebaseAuthError.fromException(authEx);
-                    if (error == FirebaseAuthError.ERROR_USER_DISABLED) {
-                        IdpResponse resp = IdpResponse.from(
-                                new FirebaseUiException(ErrorCodes.ERROR_USER_DISABLED));
-                        finish(RESULT_CANCELED, resp.toIntent());
-                        return;
-                    }
-                }
-
-                mPasswordLayout.setError(getString(getErrorMessage(e)));
-            }
-        });
-
-        TextView footerText = findViewById(R.id.email_footer_tos_and_pp_text);
-        PrivacyDisclosureUtils.setupTermsOfServiceFooter(this, getFlowParams(), footerText);
-    }
+        setContentView(R.layout.fui_activity_welcome_back_password);
 
-    @StringRes
-    private int getErrorMessage(Exception exception) {
-        if (exception instanceof FirebaseAuthInvalidCredentialsException) {
-            return R.string.fui_error_invalid_password;
-        }
-
-        return R.string.fui_error_unknown;
-    }
-
-    private void onForgotPasswordClicked() {
-        startActivity(RecoverPasswordActivity.createIntent(
-                this,
-                getFlowParams(),
-                mIdpResponse.getEmail()));
-    }
-
-    @Override
-    public void onDonePressed() {
-        validateAndSignIn();
-    }
-
-    private void validateAndSignIn() {
-        validateAndSignIn(mPasswordField.getText().toString());
-    }
-
-    private void validateAndSignIn(String password) {
-        // Check for null or empty password
-        if (TextUtils.isEmpty(password)) {
-            mPasswordLayout.setError(getString(R.string.fui_error_invalid_password));
+        if (savedInstanceState != null) {
             return;
-        } else {
-            mPasswordLayout.setError(null);
         }
 
-        AuthCredential authCredential = ProviderUtils.getAuthCredential(mIdpResponse);
-        mHandler.startSignIn(mIdpResponse.getEmail(), password, mIdpResponse, authCredential);
-    }
-
-    @Override
-    public void onClick(View view) {
-        final int id = view.getId();
-        if (id == R.id.button_done) {
-            validateAndSignIn();
-        } else if (id == R.id.trouble_signing_in) {
-            onForgotPasswordClicked();
-        }
+        IdpResponse response = IdpResponse.fromResultIntent(getIntent());
+        switchFragment(WelcomeBackPasswordFragment.newInstance(response),
+                R.id.fragment_welcome_back_password, WelcomeBackPasswordFragment.TAG);
     }
 
     @Override
-    public void showProgress(int message) {
-        mDoneButton.setEnabled(false);
-        mProgressBar.setVisibility(View.VISIBLE);
+    public void showProgress(@StringRes int message) {
+        throw new UnsupportedOperationException("Fragment must handle progress updates.");
     }
 
     @Override
     public void hideProgress() {
-        mDoneButton.setEnabled(true);
-        mProgressBar.setVisibility(View.INVISIBLE);
+        throw new UnsupportedOperationException("Fragment must handle progress updates.");
     }
 }
@@ -33,6 +33,7 @@ import com.firebase.ui.auth.FirebaseAuthAnonymousUpgradeException;
 import com.firebase.ui.auth.FirebaseUiException;
 import com.firebase.ui.auth.IdpResponse;
 import com.firebase.ui.auth.R;
+import com.firebase.ui.auth.data.model.CredentialOffer;
 import com.firebase.ui.auth.data.model.FlowParameters;
 import com.firebase.ui.auth.data.model.UserCancellationException;
 import com.firebase.ui.auth.data.remote.AnonymousSignInHandler;
@@ -44,9 +45,12 @@ import com.firebase.ui.auth.data.remote.PhoneSignInHandler;
 import com.firebase.ui.auth.ui.AppCompatBase;
 import com.firebase.ui.auth.util.ExtraConstants;
 import com.firebase.ui.auth.util.data.PrivacyDisclosureUtils;
+import com.firebase.ui.auth.util.ui.CustomTabsWarmer;
 import com.firebase.ui.auth.viewmodel.ProviderSignInBase;
+import com.firebase.ui.auth.viewmodel.RequestCodes;
 import com.firebase.ui.auth.viewmodel.ResourceObserver;
 import com.firebase.ui.auth.viewmodel.idp.SocialProviderResponseHandler;
+import com.google.android.gms.auth.api.credentials.Credential;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.EmailAuthProvider;
 import com.google.firebase.auth.FacebookAuthProvider;
@@ -64,6 +68,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.constraintlayout.widget.ConstraintLayout;
 import androidx.constraintlayout.widget.ConstraintSet;
+import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 
 import static com.firebase.ui.auth.util.ExtraConstants.GENERIC_OAUTH_BUTTON_ID;
@@ -84,6 +89,9 @@ public class AuthMethodPickerActivity extends AppCompatBase {
 
     private AuthMethodPickerLayout customLayout;
 
+    @Nullable
+    private CustomTabsWarmer mCustomTabsWarmer;
+
     public static Intent createIntent(Context context, FlowParameters flowParams) {
         return createBaseIntent(context, AuthMethodPickerActivity.class, flowParams);
     }
@@ -179,6 +187,36 @@ public class AuthMethodPickerActivity extends AppCompatBase {
                 }
             }
         });
+
+        if (params.warmUpCustomTabs) {
+            mCustomTabsWarmer = CustomTabsWarmer.bind(this, params);
+        }
+
+        // A Smart Lock credential may arrive after this screen is shown, see
+        // AuthUI.SignInIntentBuilder#setCredentialRequestTimeout
+        CredentialOffer.get().observe(this, new Observer<Credential>() {
+            @Override
+            public void onChanged(@Nullable Credential credential) {
+                if (credential != null) {
+                    offerCredential(credential);
+                }
+            }
+        });
+    }
+
+    private void offerCredential(@NonNull final Credential credential) {
+        Snackbar.make(findViewById(android.R.id.content),
+                getString(R.string.fui_credential_offer, credential.getId()),
+                Snackbar.LENGTH_INDEFINITE)
+                .setAction(R.string.fui_continue, new View.OnClickListener() {
+                    @Override
+                    public void onClick(View view) {
+                        CredentialOffer.set(null);
+                        finish(RequestCodes.CREDENTIAL_OFFER_ACCEPTED,
+                                new Intent().putExtra(Credential.EXTRA_KEY, credential));
+                    }
+                })
+                .show();
     }
 
     private void populateIdpList(List<IdpConfig> providerConfigs) {
@@ -358,6 +396,14 @@ public class AuthMethodPickerActivity extends AppCompatBase {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mCustomTabsWarmer != null) {
+            mCustomTabsWarmer.unbind();
+        }
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -0,0 +1,341 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.firebase.ui.auth.ui.phone;
+
+import android.util.LruCache;
+
+import com.firebase.ui.auth.data.model.CountryInfo;
+import com.firebase.ui.auth.util.data.PhoneNumberUtils;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Immutable, sorted list of the countries shown by {@link CountryListSpinner}, together with its
+ * section index and a prefix search index over the country names and calling codes.
+ *
+ * Building a list creates a {@link CountryInfo} and looks up the display name of every country,
+ * so lists are built on a background thread and cached for the process, keyed by display locale
+ * and the allowed and blocked countries.
+ */
+final class CountryList {
+
+    private static final int MAX_CACHED_LISTS = 4;
+
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final LruCache<Key, Task<CountryList>> CACHE =
+            new LruCache<>(MAX_CACHED_LISTS);
+
+    private final List<CountryInfo> mCountries;
+    private final Map<String, Integer> mPositions;
+
+    private final String[] mSectionKeys;
+    private final String[] mSections;
+    private final int[] mSectionPositions;
+
+    private final String[] mSearchKeys;
+    private final int[] mSearchPositions;
+
+    /**
+     * @param countries the countries to display, already sorted by display name.
+     */
+    CountryList(@NonNull Locale locale, @NonNull List<CountryInfo> countries) {
+        int size = countries.size();
+        mCountries = Collections.unmodifiableList(new ArrayList<>(countries));
+        mPositions = new HashMap<>(size * 2);
+        mSectionKeys = new String[size];
+
+        List<String> sections = new ArrayList<>();
+        List<Integer> sectionPositions = new ArrayList<>();
+        List<SearchEntry> entries = new ArrayList<>(size * 3);
+
+        for (int i = 0; i < size; i++) {
+            CountryInfo country = countries.get(i);
+            String name = country.getLocale().getDisplayCountry(locale);
+
+            mPositions.put(name, i);
+            mSectionKeys[i] = name.isEmpty() ? "" : name.substring(0, 1).toUpperCase(locale);
+            if (!sections.contains(mSectionKeys[i])) {
+                sections.add(mSectionKeys[i]);
+                sectionPositions.add(i);
+            }
+
+            addSearchEntries(entries, normalize(name), i);
+            entries.add(new SearchEntry(String.valueOf(country.getCountryCode()), i));
+        }
+
+        mSections = sections.toArray(new String[0]);
+        mSectionPositions = toArray(sectionPositions);
+
+        Collections.sort(entries);
+        mSearchKeys = new String[entries.size()];
+        mSearchPositions = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            mSearchKeys[i] = entries.get(i).mKey;
+            mSearchPositions[i] = entries.get(i).mPosition;
+        }
+    }
+
+    /**
+     * Get the list of countries for the given locale and filters, building it on a background
+     * thread if it is not cached yet.
+     *
+     * @param whitelist the countries to show, or an empty set to show all countries.
+     * @param blacklist the countries to hide, only used if there is no whitelist.
+     */
+    @NonNull
+    static Task<CountryList> load(@NonNull final Locale locale,
+                                  @NonNull Set<String> whitelist,
+                                  @NonNull Set<String> blacklist) {
+        final Key key = new Key(locale, whitelist, blacklist);
+        synchronized (CACHE) {
+            Task<CountryList> list = CACHE.get(key);
+            if (list == null || list.isComplete() && !list.isSuccessful()) {
+                list = Tasks.call(EXECUTOR, new Callable<CountryList>() {
+                    @Override
+                    public CountryList call() {
+                        return create(locale, key.mWhitelist, key.mBlacklist);
+                    }
+                });
+                CACHE.put(key, list);
+            }
+            return list;
+        }
+    }
+
+    @NonNull
+    @WorkerThread
+    static CountryList create(@NonNull Locale locale,
+                              @NonNull Set<String> whitelist,
+                              @NonNull Set<String> blacklist) {
+        Map<String, Integer> countryIsos = PhoneNumberUtils.getImmutableCountryIsoMap();
+
+        final Collator collator = Collator.getInstance(locale);
+        collator.setStrength(Collator.PRIMARY);
+
+        // Sort on collation keys so each display name is looked up and decomposed only once
+        List<SortEntry> entries = new ArrayList<>(countryIsos.size());
+        for (Map.Entry<String, Integer> entry : countryIsos.entrySet()) {
+            String iso = entry.getKey();
+            boolean excluded = whitelist.isEmpty()
+                    ? blacklist.contains(iso) : !whitelist.contains(iso);
+            if (!excluded) {
+                CountryInfo country = new CountryInfo(new Locale("", iso), entry.getValue());
+                String name = country.getLocale().getDisplayCountry(locale);
+                entries.add(new SortEntry(collator.getCollationKey(name), country));
+            }
+        }
+        Collections.sort(entries);
+
+        List<CountryInfo> countries = new ArrayList<>(entries.size());
+        for (SortEntry entry : entries) {
+            countries.add(entry.mCountry);
+        }
+        return new CountryList(locale, countries);
+    }
+
+    @NonNull
+    List<CountryInfo> getCountries() {
+        return mCountries;
+    }
+
+    /**
+     * @return the position of the country with the given display name, or -1 if it isn't listed.
+     */
+    int getPosition(@Nullable String displayName) {
+        Integer position = mPositions.get(displayName);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * @return the first letter of the display name of the country at the given position.
+     */
+    @NonNull
+    String getSectionKey(int position) {
+        return mSectionKeys[position];
+    }
+
+    @NonNull
+    String[] getSections() {
+        return mSections.clone();
+    }
+
+    @NonNull
+    int[] getSectionPositions() {
+        return mSectionPositions.clone();
+    }
+
+    /**
+     * Find the countries with a name containing a word starting with the query, or a calling code
+     * starting with it. Case, accents and a leading '+' are ignored.
+     *
+     * @return the positions of the matching countries, in list order.
+     */
+    @NonNull
+    int[] search(@Nullable CharSequence query) {
+        String prefix = query == null ? "" : normalize(query.toString().trim());
+        if (prefix.startsWith("+")) {
+            prefix = prefix.substring(1);
+        }
+        if (prefix.isEmpty()) {
+            int[] all = new int[mCountries.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int index = Arrays.binarySearch(mSearchKeys, prefix);
+        if (index < 0) {
+            index = -(index + 1);
+        }
+
+        BitSet matches = new BitSet(mCountries.size());
+        for (; index < mSearchKeys.length && mSearchKeys[index].startsWith(prefix); index++) {
+            matches.set(mSearchPositions[index]);
+        }
+
+        int[] positions = new int[matches.cardinality()];
+        int position = matches.nextSetBit(0);
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = position;
+            position = matches.nextSetBit(position + 1);
+        }
+        return positions;
+    }
+
+    /**
+     * Index every word of the name, so that "kingdom" finds "United Kingdom".
+     */
+    private static void addSearchEntries(@NonNull List<SearchEntry> entries,
+                                         @NonNull String name,
+                                         int position) {
+        boolean wordStart = true;
+        for (int i = 0; i < name.length(); i++) {
+            boolean letterOrDigit = Character.isLetterOrDigit(name.charAt(i));
+            if (wordStart && letterOrDigit) {
+                entries.add(new SearchEntry(name.substring(i), position));
+            }
+            wordStart = !letterOrDigit;
+        }
+    }
+
+    /**
+     * Lower case the text and strip its accents.
+     */
+    @NonNull
+    private static String normalize(@NonNull String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    @NonNull
+    private static int[] toArray(@NonNull List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static final class Key {
+        final Locale mLocale;
+        final Set<String> mWhitelist;
+        final Set<String> mBlacklist;
+
+        Key(@NonNull Locale locale, @NonNull Set<String> whitelist, @NonNull Set<String> blacklist) {
+            mLocale = locale;
+            mWhitelist = Collections.unmodifiableSet(new HashSet<>(whitelist));
+            mBlacklist = Collections.unmodifiableSet(new HashSet<>(blacklist));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return mLocale.equals(key.mLocale)
+                    && mWhitelist.equals(key.mWhitelist)
+                    && mBlacklist.equals(key.mBlacklist);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mLocale.hashCode();
+            result = 31 * result + mWhitelist.hashCode();
+            result = 31 * result + mBlacklist.hashCode();
+            return result;
+        }
+    }
+
+    private static final class SortEntry implements Comparable<SortEntry> {
+        final CollationKey mKey;
+        final CountryInfo mCountry;
+
+        SortEntry(@NonNull CollationKey key, @NonNull CountryInfo country) {
+            mKey = key;
+            mCountry = country;
+        }
+
+        @Override
+        public int compareTo(@NonNull SortEntry entry) {
+            return mKey.compareTo(entry.mKey);
+        }
+    }
+
+    private static final class SearchEntry implements Comparable<SearchEntry> {
+        final String mKey;
+        final int mPosition;
+
+        SearchEntry(@NonNull String key, int position) {
+            mKey = key;
+            mPosition = position;
+        }
+
+        @Override
+        public int compareTo(@NonNull SearchEntry entry) {
+            return mKey.compareTo(entry.mKey);
+        }
+    }
+}
@@ -20,28 +20,31 @@ package com.firebase.ui.auth.ui.phone;
 
 import android.content.Context;
 import android.widget.ArrayAdapter;
+import android.widget.Filter;
 import android.widget.SectionIndexer;
 
 import com.firebase.ui.auth.R;
 import com.firebase.ui.auth.data.model.CountryInfo;
 
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
 /**
- * Array adapter used to display a list of countries with section indices.
+ * Array adapter used to display a list of countries with section indices. The list can be
+ * filtered by country name or calling code through {@link #getFilter()}.
  */
 final class CountryListAdapter extends ArrayAdapter<CountryInfo> implements SectionIndexer {
 
-    // Map from first letter --> position in the list
-    private final HashMap<String, Integer> alphaIndex = new LinkedHashMap<>();
+    private final Filter mFilter = new CountryFilter();
 
-    // Map from display name --> position in the list
-    private final HashMap<String, Integer> countryPosition = new LinkedHashMap<>();
+    private volatile CountryList mCountries;
+
+    // Positions of the displayed countries in mCountries, or null if none are filtered out
+    private int[] mDisplayed;
 
     private String[] sections;
+    private int[] sectionPositions;
 
     public CountryListAdapter(Context context) {
         super(context, R.layout.fui_dgts_country_row, android.R.id.text1);
@@ -49,32 +52,62 @@ final class CountryListAdapter extends ArrayAdapter<CountryInfo> implements Sect
 
     // The list of countries should be sorted using locale-sensitive string comparison
     public void setData(List<CountryInfo> countries) {
-        // Create index and add entries to adapter
-        int index = 0;
-        for (CountryInfo countryInfo : countries) {
-            final String key = countryInfo.getLocale()
-                    .getDisplayCountry()
-                    .substring(0, 1)
-                    .toUpperCase(Locale.getDefault());
-
-            if (!alphaIndex.containsKey(key)) {
-                alphaIndex.put(key, index);
-            }
-            countryPosition.put(countryInfo.getLocale().getDisplayCountry(), index);
-
-            index++;
-            add(countryInfo);
-        }
+        setData(new CountryList(Locale.getDefault(), countries));
+    }
 
-        sections = new String[alphaIndex.size()];
-        alphaIndex.keySet().toArray(sections);
+    public void setData(CountryList countries) {
+        mCountries = countries;
+        show(null);
+    }
 
-        notifyDataSetChanged();
+    /**
+     * Show all countries again after a search.
+     */
+    public void clearFilter() {
+        if (mDisplayed != null) {
+            show(null);
+        }
     }
 
     @Override
-    public int getCount() {
-        return countryPosition.size();
+    public Filter getFilter() {
+        return mFilter;
+    }
+
+    private void show(int[] displayed) {
+        mDisplayed = displayed;
+
+        setNotifyOnChange(false);
+        clear();
+        if (mCountries == null) {
+            sections = null;
+            sectionPositions = null;
+        } else if (displayed == null) {
+            addAll(mCountries.getCountries());
+            sections = mCountries.getSections();
+            sectionPositions = mCountries.getSectionPositions();
+        } else {
+            List<CountryInfo> countries = mCountries.getCountries();
+            List<String> filteredSections = new ArrayList<>();
+            List<Integer> filteredPositions = new ArrayList<>();
+            for (int i = 0; i < displayed.length; i++) {
+                add(countries.get(displayed[i]));
+
+                String key = mCountries.getSectionKey(displayed[i]);
+                if (!filteredSections.contains(key)) {
+                    filteredSections.add(key);
+                    filteredPositions.add(i);
+                }
+            }
+
+            sections = filteredSections.toArray(new String[0]);
+            sectionPositions = new int[filteredPositions.size()];
+            for (int i = 0; i < sectionPositions.length; i++) {
+                sectionPositions[i] = filteredPositions.get(i);
+            }
+        }
+
+        notifyDataSetChanged();
     }
 
     @Override
@@ -97,7 +130,7 @@ final class CountryListAdapter extends ArrayAdapter<CountryInfo> implements Sect
         }
 
         // Return the position
-        return alphaIndex.get(sections[index]);
+        return sectionPositions[index];
     }
 
     @Override
@@ -116,7 +149,30 @@ final class CountryListAdapter extends ArrayAdapter<CountryInfo> implements Sect
     }
 
     public int getPositionForCountry(String country) {
-        final Integer position = countryPosition.get(country);
-        return position == null ? 0 : position;
+        if (mCountries == null || mDisplayed != null) {
+            return 0;
+        }
+
+        final int position = mCountries.getPosition(country);
+        return position < 0 ? 0 : position;
+    }
+
+    private final class CountryFilter extends Filter {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            CountryList countries = mCountries;
+            if (countries != null && constraint != null && constraint.length() > 0) {
+                int[] displayed = countries.search(constraint);
+                results.values = displayed;
+                results.count = displayed.length;
+            }
+            return results;
+        }
+
+        @Override
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            show((int[]) results.values);
+        }
     }
 }
@@ -17,27 +17,33 @@
  */
 package com.firebase.ui.auth.ui.phone;
 
+import android.annotation.SuppressLint;
 import android.app.AlertDialog;
 import android.content.Context;
-import android.content.DialogInterface;
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.util.AttributeSet;
+import android.view.LayoutInflater;
 import android.view.View;
 import android.view.inputmethod.InputMethodManager;
+import android.widget.AdapterView;
+import android.widget.EditText;
 import android.widget.ListView;
 
+import com.firebase.ui.auth.R;
 import com.firebase.ui.auth.data.model.CountryInfo;
 import com.firebase.ui.auth.util.ExtraConstants;
 import com.firebase.ui.auth.util.data.PhoneNumberUtils;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 
 import androidx.annotation.NonNull;
@@ -78,47 +84,41 @@ public final class CountryListSpinner extends AppCompatEditText implements View.
 
     public void init(Bundle params) {
         if (params != null) {
-            List<CountryInfo> countries = getCountriesToDisplayInSpinner(params);
-            setCountriesToDisplay(countries);
-            setDefaultCountryForSpinner(countries);
-        }
-    }
-
-    private List<CountryInfo> getCountriesToDisplayInSpinner(Bundle params) {
-        initCountrySpinnerIsosFromParams(params);
-        Map<String, Integer> countryInfoMap = PhoneNumberUtils.getImmutableCountryIsoMap();
-        
-        // We consider all countries to be whitelisted if there are no whitelisted
-        // or blacklisted countries given as input.
-        if (mWhitelistedCountryIsos.isEmpty() && mBlacklistedCountryIsos.isEmpty()) {
-            this.mWhitelistedCountryIsos = new HashSet<>(countryInfoMap.keySet());
-        }
+            initCountrySpinnerIsosFromParams(params);
+            Task<CountryList> countries = CountryList.load(
+                    Locale.getDefault(), mWhitelistedCountryIsos, mBlacklistedCountryIsos);
+
+            // We consider all countries to be whitelisted if there are no whitelisted
+            // or blacklisted countries given as input.
+            if (mWhitelistedCountryIsos.isEmpty() && mBlacklistedCountryIsos.isEmpty()) {
+                mWhitelistedCountryIsos =
+                        new HashSet<>(PhoneNumberUtils.getImmutableCountryIsoMap().keySet());
+            }
 
-        List<CountryInfo> countryInfoList = new ArrayList<>();
+            setDefaultCountryForSpinner();
 
-        // At this point either mWhitelistedCountryIsos or mBlacklistedCountryIsos is null.
-        // We assume no countries are to be excluded. Here, we correct this assumption based on the
-        // contents of either lists.
-        Set<String> excludedCountries = new HashSet<>();
-        if (!mBlacklistedCountryIsos.isEmpty()) {
-            // Exclude all countries in the mBlacklistedCountryIsos list.
-            excludedCountries.addAll(mBlacklistedCountryIsos);
-        } else {
-            // Exclude all countries that are not present in the mWhitelistedCountryIsos list.
-            excludedCountries.addAll(countryInfoMap.keySet());
-            excludedCountries.removeAll(mWhitelistedCountryIsos);
+            // The list is cached for the process, so recreated screens can use it right away
+            if (countries.isSuccessful()) {
+                onCountriesLoaded(countries.getResult());
+            } else {
+                countries.addOnSuccessListener(new OnSuccessListener<CountryList>() {
+                    @Override
+                    public void onSuccess(CountryList list) {
+                        onCountriesLoaded(list);
+                    }
+                });
+            }
         }
+    }
 
-        // Once we know which countries need to be excluded, we loop through the country isos,
-        // skipping those that have been excluded.
-        for (String countryIso : countryInfoMap.keySet()) {
-            if (!excludedCountries.contains(countryIso)) {
-                countryInfoList.add(new CountryInfo(new Locale("", countryIso),
-                        countryInfoMap.get(countryIso)));
-            }
+    private void onCountriesLoaded(@NonNull CountryList countries) {
+        mCountryListAdapter.setData(countries);
+
+        List<CountryInfo> countryInfos = countries.getCountries();
+        if (mSelectedCountryInfo == null && !countryInfos.isEmpty()) {
+            CountryInfo countryInfo = countryInfos.get(0);
+            setSelectedForCountry(countryInfo.getCountryCode(), countryInfo.getLocale());
         }
-        Collections.sort(countryInfoList);
-        return countryInfoList;
     }
 
     private void initCountrySpinnerIsosFromParams(@NonNull Bundle params) {
@@ -152,15 +152,11 @@ public final class CountryListSpinner extends AppCompatEditText implements View.
         mCountryListAdapter.setData(countries);
     }
 
-    private void setDefaultCountryForSpinner(List<CountryInfo> countries) {
+    private void setDefaultCountryForSpinner() {
         CountryInfo countryInfo = PhoneNumberUtils.getCurrentCountryInfo(getContext());
         if (isValidIso(countryInfo.getLocale().getCountry())) {
             setSelectedForCountry(countryInfo.getCountryCode(),
                     countryInfo.getLocale());
-        } else if (countries.iterator().hasNext()) {
-            countryInfo = countries.iterator().next();
-            setSelectedForCountry(countryInfo.getCountryCode(),
-                    countryInfo.getLocale());
         }
     }
 
@@ -245,6 +241,7 @@ public final class CountryListSpinner extends AppCompatEditText implements View.
 
     @Override
     public void onClick(View view) {
+        mCountryListAdapter.clearFilter();
         mDialogPopup.show(mCountryListAdapter.getPositionForCountry(mSelectedCountryName));
         hideKeyboard(getContext(), this);
         executeUserClickListener(view);
@@ -256,7 +253,7 @@ public final class CountryListSpinner extends AppCompatEditText implements View.
         }
     }
 
-    public class DialogPopup implements DialogInterface.OnClickListener {
+    public class DialogPopup implements AdapterView.OnItemClickListener {
         //Delay for postDelayed to set selection without showing the scroll animation
         private static final long DELAY_MILLIS = 10L;
         private final CountryListAdapter listAdapter;
@@ -277,17 +274,37 @@ public final class CountryListSpinner extends AppCompatEditText implements View.
             return dialog != null && dialog.isShowing();
         }
 
+        @SuppressLint("InflateParams") // Dialog content has no parent to inflate into
         public void show(final int selected) {
             if (listAdapter == null) {
                 return;
             }
 
-            final AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
-            dialog = builder.setSingleChoiceItems(listAdapter, 0, this).create();
+            View view = LayoutInflater.from(getContext())
+                    .inflate(R.layout.fui_dialog_country_list, null);
+            final ListView listView = view.findViewById(R.id.country_list);
+            listView.setAdapter(listAdapter);
+            listView.setOnItemClickListener(this);
+
+            // Typing in the search field filters the countries by name or calling code
+            EditText search = view.findViewById(R.id.country_search);
+            search.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                    listAdapter.getFilter().filter(s);
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                }
+            });
+
+            dialog = new AlertDialog.Builder(getContext()).setView(view).create();
             dialog.setCanceledOnTouchOutside(true);
-            final ListView listView = dialog.getListView();
-            listView.setFastScrollEnabled(true);
-            listView.setScrollbarFadingEnabled(false);
             listView.postDelayed(new Runnable() {
                 @Override
                 public void run() {
@@ -298,8 +315,8 @@ public final class CountryListSpinner extends AppCompatEditText implements View.
         }
 
         @Override
-        public void onClick(DialogInterface dialog, int which) {
-            final CountryInfo countryInfo = listAdapter.getItem(which);
+        public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+            final CountryInfo countryInfo = listAdapter.getItem(position);
             mSelectedCountryName = countryInfo.getLocale().getDisplayCountry();
             setSelectedForCountry(countryInfo.getCountryCode(), countryInfo.getLocale());
             dismiss();
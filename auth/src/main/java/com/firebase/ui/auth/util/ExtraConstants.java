@@ -22,6 +22,7 @@ import androidx.annotation.RestrictTo;
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public final class ExtraConstants {
     public static final String FLOW_PARAMS = "extra_flow_params";
+    public static final String FLOW_PARAMS_HANDLE = "extra_flow_params_handle";
     public static final String IDP_RESPONSE = "extra_idp_response";
     public static final String USER = "extra_user";
     public static final String CREDENTIAL = "extra_credential";
@@ -30,6 +31,7 @@ public final class ExtraConstants {
     public static final String DEFAULT_EMAIL = "extra_default_email";
     public static final String ALLOW_NEW_EMAILS = "extra_allow_new_emails";
     public static final String REQUIRE_NAME = "extra_require_name";
+    public static final String LOOKUP_WHILE_TYPING = "extra_lookup_while_typing";
     public static final String GOOGLE_SIGN_IN_OPTIONS = "extra_google_sign_in_options";
     public static final String FACEBOOK_PERMISSIONS = "extra_facebook_permissions";
     public static final String GITHUB_PERMISSIONS = "extra_github_permissions";
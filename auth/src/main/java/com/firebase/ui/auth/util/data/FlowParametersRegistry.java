@@ -0,0 +1,79 @@
+package com.firebase.ui.auth.util.data;
+
+import android.util.LruCache;
+
+import com.firebase.ui.auth.data.model.FlowParameters;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Process-scoped store of the {@link FlowParameters} of running sign-in flows, so that the
+ * screens of a flow can pass a small handle to each other instead of parcelling the parameters
+ * into every intent.
+ *
+ * The store is empty after the process is recreated, in which case activities fall back to the
+ * parameters they saved in their instance state. The intent of {@code KickoffActivity} always
+ * carries the whole parcel, since it is owned by the app.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class FlowParametersRegistry {
+
+    // Only one or two flows run at a time, this just keeps abandoned flows from piling up
+    private static final int MAX_FLOWS = 8;
+
+    private static final LruCache<String, FlowParameters> PARAMS = new LruCache<>(MAX_FLOWS);
+    private static final Map<FlowParameters, String> HANDLES = new WeakHashMap<>();
+
+    private FlowParametersRegistry() {
+        throw new AssertionError("No instance for you!");
+    }
+
+    /**
+     * Store the parameters if they aren't stored yet.
+     *
+     * @return the handle of the parameters, the same for every call with the same instance.
+     */
+    @NonNull
+    public static synchronized String register(@NonNull FlowParameters params) {
+        String handle = HANDLES.get(params);
+        if (handle == null) {
+            handle = UUID.randomUUID().toString();
+            HANDLES.put(params, handle);
+        }
+        PARAMS.put(handle, params);
+        return handle;
+    }
+
+    /**
+     * Store the parameters under a handle issued before the process was recreated.
+     */
+    public static synchronized void restore(@NonNull String handle,
+                                            @NonNull FlowParameters params) {
+        HANDLES.put(params, handle);
+        PARAMS.put(handle, params);
+    }
+
+    /**
+     * @return the parameters of the handle, or null if they were lost with the process.
+     */
+    @Nullable
+    public static synchronized FlowParameters get(@NonNull String handle) {
+        return PARAMS.get(handle);
+    }
+
+    /**
+     * Forget every flow, as if the process had been recreated.
+     */
+    @VisibleForTesting
+    public static synchronized void clear() {
+        PARAMS.evictAll();
+        HANDLES.clear();
+    }
+}
@@ -53,7 +53,37 @@ public final class PhoneNumberUtils {
     private static final SparseArray<List<String>> COUNTRY_TO_REGION_CODES =
             createCountryCodeToRegionCodeMap();
 
-    private static Map<String, Integer> COUNTRY_TO_ISO_CODES;
+    /**
+     * Trie over the decimal digits of the country codes in {@link #COUNTRY_TO_REGION_CODES}, so
+     * that phone numbers can be matched char by char without allocating. Node 0 is the root, the
+     * child of node n for digit d is {@code TRIE_CHILDREN[n * 10 + d]} (0 if there is none), and
+     * {@code TRIE_COUNTRY_CODES[n]} is the country code ending at node n (0 if there is none).
+     */
+    private static final int[] TRIE_CHILDREN;
+    private static final int[] TRIE_COUNTRY_CODES;
+
+    static {
+        int maxNodes = 1 + MAX_COUNTRY_CODES * MAX_LENGTH_COUNTRY_CODE;
+        int[] children = new int[maxNodes * 10];
+        int[] countryCodes = new int[maxNodes];
+        int nodes = 1;
+
+        for (int i = 0; i < COUNTRY_TO_REGION_CODES.size(); i++) {
+            int code = COUNTRY_TO_REGION_CODES.keyAt(i);
+            int node = 0;
+            for (int divisor = getDivisor(code); divisor > 0; divisor /= 10) {
+                int child = node * 10 + code / divisor % 10;
+                if (children[child] == 0) {
+                    children[child] = nodes++;
+                }
+                node = children[child];
+            }
+            countryCodes[node] = code;
+        }
+
+        TRIE_CHILDREN = children;
+        TRIE_COUNTRY_CODES = countryCodes;
+    }
 
     /**
      * This method works as follow: <ol><li>When the android version is LOLLIPOP or greater, the
@@ -67,11 +97,19 @@ public final class PhoneNumberUtils {
     public static String format(@NonNull String phoneNumber, @NonNull CountryInfo countryInfo) {
         if (phoneNumber.startsWith("+")) {
             return phoneNumber;
-        } else {
-            return "+"
-                    + String.valueOf(countryInfo.getCountryCode())
-                    + phoneNumber.replaceAll("[^\\d.]", "");
         }
+
+        int capacity = 1 + MAX_LENGTH_COUNTRY_CODE + phoneNumber.length();
+        StringBuilder formatted = new StringBuilder(capacity)
+                .append('+')
+                .append(countryInfo.getCountryCode());
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (isDigit(c) || c == '.') {
+                formatted.append(c);
+            }
+        }
+        return formatted.toString();
     }
 
     /**
@@ -124,7 +162,7 @@ public final class PhoneNumberUtils {
     }
 
     public static boolean isValid(@NonNull String number) {
-        return number.startsWith("+") && getCountryCodeForPhoneNumber(number) != null;
+        return number.startsWith("+") && findCountryCode(number) != 0;
     }
 
     public static boolean isValidIso(@Nullable String iso) {
@@ -152,18 +190,14 @@ public final class PhoneNumberUtils {
 
     @Nullable
     public static Integer getCountryCode(String countryIso) {
-        if (COUNTRY_TO_ISO_CODES == null) {
-            initCountryCodeByIsoMap();
+        if (countryIso == null) {
+            return null;
         }
-        return countryIso == null
-                ? null : COUNTRY_TO_ISO_CODES.get(countryIso.toUpperCase(Locale.getDefault()));
+        return IsoCodes.COUNTRY_TO_ISO_CODES.get(countryIso.toUpperCase(Locale.getDefault()));
     }
 
     public static Map<String, Integer> getImmutableCountryIsoMap() {
-        if (COUNTRY_TO_ISO_CODES == null) {
-            initCountryCodeByIsoMap();
-        }
-        return COUNTRY_TO_ISO_CODES;
+        return IsoCodes.COUNTRY_TO_ISO_CODES;
     }
 
     private static String getCountryIsoForCountryCode(String countryCode) {
@@ -176,43 +210,88 @@ public final class PhoneNumberUtils {
 
     @Nullable
     public static List<String> getCountryIsosFromCountryCode(String countryCode) {
-        return !isValid(countryCode) ? null :
-                COUNTRY_TO_REGION_CODES.get(Integer.parseInt(countryCode.substring(1)));
+        if (!isValid(countryCode)) {
+            return null;
+        }
+
+        int code = 0;
+        for (int i = 1; i < countryCode.length(); i++) {
+            char c = countryCode.charAt(i);
+            if (!isDigit(c) || i > MAX_LENGTH_COUNTRY_CODE) {
+                return null;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return COUNTRY_TO_REGION_CODES.get(code);
     }
 
     /**
      * Country code extracted using shortest matching prefix like libPhoneNumber. See:
      * https://github.com/googlei18n/libphonenumber/blob/master/java/libphonenumber/src/com
      * /google/i18n/phonenumbers/PhoneNumberUtil.java#L2395
+     *
+     * Walks the country code trie over the leading digits, without allocating.
+     *
+     * @return the country code, or 0 if the number does not start with one.
      */
-    @Nullable
-    private static String getCountryCodeForPhoneNumber(String normalizedPhoneNumber) {
-        String phoneWithoutPlusPrefix = normalizedPhoneNumber.replaceFirst("^\\+", "");
-        int numberLength = phoneWithoutPlusPrefix.length();
-
-        for (int i = 1; i <= MAX_LENGTH_COUNTRY_CODE && i <= numberLength; i++) {
-            String potentialCountryCode = phoneWithoutPlusPrefix.substring(0, i);
-            Integer countryCodeKey = Integer.valueOf(potentialCountryCode);
+    private static int findCountryCode(@NonNull CharSequence normalizedPhoneNumber) {
+        int start = startsWithPlus(normalizedPhoneNumber) ? 1 : 0;
+        int end = Math.min(normalizedPhoneNumber.length(), start + MAX_LENGTH_COUNTRY_CODE);
+
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            char c = normalizedPhoneNumber.charAt(i);
+            if (!isDigit(c)) {
+                return 0;
+            }
 
-            if (COUNTRY_TO_REGION_CODES.indexOfKey(countryCodeKey) >= 0) {
-                return potentialCountryCode;
+            node = TRIE_CHILDREN[node * 10 + (c - '0')];
+            if (node == 0) {
+                return 0;
+            }
+            if (TRIE_COUNTRY_CODES[node] != 0) {
+                return TRIE_COUNTRY_CODES[node];
             }
         }
-        return null;
+        return 0;
     }
 
     @NonNull
     private static String getCountryCodeForPhoneNumberOrDefault(String normalizedPhoneNumber) {
-        String code = getCountryCodeForPhoneNumber(normalizedPhoneNumber);
-        return code == null ? DEFAULT_COUNTRY_CODE : code;
+        int code = findCountryCode(normalizedPhoneNumber);
+        return code == 0 ? DEFAULT_COUNTRY_CODE : String.valueOf(code);
     }
 
     private static String stripCountryCode(String phoneNumber, String countryCode) {
-        return phoneNumber.replaceFirst("^\\+?" + countryCode, "");
+        int start = startsWithPlus(phoneNumber) ? 1 : 0;
+        return phoneNumber.startsWith(countryCode, start)
+                ? phoneNumber.substring(start + countryCode.length()) : phoneNumber;
     }
 
     private static String stripPlusSign(String phoneNumber) {
-        return phoneNumber.replaceFirst("^\\+?", "");
+        return startsWithPlus(phoneNumber) ? phoneNumber.substring(1) : phoneNumber;
+    }
+
+    private static boolean startsWithPlus(@NonNull CharSequence phoneNumber) {
+        return phoneNumber.length() > 0 && phoneNumber.charAt(0) == '+';
+    }
+
+    /**
+     * ASCII digits only, matching the {@code \d} class of the regexes this code replaced.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the power of ten of the leading digit of a positive number, e.g. 100 for 967.
+     */
+    private static int getDivisor(int number) {
+        int divisor = 1;
+        while (number / divisor >= 10) {
+            divisor *= 10;
+        }
+        return divisor;
     }
 
     private static Locale getSimBasedLocale(@NonNull Context context) {
@@ -449,7 +528,7 @@ public final class PhoneNumberUtils {
         return map;
     }
 
-    private static void initCountryCodeByIsoMap() {
+    private static Map<String, Integer> createCountryCodeByIsoMap() {
         Map<String, Integer> map = new HashMap<>(MAX_COUNTRIES);
 
         for (int i = 0; i < COUNTRY_TO_REGION_CODES.size(); i++) {
@@ -473,6 +552,14 @@ public final class PhoneNumberUtils {
         map.put("GS", 500);
         map.put("XK", 381);
 
-        COUNTRY_TO_ISO_CODES = Collections.unmodifiableMap(map);
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Holder for the map of ISO codes, created on first use. Class initialization makes the lazy
+     * creation thread-safe without locking on every lookup.
+     */
+    private static final class IsoCodes {
+        static final Map<String, Integer> COUNTRY_TO_ISO_CODES = createCountryCodeByIsoMap();
     }
 }
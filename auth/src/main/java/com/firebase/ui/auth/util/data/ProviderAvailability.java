@@ -2,19 +2,30 @@ package com.firebase.ui.auth.util.data;
 
 import androidx.annotation.RestrictTo;
 
+/**
+ * Checks which optional provider SDKs are on the classpath.
+ *
+ * Each check runs the first time its provider is asked about, so looking up one provider doesn't
+ * pay for loading the others.
+ */
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
 public final class ProviderAvailability {
-    public static final boolean IS_GITHUB_AVAILABLE =
-            exists("com.firebase.ui.auth.data.remote.GitHubSignInHandler");
-    public static final boolean IS_FACEBOOK_AVAILABLE =
-            exists("com.facebook.login.LoginManager");
-    public static final boolean IS_TWITTER_AVAILABLE =
-            exists("com.twitter.sdk.android.core.identity.TwitterAuthClient");
-
     private ProviderAvailability() {
         throw new AssertionError("No instance for you!");
     }
 
+    public static boolean isGitHubAvailable() {
+        return GitHubHolder.AVAILABLE;
+    }
+
+    public static boolean isFacebookAvailable() {
+        return FacebookHolder.AVAILABLE;
+    }
+
+    public static boolean isTwitterAvailable() {
+        return TwitterHolder.AVAILABLE;
+    }
+
     private static boolean exists(String name) {
         boolean exists;
         try {
@@ -25,4 +36,18 @@ public final class ProviderAvailability {
         }
         return exists;
     }
+
+    private static final class GitHubHolder {
+        static final boolean AVAILABLE =
+                exists("com.firebase.ui.auth.data.remote.GitHubSignInHandler");
+    }
+
+    private static final class FacebookHolder {
+        static final boolean AVAILABLE = exists("com.facebook.login.LoginManager");
+    }
+
+    private static final class TwitterHolder {
+        static final boolean AVAILABLE =
+                exists("com.twitter.sdk.android.core.identity.TwitterAuthClient");
+    }
 }
@@ -15,6 +15,7 @@
 package com.firebase.ui.auth.util.data;
 
 import android.text.TextUtils;
+import android.util.LruCache;
 
 import com.firebase.ui.auth.AuthUI;
 import com.firebase.ui.auth.ErrorCodes;
@@ -37,7 +38,11 @@ import com.google.firebase.auth.SignInMethodQueryResult;
 import com.google.firebase.auth.TwitterAuthProvider;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -50,6 +55,16 @@ public final class ProviderUtils {
     private static final String GITHUB_IDENTITY = "https://github.com";
     private static final String PHONE_IDENTITY = "https://phone.firebase";
 
+    private static final long SIGN_IN_METHODS_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_CACHED_EMAILS = 16;
+
+    /**
+     * Recent sign in method lookups, per auth instance and email. Lookups in flight are shared
+     * by all callers asking for the same email.
+     */
+    private static final Map<FirebaseAuth, LruCache<String, SignInMethodsLookup>> SIGN_IN_METHODS =
+            new WeakHashMap<>();
+
     private ProviderUtils() {
         throw new AssertionError("No instance for you!");
     }
@@ -190,14 +205,11 @@ public final class ProviderUtils {
             return Tasks.forException(new NullPointerException("Email cannot be empty"));
         }
 
-        return auth.fetchSignInMethodsForEmail(email)
-                .continueWithTask(new Continuation<SignInMethodQueryResult, Task<List<String>>>() {
+        return fetchSignInMethods(auth, email)
+                .continueWithTask(new Continuation<List<String>, Task<List<String>>>() {
                     @Override
-                    public Task<List<String>> then(@NonNull Task<SignInMethodQueryResult> task) {
-                        List<String> methods = task.getResult().getSignInMethods();
-                        if (methods == null) {
-                            methods = new ArrayList<>();
-                        }
+                    public Task<List<String>> then(@NonNull Task<List<String>> task) {
+                        List<String> methods = task.getResult();
 
                         List<String> allowedProviders = new ArrayList<>(params.providers.size());
                         for (AuthUI.IdpConfig provider : params.providers) {
@@ -280,4 +292,63 @@ public final class ProviderUtils {
                     }
                 });
     }
+
+    /**
+     * Fetch the sign in methods of an email, reusing the result of a lookup of the same email
+     * made within the last minute or still in flight.
+     */
+    @NonNull
+    public static Task<List<String>> fetchSignInMethods(@NonNull FirebaseAuth auth,
+                                                        @NonNull String email) {
+        long now = System.currentTimeMillis();
+        synchronized (SIGN_IN_METHODS) {
+            LruCache<String, SignInMethodsLookup> lookups = SIGN_IN_METHODS.get(auth);
+            if (lookups == null) {
+                lookups = new LruCache<>(MAX_CACHED_EMAILS);
+                SIGN_IN_METHODS.put(auth, lookups);
+            }
+
+            SignInMethodsLookup lookup = lookups.get(email);
+            if (lookup == null || lookup.isStale(now)) {
+                lookup = new SignInMethodsLookup(auth.fetchSignInMethodsForEmail(email)
+                        .continueWith(new Continuation<SignInMethodQueryResult, List<String>>() {
+                            @Override
+                            public List<String> then(
+                                    @NonNull Task<SignInMethodQueryResult> task) {
+                                List<String> methods = task.getResult().getSignInMethods();
+                                return methods == null ? Collections.<String>emptyList()
+                                        : Collections.unmodifiableList(methods);
+                            }
+                        }), now);
+                lookups.put(email, lookup);
+            }
+            return lookup.mTask;
+        }
+    }
+
+    /**
+     * Forget all cached sign in methods, for example because the current user changed.
+     */
+    public static void clearSignInMethods() {
+        synchronized (SIGN_IN_METHODS) {
+            SIGN_IN_METHODS.clear();
+        }
+    }
+
+    private static final class SignInMethodsLookup {
+        final Task<List<String>> mTask;
+        final long mStartedAt;
+
+        SignInMethodsLookup(@NonNull Task<List<String>> task, long startedAt) {
+            mTask = task;
+            mStartedAt = startedAt;
+        }
+
+        boolean isStale(long now) {
+            if (!mTask.isComplete()) {
+                return false;
+            }
+            return !mTask.isSuccessful() || now - mStartedAt >= SIGN_IN_METHODS_MAX_AGE_MILLIS;
+        }
+    }
 }
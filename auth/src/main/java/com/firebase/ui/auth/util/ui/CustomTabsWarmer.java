@@ -0,0 +1,178 @@
+package com.firebase.ui.auth.util.ui;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.firebase.ui.auth.AuthUI;
+import com.firebase.ui.auth.R;
+import com.firebase.ui.auth.data.model.FlowParameters;
+import com.firebase.ui.auth.util.ExtraConstants;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.GithubAuthProvider;
+import com.google.firebase.auth.TwitterAuthProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+import androidx.browser.customtabs.CustomTabsClient;
+import androidx.browser.customtabs.CustomTabsService;
+import androidx.browser.customtabs.CustomTabsServiceConnection;
+import androidx.browser.customtabs.CustomTabsSession;
+
+/**
+ * Warms up the Custom Tabs browser and pre-resolves the pages opened by the generic OAuth
+ * providers of a flow, so that the browser doesn't start cold once the user picks one of them.
+ *
+ * Sign in starts at the Firebase auth handler of the project, which redirects to the
+ * authorization endpoint of the provider, so both are pre-resolved. The handler is served from
+ * {@code R.string.firebase_web_host} if the app sets it to a custom auth domain, otherwise from
+ * the default domain of the project.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class CustomTabsWarmer extends CustomTabsServiceConnection {
+    private static final String TAG = "CustomTabsWarmer";
+
+    private static final Map<String, String> AUTHORIZATION_ENDPOINTS;
+
+    static {
+        Map<String, String> endpoints = new HashMap<>();
+        endpoints.put(AuthUI.MICROSOFT_PROVIDER,
+                "https://login.microsoftonline.com/common/oauth2/v2.0/authorize");
+        endpoints.put(AuthUI.APPLE_PROVIDER, "https://appleid.apple.com/auth/authorize");
+        endpoints.put(AuthUI.YAHOO_PROVIDER, "https://api.login.yahoo.com/oauth2/request_auth");
+        endpoints.put(GithubAuthProvider.PROVIDER_ID, "https://github.com/login/oauth/authorize");
+        endpoints.put(TwitterAuthProvider.PROVIDER_ID,
+                "https://api.twitter.com/oauth/authenticate");
+        AUTHORIZATION_ENDPOINTS = Collections.unmodifiableMap(endpoints);
+    }
+
+    private final Context mContext;
+    private final List<Uri> mUrls;
+    private final long mStartTime = SystemClock.elapsedRealtime();
+
+    private boolean mBound;
+
+    private CustomTabsWarmer(@NonNull Context context, @NonNull List<Uri> urls) {
+        mContext = context.getApplicationContext();
+        mUrls = urls;
+    }
+
+    /**
+     * Bind to the Custom Tabs service if the flow has generic OAuth providers.
+     *
+     * @return the warmer to {@link #unbind()} once the providers are no longer shown, or null if
+     * there is nothing to warm up.
+     */
+    @Nullable
+    public static CustomTabsWarmer bind(@NonNull Context context,
+                                        @NonNull FlowParameters params) {
+        List<Uri> urls = getLikelyUrls(context, params);
+        if (urls.isEmpty()) {
+            return null;
+        }
+
+        String packageName = CustomTabsClient.getPackageName(context, null);
+        if (packageName == null) {
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "No browser supports Custom Tabs, not warming up.");
+            }
+            return null;
+        }
+
+        CustomTabsWarmer warmer = new CustomTabsWarmer(context, urls);
+        try {
+            warmer.mBound = CustomTabsClient.bindCustomTabsService(
+                    warmer.mContext, packageName, warmer);
+        } catch (SecurityException e) {
+            Log.w(TAG, "Could not bind to the Custom Tabs service.", e);
+        }
+        return warmer.mBound ? warmer : null;
+    }
+
+    /**
+     * @return the pages the generic OAuth providers of the flow will open, most likely first.
+     */
+    @NonNull
+    @VisibleForTesting
+    static List<Uri> getLikelyUrls(@NonNull Context context, @NonNull FlowParameters params) {
+        List<Uri> urls = new ArrayList<>();
+        for (AuthUI.IdpConfig config : params.providers) {
+            if (TextUtils.isEmpty(
+                    config.getParams().getString(ExtraConstants.GENERIC_OAUTH_PROVIDER_ID))) {
+                continue;
+            }
+
+            if (urls.isEmpty()) {
+                String authDomain = getAuthDomain(context, params);
+                if (authDomain != null) {
+                    urls.add(Uri.parse("https://" + authDomain + "/__/auth/handler"));
+                }
+            }
+
+            String endpoint = AUTHORIZATION_ENDPOINTS.get(config.getProviderId());
+            if (endpoint != null) {
+                urls.add(Uri.parse(endpoint));
+            }
+        }
+        return urls;
+    }
+
+    @Nullable
+    private static String getAuthDomain(@NonNull Context context,
+                                        @NonNull FlowParameters params) {
+        String webHost = context.getString(R.string.firebase_web_host);
+        if (!TextUtils.isEmpty(webHost) && !AuthUI.UNCONFIGURED_CONFIG_VALUE.equals(webHost)) {
+            return webHost;
+        }
+
+        String projectId = FirebaseApp.getInstance(params.appName).getOptions().getProjectId();
+        return projectId == null ? null : projectId + ".firebaseapp.com";
+    }
+
+    public void unbind() {
+        if (mBound) {
+            mBound = false;
+            mContext.unbindService(this);
+        }
+    }
+
+    @Override
+    public void onCustomTabsServiceConnected(@NonNull ComponentName name,
+                                             @NonNull CustomTabsClient client) {
+        client.warmup(0);
+
+        CustomTabsSession session = client.newSession(null);
+        if (session != null) {
+            List<Bundle> otherUrls = new ArrayList<>();
+            for (Uri url : mUrls.subList(1, mUrls.size())) {
+                Bundle bundle = new Bundle();
+                bundle.putParcelable(CustomTabsService.KEY_URL, url);
+                otherUrls.add(bundle);
+            }
+            session.mayLaunchUrl(mUrls.get(0), null, otherUrls);
+        }
+
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Warmed up Custom Tabs for " + mUrls.size() + " urls in "
+                    + (SystemClock.elapsedRealtime() - mStartTime) + " ms");
+        }
+    }
+
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+        // The browser was killed, the next sign in will start it cold. The service stays bound
+        // until unbind() so that it warms up again if the browser is restarted.
+    }
+}
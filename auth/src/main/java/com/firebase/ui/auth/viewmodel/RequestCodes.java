@@ -58,6 +58,9 @@ public final class RequestCodes {
     /** Request code for starter a generic IDP sign-in flow */
     public static final int GENERIC_IDP_SIGN_IN_FLOW = 117;
 
+    /** Result code for accepting a credential offered on the sign in method screen */
+    public static final int CREDENTIAL_OFFER_ACCEPTED = 118;
+
     private RequestCodes() {
         throw new AssertionError("No instance for you!");
     }
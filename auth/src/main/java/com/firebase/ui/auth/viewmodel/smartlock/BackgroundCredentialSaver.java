@@ -0,0 +1,148 @@
+package com.firebase.ui.auth.viewmodel.smartlock;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Intent;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.firebase.ui.auth.IdpResponse;
+import com.firebase.ui.auth.data.model.FlowParameters;
+import com.firebase.ui.auth.data.model.PendingIntentRequiredException;
+import com.firebase.ui.auth.data.model.Resource;
+import com.firebase.ui.auth.data.model.State;
+import com.firebase.ui.auth.ui.credentials.CredentialSaveActivity;
+import com.google.android.gms.auth.api.credentials.Credential;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.Observer;
+
+/**
+ * Saves a credential to Smart Lock after the sign in flow has returned its result, instead of
+ * holding the result back until the save is done.
+ *
+ * If the user has to confirm the save, {@link CredentialSaveActivity} asks for the confirmation
+ * from the activity the user sees by then, or from the next one to be resumed. Sending the
+ * confirmation from here would be a background activity start, which recent versions of Android
+ * block, and nothing would receive its result.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class BackgroundCredentialSaver
+        implements Observer<Resource<IdpResponse>>, Application.ActivityLifecycleCallbacks {
+    private static final String TAG = "BackgroundCredSaver";
+
+    private final Application mApplication;
+    private final SmartLockHandler mHandler;
+    private final FlowParameters mParams;
+    private final Credential mCredential;
+
+    private Activity mResumedActivity;
+    private Intent mConfirmationIntent;
+
+    private BackgroundCredentialSaver(@NonNull SmartLockHandler handler,
+                                      @NonNull FlowParameters params,
+                                      @Nullable Credential credential) {
+        mApplication = handler.getApplication();
+        mHandler = handler;
+        mParams = params;
+        mCredential = credential;
+    }
+
+    public static void save(@NonNull Application application,
+                            @NonNull FlowParameters params,
+                            @Nullable Credential credential,
+                            @NonNull IdpResponse response) {
+        // Not owned by any activity, so that it outlives the flow
+        SmartLockHandler handler = new SmartLockHandler(application);
+        handler.init(params);
+        handler.setResponse(response);
+        save(handler, params, credential);
+    }
+
+    @VisibleForTesting
+    static void save(@NonNull SmartLockHandler handler,
+                     @NonNull FlowParameters params,
+                     @Nullable Credential credential) {
+        BackgroundCredentialSaver saver =
+                new BackgroundCredentialSaver(handler, params, credential);
+        // Registered before the flow finishes, so the activity shown after it is known
+        saver.mApplication.registerActivityLifecycleCallbacks(saver);
+        handler.getOperation().observeForever(saver);
+        handler.saveCredentials(credential);
+    }
+
+    @Override
+    public void onChanged(Resource<IdpResponse> resource) {
+        if (resource.getState() == State.LOADING) {
+            return;
+        }
+        mHandler.getOperation().removeObserver(this);
+
+        Exception e = resource.getException();
+        if (e instanceof PendingIntentRequiredException) {
+            // CredentialSaveActivity asks again and handles the result of the confirmation
+            mConfirmationIntent = CredentialSaveActivity.createIntent(
+                    mApplication, mParams, mCredential, mHandler.getResponse());
+            if (mResumedActivity != null) {
+                startConfirmation(mResumedActivity);
+            }
+            return;
+        }
+
+        if (resource.getState() == State.FAILURE) {
+            Log.w(TAG, "Failed to save the credential.", e);
+        }
+        mApplication.unregisterActivityLifecycleCallbacks(this);
+    }
+
+    private void startConfirmation(@NonNull Activity activity) {
+        mApplication.unregisterActivityLifecycleCallbacks(this);
+        mResumedActivity = null;
+        activity.startActivity(mConfirmationIntent);
+        mConfirmationIntent = null;
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull Activity activity) {
+        if (mConfirmationIntent == null) {
+            mResumedActivity = activity;
+        } else {
+            startConfirmation(activity);
+        }
+    }
+
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {
+        if (mResumedActivity == activity) {
+            mResumedActivity = null;
+        }
+    }
+
+    @Override
+    public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+        // Not needed
+    }
+
+    @Override
+    public void onActivityStarted(@NonNull Activity activity) {
+        // Not needed
+    }
+
+    @Override
+    public void onActivityStopped(@NonNull Activity activity) {
+        // Not needed
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+        // Not needed
+    }
+
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {
+        // Not needed
+    }
+}
@@ -41,6 +41,11 @@ public class SmartLockHandler extends AuthViewModelBase<IdpResponse> {
         mResponse = response;
     }
 
+    @Nullable
+    public IdpResponse getResponse() {
+        return mResponse;
+    }
+
     /**
      * Forward the result of a resolution from the Activity to the ViewModel.
      */
@@ -14,14 +14,20 @@
 
 package com.firebase.ui.auth;
 
+import android.content.Context;
+import android.content.Intent;
+
 import com.firebase.ui.auth.AuthUI.IdpConfig;
 import com.firebase.ui.auth.AuthUI.SignInIntentBuilder;
 import com.firebase.ui.auth.data.model.FlowParameters;
 import com.firebase.ui.auth.testhelpers.TestConstants;
 import com.firebase.ui.auth.testhelpers.TestHelper;
 import com.firebase.ui.auth.util.ExtraConstants;
+import com.firebase.ui.auth.util.data.FlowParametersRegistry;
+import com.google.firebase.FirebaseApp;
 import com.google.firebase.auth.ActionCodeSettings;
 import com.google.firebase.auth.EmailAuthProvider;
+import com.google.firebase.auth.FirebaseAuth;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -31,11 +37,19 @@ import org.robolectric.RobolectricTestRunner;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import androidx.test.core.app.ApplicationProvider;
 
 import static com.google.common.truth.Truth.assertThat;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @RunWith(RobolectricTestRunner.class)
 public class AuthUITest {
@@ -48,6 +62,39 @@ public class AuthUITest {
         mAuthUi = AuthUI.getInstance(TestHelper.MOCK_APP);
     }
 
+    @Test
+    public void testGetInstance_withoutInitProvider() {
+        AuthUI.resetApplicationContext();
+        Context context = ApplicationProvider.getApplicationContext();
+        FirebaseApp app = mock(FirebaseApp.class);
+        when(app.get(eq(FirebaseAuth.class))).thenReturn(mock(FirebaseAuth.class));
+        when(app.getApplicationContext()).thenReturn(context);
+        when(app.getName()).thenReturn("withoutInitProvider");
+
+        AuthUI.getInstance(app);
+
+        assertSame(context, AuthUI.getApplicationContext());
+    }
+
+    @Test
+    public void testGetApplicationContext_withoutInitProvider() {
+        AuthUI.resetApplicationContext();
+
+        // Falls back to the default app
+        assertSame(FirebaseApp.getInstance().getApplicationContext(),
+                AuthUI.getApplicationContext());
+    }
+
+    @Test
+    public void testInitialize() {
+        AuthUI.resetApplicationContext();
+        Context context = ApplicationProvider.getApplicationContext();
+
+        AuthUI.initialize(context);
+
+        assertSame(context, AuthUI.getApplicationContext());
+    }
+
     @Test
     public void testCreateStartIntent_shouldHaveEmailAsDefaultProvider() {
         FlowParameters flowParameters = mAuthUi
@@ -119,6 +166,51 @@ public class AuthUITest {
                 flowParameters.getDefaultOrFirstProvider());
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateStartIntent_negativeCredentialRequestTimeout() {
+        mAuthUi.createSignInIntentBuilder()
+                .setCredentialRequestTimeout(-1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testCreatingStartIntentWithCredentialRequestTimeout() {
+        FlowParameters flowParameters = mAuthUi
+                .createSignInIntentBuilder()
+                .setCredentialRequestTimeout(2, TimeUnit.SECONDS)
+                .build()
+                .getParcelableExtra(ExtraConstants.FLOW_PARAMS);
+
+        assertEquals(2000, flowParameters.credentialRequestTimeoutMillis);
+    }
+
+    @Test
+    public void testCreatingStartIntentWithInProcessParameters() {
+        Intent intent = mAuthUi
+                .createSignInIntentBuilder()
+                .setInProcessParameters(true)
+                .build();
+
+        FlowParameters flowParameters = FlowParameters.fromIntent(intent);
+        assertTrue(flowParameters.inProcessParameters);
+        assertThat(FlowParametersRegistry.register(flowParameters))
+                .isEqualTo(intent.getStringExtra(ExtraConstants.FLOW_PARAMS_HANDLE));
+    }
+
+    @Test
+    public void testCreatingStartIntentWithInProcessParameters_survivesEmptyRegistry() {
+        Intent intent = mAuthUi
+                .createSignInIntentBuilder()
+                .setInProcessParameters(true)
+                .build();
+
+        // The app may start the flow after the process was recreated
+        FlowParametersRegistry.clear();
+
+        FlowParameters flowParameters = FlowParameters.fromIntent(intent);
+        assertNotNull(flowParameters);
+        assertTrue(flowParameters.inProcessParameters);
+    }
+
     @Test
     public void testCreatingStartIntentWithDefaultProvider() {
         FlowParameters flowParameters = mAuthUi
@@ -0,0 +1,82 @@
+package com.firebase.ui.auth.data;
+
+import com.firebase.ui.auth.testhelpers.AutoCompleteTask;
+import com.firebase.ui.auth.testhelpers.FakeSignInMethodQueryResult;
+import com.firebase.ui.auth.util.data.ProviderUtils;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.auth.EmailAuthProvider;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.SignInMethodQueryResult;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the sign in method cache of {@link ProviderUtils}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ProviderUtilsTest {
+
+    private static final String EMAIL = "test@example.com";
+
+    @Mock FirebaseAuth mMockAuth;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        ProviderUtils.clearSignInMethods();
+    }
+
+    @Test
+    public void testFetchSignInMethods_reusesRecentResult() {
+        when(mMockAuth.fetchSignInMethodsForEmail(EMAIL))
+                .thenReturn(AutoCompleteTask.<SignInMethodQueryResult>forSuccess(
+                        new FakeSignInMethodQueryResult(Collections.singletonList(
+                                EmailAuthProvider.EMAIL_PASSWORD_SIGN_IN_METHOD))));
+
+        Task<List<String>> first = ProviderUtils.fetchSignInMethods(mMockAuth, EMAIL);
+        Task<List<String>> second = ProviderUtils.fetchSignInMethods(mMockAuth, EMAIL);
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.getResult())
+                .containsExactly(EmailAuthProvider.EMAIL_PASSWORD_SIGN_IN_METHOD);
+        verify(mMockAuth, times(1)).fetchSignInMethodsForEmail(EMAIL);
+    }
+
+    @Test
+    public void testFetchSignInMethods_retriesFailure() {
+        when(mMockAuth.fetchSignInMethodsForEmail(EMAIL))
+                .thenReturn(AutoCompleteTask.<SignInMethodQueryResult>forFailure(
+                        new Exception("Network error")));
+
+        ProviderUtils.fetchSignInMethods(mMockAuth, EMAIL);
+        ProviderUtils.fetchSignInMethods(mMockAuth, EMAIL);
+
+        verify(mMockAuth, times(2)).fetchSignInMethodsForEmail(EMAIL);
+    }
+
+    @Test
+    public void testClearSignInMethods() {
+        when(mMockAuth.fetchSignInMethodsForEmail(EMAIL))
+                .thenReturn(AutoCompleteTask.<SignInMethodQueryResult>forSuccess(
+                        new FakeSignInMethodQueryResult(null)));
+
+        ProviderUtils.fetchSignInMethods(mMockAuth, EMAIL);
+        ProviderUtils.clearSignInMethods();
+        ProviderUtils.fetchSignInMethods(mMockAuth, EMAIL);
+
+        verify(mMockAuth, times(2)).fetchSignInMethodsForEmail(EMAIL);
+    }
+}
@@ -0,0 +1,246 @@
+package com.firebase.ui.auth.data.remote;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Intent;
+
+import com.firebase.ui.auth.AuthUI;
+import com.firebase.ui.auth.AuthUI.IdpConfig;
+import com.firebase.ui.auth.IdpResponse;
+import com.firebase.ui.auth.data.model.CredentialOffer;
+import com.firebase.ui.auth.data.model.FlowParameters;
+import com.firebase.ui.auth.data.model.IntentRequiredException;
+import com.firebase.ui.auth.data.model.Resource;
+import com.firebase.ui.auth.data.model.State;
+import com.firebase.ui.auth.data.model.User;
+import com.firebase.ui.auth.data.model.UserCancellationException;
+import com.firebase.ui.auth.testhelpers.AutoCompleteTask;
+import com.firebase.ui.auth.testhelpers.FakeAuthResult;
+import com.firebase.ui.auth.testhelpers.TestConstants;
+import com.firebase.ui.auth.testhelpers.TestHelper;
+import com.firebase.ui.auth.ui.idp.AuthMethodPickerActivity;
+import com.firebase.ui.auth.viewmodel.RequestCodes;
+import com.google.android.gms.auth.api.credentials.Credential;
+import com.google.android.gms.auth.api.credentials.CredentialRequest;
+import com.google.android.gms.auth.api.credentials.CredentialRequestResponse;
+import com.google.android.gms.auth.api.credentials.CredentialsClient;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.auth.AuthResult;
+import com.google.firebase.auth.EmailAuthProvider;
+import com.google.firebase.auth.FirebaseAuth;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SignInKickstarter}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SignInKickstarterTest {
+
+    private static final long TIMEOUT_MILLIS = 1000;
+
+    @Mock FirebaseAuth mMockAuth;
+    @Mock CredentialsClient mMockCredentials;
+
+    private SignInKickstarter mKickstarter;
+    private TaskCompletionSource<CredentialRequestResponse> mCredentialRequest;
+
+    @Before
+    public void setUp() {
+        TestHelper.initialize();
+        MockitoAnnotations.initMocks(this);
+
+        mCredentialRequest = new TaskCompletionSource<>();
+        when(mMockCredentials.request(any(CredentialRequest.class)))
+                .thenReturn(mCredentialRequest.getTask());
+
+        mKickstarter = new SignInKickstarter(
+                (Application) ApplicationProvider.getApplicationContext());
+        mKickstarter.initializeForTesting(getFlowParameters(), mMockAuth, mMockCredentials);
+    }
+
+    @After
+    public void tearDown() {
+        CredentialOffer.set(null);
+    }
+
+    @Test
+    public void testStart_timeoutShowsProviderChoice() {
+        mKickstarter.start();
+        assertEquals(State.LOADING, getResult().getState());
+
+        ShadowLooper.idleMainLooper(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        assertIntentRequired(AuthMethodPickerActivity.class, RequestCodes.AUTH_PICKER_FLOW);
+    }
+
+    @Test
+    public void testStart_credentialBeforeTimeout() {
+        when(mMockAuth.signInWithEmailAndPassword(TestConstants.EMAIL, TestConstants.PASSWORD))
+                .thenReturn(AutoCompleteTask.<AuthResult>forSuccess(FakeAuthResult.INSTANCE));
+
+        mKickstarter.start();
+        mCredentialRequest.setResult(mockResponse(getPasswordCredential()));
+
+        assertEquals(State.SUCCESS, getResult().getState());
+
+        // The timeout no longer moves the flow on
+        ShadowLooper.idleMainLooper(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertEquals(State.SUCCESS, getResult().getState());
+        assertNull(CredentialOffer.get().getValue());
+    }
+
+    @Test
+    public void testStart_lateCredentialIsOffered() {
+        mKickstarter.start();
+        ShadowLooper.idleMainLooper(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        Credential credential = getPasswordCredential();
+        mCredentialRequest.setResult(mockResponse(credential));
+
+        // The provider choice stays on screen and offers the credential
+        assertIntentRequired(AuthMethodPickerActivity.class, RequestCodes.AUTH_PICKER_FLOW);
+        assertSame(credential, CredentialOffer.get().getValue());
+        verify(mMockAuth, never()).signInWithEmailAndPassword(
+                TestConstants.EMAIL, TestConstants.PASSWORD);
+
+        // Ending the flow drops the credential
+        mKickstarter.onCleared();
+        assertNull(CredentialOffer.get().getValue());
+    }
+
+    @Test
+    public void testStart_clearsPreviousOffer() {
+        CredentialOffer.set(getPasswordCredential());
+
+        mKickstarter.start();
+
+        assertNull(CredentialOffer.get().getValue());
+    }
+
+    @Test
+    public void testOnActivityResult_offerAccepted() {
+        when(mMockAuth.signInWithEmailAndPassword(TestConstants.EMAIL, TestConstants.PASSWORD))
+                .thenReturn(AutoCompleteTask.<AuthResult>forSuccess(FakeAuthResult.INSTANCE));
+
+        mKickstarter.onActivityResult(RequestCodes.AUTH_PICKER_FLOW,
+                RequestCodes.CREDENTIAL_OFFER_ACCEPTED,
+                new Intent().putExtra(Credential.EXTRA_KEY, getPasswordCredential()));
+
+        verify(mMockAuth).signInWithEmailAndPassword(TestConstants.EMAIL, TestConstants.PASSWORD);
+        assertEquals(State.SUCCESS, getResult().getState());
+    }
+
+    @Test
+    public void testOnActivityResult_pickerResultFallsThrough() {
+        IdpResponse response = new IdpResponse.Builder(
+                new User.Builder(EmailAuthProvider.PROVIDER_ID, TestConstants.EMAIL).build())
+                .build();
+
+        mKickstarter.onActivityResult(
+                RequestCodes.AUTH_PICKER_FLOW, Activity.RESULT_OK, response.toIntent());
+
+        assertEquals(State.SUCCESS, getResult().getState());
+        assertEquals(TestConstants.EMAIL, getResult().getValue().getEmail());
+    }
+
+    @Test
+    public void testOnActivityResult_emailCancelledFallsThrough() {
+        mKickstarter.onActivityResult(RequestCodes.EMAIL_FLOW, Activity.RESULT_CANCELED, null);
+
+        assertEquals(State.FAILURE, getResult().getState());
+        assertTrue(getResult().getException() instanceof UserCancellationException);
+    }
+
+    @Test
+    public void testOnActivityResult_wrongDeviceRestartsChoice() {
+        mKickstarter.onActivityResult(RequestCodes.EMAIL_FLOW,
+                RequestCodes.EMAIL_LINK_WRONG_DEVICE_FLOW, null);
+
+        assertIntentRequired(AuthMethodPickerActivity.class, RequestCodes.AUTH_PICKER_FLOW);
+    }
+
+    @Test
+    public void testOnActivityResult_hintCancelledShowsProviderChoice() {
+        mKickstarter.onActivityResult(RequestCodes.CRED_HINT, Activity.RESULT_CANCELED, null);
+
+        assertIntentRequired(AuthMethodPickerActivity.class, RequestCodes.AUTH_PICKER_FLOW);
+    }
+
+    private Resource<IdpResponse> getResult() {
+        return mKickstarter.getOperation().getValue();
+    }
+
+    private void assertIntentRequired(Class<? extends Activity> activity, int requestCode) {
+        Resource<IdpResponse> result = getResult();
+        assertEquals(State.FAILURE, result.getState());
+
+        IntentRequiredException e = (IntentRequiredException) result.getException();
+        assertEquals(requestCode, e.getRequestCode());
+        assertEquals(activity.getName(), e.getIntent().getComponent().getClassName());
+    }
+
+    private static Credential getPasswordCredential() {
+        return new Credential.Builder(TestConstants.EMAIL)
+                .setPassword(TestConstants.PASSWORD)
+                .build();
+    }
+
+    private static CredentialRequestResponse mockResponse(Credential credential) {
+        CredentialRequestResponse response = mock(CredentialRequestResponse.class);
+        when(response.getCredential()).thenReturn(credential);
+        return response;
+    }
+
+    /**
+     * Email and phone, so the provider choice is shown, with credentials enabled and a timeout.
+     */
+    private static FlowParameters getFlowParameters() {
+        return new FlowParameters(
+                TestHelper.MOCK_APP.getName(),
+                Arrays.asList(new IdpConfig.EmailBuilder().build(),
+                        new IdpConfig.PhoneBuilder().build()),
+                null,
+                AuthUI.getDefaultTheme(),
+                AuthUI.NO_LOGO,
+                null,
+                null,
+                true,
+                true,
+                false,
+                false,
+                true,
+                null,
+                null,
+                null,
+                null,
+                null,
+                TIMEOUT_MILLIS,
+                false,
+                false,
+                false,
+                false);
+    }
+}
@@ -90,6 +90,7 @@ public final class TestHelper {
         FirebaseApp.initializeApp(context, new FirebaseOptions.Builder()
                 .setApiKey("fake")
                 .setApplicationId("fake")
+                .setProjectId("fake")
                 .build());
     }
 
@@ -133,6 +134,15 @@ public final class TestHelper {
                                                    boolean enableAnonymousUpgrade,
                                                    AuthMethodPickerLayout customLayout,
                                                    boolean hasDefaultEmail) {
+        return getFlowParameters(
+                providerIds, enableAnonymousUpgrade, customLayout, hasDefaultEmail, false);
+    }
+
+    public static FlowParameters getFlowParameters(Collection<String> providerIds,
+                                                   boolean enableAnonymousUpgrade,
+                                                   AuthMethodPickerLayout customLayout,
+                                                   boolean hasDefaultEmail,
+                                                   boolean singleActivityFlow) {
         List<IdpConfig> idpConfigs = new ArrayList<>();
         for (String providerId : providerIds) {
             switch (providerId) {
@@ -192,7 +202,12 @@ public final class TestHelper {
                 null,
                 customLayout,
                 null,
-                null);
+                null,
+                0,
+                singleActivityFlow,
+                false,
+                false,
+                false);
     }
 
     /**
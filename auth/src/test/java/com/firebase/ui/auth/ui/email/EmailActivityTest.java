@@ -14,20 +14,28 @@
 
 package com.firebase.ui.auth.ui.email;
 
+import android.app.Activity;
 import android.content.Intent;
+import android.os.Looper;
 import android.widget.Button;
 
 import com.firebase.ui.auth.AuthUI;
 import com.firebase.ui.auth.IdpResponse;
 import com.firebase.ui.auth.R;
+import com.firebase.ui.auth.data.model.FlowParameters;
 import com.firebase.ui.auth.data.model.User;
 import com.firebase.ui.auth.testhelpers.TestConstants;
 import com.firebase.ui.auth.testhelpers.TestHelper;
 import com.firebase.ui.auth.util.ExtraConstants;
 import com.firebase.ui.auth.util.data.EmailLinkPersistenceManager;
+import com.firebase.ui.auth.viewmodel.smartlock.SmartLockHandler;
+import com.google.android.gms.auth.api.credentials.Credential;
+import com.google.android.gms.auth.api.credentials.CredentialsClient;
+import com.google.android.gms.tasks.TaskCompletionSource;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.firebase.auth.EmailAuthProvider;
+import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.GoogleAuthProvider;
 
 import org.junit.Before;
@@ -36,14 +44,19 @@ import org.junit.runner.RunWith;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.Shadows;
+import org.robolectric.android.controller.ActivityController;
 import org.robolectric.shadows.ShadowActivity;
 
 import java.util.Collections;
 
+import androidx.lifecycle.ViewModelProvider;
 import androidx.test.core.app.ApplicationProvider;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @RunWith(RobolectricTestRunner.class)
 public class EmailActivityTest {
@@ -170,6 +183,59 @@ public class EmailActivityTest {
 
     }
 
+    @Test
+    public void testOnExistingEmailUser_singleActivityFlow_expectWelcomeBackPasswordFragment() {
+        Intent startIntent = EmailActivity.createIntent(
+                ApplicationProvider.getApplicationContext(),
+                TestHelper.getFlowParameters(Collections.singletonList(
+                        EmailAuthProvider.PROVIDER_ID), false, null, false, true));
+        EmailActivity emailActivity = Robolectric.buildActivity(EmailActivity.class, startIntent)
+                .create()
+                .start()
+                .visible()
+                .get();
+
+        emailActivity.onExistingEmailUser(
+                new User.Builder(EmailAuthProvider.PROVIDER_ID, TestConstants.EMAIL).build());
+        emailActivity.getSupportFragmentManager().executePendingTransactions();
+
+        assertThat(Shadows.shadowOf(emailActivity).getNextStartedActivityForResult()).isNull();
+        assertThat(emailActivity.getSupportFragmentManager()
+                .findFragmentByTag(WelcomeBackPasswordFragment.TAG)).isNotNull();
+    }
+
+    @Test
+    public void testStartSaveCredentials_singleActivityFlow_recreatedWhileSaving() {
+        FlowParameters params = TestHelper.getFlowParameters(Collections.singletonList(
+                EmailAuthProvider.PROVIDER_ID), false, null, false, true);
+        ActivityController<EmailActivity> controller = Robolectric.buildActivity(
+                EmailActivity.class,
+                EmailActivity.createIntent(ApplicationProvider.getApplicationContext(), params))
+                .setup();
+
+        // The save only completes after the activity was recreated
+        TaskCompletionSource<Void> save = new TaskCompletionSource<>();
+        CredentialsClient credentials = mock(CredentialsClient.class);
+        when(credentials.save(any(Credential.class))).thenReturn(save.getTask());
+        SmartLockHandler handler =
+                new ViewModelProvider(controller.get()).get(SmartLockHandler.class);
+        handler.init(params);
+        handler.initializeForTesting(params, mock(FirebaseAuth.class), credentials);
+
+        IdpResponse response = new IdpResponse.Builder(
+                new User.Builder(EmailAuthProvider.PROVIDER_ID, TestConstants.EMAIL).build())
+                .build();
+        controller.get().startSaveCredentials(
+                TestHelper.getMockFirebaseUser(), response, TestConstants.PASSWORD);
+
+        EmailActivity recreated = controller.recreate().get();
+        save.setResult(null);
+        Shadows.shadowOf(Looper.getMainLooper()).idle();
+
+        assertThat(recreated.isFinishing()).isTrue();
+        assertThat(Shadows.shadowOf(recreated).getResultCode()).isEqualTo(Activity.RESULT_OK);
+    }
+
     @Test
     public void testSetDefaultEmail_expectRegisterEmailFragment() {
         EmailActivity emailActivity = createActivity(EmailAuthProvider.PROVIDER_ID, false, true);
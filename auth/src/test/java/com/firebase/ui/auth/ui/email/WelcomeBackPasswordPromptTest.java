@@ -15,22 +15,30 @@
 package com.firebase.ui.auth.ui.email;
 
 import android.content.Intent;
+import android.os.Bundle;
+import android.os.Parcel;
 import android.widget.Button;
 
+import com.firebase.ui.auth.AuthUI;
 import com.firebase.ui.auth.IdpResponse;
 import com.firebase.ui.auth.R;
+import com.firebase.ui.auth.data.model.FlowParameters;
 import com.firebase.ui.auth.data.model.User;
 import com.firebase.ui.auth.testhelpers.TestConstants;
 import com.firebase.ui.auth.testhelpers.TestHelper;
+import com.firebase.ui.auth.util.ExtraConstants;
+import com.firebase.ui.auth.util.data.FlowParametersRegistry;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.firebase.auth.EmailAuthProvider;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.Shadows;
+import org.robolectric.android.controller.ActivityController;
 import org.robolectric.shadows.ShadowActivity;
 
 import java.util.Collections;
@@ -38,7 +46,11 @@ import java.util.Collections;
 import androidx.test.core.app.ApplicationProvider;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(RobolectricTestRunner.class)
 public class WelcomeBackPasswordPromptTest {
@@ -47,16 +59,18 @@ public class WelcomeBackPasswordPromptTest {
         TestHelper.initialize();
     }
 
+    @After
+    public void tearDown() {
+        FlowParametersRegistry.clear();
+    }
+
     private WelcomeBackPasswordPrompt createActivity() {
-        Intent startIntent = WelcomeBackPasswordPrompt.createIntent(
-                ApplicationProvider.getApplicationContext(),
-                TestHelper.getFlowParameters(Collections.singletonList(EmailAuthProvider.PROVIDER_ID)),
-                new IdpResponse.Builder(new User.Builder(
-                        EmailAuthProvider.PROVIDER_ID, TestConstants.EMAIL
-                ).build()).build());
+        Intent startIntent = createStartIntent(
+                TestHelper.getFlowParameters(Collections.singletonList(EmailAuthProvider.PROVIDER_ID)));
         return Robolectric
                 .buildActivity(WelcomeBackPasswordPrompt.class, startIntent)
                 .create()
+                .start()
                 .visible()
                 .get();
     }
@@ -78,4 +92,78 @@ public class WelcomeBackPasswordPromptTest {
                 Shadows.shadowOf(welcomeBack).getNextStartedActivityForResult();
         assertNull(nextIntent);
     }
+
+    @Test
+    public void testRecreate_withEmptyRegistry() {
+        Intent startIntent = createStartIntent(getInProcessFlowParameters());
+        String handle = startIntent.getStringExtra(ExtraConstants.FLOW_PARAMS_HANDLE);
+        assertNotNull(handle);
+
+        ActivityController<WelcomeBackPasswordPrompt> controller = Robolectric
+                .buildActivity(WelcomeBackPasswordPrompt.class, startIntent)
+                .setup();
+        Bundle state = new Bundle();
+        controller.saveInstanceState(state).pause().stop().destroy();
+
+        // The process is recreated: the registry is empty and the state went through a parcel
+        FlowParametersRegistry.clear();
+        state = parcel(state);
+
+        WelcomeBackPasswordPrompt welcomeBack = Robolectric
+                .buildActivity(WelcomeBackPasswordPrompt.class, startIntent)
+                .setup(state)
+                .get();
+
+        FlowParameters params = welcomeBack.getFlowParams();
+        assertTrue(params.inProcessParameters);
+        assertEquals(EmailAuthProvider.PROVIDER_ID, params.providers.get(0).getProviderId());
+        assertSame(params, FlowParametersRegistry.get(handle));
+        assertNotNull(welcomeBack.findViewById(R.id.button_done));
+    }
+
+    @Test
+    public void testCreate_withLostParameters() {
+        Intent startIntent = createStartIntent(getInProcessFlowParameters());
+        FlowParametersRegistry.clear();
+
+        try {
+            Robolectric.buildActivity(WelcomeBackPasswordPrompt.class, startIntent).create();
+            fail("Expected the lost parameters to be reported");
+        } catch (RuntimeException e) {
+            Throwable cause = e;
+            while (!(cause instanceof IllegalStateException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertTrue(cause instanceof IllegalStateException);
+        }
+    }
+
+    private static Intent createStartIntent(FlowParameters params) {
+        return WelcomeBackPasswordPrompt.createIntent(
+                ApplicationProvider.getApplicationContext(),
+                params,
+                new IdpResponse.Builder(new User.Builder(
+                        EmailAuthProvider.PROVIDER_ID, TestConstants.EMAIL
+                ).build()).build());
+    }
+
+    private static FlowParameters getInProcessFlowParameters() {
+        return FlowParameters.fromIntent(AuthUI.getInstance(TestHelper.MOCK_APP)
+                .createSignInIntentBuilder()
+                .setAvailableProviders(Collections.singletonList(
+                        new AuthUI.IdpConfig.EmailBuilder().build()))
+                .setInProcessParameters(true)
+                .build());
+    }
+
+    private static Bundle parcel(Bundle bundle) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            bundle.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return parcel.readBundle(WelcomeBackPasswordPromptTest.class.getClassLoader());
+        } finally {
+            parcel.recycle();
+        }
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.firebase.ui.auth.ui.phone;
+
+import com.firebase.ui.auth.data.model.CountryInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+public class CountryListTest {
+    private static final Set<String> NONE = Collections.emptySet();
+
+    @Test
+    public void testCreate_sortsByDisplayName() {
+        CountryList list = CountryList.create(Locale.US,
+                new HashSet<>(Arrays.asList("US", "GB", "DE", "AT")), NONE);
+
+        List<CountryInfo> countries = list.getCountries();
+        assertEquals(4, countries.size());
+        assertEquals("AT", countries.get(0).getLocale().getCountry());
+        assertEquals("DE", countries.get(1).getLocale().getCountry());
+        assertEquals("GB", countries.get(2).getLocale().getCountry());
+        assertEquals("US", countries.get(3).getLocale().getCountry());
+
+        assertArrayEquals(new String[]{"A", "G", "U"}, list.getSections());
+        assertArrayEquals(new int[]{0, 1, 3}, list.getSectionPositions());
+        assertEquals(2, list.getPosition("United Kingdom"));
+        assertEquals(-1, list.getPosition("France"));
+    }
+
+    @Test
+    public void testCreate_blacklist() {
+        CountryList all = CountryList.create(Locale.US, NONE, NONE);
+        CountryList filtered = CountryList.create(Locale.US,
+                NONE, Collections.singleton("US"));
+
+        assertEquals(all.getCountries().size() - 1, filtered.getCountries().size());
+        assertEquals(-1, filtered.getPosition("United States"));
+    }
+
+    @Test
+    public void testSearch() {
+        CountryList list = CountryList.create(Locale.US,
+                new HashSet<>(Arrays.asList("US", "GB", "AE", "AX", "IN")), NONE);
+        // Sorted: Åland Islands, India, United Arab Emirates, United Kingdom, United States
+
+        assertArrayEquals(new int[]{2, 3, 4}, list.search("uni"));
+        assertArrayEquals(new int[]{3}, list.search("KINGDOM"));
+        assertArrayEquals(new int[]{0}, list.search("aland"));
+        assertArrayEquals(new int[]{3}, list.search("+44"));
+        assertArrayEquals(new int[]{1, 2}, list.search("9"));
+        assertArrayEquals(new int[0], list.search("xyz"));
+        assertEquals(5, list.search("").length);
+        assertEquals(5, list.search(null).length);
+    }
+
+    @Test
+    public void testLoad_cachedByLocaleAndFilters() {
+        Set<String> whitelist = Collections.singleton("US");
+
+        assertSame(CountryList.load(Locale.US, whitelist, NONE),
+                CountryList.load(Locale.US, new HashSet<>(whitelist), NONE));
+        assertNotSame(CountryList.load(Locale.US, whitelist, NONE),
+                CountryList.load(Locale.FRANCE, whitelist, NONE));
+        assertNotSame(CountryList.load(Locale.US, NONE, whitelist),
+                CountryList.load(Locale.US, whitelist, NONE));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.firebase.ui.auth.ui.phone;
+
+import com.firebase.ui.auth.util.data.PhoneNumberUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures the country code lookup done on every keystroke of the phone number screen, which
+ * must not allocate.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PhoneNumberUtilsBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 100_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private static final String[] NUMBERS = {
+            PhoneTestConstants.RAW_PHONE,
+            PhoneTestConstants.YE_RAW_PHONE,
+            "+447911123456",
+            "+0123",
+            "+"
+    };
+
+    @Test
+    public void benchmarkIsValid_doesNotAllocate() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        // Warm up the JIT and the lazily initialized tables
+        int valid = run(WARMUP_ITERATIONS);
+
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = allocations.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        valid += run(ITERATIONS);
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocations.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        // Allow for the measurement itself, which is a few bytes in total
+        assertEquals("PhoneNumberUtils.isValid: " + elapsed / ITERATIONS + " ns/op, "
+                        + (double) bytes / ITERATIONS + " bytes/op",
+                0, bytes / ITERATIONS);
+        assertTrue(valid > 0);
+    }
+
+    private static int run(int iterations) {
+        int valid = 0;
+        for (int i = 0; i < iterations; i++) {
+            if (PhoneNumberUtils.isValid(NUMBERS[i % NUMBERS.length])) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+}
@@ -36,8 +36,13 @@ import static com.firebase.ui.auth.ui.phone.PhoneTestConstants.RAW_PHONE;
 import static com.firebase.ui.auth.util.data.PhoneNumberUtils.format;
 import static com.firebase.ui.auth.util.data.PhoneNumberUtils.getCountryCode;
 import static com.firebase.ui.auth.util.data.PhoneNumberUtils.getCurrentCountryInfo;
+import static com.firebase.ui.auth.util.data.PhoneNumberUtils.getCountryIsosFromCountryCode;
 import static com.firebase.ui.auth.util.data.PhoneNumberUtils.getPhoneNumber;
+import static com.firebase.ui.auth.util.data.PhoneNumberUtils.isValid;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -76,6 +81,28 @@ public class PhoneNumberUtilsTest {
         assertEquals(PhoneTestConstants.US_ISO2, number.getCountryIso());
     }
 
+    @Test
+    public void testIsValid() {
+        assertTrue(isValid("+1"));
+        assertTrue(isValid("+44"));
+        assertTrue(isValid(PhoneTestConstants.RAW_PHONE));
+        assertTrue(isValid(PhoneTestConstants.YE_RAW_PHONE));
+
+        assertFalse(isValid(""));
+        assertFalse(isValid("+"));
+        assertFalse(isValid("+0123"));
+        assertFalse(isValid("+(1)"));
+        assertFalse(isValid(PhoneTestConstants.PHONE));
+    }
+
+    @Test
+    public void testGetCountryIsosFromCountryCode() {
+        assertEquals("GB", getCountryIsosFromCountryCode("+44").get(0));
+        assertTrue(getCountryIsosFromCountryCode("+1").contains("CA"));
+        assertNull(getCountryIsosFromCountryCode("44"));
+        assertNull(getCountryIsosFromCountryCode("+4412"));
+    }
+
     @Test
     public void testGetCountryCode() {
         assertEquals(Integer.valueOf(86), getCountryCode(Locale.CHINA.getCountry()));
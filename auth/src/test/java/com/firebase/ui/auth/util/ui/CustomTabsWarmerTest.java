@@ -0,0 +1,69 @@
+package com.firebase.ui.auth.util.ui;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.firebase.ui.auth.AuthUI;
+import com.firebase.ui.auth.R;
+import com.firebase.ui.auth.testhelpers.TestHelper;
+import com.google.firebase.auth.EmailAuthProvider;
+import com.google.firebase.auth.GithubAuthProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class CustomTabsWarmerTest {
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        TestHelper.initialize();
+        mContext = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void testGetLikelyUrls_genericProviders() {
+        assertThat(CustomTabsWarmer.getLikelyUrls(mContext, TestHelper.getFlowParameters(
+                Arrays.asList(
+                        EmailAuthProvider.PROVIDER_ID,
+                        GithubAuthProvider.PROVIDER_ID,
+                        AuthUI.MICROSOFT_PROVIDER))))
+                .containsExactly(
+                        Uri.parse("https://fake.firebaseapp.com/__/auth/handler"),
+                        Uri.parse("https://github.com/login/oauth/authorize"),
+                        Uri.parse("https://login.microsoftonline.com/common/oauth2/v2.0/authorize"))
+                .inOrder();
+    }
+
+    @Test
+    public void testGetLikelyUrls_customAuthDomain() {
+        Context context = spy(mContext);
+        when(context.getString(R.string.firebase_web_host)).thenReturn("auth.example.com");
+
+        assertThat(CustomTabsWarmer.getLikelyUrls(context, TestHelper.getFlowParameters(
+                Collections.singletonList(GithubAuthProvider.PROVIDER_ID))))
+                .containsExactly(
+                        Uri.parse("https://auth.example.com/__/auth/handler"),
+                        Uri.parse("https://github.com/login/oauth/authorize"))
+                .inOrder();
+    }
+
+    @Test
+    public void testGetLikelyUrls_noGenericProviders() {
+        assertThat(CustomTabsWarmer.getLikelyUrls(mContext, TestHelper.getFlowParameters(
+                Collections.singletonList(EmailAuthProvider.PROVIDER_ID)))).isEmpty();
+    }
+}
@@ -0,0 +1,146 @@
+package com.firebase.ui.auth.viewmodel.smartlock;
+
+import android.app.Activity;
+import android.app.Application;
+import android.app.PendingIntent;
+import android.content.Intent;
+
+import com.firebase.ui.auth.IdpResponse;
+import com.firebase.ui.auth.data.model.FlowParameters;
+import com.firebase.ui.auth.data.model.User;
+import com.firebase.ui.auth.testhelpers.AutoCompleteTask;
+import com.firebase.ui.auth.testhelpers.TestConstants;
+import com.firebase.ui.auth.testhelpers.TestHelper;
+import com.firebase.ui.auth.ui.credentials.CredentialSaveActivity;
+import com.firebase.ui.auth.util.CredentialUtils;
+import com.firebase.ui.auth.util.ExtraConstants;
+import com.google.android.gms.auth.api.credentials.Credential;
+import com.google.android.gms.auth.api.credentials.CredentialsClient;
+import com.google.android.gms.common.api.ResolvableApiException;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.auth.EmailAuthProvider;
+import com.google.firebase.auth.FirebaseAuth;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.Shadows;
+import org.robolectric.android.controller.ActivityController;
+
+import java.util.Collections;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link BackgroundCredentialSaver}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BackgroundCredentialSaverTest {
+
+    @Mock FirebaseAuth mMockAuth;
+    @Mock CredentialsClient mMockCredentials;
+
+    private Application mApplication;
+    private FlowParameters mParams;
+    private SmartLockHandler mHandler;
+    private Credential mCredential;
+
+    @Before
+    public void setUp() {
+        TestHelper.initialize();
+        MockitoAnnotations.initMocks(this);
+
+        mApplication = ApplicationProvider.getApplicationContext();
+        mParams = TestHelper.getFlowParameters(
+                Collections.singletonList(EmailAuthProvider.PROVIDER_ID));
+        mHandler = new SmartLockHandler(mApplication);
+        mHandler.initializeForTesting(mParams, mMockAuth, mMockCredentials);
+        mHandler.setResponse(new IdpResponse.Builder(
+                new User.Builder(EmailAuthProvider.PROVIDER_ID, TestConstants.EMAIL).build()
+        ).build());
+        mCredential = CredentialUtils.buildCredential(
+                TestHelper.getMockFirebaseUser(), TestConstants.PASSWORD, null);
+    }
+
+    @Test
+    public void testSave_success() {
+        when(mMockCredentials.save(any(Credential.class)))
+                .thenReturn(AutoCompleteTask.<Void>forSuccess(null));
+
+        BackgroundCredentialSaver.save(mHandler, mParams, mCredential);
+        Robolectric.buildActivity(Activity.class).setup();
+
+        verify(mMockCredentials).save(mCredential);
+        assertThat(mHandler.getOperation().hasObservers()).isFalse();
+        assertThat(Shadows.shadowOf(mApplication).getNextStartedActivity()).isNull();
+    }
+
+    @Test
+    public void testSave_resolution_askedFromResumedActivity() {
+        TaskCompletionSource<Void> save = new TaskCompletionSource<>();
+        when(mMockCredentials.save(any(Credential.class))).thenReturn(save.getTask());
+
+        BackgroundCredentialSaver.save(mHandler, mParams, mCredential);
+        // The flow has finished and the app is shown again
+        Robolectric.buildActivity(Activity.class).setup();
+        save.setException(mockResolution());
+
+        assertThat(mHandler.getOperation().hasObservers()).isFalse();
+        assertConfirmationStarted();
+    }
+
+    @Test
+    public void testSave_resolution_waitsForResumedActivity() {
+        when(mMockCredentials.save(any(Credential.class)))
+                .thenReturn(AutoCompleteTask.<Void>forFailure(mockResolution()));
+
+        ActivityController<Activity> host = Robolectric.buildActivity(Activity.class).setup();
+        BackgroundCredentialSaver.save(mHandler, mParams, mCredential);
+
+        // Nothing is started from the background
+        assertThat(Shadows.shadowOf(mApplication).getNextStartedActivity()).isNull();
+
+        host.pause().resume();
+        assertConfirmationStarted();
+    }
+
+    @Test
+    public void testSave_resolution_notAskedFromPausedActivity() {
+        TaskCompletionSource<Void> save = new TaskCompletionSource<>();
+        when(mMockCredentials.save(any(Credential.class))).thenReturn(save.getTask());
+
+        BackgroundCredentialSaver.save(mHandler, mParams, mCredential);
+        Robolectric.buildActivity(Activity.class).setup().pause();
+        save.setException(mockResolution());
+
+        assertThat(Shadows.shadowOf(mApplication).getNextStartedActivity()).isNull();
+    }
+
+    private void assertConfirmationStarted() {
+        Intent started = Shadows.shadowOf(mApplication).getNextStartedActivity();
+        assertThat(started.getComponent().getClassName())
+                .isEqualTo(CredentialSaveActivity.class.getName());
+        assertThat((Credential) started.getParcelableExtra(ExtraConstants.CREDENTIAL))
+                .isEqualTo(mCredential);
+
+        // Only asked once
+        assertThat(Shadows.shadowOf(mApplication).getNextStartedActivity()).isNull();
+    }
+
+    private ResolvableApiException mockResolution() {
+        ResolvableApiException mockRae = mock(ResolvableApiException.class);
+        when(mockRae.getResolution()).thenReturn(
+                PendingIntent.getActivity(mApplication, 0, new Intent("consent"), 0));
+        return mockRae;
+    }
+}
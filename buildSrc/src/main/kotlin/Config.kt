@@ -29,6 +29,7 @@ object Config {
             const val customTabs = "androidx.browser:browser:1.0.0"
             const val cardView = "androidx.cardview:cardview:1.0.0"
             const val constraint = "androidx.constraintlayout:constraintlayout:2.0.4"
+            const val exifInterface = "androidx.exifinterface:exifinterface:1.3.2"
             const val lifecycleCompiler = "androidx.lifecycle:lifecycle-compiler:2.2.0"
             const val lifecycleExtensions = "androidx.lifecycle:lifecycle-extensions:2.2.0"
             const val lifecycleRuntime = "androidx.lifecycle:lifecycle-runtime:2.2.0"
@@ -70,6 +71,8 @@ object Config {
 
             const val glide = "com.github.bumptech.glide:glide:$glideVersion"
             const val glideCompiler = "com.github.bumptech.glide:compiler:$glideVersion"
+            const val glideRecyclerView =
+                    "com.github.bumptech.glide:recyclerview-integration:$glideVersion"
 
             const val butterKnife = "com.jakewharton:butterknife:$butterVersion"
             const val butterKnifeCompiler = "com.jakewharton:butterknife-compiler:$butterVersion"
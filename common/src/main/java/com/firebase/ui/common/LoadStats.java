@@ -0,0 +1,63 @@
+package com.firebase.ui.common;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Snapshot of the retry and latency statistics of a paging data source.
+ */
+public final class LoadStats {
+
+    private final int mAttempt;
+    private final int mTotalRetries;
+    private final long mLastLatencyMillis;
+    private final long mNextRetryDelayMillis;
+
+    public LoadStats(int attempt,
+                     int totalRetries,
+                     long lastLatencyMillis,
+                     long nextRetryDelayMillis) {
+        mAttempt = attempt;
+        mTotalRetries = totalRetries;
+        mLastLatencyMillis = lastLatencyMillis;
+        mNextRetryDelayMillis = nextRetryDelayMillis;
+    }
+
+    /**
+     * The retry attempt of the current page load, 0 if the load has not been retried.
+     */
+    public int getAttempt() {
+        return mAttempt;
+    }
+
+    /**
+     * The number of automatic retries performed over the lifetime of the data source.
+     */
+    public int getTotalRetries() {
+        return mTotalRetries;
+    }
+
+    /**
+     * The duration of the most recently completed load attempt, successful or not.
+     */
+    public long getLastLatencyMillis() {
+        return mLastLatencyMillis;
+    }
+
+    /**
+     * The delay before the next scheduled retry, or -1 if no retry is scheduled.
+     */
+    public long getNextRetryDelayMillis() {
+        return mNextRetryDelayMillis;
+    }
+
+    @Override
+    @NonNull
+    public String toString() {
+        return "LoadStats{" +
+                "attempt=" + mAttempt +
+                ", totalRetries=" + mTotalRetries +
+                ", lastLatencyMillis=" + mLastLatencyMillis +
+                ", nextRetryDelayMillis=" + mNextRetryDelayMillis +
+                '}';
+    }
+}
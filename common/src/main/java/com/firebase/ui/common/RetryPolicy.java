@@ -0,0 +1,202 @@
+package com.firebase.ui.common;
+
+import android.content.Context;
+
+import java.util.Random;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Describes how a paging data source should automatically retry a failed page load.
+ *
+ * Use {@link Builder} to create a new instance. Delays grow exponentially from the initial delay
+ * up to the maximum delay, with a random jitter applied to each delay so that many clients do not
+ * retry in lock step.
+ */
+public final class RetryPolicy {
+
+    private final int mMaxAttempts;
+    private final long mInitialDelayMillis;
+    private final long mMaxDelayMillis;
+    private final double mMultiplier;
+    private final double mJitter;
+    private final Context mContext;
+
+    private RetryPolicy(int maxAttempts,
+                        long initialDelayMillis,
+                        long maxDelayMillis,
+                        double multiplier,
+                        double jitter,
+                        @Nullable Context context) {
+        mMaxAttempts = maxAttempts;
+        mInitialDelayMillis = initialDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+        mMultiplier = multiplier;
+        mJitter = jitter;
+        mContext = context;
+    }
+
+    /**
+     * The maximum number of automatic retries for a single page load.
+     */
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    public long getInitialDelayMillis() {
+        return mInitialDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return mMaxDelayMillis;
+    }
+
+    public double getMultiplier() {
+        return mMultiplier;
+    }
+
+    public double getJitter() {
+        return mJitter;
+    }
+
+    /**
+     * True if a load that exhausted its retries should resume when network connectivity returns.
+     */
+    public boolean isResumeOnReconnect() {
+        return mContext != null;
+    }
+
+    @Nullable
+    public Context getContext() {
+        return mContext;
+    }
+
+    /**
+     * Compute the delay before the given retry attempt.
+     *
+     * @param attempt the 1-based retry attempt.
+     * @param random  source of randomness for the jitter.
+     * @return the delay in milliseconds, never negative.
+     */
+    public long getDelayMillis(int attempt, @NonNull Random random) {
+        double delay = mInitialDelayMillis * Math.pow(mMultiplier, Math.max(0, attempt - 1));
+        delay = Math.min(delay, mMaxDelayMillis);
+
+        // Spread the delay uniformly over [delay * (1 - jitter), delay * (1 + jitter)]
+        double spread = delay * mJitter * (random.nextDouble() * 2 - 1);
+        return Math.max(0, Math.round(delay + spread));
+    }
+
+    @Override
+    @NonNull
+    public String toString() {
+        return "RetryPolicy{" +
+                "maxAttempts=" + mMaxAttempts +
+                ", initialDelayMillis=" + mInitialDelayMillis +
+                ", maxDelayMillis=" + mMaxDelayMillis +
+                ", multiplier=" + mMultiplier +
+                ", jitter=" + mJitter +
+                ", resumeOnReconnect=" + isResumeOnReconnect() +
+                '}';
+    }
+
+    /**
+     * Builder for {@link RetryPolicy}.
+     */
+    public static final class Builder {
+
+        private int mMaxAttempts = 3;
+        private long mInitialDelayMillis = 1000;
+        private long mMaxDelayMillis = 30000;
+        private double mMultiplier = 2;
+        private double mJitter = 0.5;
+        private Context mContext;
+
+        /**
+         * Sets the maximum number of automatic retries for a single page load. Defaults to 3.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setMaxAttempts(int maxAttempts) {
+            if (maxAttempts < 0) {
+                throw new IllegalArgumentException("maxAttempts cannot be negative.");
+            }
+            mMaxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first retry and the cap applied to later retries. Defaults to
+         * 1 second and 30 seconds.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setBackoff(long initialDelayMillis, long maxDelayMillis) {
+            if (initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis) {
+                throw new IllegalArgumentException(
+                        "Delays must satisfy 0 <= initialDelayMillis <= maxDelayMillis.");
+            }
+            mInitialDelayMillis = initialDelayMillis;
+            mMaxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * Sets the factor by which the delay grows after each failed attempt. Defaults to 2.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setMultiplier(double multiplier) {
+            if (multiplier < 1) {
+                throw new IllegalArgumentException("multiplier must be at least 1.");
+            }
+            mMultiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Sets the jitter as a fraction of each delay, between 0 (no jitter) and 1. Defaults to
+         * 0.5.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setJitter(double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("jitter must be between 0 and 1.");
+            }
+            mJitter = jitter;
+            return this;
+        }
+
+        /**
+         * Resume a load that exhausted its retries as soon as the device regains network
+         * connectivity. The app must hold the {@code ACCESS_NETWORK_STATE} permission, otherwise
+         * this option is ignored.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setResumeOnReconnect(@NonNull Context context) {
+            mContext = context.getApplicationContext();
+            return this;
+        }
+
+        /**
+         * Build the {@link RetryPolicy} object.
+         */
+        @NonNull
+        public RetryPolicy build() {
+            return new RetryPolicy(mMaxAttempts,
+                    mInitialDelayMillis,
+                    mMaxDelayMillis,
+                    mMultiplier,
+                    mJitter,
+                    mContext);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.firebase.ui.common;
+
+import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Random;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Applies a {@link RetryPolicy} to the loads of a single paging data source and keeps track of
+ * the resulting {@link LoadStats}.
+ *
+ * Methods may be called from any thread, retries are run on the main thread.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class RetryScheduler {
+
+    private static final String TAG = "RetryScheduler";
+
+    /**
+     * Receives updated statistics whenever a load starts, completes or is rescheduled.
+     */
+    public interface Listener {
+        void onStatsChanged(@NonNull LoadStats stats);
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Random mRandom = new Random();
+
+    private final RetryPolicy mPolicy;
+    private final Listener mListener;
+
+    private Runnable mPendingRetry;
+    private BroadcastReceiver mConnectivityReceiver;
+    private ConnectivityManager.NetworkCallback mNetworkCallback;
+
+    private int mAttempt;
+    private int mTotalRetries;
+    private long mLoadStartMillis;
+    private long mLastLatencyMillis;
+
+    public RetryScheduler(@Nullable RetryPolicy policy, @NonNull Listener listener) {
+        mPolicy = policy;
+        mListener = listener;
+    }
+
+    public synchronized void onLoadStarted() {
+        mLoadStartMillis = SystemClock.elapsedRealtime();
+    }
+
+    public synchronized void onLoadSucceeded() {
+        mLastLatencyMillis = SystemClock.elapsedRealtime() - mLoadStartMillis;
+        mAttempt = 0;
+        publish(-1);
+    }
+
+    /**
+     * Record a failed load and schedule the next attempt if the policy allows it.
+     *
+     * @param retry the action which repeats the failed load.
+     * @return true if a retry was scheduled and the caller should not surface the error yet.
+     */
+    public synchronized boolean onLoadFailed(@NonNull Runnable retry) {
+        mLastLatencyMillis = SystemClock.elapsedRealtime() - mLoadStartMillis;
+
+        if (mPolicy == null) {
+            publish(-1);
+            return false;
+        }
+
+        if (mAttempt < mPolicy.getMaxAttempts()) {
+            mAttempt++;
+            mTotalRetries++;
+
+            long delay = mPolicy.getDelayMillis(mAttempt, mRandom);
+            schedule(retry, delay);
+            publish(delay);
+            return true;
+        }
+
+        if (mPolicy.isResumeOnReconnect()) {
+            resumeOnReconnect(retry);
+        }
+
+        publish(-1);
+        return false;
+    }
+
+    /**
+     * Restore the full retry budget, used when the developer manually retries a load.
+     */
+    public synchronized void reset() {
+        cancel();
+        mAttempt = 0;
+    }
+
+    /**
+     * Drop any pending retry or connectivity registration.
+     */
+    public synchronized void cancel() {
+        if (mPendingRetry != null) {
+            mHandler.removeCallbacks(mPendingRetry);
+            mPendingRetry = null;
+        }
+
+        if (mConnectivityReceiver != null) {
+            mPolicy.getContext().unregisterReceiver(mConnectivityReceiver);
+            mConnectivityReceiver = null;
+        }
+
+        if (mNetworkCallback != null) {
+            ConnectivityManager manager = getConnectivityManager(mPolicy.getContext());
+            if (manager != null) {
+                manager.unregisterNetworkCallback(mNetworkCallback);
+            }
+            mNetworkCallback = null;
+        }
+    }
+
+    private void schedule(@NonNull final Runnable retry, long delay) {
+        cancel();
+        mPendingRetry = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (RetryScheduler.this) {
+                    if (mPendingRetry != this) {
+                        // Cancelled after it was dequeued
+                        return;
+                    }
+                    mPendingRetry = null;
+                }
+                retry.run();
+            }
+        };
+        mHandler.postDelayed(mPendingRetry, delay);
+    }
+
+    @SuppressWarnings("deprecation") // CONNECTIVITY_ACTION is only used before API 24
+    private void resumeOnReconnect(@NonNull final Runnable retry) {
+        final Context context = mPolicy.getContext();
+        if (context.checkCallingOrSelfPermission(Manifest.permission.ACCESS_NETWORK_STATE)
+                != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "Missing ACCESS_NETWORK_STATE permission, cannot resume on reconnect.");
+            return;
+        }
+
+        cancel();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            registerNetworkCallback(context, retry);
+            return;
+        }
+
+        mConnectivityReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                // The sticky broadcast reflects the state we just failed in
+                if (isInitialStickyBroadcast() || !isConnected(context)) {
+                    return;
+                }
+
+                reset();
+                retry.run();
+            }
+        };
+        context.registerReceiver(mConnectivityReceiver,
+                new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    @RequiresApi(Build.VERSION_CODES.N)
+    private void registerNetworkCallback(@NonNull Context context, @NonNull final Runnable retry) {
+        ConnectivityManager manager = getConnectivityManager(context);
+        if (manager == null) {
+            return;
+        }
+
+        // The callback is invoked right away for the network we just failed on, which only
+        // counts as a reconnect once it was lost or gained internet access.
+        final Network failedNetwork = manager.getActiveNetwork();
+        final boolean failedValidated = isValidated(manager.getNetworkCapabilities(failedNetwork));
+        mNetworkCallback = new ConnectivityManager.NetworkCallback() {
+            private volatile boolean mLost;
+
+            @Override
+            public void onAvailable(@NonNull Network network) {
+                if (mLost || !network.equals(failedNetwork)) {
+                    resume(retry, this);
+                }
+            }
+
+            @Override
+            public void onCapabilitiesChanged(@NonNull Network network,
+                                              @NonNull NetworkCapabilities capabilities) {
+                if (!failedValidated && network.equals(failedNetwork)
+                        && isValidated(capabilities)) {
+                    resume(retry, this);
+                }
+            }
+
+            @Override
+            public void onLost(@NonNull Network network) {
+                mLost = true;
+            }
+        };
+        manager.registerDefaultNetworkCallback(mNetworkCallback);
+    }
+
+    private void resume(@NonNull final Runnable retry,
+                        @NonNull final ConnectivityManager.NetworkCallback callback) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (RetryScheduler.this) {
+                    if (mNetworkCallback != callback) {
+                        // Cancelled in the meantime, or already resumed
+                        return;
+                    }
+                    reset();
+                }
+                retry.run();
+            }
+        });
+    }
+
+    private static boolean isValidated(@Nullable NetworkCapabilities capabilities) {
+        return capabilities != null
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+    }
+
+    private void publish(long nextRetryDelayMillis) {
+        mListener.onStatsChanged(new LoadStats(
+                mAttempt, mTotalRetries, mLastLatencyMillis, nextRetryDelayMillis));
+    }
+
+    private static boolean isConnected(@NonNull Context context) {
+        ConnectivityManager manager = getConnectivityManager(context);
+        if (manager == null) {
+            return false;
+        }
+
+        NetworkInfo info = manager.getActiveNetworkInfo();
+        return info != null && info.isConnected();
+    }
+
+    @Nullable
+    private static ConnectivityManager getConnectivityManager(@NonNull Context context) {
+        return (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+}
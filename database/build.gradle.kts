@@ -28,4 +28,5 @@ dependencies {
     androidTestImplementation(Config.Libs.Test.junitExt)
     androidTestImplementation(Config.Libs.Test.runner)
     androidTestImplementation(Config.Libs.Test.rules)
+    androidTestImplementation(Config.Libs.Test.mockito)
 }
@@ -0,0 +1,106 @@
+package com.firebase.ui.database.paging;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.Query;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class PageOrderTest {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Mock Query mQuery;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        when(mQuery.startAt(anyString())).thenReturn(mQuery);
+        when(mQuery.startAt(isNull(String.class), anyString())).thenReturn(mQuery);
+        when(mQuery.startAt(anyString(), anyString())).thenReturn(mQuery);
+        when(mQuery.startAt(anyDouble(), anyString())).thenReturn(mQuery);
+        when(mQuery.startAt(anyBoolean(), anyString())).thenReturn(mQuery);
+        when(mQuery.endAt(isNull(String.class), anyString())).thenReturn(mQuery);
+        when(mQuery.endAt(anyDouble(), anyString())).thenReturn(mQuery);
+        when(mQuery.limitToFirst(anyInt())).thenReturn(mQuery);
+        when(mQuery.limitToLast(anyInt())).thenReturn(mQuery);
+    }
+
+    @Test
+    public void testSecondPage_unorderedQuery() {
+        // Children of a query without orderBy*() usually have no priority
+        DataSnapshot last = mockChild("item20", null);
+        when(last.getPriority()).thenReturn(null);
+
+        PageKey key = PageOrder.byPriority().getKey(last);
+        assertNull(key.getValue());
+
+        PageOrder.byPriority().getPageQuery(mQuery, key, PAGE_SIZE);
+
+        verify(mQuery).startAt((String) null, "item20");
+        verify(mQuery).limitToFirst(PAGE_SIZE + 1);
+    }
+
+    @Test
+    public void testSecondPage_orderByChildQuery() {
+        DataSnapshot last = mockChild("item20", 1500L);
+
+        PageOrder order = PageOrder.byChild("timestamp");
+        PageKey key = order.getKey(last);
+        assertEquals(1500L, key.getValue());
+
+        order.getPageQuery(mQuery, key, PAGE_SIZE);
+
+        verify(mQuery).startAt(1500.0, "item20");
+        verify(mQuery).limitToFirst(PAGE_SIZE + 1);
+    }
+
+    @Test
+    public void testSecondPage_orderByChildQuery_descending() {
+        DataSnapshot last = mockChild("item20", 1500L);
+
+        PageOrder order = PageOrder.byChild("timestamp").descending();
+        order.getPageQuery(mQuery, order.getKey(last), PAGE_SIZE);
+
+        verify(mQuery).endAt(1500.0, "item20");
+        verify(mQuery).limitToLast(PAGE_SIZE + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSecondPage_mapOrderValue() {
+        DataSnapshot last = mockChild("item20", Collections.singletonMap("nested", 1));
+
+        PageOrder order = PageOrder.byChild("timestamp");
+        order.getPageQuery(mQuery, order.getKey(last), PAGE_SIZE);
+    }
+
+    private DataSnapshot mockChild(String key, Object timestamp) {
+        DataSnapshot timestampSnapshot = mock(DataSnapshot.class);
+        when(timestampSnapshot.getValue()).thenReturn(timestamp);
+
+        DataSnapshot snapshot = mock(DataSnapshot.class);
+        when(snapshot.getKey()).thenReturn(key);
+        when(snapshot.child("timestamp")).thenReturn(timestampSnapshot);
+        return snapshot;
+    }
+}
@@ -1,5 +1,8 @@
 package com.firebase.ui.database.paging;
 
+import android.content.Context;
+
+import com.firebase.ui.common.RetryPolicy;
 import com.firebase.ui.database.ClassSnapshotParser;
 import com.firebase.ui.database.SnapshotParser;
 import com.google.firebase.database.DataSnapshot;
@@ -61,10 +64,15 @@ public final class DatabasePagingOptions<T> {
      */
     public static final class Builder<T> {
 
-        private LiveData<PagedList<DataSnapshot>> mData;
+        private Query mQuery;
+        private PageOrder mOrder = PageOrder.byPriority();
+        private PagedList.Config mConfig;
         private SnapshotParser<T> mParser;
         private LifecycleOwner mOwner;
         private DiffUtil.ItemCallback<DataSnapshot> mDiffCallback;
+        private RetryPolicy mRetryPolicy;
+        private Context mCacheContext;
+        private long mCacheMaxAgeMillis;
 
         /**
          * Sets the query using a {@link ClassSnapshotParser} based
@@ -83,6 +91,7 @@ public final class DatabasePagingOptions<T> {
          *
          * @param query the FirebaseDatabase query. This query should only contain orderByKey(), orderByChild() and
          *              orderByValue() clauses. Any limit will cause an error such as limitToLast() or limitToFirst().
+         *              Queries with an orderBy*() clause also need a matching {@link #setPageOrder(PageOrder)}.
          * @param config paging configuration, passed directly to the support paging library.
          * @param parser the {@link SnapshotParser} to parse {@link DataSnapshot} into model
          *               objects.
@@ -92,8 +101,9 @@ public final class DatabasePagingOptions<T> {
         public Builder<T> setQuery(@NonNull Query query,
                                    @NonNull PagedList.Config config,
                                    @NotNull SnapshotParser<T> parser) {
-            FirebaseDataSource.Factory factory = new FirebaseDataSource.Factory(query);
-            mData = new LivePagedListBuilder<>(factory, config).build();
+            // The paged list is built in build() so that it can pick up the other options
+            mQuery = query;
+            mConfig = config;
 
             mParser = parser;
             return this;
@@ -112,6 +122,58 @@ public final class DatabasePagingOptions<T> {
         }
 
 
+        /**
+         * Sets the {@link PageOrder} matching the ordering of the query, so that pages are
+         * requested with (order value, key) cursors. Use {@link PageOrder#descending()} to page
+         * newest-first from the end of the query.
+         *
+         * The default is {@link PageOrder#byPriority()}, which matches a query without an
+         * {@code orderBy*()} clause.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder<T> setPageOrder(@NonNull PageOrder order) {
+            mOrder = order;
+            return this;
+        }
+
+        /**
+         * Serve pages from the Realtime Database disk cache and only refresh them from the server
+         * once they are older than {@code maxAgeMillis}. Stale pages are displayed from disk right
+         * away and kept in sync in the background. If the server data differs, the changed pages
+         * are swapped in along with the other loaded pages, keeping the scroll position.
+         * <p>
+         * The pages are stored by the Realtime Database persistence layer, so
+         * {@code FirebaseDatabase#setPersistenceEnabled(true)} must be called before any other
+         * database usage. Pages are identified by the query, including its location, order and
+         * filters, the page size and the page cursor.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder<T> setDiskCache(@NonNull Context context, long maxAgeMillis) {
+            if (maxAgeMillis < 0) {
+                throw new IllegalArgumentException("maxAgeMillis cannot be negative.");
+            }
+            mCacheContext = context.getApplicationContext();
+            mCacheMaxAgeMillis = maxAgeMillis;
+            return this;
+        }
+
+        /**
+         * Sets an optional {@link RetryPolicy} used to automatically retry failed page loads
+         * with exponential backoff. Without a policy, failed loads are only retried when
+         * {@link FirebaseRecyclerPagingAdapter#retry()} is called.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder<T> setRetryPolicy(@NonNull RetryPolicy retryPolicy) {
+            mRetryPolicy = retryPolicy;
+            return this;
+        }
+
         /**
          * Sets an optional {@link LifecycleOwner} to control the lifecycle of the adapter. Otherwise,
          * you must manually call {@link FirebaseRecyclerPagingAdapter#startListening()}
@@ -130,15 +192,22 @@ public final class DatabasePagingOptions<T> {
          */
         @NonNull
         public DatabasePagingOptions<T> build() {
-            if (mData == null) {
+            if (mQuery == null) {
                 throw new IllegalStateException("Must call setQuery() before calling build().");
             }
 
+            PageCache pageCache = mCacheContext == null
+                    ? null : new PageCache(mCacheContext, mCacheMaxAgeMillis);
+            FirebaseDataSource.Factory factory =
+                    new FirebaseDataSource.Factory(mQuery, mOrder, mRetryPolicy, pageCache);
+            LiveData<PagedList<DataSnapshot>> data =
+                    new LivePagedListBuilder<>(factory, mConfig).build();
+
             if (mDiffCallback == null) {
                 mDiffCallback = new DefaultSnapshotDiffCallback<T>(mParser);
             }
 
-            return new DatabasePagingOptions<>(mData, mParser, mDiffCallback, mOwner);
+            return new DatabasePagingOptions<>(data, mParser, mDiffCallback, mOwner);
         }
 
     }
@@ -1,15 +1,21 @@
 package com.firebase.ui.database.paging;
 
 import android.annotation.SuppressLint;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import com.firebase.ui.common.LoadStats;
+import com.firebase.ui.common.RetryPolicy;
+import com.firebase.ui.common.RetryScheduler;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 import androidx.annotation.NonNull;
@@ -28,13 +34,40 @@ import androidx.paging.PageKeyedDataSource;
  *       managing our own thread pool or requiring the user to pass us an executor.
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
-public class FirebaseDataSource extends PageKeyedDataSource<String, DataSnapshot> {
+public class FirebaseDataSource extends PageKeyedDataSource<PageKey, DataSnapshot> {
     private static final String TAG = "FirebaseDataSource";
 
+    /**
+     * The database doesn't report when the server confirms a cached page without changes, so a
+     * page counts as refreshed once it was listened to while connected for this long.
+     */
+    private static final long SERVER_SYNC_MILLIS = 10000;
+
     private Query mQuery;
+    private final PageOrder mOrder;
+    private final PageCache mPageCache;
+    private final PageStore mPageStore;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Listeners refreshing stale pages in the background, until their page is fresh or this data
+     * source is invalidated. Only accessed on the main thread.
+     */
+    private final List<Revalidation> mRevalidations = new ArrayList<>();
+    private boolean mRevalidationPaused;
+
+    /**
+     * Every page loaded so far, in load order, with its latest known data. Guarded by itself
+     * since pages handed over by the {@link PageStore} are added on the paging thread.
+     */
+    private final LinkedHashMap<String, PageStore.Page> mLoadedPages = new LinkedHashMap<>();
+    private DatabaseReference mConnectedRef;
+    private boolean mConnected;
 
     private final MutableLiveData<LoadingState> mLoadingState = new MutableLiveData<>();
     private final MutableLiveData<DatabaseError> mError = new MutableLiveData<>();
+    private final MutableLiveData<LoadStats> mLoadStats = new MutableLiveData<>();
+    private final RetryScheduler mRetryScheduler;
 
     private static final String STATUS_DATABASE_NOT_FOUND = "DATA_NOT_FOUND";
     private static final String MESSAGE_DATABASE_NOT_FOUND = "Data not found at given child path!";
@@ -42,53 +75,132 @@ public class FirebaseDataSource extends PageKeyedDataSource<String, DataSnapshot
 
     private Runnable mRetryRunnable;
 
-    public static class Factory extends DataSource.Factory<String, DataSnapshot> {
+    public static class Factory extends DataSource.Factory<PageKey, DataSnapshot> {
 
         private final Query mQuery;
+        private final PageOrder mOrder;
+        private final RetryPolicy mRetryPolicy;
+        private final PageCache mPageCache;
+        private final PageStore mPageStore = new PageStore();
 
         public Factory(@NonNull Query query) {
+            this(query, PageOrder.byPriority(), null, null);
+        }
+
+        public Factory(@NonNull Query query,
+                       @NonNull PageOrder order,
+                       @Nullable RetryPolicy retryPolicy,
+                       @Nullable PageCache pageCache) {
             mQuery = query;
+            mOrder = order;
+            mRetryPolicy = retryPolicy;
+            mPageCache = pageCache;
         }
 
         @Override
         @NonNull
-        public DataSource<String, DataSnapshot> create() {
-            return new FirebaseDataSource(mQuery);
+        public DataSource<PageKey, DataSnapshot> create() {
+            return new FirebaseDataSource(
+                    mQuery, mOrder, mRetryPolicy, mPageCache, mPageStore);
         }
     }
 
     FirebaseDataSource(Query mQuery){
+        this(mQuery, PageOrder.byPriority(), null, null, new PageStore());
+    }
+
+    FirebaseDataSource(Query mQuery,
+                       @NonNull PageOrder order,
+                       @Nullable RetryPolicy retryPolicy,
+                       @Nullable PageCache pageCache,
+                       @NonNull PageStore pageStore) {
         this.mQuery = mQuery;
+        mOrder = order;
+        mPageCache = pageCache;
+        mPageStore = pageStore;
+        mRetryScheduler = new RetryScheduler(retryPolicy, new RetryScheduler.Listener() {
+            @Override
+            public void onStatsChanged(@NonNull LoadStats stats) {
+                mLoadStats.postValue(stats);
+            }
+        });
+
+        addInvalidatedCallback(new InvalidatedCallback() {
+            @Override
+            public void onInvalidated() {
+                mRetryScheduler.cancel();
+                stopRevalidating();
+            }
+        });
+
+        if (mPageCache != null) {
+            // Only listened to while pages are being revalidated
+            mConnectedRef = mQuery.getRef().getDatabase().getReference(".info/connected");
+        }
     }
 
+    private final ValueEventListener mConnectedListener = new ValueEventListener() {
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            Boolean connected = snapshot.getValue(Boolean.class);
+            mConnected = connected != null && connected;
+
+            // The pages sync with the server from now on
+            if (mConnected) {
+                for (Revalidation revalidation : mRevalidations) {
+                    revalidation.scheduleMarkFresh();
+                }
+            }
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            mConnected = false;
+        }
+    };
+
     @Override
-    public void loadInitial(@NonNull final LoadInitialParams<String> params,
-                            @NonNull final LoadInitialCallback<String, DataSnapshot> callback) {
+    public void loadInitial(@NonNull final LoadInitialParams<PageKey> params,
+                            @NonNull final LoadInitialCallback<PageKey, DataSnapshot> callback) {
 
         // Set initial loading state
         mLoadingState.postValue(LoadingState.LOADING_INITIAL);
 
-        Query mInitQuery = mQuery.limitToFirst(params.requestedLoadSize);
+        // The previous data source was invalidated by fresh data, show all of its pages at once
+        final List<PageStore.Page> pages = mPageStore.take();
+        if (pages != null) {
+            // Revalidation listeners are only attached on the main thread
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    loadHandedOverPages(pages, callback);
+                }
+            });
+            return;
+        }
+
+        mRetryScheduler.onLoadStarted();
+
+        final Query mInitQuery = mOrder.getInitialQuery(mQuery, params.requestedLoadSize);
         mInitQuery.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
                 if (dataSnapshot.exists()) {
 
-                    //Make List of DataSnapshot
-                    List<DataSnapshot> data = new ArrayList<>();
-
-                    for (DataSnapshot snapshot : dataSnapshot.getChildren()){
-                        data.add(snapshot);
-                    }
+                    //Make List of DataSnapshot, in display order
+                    List<DataSnapshot> data = mOrder.getPage(dataSnapshot, null);
 
                     //Get Last Key
-                    String lastKey = getLastPageKey(data);
+                    PageKey lastKey = getLastPageKey(data);
 
                     //Update State
+                    mRetryScheduler.onLoadSucceeded();
                     mLoadingState.postValue(LoadingState.LOADED);
                     mRetryRunnable = null;
 
                     callback.onResult(data, lastKey, lastKey);
+                    recordPage(null, params.requestedLoadSize, data);
+                    revalidatePage(mInitQuery, null, params.requestedLoadSize, data);
 
                 } else {
                     mRetryRunnable = getRetryLoadInitial(params, callback);
@@ -98,48 +210,45 @@ public class FirebaseDataSource extends PageKeyedDataSource<String, DataSnapshot
 
             @Override
             public void onCancelled(@NonNull DatabaseError databaseError) {
-                mRetryRunnable = getRetryLoadInitial(params, callback);
-                setError(databaseError);
+                onLoadCancelled(getRetryLoadInitial(params, callback), databaseError);
             }
         });
     }
 
     @Override
-    public void loadBefore(@NonNull LoadParams<String> params, @NonNull LoadCallback<String, DataSnapshot> callback) {
+    public void loadBefore(@NonNull LoadParams<PageKey> params, @NonNull LoadCallback<PageKey, DataSnapshot> callback) {
         // Ignored for now, since we only ever append to the initial load.
     }
 
     @Override
-    public void loadAfter(@NonNull final LoadParams<String> params,
-                          @NonNull final LoadCallback<String, DataSnapshot> callback) {
+    public void loadAfter(@NonNull final LoadParams<PageKey> params,
+                          @NonNull final LoadCallback<PageKey, DataSnapshot> callback) {
 
         // Set loading state
         mLoadingState.postValue(LoadingState.LOADING_MORE);
-
-        //Load params.requestedLoadSize+1 because, first data item is getting ignored.
-        Query mNewQuery = mQuery.startAt(null, params.key).limitToFirst(params.requestedLoadSize + 1);
+        mRetryScheduler.onLoadStarted();
+
+        //Load params.requestedLoadSize+1 because the cursor item is included in the results.
+        final Query mNewQuery;
+        try {
+            mNewQuery = mOrder.getPageQuery(mQuery, params.key, params.requestedLoadSize);
+        } catch (IllegalArgumentException e) {
+            // The order value of the last item cannot be used as a cursor, retrying won't help
+            Log.w(TAG, "loadAfter", e);
+            setError(DatabaseError.fromException(e));
+            return;
+        }
         mNewQuery.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
                 if (dataSnapshot.exists()) {
 
-                    //Make List of DataSnapshot
-                    List<DataSnapshot> data = new ArrayList<>();
-                    String lastKey = null;
-
-                    Iterator<DataSnapshot> iterator = dataSnapshot.getChildren().iterator();
-
-                    //Skip First Item
-                    if (iterator.hasNext()) {
-                        iterator.next();
-                    }
-
-                    while (iterator.hasNext()) {
-                        DataSnapshot snapshot = iterator.next();
-                        data.add(snapshot);
-                    }
+                    //Make List of DataSnapshot, in display order and without the cursor item
+                    List<DataSnapshot> data = mOrder.getPage(dataSnapshot, params.key);
+                    PageKey lastKey = null;
 
                     //Update State
+                    mRetryScheduler.onLoadSucceeded();
                     mLoadingState.postValue(LoadingState.LOADED);
                     mRetryRunnable = null;
 
@@ -152,6 +261,8 @@ public class FirebaseDataSource extends PageKeyedDataSource<String, DataSnapshot
                     }
 
                     callback.onResult(data, lastKey);
+                    recordPage(params.key, params.requestedLoadSize, data);
+                    revalidatePage(mNewQuery, params.key, params.requestedLoadSize, data);
 
                 } else {
                     mRetryRunnable = getRetryLoadAfter(params, callback);
@@ -162,15 +273,170 @@ public class FirebaseDataSource extends PageKeyedDataSource<String, DataSnapshot
 
             @Override
             public void onCancelled(@NonNull DatabaseError databaseError) {
-                mRetryRunnable = getRetryLoadAfter(params, callback);
-                setError(databaseError);
+                onLoadCancelled(getRetryLoadAfter(params, callback), databaseError);
             }
         });
     }
 
+    /**
+     * Answer the initial load with every page of the previous data source, so that the adapter
+     * diffs the whole list instead of collapsing back to the first page.
+     */
+    private void loadHandedOverPages(@NonNull List<PageStore.Page> pages,
+                                     @NonNull LoadInitialCallback<PageKey, DataSnapshot> callback) {
+        List<DataSnapshot> data = new ArrayList<>();
+        for (PageStore.Page page : pages) {
+            data.addAll(page.mData);
+            recordPage(page.mCursor, page.mSize, page.mData);
+        }
+
+        // An empty last page means the end of the query was reached
+        PageKey lastKey = pages.get(pages.size() - 1).mData.isEmpty()
+                ? null : getLastPageKey(data);
+
+        mLoadingState.postValue(LoadingState.LOADED);
+        if (lastKey == null) {
+            mLoadingState.postValue(LoadingState.FINISHED);
+        }
+        callback.onResult(data, lastKey, lastKey);
+
+        // Pages which are still stale keep syncing, their listeners start from the handed data
+        for (PageStore.Page page : pages) {
+            Query pageQuery = page.mCursor == null
+                    ? mOrder.getInitialQuery(mQuery, page.mSize)
+                    : mOrder.getPageQuery(mQuery, page.mCursor, page.mSize);
+            revalidatePage(pageQuery, page.mCursor, page.mSize, page.mData);
+        }
+    }
+
+    private void recordPage(@Nullable PageKey cursor,
+                            int size,
+                            @NonNull List<DataSnapshot> data) {
+        synchronized (mLoadedPages) {
+            mLoadedPages.put(getPageId(cursor, size), new PageStore.Page(cursor, size, data));
+        }
+    }
+
+    /**
+     * A page changed on the server: hand every loaded page, with the new data, to the next data
+     * source and invalidate this one. The adapter then only applies the differences.
+     */
+    private void onPageChanged(@NonNull String pageId, @NonNull List<DataSnapshot> data) {
+        synchronized (mLoadedPages) {
+            if (isInvalid()) {
+                return;
+            }
+
+            PageStore.Page page = mLoadedPages.get(pageId);
+            if (page != null) {
+                mLoadedPages.put(pageId, new PageStore.Page(page.mCursor, page.mSize, data));
+            }
+            mPageStore.put(new ArrayList<>(mLoadedPages.values()));
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Pages are answered from the Realtime Database disk cache when persistence is enabled. If the
+     * page was not refreshed within the cache's maximum age, keep a listener on its query so the
+     * database syncs it in the background, and invalidate this data source if the server data
+     * differs from what was displayed.
+     */
+    private void revalidatePage(@NonNull Query pageQuery,
+                                @Nullable PageKey cursor,
+                                int size,
+                                @NonNull List<DataSnapshot> displayed) {
+        if (mPageCache == null) {
+            return;
+        }
+
+        String pageId = getPageId(cursor, size);
+        if (mPageCache.isFresh(pageId) || isInvalid()) {
+            return;
+        }
+
+        Revalidation revalidation = new Revalidation(pageQuery, cursor, pageId, displayed);
+        if (mRevalidations.isEmpty() && !mRevalidationPaused) {
+            mConnectedRef.addValueEventListener(mConnectedListener);
+        }
+        mRevalidations.add(revalidation);
+        if (!mRevalidationPaused) {
+            pageQuery.addValueEventListener(revalidation);
+        }
+    }
+
+    /**
+     * Stop syncing a page which was refreshed from the server.
+     */
+    private void stopRevalidating(@NonNull Revalidation revalidation) {
+        revalidation.detach();
+        mRevalidations.remove(revalidation);
+        if (mRevalidations.isEmpty() && !mRevalidationPaused) {
+            detachConnectedListener();
+        }
+    }
+
+    private void stopRevalidating() {
+        pauseRevalidation();
+        mRevalidations.clear();
+    }
+
+    /**
+     * Stop syncing stale pages while the adapter isn't listening. Must be called on the main
+     * thread.
+     */
+    void pauseRevalidation() {
+        if (mRevalidationPaused) {
+            return;
+        }
+        mRevalidationPaused = true;
+
+        for (Revalidation revalidation : mRevalidations) {
+            revalidation.detach();
+        }
+        detachConnectedListener();
+    }
+
+    /**
+     * Sync the stale pages again once the adapter listens again. Must be called on the main
+     * thread.
+     */
+    void resumeRevalidation() {
+        if (!mRevalidationPaused || isInvalid()) {
+            return;
+        }
+        mRevalidationPaused = false;
+
+        if (!mRevalidations.isEmpty()) {
+            mConnectedRef.addValueEventListener(mConnectedListener);
+        }
+        for (Revalidation revalidation : mRevalidations) {
+            revalidation.mQuery.addValueEventListener(revalidation);
+        }
+    }
+
+    private void detachConnectedListener() {
+        if (mConnectedRef != null) {
+            mConnectedRef.removeEventListener(mConnectedListener);
+        }
+        mConnected = false;
+    }
+
+    /**
+     * Identifies a page across data sources and app restarts, from public parts of the query
+     * only since the id is persisted.
+     */
+    @NonNull
+    private String getPageId(@Nullable PageKey key, int size) {
+        String cursor = key == null ? null : key.getValue() + "|" + key.getKey();
+        // The URL holds the database as well as the location of the query
+        return mQuery.getRef().toString() + "|" + mOrder + "|" + size + "|" + cursor;
+    }
+
     @NonNull
-    private Runnable getRetryLoadAfter(@NonNull final LoadParams<String> params,
-                                       @NonNull final LoadCallback<String, DataSnapshot> callback) {
+    private Runnable getRetryLoadAfter(@NonNull final LoadParams<PageKey> params,
+                                       @NonNull final LoadCallback<PageKey, DataSnapshot> callback) {
         return new Runnable() {
             @Override
             public void run() {
@@ -180,8 +446,8 @@ public class FirebaseDataSource extends PageKeyedDataSource<String, DataSnapshot
     }
 
     @NonNull
-    private Runnable getRetryLoadInitial(@NonNull final LoadInitialParams<String> params,
-                                         @NonNull final LoadInitialCallback<String, DataSnapshot> callback) {
+    private Runnable getRetryLoadInitial(@NonNull final LoadInitialParams<PageKey> params,
+                                         @NonNull final LoadInitialCallback<PageKey, DataSnapshot> callback) {
         return new Runnable() {
             @Override
             public void run() {
@@ -202,16 +468,17 @@ public class FirebaseDataSource extends PageKeyedDataSource<String, DataSnapshot
             return;
         }
 
+        mRetryScheduler.reset();
         mRetryRunnable.run();
     }
 
 
     @Nullable
-    private String getLastPageKey(@NonNull List<DataSnapshot> data) {
+    private PageKey getLastPageKey(@NonNull List<DataSnapshot> data) {
         if (data.isEmpty()) {
             return null;
         } else {
-            return data.get(data.size() - 1).getKey();
+            return mOrder.getKey(data.get(data.size() - 1));
         }
     }
 
@@ -229,11 +496,125 @@ public class FirebaseDataSource extends PageKeyedDataSource<String, DataSnapshot
         mLoadingState.postValue(LoadingState.ERROR);
     }
 
+    /**
+     * Schedules an automatic retry if the {@link RetryPolicy} allows it, otherwise sets the error
+     * state and sets up manual retry.
+     */
+    private void onLoadCancelled(@NonNull Runnable retryRunnable,
+                                 @NonNull DatabaseError databaseError) {
+        // Stay in the loading state while an automatic retry is pending
+        if (mRetryScheduler.onLoadFailed(retryRunnable)) {
+            return;
+        }
+
+        mRetryRunnable = retryRunnable;
+        setError(databaseError);
+    }
+
     private void setError(DatabaseError databaseError){
         mError.postValue(databaseError);
         mLoadingState.postValue(LoadingState.ERROR);
     }
 
+    /**
+     * Background listener on a page answered from the disk cache.
+     */
+    private class Revalidation implements ValueEventListener {
+
+        private final Query mQuery;
+        private final PageKey mCursor;
+        private final String mPageId;
+        private final List<DataSnapshot> mDisplayed;
+        private boolean mSawData;
+
+        /**
+         * Marks the page refreshed once it has synced with the server for long enough.
+         */
+        private final Runnable mMarkFresh = new Runnable() {
+            @Override
+            public void run() {
+                if (mConnected && !isInvalid()) {
+                    mPageCache.markFresh(mPageId);
+                    stopRevalidating(Revalidation.this);
+                }
+            }
+        };
+
+        Revalidation(@NonNull Query query,
+                     @Nullable PageKey cursor,
+                     @NonNull String pageId,
+                     @NonNull List<DataSnapshot> displayed) {
+            mQuery = query;
+            mCursor = cursor;
+            mPageId = pageId;
+            mDisplayed = displayed;
+        }
+
+        @Override
+        public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            boolean fresh = false;
+            if (!mSawData) {
+                // With persistence enabled the first event is answered from the disk cache, even
+                // while connected
+                mSawData = true;
+                scheduleMarkFresh();
+            } else if (mConnected) {
+                // Later events come from the server
+                mHandler.removeCallbacks(mMarkFresh);
+                mPageCache.markFresh(mPageId);
+                fresh = true;
+            }
+
+            List<DataSnapshot> page = mOrder.getPage(dataSnapshot, mCursor);
+            if (!isSamePage(page)) {
+                onPageChanged(mPageId, page);
+            } else if (fresh) {
+                stopRevalidating(this);
+            }
+        }
+
+        void detach() {
+            mQuery.removeEventListener(this);
+            mHandler.removeCallbacks(mMarkFresh);
+            // Listening again starts with the cached page
+            mSawData = false;
+        }
+
+        void scheduleMarkFresh() {
+            mHandler.removeCallbacks(mMarkFresh);
+            if (mConnected) {
+                mHandler.postDelayed(mMarkFresh, SERVER_SYNC_MILLIS);
+            }
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError databaseError) {
+            // The cached page stays on screen
+            Log.w(TAG, "revalidate:onCancelled", databaseError.toException());
+        }
+
+        private boolean isSamePage(@NonNull List<DataSnapshot> page) {
+            if (page.size() != mDisplayed.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < mDisplayed.size(); i++) {
+                DataSnapshot displayed = mDisplayed.get(i);
+                DataSnapshot current = page.get(i);
+                Object displayedValue = displayed.getValue(true);
+                Object currentValue = current.getValue(true);
+
+                if (!displayed.getKey().equals(current.getKey())
+                        || (displayedValue == null
+                        ? currentValue != null : !displayedValue.equals(currentValue))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
     @NonNull
     public LiveData<LoadingState> getLoadingState() {
         return mLoadingState;
@@ -244,4 +625,12 @@ public class FirebaseDataSource extends PageKeyedDataSource<String, DataSnapshot
         return mError;
     }
 
+    /**
+     * Retry counts and load latencies, updated as loads complete or retries are scheduled.
+     */
+    @NonNull
+    public LiveData<LoadStats> getLoadStats() {
+        return mLoadStats;
+    }
+
 }
@@ -2,6 +2,7 @@ package com.firebase.ui.database.paging;
 
 import android.util.Log;
 
+import com.firebase.ui.common.LoadStats;
 import com.firebase.ui.database.SnapshotParser;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
@@ -36,6 +37,7 @@ public abstract class FirebaseRecyclerPagingAdapter<T, VH extends RecyclerView.V
     private LiveData<PagedList<DataSnapshot>> mPagedList;
     private LiveData<LoadingState> mLoadingState;
     private LiveData<DatabaseError> mDatabaseError;
+    private LiveData<LoadStats> mLoadStats;
     private LiveData<FirebaseDataSource> mDataSource;
 
 
@@ -73,6 +75,18 @@ public abstract class FirebaseRecyclerPagingAdapter<T, VH extends RecyclerView.V
         }
     };
 
+    //LoadStats Observer
+    private final Observer<LoadStats> mStatsObserver = new Observer<LoadStats>() {
+        @Override
+        public void onChanged(@Nullable LoadStats stats) {
+            if (stats == null) {
+                return;
+            }
+
+            onLoadStatsChanged(stats);
+        }
+    };
+
     //DatabaseError Observer
     private final Observer<DatabaseError> mErrorObserver = new Observer<DatabaseError>() {
         @Override
@@ -127,6 +141,16 @@ public abstract class FirebaseRecyclerPagingAdapter<T, VH extends RecyclerView.V
                     }
                 });
 
+        //Init Load Stats
+        mLoadStats = Transformations.switchMap(mPagedList,
+                new Function<PagedList<DataSnapshot>, LiveData<LoadStats>>() {
+                    @Override
+                    public LiveData<LoadStats> apply(PagedList<DataSnapshot> input) {
+                        FirebaseDataSource dataSource = (FirebaseDataSource) input.getDataSource();
+                        return dataSource.getLoadStats();
+                    }
+                });
+
         mParser = mOptions.getParser();
 
         if (mOptions.getOwner() != null) {
@@ -191,6 +215,12 @@ public abstract class FirebaseRecyclerPagingAdapter<T, VH extends RecyclerView.V
         mLoadingState.observeForever(mStateObserver);
         mDatabaseError.observeForever(mErrorObserver);
         mDataSource.observeForever(mDataSourceObserver);
+        mLoadStats.observeForever(mStatsObserver);
+
+        FirebaseDataSource source = mDataSource.getValue();
+        if (source != null) {
+            source.resumeRevalidation();
+        }
     }
 
     /**
@@ -199,10 +229,17 @@ public abstract class FirebaseRecyclerPagingAdapter<T, VH extends RecyclerView.V
      */
     @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
     public void stopListening() {
+        // Stale pages stop syncing with the server until the adapter listens again
+        FirebaseDataSource source = mDataSource.getValue();
+        if (source != null) {
+            source.pauseRevalidation();
+        }
+
         mPagedList.removeObserver(mDataObserver);
         mLoadingState.removeObserver(mStateObserver);
         mDatabaseError.removeObserver(mErrorObserver);
         mDataSource.removeObserver(mDataSourceObserver);
+        mLoadStats.removeObserver(mStatsObserver);
     }
 
     @Override
@@ -224,6 +261,16 @@ public abstract class FirebaseRecyclerPagingAdapter<T, VH extends RecyclerView.V
      */
     protected abstract void onLoadingStateChanged(@NonNull LoadingState state);
 
+    /**
+     * Called whenever a page load completes or an automatic retry is scheduled, with the retry
+     * counts and latencies of the current data source.
+     *
+     * @see DatabasePagingOptions.Builder#setRetryPolicy
+     */
+    protected void onLoadStatsChanged(@NonNull LoadStats stats) {
+        // For overriding
+    }
+
     /**
      * Called whenever the {@link DatabaseError} is caught.
      *
@@ -0,0 +1,66 @@
+package com.firebase.ui.database.paging;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.AsyncTask;
+
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Remembers when each page of a paged query was last refreshed from the server, so that pages
+ * served from the Realtime Database disk cache are only refreshed once they are older than the
+ * configured maximum age.
+ *
+ * The page data itself lives in the Realtime Database persistence layer, which must be enabled
+ * with {@code FirebaseDatabase#setPersistenceEnabled(true)}.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class PageCache {
+
+    private static final String PREFS_NAME = "com.firebase.ui.database.paging.PageCache";
+
+    private final SharedPreferences mPrefs;
+    private final long mMaxAgeMillis;
+
+    public PageCache(@NonNull Context context, long maxAgeMillis) {
+        mPrefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mMaxAgeMillis = maxAgeMillis;
+
+        // Reading every record would block the main thread, where the options are built
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                pruneExpired();
+            }
+        });
+    }
+
+    public boolean isFresh(@NonNull String pageId) {
+        long refreshed = mPrefs.getLong(pageId, 0);
+        return System.currentTimeMillis() - refreshed < mMaxAgeMillis;
+    }
+
+    public void markFresh(@NonNull String pageId) {
+        mPrefs.edit().putLong(pageId, System.currentTimeMillis()).apply();
+    }
+
+    /**
+     * Drop the records of pages which would be refreshed anyway, so the store stays bounded by
+     * the pages viewed within the maximum age.
+     */
+    private void pruneExpired() {
+        long now = System.currentTimeMillis();
+        SharedPreferences.Editor editor = mPrefs.edit();
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            Object refreshed = entry.getValue();
+            if (!(refreshed instanceof Long) || now - (Long) refreshed >= mMaxAgeMillis) {
+                editor.remove(entry.getKey());
+            }
+        }
+        editor.apply();
+    }
+}
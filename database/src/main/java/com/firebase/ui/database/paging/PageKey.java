@@ -0,0 +1,42 @@
+package com.firebase.ui.database.paging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Key for Realtime Database pagination. Holds the order value and key of the last item of a page.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class PageKey {
+
+    private final Object mValue;
+    private final String mKey;
+
+    public PageKey(@Nullable Object value, @NonNull String key) {
+        mValue = value;
+        mKey = key;
+    }
+
+    /**
+     * The order value, or null when ordering by key.
+     */
+    @Nullable
+    public Object getValue() {
+        return mValue;
+    }
+
+    @NonNull
+    public String getKey() {
+        return mKey;
+    }
+
+    @Override
+    @NonNull
+    public String toString() {
+        return "PageKey{" +
+                "value=" + mValue +
+                ", key=" + mKey +
+                '}';
+    }
+}
@@ -0,0 +1,197 @@
+package com.firebase.ui.database.paging;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Describes how the query passed to {@link DatabasePagingOptions} is ordered, so that pages can
+ * be requested with compound (order value, key) cursors.
+ *
+ * The order must match the {@code orderBy*()} clause of the query, or be {@link #byPriority()}
+ * for a query without one. Use {@link #descending()} to page from the end of the query, for
+ * example for newest-first feeds.
+ */
+public final class PageOrder {
+
+    private enum Type {
+        KEY, CHILD, VALUE, PRIORITY
+    }
+
+    private final Type mType;
+    private final String mPath;
+    private final boolean mDescending;
+
+    private PageOrder(@NonNull Type type, @Nullable String path, boolean descending) {
+        mType = type;
+        mPath = path;
+        mDescending = descending;
+    }
+
+    /**
+     * Order matching {@link Query#orderByKey()}.
+     */
+    @NonNull
+    public static PageOrder byKey() {
+        return new PageOrder(Type.KEY, null, false);
+    }
+
+    /**
+     * Order matching {@link Query#orderByChild(String)} with the same path.
+     */
+    @NonNull
+    public static PageOrder byChild(@NonNull String path) {
+        return new PageOrder(Type.CHILD, path, false);
+    }
+
+    /**
+     * Order matching {@link Query#orderByValue()}.
+     */
+    @NonNull
+    public static PageOrder byValue() {
+        return new PageOrder(Type.VALUE, null, false);
+    }
+
+    /**
+     * Order matching {@link Query#orderByPriority()}, which is also the order of a query without
+     * an {@code orderBy*()} clause. This is the default.
+     */
+    @NonNull
+    public static PageOrder byPriority() {
+        return new PageOrder(Type.PRIORITY, null, false);
+    }
+
+    /**
+     * The same order, paged from the last item of the query backwards.
+     */
+    @NonNull
+    public PageOrder descending() {
+        return new PageOrder(mType, mPath, true);
+    }
+
+    public boolean isDescending() {
+        return mDescending;
+    }
+
+    @NonNull
+    Query getInitialQuery(@NonNull Query baseQuery, int size) {
+        return mDescending ? baseQuery.limitToLast(size) : baseQuery.limitToFirst(size);
+    }
+
+    /**
+     * Query for the page following the given cursor. The cursor item itself is included in the
+     * results, so one extra item is requested.
+     */
+    @NonNull
+    Query getPageQuery(@NonNull Query baseQuery, @NonNull PageKey key, int size) {
+        if (mDescending) {
+            return endAt(baseQuery, key).limitToLast(size + 1);
+        } else {
+            return startAt(baseQuery, key).limitToFirst(size + 1);
+        }
+    }
+
+    /**
+     * Convert the children of a query result into display order, dropping the cursor item if it
+     * is still present.
+     */
+    @NonNull
+    List<DataSnapshot> getPage(@NonNull DataSnapshot result, @Nullable PageKey cursor) {
+        List<DataSnapshot> data = new ArrayList<>();
+        for (DataSnapshot snapshot : result.getChildren()) {
+            data.add(snapshot);
+        }
+
+        if (mDescending) {
+            Collections.reverse(data);
+        }
+
+        if (cursor != null && !data.isEmpty() && cursor.getKey().equals(data.get(0).getKey())) {
+            data.remove(0);
+        }
+
+        return data;
+    }
+
+    @NonNull
+    PageKey getKey(@NonNull DataSnapshot snapshot) {
+        Object value;
+        switch (mType) {
+            case CHILD:
+                value = snapshot.child(mPath).getValue();
+                break;
+            case VALUE:
+                value = snapshot.getValue();
+                break;
+            case PRIORITY:
+                value = snapshot.getPriority();
+                break;
+            default:
+                value = null;
+        }
+
+        return new PageKey(value, snapshot.getKey());
+    }
+
+    @NonNull
+    private Query startAt(@NonNull Query query, @NonNull PageKey key) {
+        if (mType == Type.KEY) {
+            return query.startAt(key.getKey());
+        }
+
+        Object value = key.getValue();
+        if (value == null) {
+            return query.startAt((String) null, key.getKey());
+        } else if (value instanceof String) {
+            return query.startAt((String) value, key.getKey());
+        } else if (value instanceof Boolean) {
+            return query.startAt((Boolean) value, key.getKey());
+        } else if (value instanceof Number) {
+            return query.startAt(((Number) value).doubleValue(), key.getKey());
+        }
+
+        throw new IllegalArgumentException(getUnsupportedValueMessage(key));
+    }
+
+    @NonNull
+    private Query endAt(@NonNull Query query, @NonNull PageKey key) {
+        if (mType == Type.KEY) {
+            return query.endAt(key.getKey());
+        }
+
+        Object value = key.getValue();
+        if (value == null) {
+            return query.endAt((String) null, key.getKey());
+        } else if (value instanceof String) {
+            return query.endAt((String) value, key.getKey());
+        } else if (value instanceof Boolean) {
+            return query.endAt((Boolean) value, key.getKey());
+        } else if (value instanceof Number) {
+            return query.endAt(((Number) value).doubleValue(), key.getKey());
+        }
+
+        throw new IllegalArgumentException(getUnsupportedValueMessage(key));
+    }
+
+    @NonNull
+    private static String getUnsupportedValueMessage(@NonNull PageKey key) {
+        return "Cannot page past " + key + ": only string, number and boolean order values " +
+                "can be used as cursors.";
+    }
+
+    @Override
+    @NonNull
+    public String toString() {
+        return "PageOrder{" +
+                "type=" + mType +
+                ", path=" + mPath +
+                ", descending=" + mDescending +
+                '}';
+    }
+}
@@ -0,0 +1,50 @@
+package com.firebase.ui.database.paging;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Hands the pages one {@link FirebaseDataSource} loaded to the next data source created by the
+ * same factory, so that an invalidation caused by fresh server data reloads the whole list at
+ * once. The adapter then diffs the new list against the old one and keeps its scroll position.
+ *
+ * Only the pages of the latest invalidated data source are held, and they are handed out at most
+ * once.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class PageStore {
+
+    private List<Page> mPages;
+
+    public synchronized void put(@NonNull List<Page> pages) {
+        mPages = new ArrayList<>(pages);
+    }
+
+    @Nullable
+    public synchronized List<Page> take() {
+        List<Page> pages = mPages;
+        mPages = null;
+        return pages;
+    }
+
+    /**
+     * A loaded page, with the cursor and size it was requested with.
+     */
+    public static final class Page {
+        final PageKey mCursor;
+        final int mSize;
+        final List<DataSnapshot> mData;
+
+        public Page(@Nullable PageKey cursor, int size, @NonNull List<DataSnapshot> data) {
+            mCursor = cursor;
+            mSize = size;
+            mData = data;
+        }
+    }
+}
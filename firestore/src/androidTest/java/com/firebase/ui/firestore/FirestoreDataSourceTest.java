@@ -1,10 +1,15 @@
 package com.firebase.ui.firestore;
 
+import com.firebase.ui.common.RetryPolicy;
 import com.firebase.ui.firestore.paging.FirestoreDataSource;
 import com.firebase.ui.firestore.paging.LoadingState;
 import com.firebase.ui.firestore.paging.PageKey;
+import com.firebase.ui.firestore.paging.PageStore;
 import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.Source;
@@ -13,30 +18,40 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 import androidx.annotation.Nullable;
 import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
 import androidx.lifecycle.Observer;
+import androidx.paging.DataSource;
 import androidx.paging.PageKeyedDataSource;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(AndroidJUnit4.class)
 public class FirestoreDataSourceTest {
 
     private FirestoreDataSource mDataSource;
+    private PageStore mPageStore;
 
     /**
      * Needed to run tasks on the main thread so observeForever() doesn't throw.
@@ -47,6 +62,7 @@ public class FirestoreDataSourceTest {
     @Mock Query mMockQuery;
     @Mock PageKeyedDataSource.LoadInitialCallback<PageKey, DocumentSnapshot> mInitialCallback;
     @Mock PageKeyedDataSource.LoadCallback<PageKey, DocumentSnapshot> mAfterCallback;
+    @Mock ListenerRegistration mRegistration;
 
     @Before
     public void setUp() {
@@ -158,9 +174,219 @@ public class FirestoreDataSourceTest {
                 Arrays.asList(LoadingState.ERROR, LoadingState.LOADING_MORE, LoadingState.LOADED));
     }
 
+    @Test
+    public void testLoadAfter_automaticRetry() throws Exception {
+        RetryPolicy policy = new RetryPolicy.Builder()
+                .setMaxAttempts(1)
+                .setBackoff(0, 0)
+                .build();
+        mDataSource = new FirestoreDataSource(mMockQuery, Source.DEFAULT, policy);
+
+        QuerySnapshot mockSnapshot = mock(QuerySnapshot.class);
+        when(mockSnapshot.getDocuments()).thenReturn(new ArrayList<DocumentSnapshot>());
+        when(mMockQuery.get(Source.DEFAULT)).thenReturn(
+                Tasks.<QuerySnapshot>forException(new Exception("Transient failure.")),
+                Tasks.forResult(mockSnapshot));
+
+        TestObserver<LoadingState> observer = new TestObserver<>(3);
+        mDataSource.getLoadingState().observeForever(observer);
+
+        PageKey pageKey = new PageKey(null, null);
+        PageKeyedDataSource.LoadParams<PageKey> params =
+                new PageKeyedDataSource.LoadParams<>(pageKey, 20);
+        mDataSource.loadAfter(params, mAfterCallback);
+
+        // The failure is retried without ever surfacing the ERROR state
+        observer.await();
+        observer.assertResults(Arrays.asList(
+                LoadingState.LOADING_MORE, LoadingState.LOADING_MORE, LoadingState.LOADED));
+    }
+
+    @Test
+    public void testStaleWhileRevalidate_unchanged() throws Exception {
+        DocumentReference ref = mock(DocumentReference.class);
+        List<DocumentSnapshot> cached = Collections.singletonList(mockDocument(ref, "a"));
+        List<DocumentSnapshot> fresh = Collections.singletonList(mockDocument(ref, "a"));
+        mockStaleWhileRevalidate(cached, fresh);
+
+        TestObserver<LoadingState> observer = new TestObserver<>(2);
+        mDataSource.getLoadingState().observeForever(observer);
+
+        PageKeyedDataSource.LoadInitialParams<PageKey> params =
+                new PageKeyedDataSource.LoadInitialParams<>(20, false);
+        mDataSource.loadInitial(params, mInitialCallback);
+
+        // Answered from the cache, and the server agrees
+        observer.await();
+        observer.assertResults(Arrays.asList(LoadingState.LOADING_INITIAL, LoadingState.LOADED));
+        assertFalse(mDataSource.isInvalid());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate_changed() throws Exception {
+        DocumentReference ref = mock(DocumentReference.class);
+        List<DocumentSnapshot> cached = Collections.singletonList(mockDocument(ref, "a"));
+        List<DocumentSnapshot> fresh = Collections.singletonList(mockDocument(ref, "b"));
+        mockStaleWhileRevalidate(cached, fresh);
+
+        final CountDownLatch invalidated = new CountDownLatch(1);
+        mDataSource.addInvalidatedCallback(new DataSource.InvalidatedCallback() {
+            @Override
+            public void onInvalidated() {
+                invalidated.countDown();
+            }
+        });
+
+        TestObserver<LoadingState> observer = new TestObserver<>(2);
+        mDataSource.getLoadingState().observeForever(observer);
+
+        PageKeyedDataSource.LoadInitialParams<PageKey> params =
+                new PageKeyedDataSource.LoadInitialParams<>(20, false);
+        mDataSource.loadInitial(params, mInitialCallback);
+
+        // Answered from the cache, then invalidated by the server data
+        observer.await();
+        observer.assertResults(Arrays.asList(LoadingState.LOADING_INITIAL, LoadingState.LOADED));
+        invalidated.await();
+        assertTrue(mDataSource.isInvalid());
+
+        // The next data source shows the fresh page without loading or revalidating it again
+        FirestoreDataSource next = new FirestoreDataSource(
+                mMockQuery, Source.DEFAULT, null, true, 0, mPageStore);
+        next.loadInitial(params, mInitialCallback);
+
+        verify(mInitialCallback).onResult(eq(fresh), isNull(PageKey.class), any(PageKey.class));
+        verify(mMockQuery, times(1)).get(Source.CACHE);
+        verify(mMockQuery, times(1)).get(Source.SERVER);
+        assertFalse(next.isInvalid());
+    }
+
+    @Test
+    public void testLivePage_unchanged() throws Exception {
+        DocumentReference ref = mock(DocumentReference.class);
+        List<DocumentSnapshot> loaded = Collections.singletonList(mockDocument(ref, "a"));
+        EventListener<QuerySnapshot> listener = loadLivePage(loaded);
+
+        // The first snapshot of the listener has the documents the page was loaded with
+        listener.onEvent(mockSnapshot(Collections.singletonList(mockDocument(ref, "a"))), null);
+
+        assertFalse(mDataSource.isInvalid());
+    }
+
+    @Test
+    public void testLivePage_changed() throws Exception {
+        DocumentReference ref = mock(DocumentReference.class);
+        List<DocumentSnapshot> loaded = Collections.singletonList(mockDocument(ref, "a"));
+        List<DocumentSnapshot> changed = Collections.singletonList(mockDocument(ref, "b"));
+        EventListener<QuerySnapshot> listener = loadLivePage(loaded);
+
+        listener.onEvent(mockSnapshot(changed), null);
+        assertTrue(mDataSource.isInvalid());
+
+        // The next data source shows the changed page without downloading it again
+        FirestoreDataSource next = new FirestoreDataSource(
+                mMockQuery, Source.DEFAULT, null, false, 1, mPageStore);
+        next.loadInitial(new PageKeyedDataSource.LoadInitialParams<PageKey>(20, false),
+                mInitialCallback);
+
+        verify(mInitialCallback).onResult(eq(changed), isNull(PageKey.class), any(PageKey.class));
+        verify(mMockQuery, times(1)).get(Source.DEFAULT);
+        assertFalse(next.isInvalid());
+    }
+
+    @Test
+    public void testLivePage_pauseAndResume() throws Exception {
+        DocumentReference ref = mock(DocumentReference.class);
+        loadLivePage(Collections.singletonList(mockDocument(ref, "a")));
+
+        mDataSource.pauseLiveUpdates();
+        verify(mRegistration).remove();
+
+        mDataSource.resumeLiveUpdates();
+        verify(mMockQuery, times(2)).addSnapshotListener(any(EventListener.class));
+    }
+
+    @Test
+    public void testLivePage_createdWhilePaused_staysPaused() throws Exception {
+        DocumentReference ref = mock(DocumentReference.class);
+        loadLivePage(Collections.singletonList(mockDocument(ref, "a")));
+        mDataSource.pauseLiveUpdates();
+        mDataSource.invalidate();
+
+        // The next data source is created by the invalidation while the adapter is stopped
+        FirestoreDataSource next = new FirestoreDataSource(
+                mMockQuery, Source.DEFAULT, null, false, 1, mPageStore);
+        TestObserver<LoadingState> observer = new TestObserver<>(2);
+        next.getLoadingState().observeForever(observer);
+        next.loadInitial(new PageKeyedDataSource.LoadInitialParams<PageKey>(20, false),
+                mInitialCallback);
+        observer.await();
+
+        verify(mMockQuery, times(1)).addSnapshotListener(any(EventListener.class));
+
+        next.resumeLiveUpdates();
+        verify(mMockQuery, times(2)).addSnapshotListener(any(EventListener.class));
+    }
+
+    /**
+     * Load a single page with live updates enabled.
+     *
+     * @return the snapshot listener of the page.
+     */
+    @SuppressWarnings("unchecked")
+    private EventListener<QuerySnapshot> loadLivePage(List<DocumentSnapshot> documents)
+            throws InterruptedException {
+        mPageStore = new PageStore();
+        mDataSource = new FirestoreDataSource(
+                mMockQuery, Source.DEFAULT, null, false, 1, mPageStore);
+        mockQuerySuccess(documents);
+        when(mMockQuery.addSnapshotListener(any(EventListener.class))).thenReturn(mRegistration);
+
+        TestObserver<LoadingState> observer = new TestObserver<>(2);
+        mDataSource.getLoadingState().observeForever(observer);
+
+        mDataSource.loadInitial(new PageKeyedDataSource.LoadInitialParams<PageKey>(20, false),
+                mInitialCallback);
+        observer.await();
+
+        ArgumentCaptor<EventListener> captor = ArgumentCaptor.forClass(EventListener.class);
+        verify(mMockQuery).addSnapshotListener(captor.capture());
+        return captor.getValue();
+    }
+
+    private QuerySnapshot mockSnapshot(List<DocumentSnapshot> documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(documents);
+        return snapshot;
+    }
+
+    private void mockStaleWhileRevalidate(List<DocumentSnapshot> cached,
+                                          List<DocumentSnapshot> fresh) {
+        mPageStore = new PageStore();
+        mDataSource = new FirestoreDataSource(
+                mMockQuery, Source.DEFAULT, null, true, 0, mPageStore);
+
+        QuerySnapshot cachedSnapshot = mock(QuerySnapshot.class);
+        when(cachedSnapshot.getDocuments()).thenReturn(cached);
+        when(cachedSnapshot.isEmpty()).thenReturn(cached.isEmpty());
+        when(mMockQuery.get(Source.CACHE)).thenReturn(Tasks.forResult(cachedSnapshot));
+
+        QuerySnapshot freshSnapshot = mock(QuerySnapshot.class);
+        when(freshSnapshot.getDocuments()).thenReturn(fresh);
+        when(mMockQuery.get(Source.SERVER)).thenReturn(Tasks.forResult(freshSnapshot));
+    }
+
+    private DocumentSnapshot mockDocument(DocumentReference ref, Object value) {
+        DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+        when(snapshot.getReference()).thenReturn(ref);
+        when(snapshot.getData()).thenReturn(Collections.singletonMap("value", value));
+        return snapshot;
+    }
+
     private void initMockQuery() {
         when(mMockQuery.startAfter(any())).thenReturn(mMockQuery);
         when(mMockQuery.endBefore(any())).thenReturn(mMockQuery);
+        when(mMockQuery.endAt(any())).thenReturn(mMockQuery);
         when(mMockQuery.limit(anyLong())).thenReturn(mMockQuery);
     }
 
@@ -0,0 +1,142 @@
+package com.firebase.ui.firestore;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.firebase.ui.firestore.paging.FirestoreDataSource;
+import com.firebase.ui.firestore.paging.FirestorePagingAdapter;
+import com.firebase.ui.firestore.paging.FirestorePagingOptions;
+import com.firebase.ui.firestore.paging.PageStore;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.MutableLiveData;
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class FirestorePagingAdapterTest {
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Needed to run tasks on the main thread so observeForever() doesn't throw.
+     */
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    @Mock Query mMockQuery;
+    @Mock ListenerRegistration mRegistration;
+
+    private FirestorePagingAdapter<String, RecyclerView.ViewHolder> mAdapter;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        DocumentSnapshot document = mock(DocumentSnapshot.class);
+        when(document.getReference()).thenReturn(mock(DocumentReference.class));
+        List<DocumentSnapshot> documents = Collections.singletonList(document);
+
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(documents);
+
+        when(mMockQuery.limit(anyLong())).thenReturn(mMockQuery);
+        when(mMockQuery.endAt(any())).thenReturn(mMockQuery);
+        when(mMockQuery.get(Source.DEFAULT)).thenReturn(Tasks.forResult(snapshot));
+        when(mMockQuery.addSnapshotListener(any(EventListener.class))).thenReturn(mRegistration);
+
+        FirestoreDataSource dataSource = new FirestoreDataSource(
+                mMockQuery, Source.DEFAULT, null, false, 1, new PageStore());
+        PagedList<DocumentSnapshot> list = new PagedList.Builder<>(dataSource, 20)
+                .setFetchExecutor(DIRECT_EXECUTOR)
+                .setNotifyExecutor(DIRECT_EXECUTOR)
+                .build();
+
+        MutableLiveData<PagedList<DocumentSnapshot>> data = new MutableLiveData<>();
+        data.setValue(list);
+
+        FirestorePagingOptions<String> options = new FirestorePagingOptions.Builder<String>()
+                .setData(data, new SnapshotParser<String>() {
+                    @NonNull
+                    @Override
+                    public String parseSnapshot(@NonNull DocumentSnapshot snapshot) {
+                        return snapshot.toString();
+                    }
+                })
+                .build();
+
+        mAdapter = new FirestorePagingAdapter<String, RecyclerView.ViewHolder>(options) {
+            @Override
+            protected void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder,
+                                            int position,
+                                            @NonNull String model) {
+            }
+
+            @NonNull
+            @Override
+            public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent,
+                                                              int viewType) {
+                return new RecyclerView.ViewHolder(new View(parent.getContext())) {};
+            }
+        };
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStopListening_pausesLivePages() {
+        mAdapter.startListening();
+
+        // The loaded page starts listening once its documents arrive
+        verify(mMockQuery, timeout(5000)).addSnapshotListener(any(EventListener.class));
+
+        mAdapter.stopListening();
+        verify(mRegistration).remove();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStartListening_resumesLivePages() {
+        mAdapter.startListening();
+        verify(mMockQuery, timeout(5000)).addSnapshotListener(any(EventListener.class));
+
+        mAdapter.stopListening();
+        mAdapter.startListening();
+
+        verify(mMockQuery, times(2)).addSnapshotListener(any(EventListener.class));
+    }
+}
@@ -2,14 +2,26 @@ package com.firebase.ui.firestore.paging;
 
 import android.util.Log;
 
+import com.firebase.ui.common.LoadStats;
+import com.firebase.ui.common.RetryPolicy;
+import com.firebase.ui.common.RetryScheduler;
+import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.Source;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -35,30 +47,113 @@ public class FirestoreDataSource extends PageKeyedDataSource<PageKey, DocumentSn
 
         private final Query mQuery;
         private final Source mSource;
+        private final RetryPolicy mRetryPolicy;
+        private final boolean mStaleWhileRevalidate;
+        private final int mMaxLivePages;
+        private final PageStore mPageStore = new PageStore();
 
         public Factory(@NonNull Query query, @NonNull Source source) {
+            this(query, source, null, false, 0);
+        }
+
+        public Factory(@NonNull Query query,
+                       @NonNull Source source,
+                       @Nullable RetryPolicy retryPolicy,
+                       boolean staleWhileRevalidate,
+                       int maxLivePages) {
             mQuery = query;
             mSource = source;
+            mRetryPolicy = retryPolicy;
+            mStaleWhileRevalidate = staleWhileRevalidate;
+            mMaxLivePages = maxLivePages;
         }
 
         @Override
         @NonNull
         public DataSource<PageKey, DocumentSnapshot> create() {
-            return new FirestoreDataSource(mQuery, mSource);
+            return new FirestoreDataSource(mQuery,
+                    mSource,
+                    mRetryPolicy,
+                    mStaleWhileRevalidate,
+                    mMaxLivePages,
+                    mPageStore);
         }
     }
 
     private final MutableLiveData<LoadingState> mLoadingState = new MutableLiveData<>();
     private final MutableLiveData<Exception> mException = new MutableLiveData<>();
+    private final MutableLiveData<LoadStats> mLoadStats = new MutableLiveData<>();
 
     private final Query mBaseQuery;
     private final Source mSource;
+    private final RetryScheduler mRetryScheduler;
+    private final boolean mStaleWhileRevalidate;
+    private final int mMaxLivePages;
+    private final PageStore mPageStore;
+
+    /**
+     * Most recently loaded pages, in load order, which are kept up to date with snapshot
+     * listeners. Guarded by itself, as is the rest of the page bookkeeping below, since pages
+     * handed over by the {@link PageStore} are added on the paging thread.
+     */
+    private final LinkedHashMap<String, LivePage> mLivePages = new LinkedHashMap<>();
+    private boolean mLiveUpdatesPaused;
+
+    /**
+     * Every page loaded so far, in load order, with its latest known documents.
+     */
+    private final LinkedHashMap<String, PageStore.Page> mLoadedPages = new LinkedHashMap<>();
+    private int mPendingRevalidations;
+    private boolean mPagesChanged;
 
     private Runnable mRetryRunnable;
 
     public FirestoreDataSource(@NonNull Query baseQuery, @NonNull Source source) {
+        this(baseQuery, source, null);
+    }
+
+    public FirestoreDataSource(@NonNull Query baseQuery,
+                               @NonNull Source source,
+                               @Nullable RetryPolicy retryPolicy) {
+        this(baseQuery, source, retryPolicy, false, 0, new PageStore());
+    }
+
+    /**
+     * @param staleWhileRevalidate answer each page from the local cache first, then fetch the
+     *                             same page from the server and invalidate this data source if
+     *                             the server has different data.
+     * @param maxLivePages         number of most recently loaded pages to keep up to date with
+     *                             snapshot listeners, 0 to disable live updates.
+     * @param pageStore            pages fetched from the server and whether live updates are
+     *                             paused, shared with the other data sources of the same factory.
+     */
+    public FirestoreDataSource(@NonNull Query baseQuery,
+                               @NonNull Source source,
+                               @Nullable RetryPolicy retryPolicy,
+                               boolean staleWhileRevalidate,
+                               int maxLivePages,
+                               @NonNull PageStore pageStore) {
         mBaseQuery = baseQuery;
         mSource = source;
+        mStaleWhileRevalidate = staleWhileRevalidate;
+        mMaxLivePages = maxLivePages;
+        mPageStore = pageStore;
+        // Created by an invalidation while the adapter is stopped, stay paused until it restarts
+        mLiveUpdatesPaused = pageStore.isLiveUpdatesPaused();
+        mRetryScheduler = new RetryScheduler(retryPolicy, new RetryScheduler.Listener() {
+            @Override
+            public void onStatsChanged(@NonNull LoadStats stats) {
+                mLoadStats.postValue(stats);
+            }
+        });
+
+        addInvalidatedCallback(new InvalidatedCallback() {
+            @Override
+            public void onInvalidated() {
+                mRetryScheduler.cancel();
+                stopLivePages();
+            }
+        });
     }
 
     @Override
@@ -68,16 +163,25 @@ public class FirestoreDataSource extends PageKeyedDataSource<PageKey, DocumentSn
         // Set initial loading state
         mLoadingState.postValue(LoadingState.LOADING_INITIAL);
 
-        mBaseQuery.limit(params.requestedLoadSize)
-                .get(mSource)
-                .addOnSuccessListener(new OnLoadSuccessListener() {
+        // The previous data source was invalidated by fresh data, show all of its pages at once
+        List<PageStore.Page> pages = mPageStore.take();
+        if (pages != null && loadHandedOverPages(pages, callback)) {
+            return;
+        }
+
+        mRetryScheduler.onLoadStarted();
+
+        PageKey key = new PageKey(null, null);
+        loadPage(mBaseQuery.limit(params.requestedLoadSize),
+                key.getPageId(),
+                new OnLoadSuccessListener(key) {
                     @Override
-                    protected void setResult(@NonNull QuerySnapshot snapshot) {
-                        PageKey nextPage = getNextPageKey(snapshot);
-                        callback.onResult(snapshot.getDocuments(), null, nextPage);
+                    protected void setResult(@NonNull List<DocumentSnapshot> documents) {
+                        PageKey nextPage = getNextPageKey(documents);
+                        callback.onResult(documents, null, nextPage);
                     }
-                })
-                .addOnFailureListener(new OnLoadFailureListener() {
+                },
+                new OnLoadFailureListener() {
                     @Override
                     protected Runnable getRetryRunnable() {
                         return getRetryLoadInitial(params, callback);
@@ -103,17 +207,18 @@ public class FirestoreDataSource extends PageKeyedDataSource<PageKey, DocumentSn
 
         // Set loading state
         mLoadingState.postValue(LoadingState.LOADING_MORE);
+        mRetryScheduler.onLoadStarted();
 
-        key.getPageQuery(mBaseQuery, params.requestedLoadSize)
-                .get(mSource)
-                .addOnSuccessListener(new OnLoadSuccessListener() {
+        loadPage(key.getPageQuery(mBaseQuery, params.requestedLoadSize),
+                key.getPageId(),
+                new OnLoadSuccessListener(key) {
                     @Override
-                    protected void setResult(@NonNull QuerySnapshot snapshot) {
-                        PageKey nextPage = getNextPageKey(snapshot);
-                        callback.onResult(snapshot.getDocuments(), nextPage);
+                    protected void setResult(@NonNull List<DocumentSnapshot> documents) {
+                        PageKey nextPage = getNextPageKey(documents);
+                        callback.onResult(documents, nextPage);
                     }
-                })
-                .addOnFailureListener(new OnLoadFailureListener() {
+                },
+                new OnLoadFailureListener() {
                     @Override
                     protected Runnable getRetryRunnable() {
                         return getRetryLoadAfter(params, callback);
@@ -122,9 +227,247 @@ public class FirestoreDataSource extends PageKeyedDataSource<PageKey, DocumentSn
 
     }
 
+    /**
+     * Answer the initial load with every page of the previous data source, so that the adapter
+     * diffs the whole list instead of collapsing back to the first page. These pages are already
+     * up to date, so they are not revalidated.
+     *
+     * @return false if there was nothing to show.
+     */
+    private boolean loadHandedOverPages(
+            @NonNull List<PageStore.Page> pages,
+            @NonNull LoadInitialCallback<PageKey, DocumentSnapshot> callback) {
+        List<DocumentSnapshot> documents = new ArrayList<>();
+        for (PageStore.Page page : pages) {
+            documents.addAll(page.mDocuments);
+        }
+        if (documents.isEmpty()) {
+            return false;
+        }
+
+        synchronized (mLivePages) {
+            for (PageStore.Page page : pages) {
+                mLoadedPages.put(page.mKey.getPageId(), page);
+            }
+        }
+
+        // Only the most recent pages are listened to, older ones are never watched
+        int firstLive = Math.max(0, pages.size() - mMaxLivePages);
+        for (PageStore.Page page : pages.subList(firstLive, pages.size())) {
+            watchPage(page.mKey, page.mDocuments);
+        }
+
+        // An empty last page means the end of the query was reached
+        List<DocumentSnapshot> last = pages.get(pages.size() - 1).mDocuments;
+        PageKey nextPage = last.isEmpty() ? null : getNextPageKey(last);
+        callback.onResult(documents, null, nextPage);
+
+        mLoadingState.postValue(LoadingState.LOADED);
+        if (nextPage == null) {
+            mLoadingState.postValue(LoadingState.FINISHED);
+        }
+        return true;
+    }
+
+    private void loadPage(@NonNull final Query pageQuery,
+                          @NonNull final String pageId,
+                          @NonNull final OnLoadSuccessListener onSuccess,
+                          @NonNull final OnLoadFailureListener onFailure) {
+        if (!mStaleWhileRevalidate) {
+            pageQuery.get(mSource)
+                    .addOnSuccessListener(onSuccess)
+                    .addOnFailureListener(onFailure);
+            return;
+        }
+
+        pageQuery.get(Source.CACHE).addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
+            @Override
+            public void onComplete(@NonNull Task<QuerySnapshot> task) {
+                if (task.isSuccessful() && !task.getResult().isEmpty()) {
+                    List<DocumentSnapshot> cached = task.getResult().getDocuments();
+                    // Counted before the page is shown so that no hand over can skip it
+                    synchronized (mLivePages) {
+                        mPendingRevalidations++;
+                    }
+                    onSuccess.onDocuments(cached);
+                    revalidatePage(pageQuery, pageId, cached);
+                } else {
+                    // Nothing to show yet, wait for the server
+                    pageQuery.get(Source.SERVER)
+                            .addOnSuccessListener(onSuccess)
+                            .addOnFailureListener(onFailure);
+                }
+            }
+        });
+    }
+
+    /**
+     * Fetch a page which was answered from the cache from the server. Pages the server has
+     * different documents for are collected, and once every pending revalidation is done they are
+     * handed to the next data source in a single invalidation.
+     */
+    private void revalidatePage(@NonNull Query pageQuery,
+                                @NonNull final String pageId,
+                                @NonNull final List<DocumentSnapshot> cached) {
+        pageQuery.get(Source.SERVER).addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
+            @Override
+            public void onComplete(@NonNull Task<QuerySnapshot> task) {
+                synchronized (mLivePages) {
+                    mPendingRevalidations--;
+
+                    if (task.isSuccessful()) {
+                        List<DocumentSnapshot> fresh = task.getResult().getDocuments();
+                        if (!isSamePage(cached, fresh)) {
+                            updateLoadedPage(pageId, fresh);
+                        }
+                    } else {
+                        // The cached page stays on screen, nothing else to do
+                        Log.w(TAG, "revalidate:onFailure", task.getException());
+                    }
+                }
+
+                handOverIfChanged();
+            }
+        });
+    }
+
+    /**
+     * Remember the documents of a page which just finished loading.
+     */
+    private void recordPage(@NonNull PageKey key, @NonNull List<DocumentSnapshot> documents) {
+        synchronized (mLivePages) {
+            mLoadedPages.put(key.getPageId(), new PageStore.Page(key, documents));
+        }
+    }
+
+    /**
+     * Replace the documents of a loaded page with newer ones. Must hold the lock.
+     */
+    private void updateLoadedPage(@NonNull String pageId,
+                                  @NonNull List<DocumentSnapshot> documents) {
+        PageStore.Page page = mLoadedPages.get(pageId);
+        if (page != null) {
+            mLoadedPages.put(pageId, new PageStore.Page(page.mKey, documents));
+            mPagesChanged = true;
+        }
+    }
+
+    /**
+     * If any loaded page changed and no revalidation is still in flight, hand every loaded page
+     * to the next data source and invalidate this one. This happens at most once per data source.
+     */
+    private void handOverIfChanged() {
+        synchronized (mLivePages) {
+            if (!mPagesChanged || mPendingRevalidations > 0 || isInvalid()) {
+                return;
+            }
+
+            mPagesChanged = false;
+            mPageStore.put(new ArrayList<>(mLoadedPages.values()));
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Keep a loaded page up to date by listening to its cursor range, evicting the listener of the
+     * oldest live page when the limit is reached.
+     */
+    private void watchPage(@NonNull PageKey key, @NonNull List<DocumentSnapshot> documents) {
+        if (mMaxLivePages <= 0 || documents.isEmpty()) {
+            return;
+        }
+
+        DocumentSnapshot last = documents.get(documents.size() - 1);
+        LivePage page = new LivePage(
+                key.getPageId(), key.getRangeQuery(mBaseQuery, last), documents);
+
+        synchronized (mLivePages) {
+            if (isInvalid()) {
+                return;
+            }
+
+            LivePage previous = mLivePages.put(key.getPageId(), page);
+            if (previous != null) {
+                previous.stop();
+            }
+
+            Iterator<LivePage> iterator = mLivePages.values().iterator();
+            while (mLivePages.size() > mMaxLivePages) {
+                iterator.next().stop();
+                iterator.remove();
+            }
+
+            if (!mLiveUpdatesPaused) {
+                page.start();
+            }
+        }
+    }
+
+    /**
+     * Detach the snapshot listeners of the live pages, for example while the adapter is stopped.
+     */
+    public void pauseLiveUpdates() {
+        synchronized (mLivePages) {
+            mLiveUpdatesPaused = true;
+            mPageStore.setLiveUpdatesPaused(true);
+            for (LivePage page : mLivePages.values()) {
+                page.stop();
+            }
+        }
+    }
+
+    /**
+     * Reattach the snapshot listeners of the live pages. Any change made while paused is applied
+     * when the listeners deliver their first snapshot.
+     */
+    public void resumeLiveUpdates() {
+        synchronized (mLivePages) {
+            mLiveUpdatesPaused = false;
+            mPageStore.setLiveUpdatesPaused(false);
+            if (isInvalid()) {
+                return;
+            }
+
+            for (LivePage page : mLivePages.values()) {
+                page.start();
+            }
+        }
+    }
+
+    private void stopLivePages() {
+        synchronized (mLivePages) {
+            for (LivePage page : mLivePages.values()) {
+                page.stop();
+            }
+            mLivePages.clear();
+        }
+    }
+
+    private static boolean isSamePage(@NonNull List<DocumentSnapshot> oldDocuments,
+                                      @NonNull List<DocumentSnapshot> newDocuments) {
+        if (oldDocuments.size() != newDocuments.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < oldDocuments.size(); i++) {
+            DocumentSnapshot oldDocument = oldDocuments.get(i);
+            DocumentSnapshot newDocument = newDocuments.get(i);
+
+            // Snapshot equality includes metadata such as isFromCache, so compare the data
+            Map<String, Object> oldData = oldDocument.getData();
+            Map<String, Object> newData = newDocument.getData();
+            if (!oldDocument.getReference().equals(newDocument.getReference())
+                    || (oldData == null ? newData != null : !oldData.equals(newData))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     @NonNull
-    private PageKey getNextPageKey(@NonNull QuerySnapshot snapshot) {
-        List<DocumentSnapshot> data = snapshot.getDocuments();
+    private PageKey getNextPageKey(@NonNull List<DocumentSnapshot> data) {
         DocumentSnapshot last = getLast(data);
 
         return new PageKey(last, null);
@@ -140,6 +483,14 @@ public class FirestoreDataSource extends PageKeyedDataSource<PageKey, DocumentSn
         return mException;
     }
 
+    /**
+     * Retry counts and load latencies, updated as loads complete or retries are scheduled.
+     */
+    @NonNull
+    public LiveData<LoadStats> getLoadStats() {
+        return mLoadStats;
+    }
+
     public void retry() {
         LoadingState currentState = mLoadingState.getValue();
         if (currentState != LoadingState.ERROR) {
@@ -152,6 +503,7 @@ public class FirestoreDataSource extends PageKeyedDataSource<PageKey, DocumentSn
             return;
         }
 
+        mRetryScheduler.reset();
         mRetryRunnable.run();
     }
 
@@ -187,29 +539,98 @@ public class FirestoreDataSource extends PageKeyedDataSource<PageKey, DocumentSn
     }
 
     /**
-     * Success listener that sets success state and nullifies the retry runnable.
+     * Loaded page that is kept up to date with a snapshot listener on its cursor range.
+     */
+    private class LivePage implements EventListener<QuerySnapshot> {
+
+        private final String mPageId;
+        private final Query mQuery;
+        private List<DocumentSnapshot> mDocuments;
+        private ListenerRegistration mRegistration;
+
+        LivePage(@NonNull String pageId,
+                 @NonNull Query query,
+                 @NonNull List<DocumentSnapshot> documents) {
+            mPageId = pageId;
+            mQuery = query;
+            mDocuments = new ArrayList<>(documents);
+        }
+
+        void start() {
+            if (mRegistration == null) {
+                mRegistration = mQuery.addSnapshotListener(this);
+            }
+        }
+
+        void stop() {
+            if (mRegistration != null) {
+                mRegistration.remove();
+                mRegistration = null;
+            }
+        }
+
+        @Override
+        public void onEvent(@Nullable QuerySnapshot snapshot,
+                            @Nullable FirebaseFirestoreException e) {
+            if (e != null) {
+                // The page stays as it was loaded
+                Log.w(TAG, "livePage:onEvent", e);
+                return;
+            }
+
+            List<DocumentSnapshot> documents = snapshot.getDocuments();
+            synchronized (mLivePages) {
+                if (isSamePage(mDocuments, documents)) {
+                    return;
+                }
+                mDocuments = documents;
+                updateLoadedPage(mPageId, documents);
+            }
+
+            // Applied along with any pending revalidation, the whole list is handed over
+            handOverIfChanged();
+        }
+    }
+
+    /**
+     * Success listener that sets success state, nullifies the retry runnable and starts live
+     * updates for the page.
      */
     private abstract class OnLoadSuccessListener implements OnSuccessListener<QuerySnapshot> {
 
+        private final PageKey mKey;
+
+        OnLoadSuccessListener(@NonNull PageKey key) {
+            mKey = key;
+        }
+
         @Override
         public void onSuccess(QuerySnapshot snapshot) {
-            setResult(snapshot);
+            onDocuments(snapshot.getDocuments());
+        }
+
+        public void onDocuments(@NonNull List<DocumentSnapshot> documents) {
+            recordPage(mKey, documents);
+            setResult(documents);
+            watchPage(mKey, documents);
+            mRetryScheduler.onLoadSucceeded();
             mLoadingState.postValue(LoadingState.LOADED);
 
             // Post the 'FINISHED' state when no more pages will be loaded. The data source
             // callbacks interpret an empty result list as a signal to cancel any future loads.
-            if (snapshot.getDocuments().isEmpty()) {
+            if (documents.isEmpty()) {
                 mLoadingState.postValue(LoadingState.FINISHED);
             }
 
             mRetryRunnable = null;
         }
 
-        protected abstract void setResult(@NonNull QuerySnapshot snapshot);
+        protected abstract void setResult(@NonNull List<DocumentSnapshot> documents);
     }
 
     /**
-     * Error listener that logs, sets the error state, and sets up retry.
+     * Error listener that logs, schedules an automatic retry if the {@link RetryPolicy} allows
+     * it, and otherwise sets the error state and sets up manual retry.
      */
     private abstract class OnLoadFailureListener implements OnFailureListener {
 
@@ -217,6 +638,11 @@ public class FirestoreDataSource extends PageKeyedDataSource<PageKey, DocumentSn
         public void onFailure(@NonNull Exception e) {
             Log.w(TAG, "load:onFailure", e);
 
+            // Stay in the loading state while an automatic retry is pending
+            if (mRetryScheduler.onLoadFailed(getRetryRunnable())) {
+                return;
+            }
+
             // On error we do NOT post any value to the PagedList, we just tell
             // the developer that we are now in the error state.
             mLoadingState.postValue(LoadingState.ERROR);
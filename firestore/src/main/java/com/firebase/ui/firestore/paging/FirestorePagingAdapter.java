@@ -2,6 +2,7 @@ package com.firebase.ui.firestore.paging;
 
 import android.util.Log;
 
+import com.firebase.ui.common.LoadStats;
 import com.firebase.ui.firestore.SnapshotParser;
 import com.google.firebase.firestore.DocumentSnapshot;
 
@@ -56,6 +57,17 @@ public abstract class FirestorePagingAdapter<T, VH extends RecyclerView.ViewHold
                     onLoadingStateChanged(state);
                 }
             };
+    private final Observer<LoadStats> mStatsObserver =
+            new Observer<LoadStats>() {
+                @Override
+                public void onChanged(@Nullable LoadStats stats) {
+                    if (stats == null) {
+                        return;
+                    }
+
+                    onLoadStatsChanged(stats);
+                }
+            };
     private final Observer<PagedList<DocumentSnapshot>> mDataObserver =
             new Observer<PagedList<DocumentSnapshot>>() {
                 @Override
@@ -72,6 +84,7 @@ public abstract class FirestorePagingAdapter<T, VH extends RecyclerView.ViewHold
     private LiveData<PagedList<DocumentSnapshot>> mSnapshots;
     private LiveData<LoadingState> mLoadingState;
     private LiveData<Exception> mException;
+    private LiveData<LoadStats> mLoadStats;
     private LiveData<FirestoreDataSource> mDataSource;
 
     /**
@@ -117,6 +130,15 @@ public abstract class FirestorePagingAdapter<T, VH extends RecyclerView.ViewHold
                     }
                 });
 
+        mLoadStats = Transformations.switchMap(mSnapshots,
+                new Function<PagedList<DocumentSnapshot>, LiveData<LoadStats>>() {
+                    @Override
+                    public LiveData<LoadStats> apply(PagedList<DocumentSnapshot> input) {
+                        FirestoreDataSource dataSource = (FirestoreDataSource) input.getDataSource();
+                        return dataSource.getLoadStats();
+                    }
+                });
+
         mParser = mOptions.getParser();
 
         if (mOptions.getOwner() != null) {
@@ -181,6 +203,12 @@ public abstract class FirestorePagingAdapter<T, VH extends RecyclerView.ViewHold
         mLoadingState.observeForever(mStateObserver);
         mDataSource.observeForever(mDataSourceObserver);
         mException.observeForever(mErrorObserver);
+        mLoadStats.observeForever(mStatsObserver);
+
+        FirestoreDataSource source = mDataSource.getValue();
+        if (source != null) {
+            source.resumeLiveUpdates();
+        }
     }
 
     /**
@@ -189,10 +217,16 @@ public abstract class FirestorePagingAdapter<T, VH extends RecyclerView.ViewHold
      */
     @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
     public void stopListening() {
+        FirestoreDataSource source = mDataSource.getValue();
+        if (source != null) {
+            source.pauseLiveUpdates();
+        }
+
         mSnapshots.removeObserver(mDataObserver);
         mLoadingState.removeObserver(mStateObserver);
         mDataSource.removeObserver(mDataSourceObserver);
         mException.removeObserver(mErrorObserver);
+        mLoadStats.removeObserver(mStatsObserver);
     }
 
     @Override
@@ -217,6 +251,16 @@ public abstract class FirestorePagingAdapter<T, VH extends RecyclerView.ViewHold
         // For overriding
     }
 
+    /**
+     * Called whenever a page load completes or an automatic retry is scheduled, with the retry
+     * counts and latencies of the current data source.
+     *
+     * @see FirestorePagingOptions.Builder#setRetryPolicy
+     */
+    protected void onLoadStatsChanged(@NonNull LoadStats stats) {
+        // For overriding
+    }
+
     /**
      * Called whenever the {@link Exception} is caught.
      * <p>
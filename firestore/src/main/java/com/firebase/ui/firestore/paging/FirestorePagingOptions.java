@@ -1,5 +1,6 @@
 package com.firebase.ui.firestore.paging;
 
+import com.firebase.ui.common.RetryPolicy;
 import com.firebase.ui.firestore.ClassSnapshotParser;
 import com.firebase.ui.firestore.SnapshotParser;
 import com.google.firebase.firestore.DocumentSnapshot;
@@ -67,9 +68,15 @@ public final class FirestorePagingOptions<T> {
     public static final class Builder<T> {
 
         private LiveData<PagedList<DocumentSnapshot>> mData;
+        private Query mQuery;
+        private Source mSource;
+        private PagedList.Config mConfig;
         private SnapshotParser<T> mParser;
         private LifecycleOwner mOwner;
         private DiffUtil.ItemCallback<DocumentSnapshot> mDiffCallback;
+        private RetryPolicy mRetryPolicy;
+        private boolean mStaleWhileRevalidate;
+        private int mMaxLivePages;
 
         /**
          * Directly set data using and parse with a {@link ClassSnapshotParser} based on
@@ -93,6 +100,7 @@ public final class FirestorePagingOptions<T> {
         public Builder<T> setData(@NonNull LiveData<PagedList<DocumentSnapshot>> data,
                                   @NonNull SnapshotParser<T> parser) {
             assertNull(mData, ERR_DATA_SET);
+            assertNull(mQuery, ERR_DATA_SET);
 
             mData = data;
             mParser = parser;
@@ -155,10 +163,12 @@ public final class FirestorePagingOptions<T> {
                                    @NonNull PagedList.Config config,
                                    @NonNull SnapshotParser<T> parser) {
             assertNull(mData, ERR_DATA_SET);
+            assertNull(mQuery, ERR_DATA_SET);
 
-            // Build paged list
-            FirestoreDataSource.Factory factory = new FirestoreDataSource.Factory(query, source);
-            mData = new LivePagedListBuilder<>(factory, config).build();
+            // The paged list is built in build() so that it can pick up the other options
+            mQuery = query;
+            mSource = source;
+            mConfig = config;
 
             mParser = parser;
             return this;
@@ -178,6 +188,55 @@ public final class FirestorePagingOptions<T> {
             return this;
         }
 
+        /**
+         * Render each page from the local cache first and then fetch the same page from the
+         * server, updating the list only when the server data differs. Pages missing from the
+         * cache are loaded from the server directly.
+         * <p>
+         * Requires {@link Source#DEFAULT} and only applies to data set with {@code setQuery}.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder<T> setStaleWhileRevalidate(boolean staleWhileRevalidate) {
+            mStaleWhileRevalidate = staleWhileRevalidate;
+            return this;
+        }
+
+        /**
+         * Keep the most recently loaded pages up to date with snapshot listeners on their cursor
+         * ranges. Changes to those pages are applied to the list as a diff, without downloading
+         * the pages again. Older pages stay as they were loaded.
+         * <p>
+         * Only applies to data set with {@code setQuery}.
+         *
+         * @param maxLivePages the number of pages to listen to at once, 0 to disable.
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder<T> setLiveUpdates(int maxLivePages) {
+            if (maxLivePages < 0) {
+                throw new IllegalArgumentException("maxLivePages cannot be negative.");
+            }
+            mMaxLivePages = maxLivePages;
+            return this;
+        }
+
+        /**
+         * Sets an optional {@link RetryPolicy} used to automatically retry failed page loads
+         * with exponential backoff. Without a policy, failed loads are only retried when
+         * {@link FirestorePagingAdapter#retry()} is called.
+         * <p>
+         * Only applies to data set with {@code setQuery}.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder<T> setRetryPolicy(@NonNull RetryPolicy retryPolicy) {
+            mRetryPolicy = retryPolicy;
+            return this;
+        }
+
         /**
          * Sets an optional {@link LifecycleOwner} to control the lifecycle of the adapter. Otherwise,
          * you must manually call {@link FirestorePagingAdapter#startListening()}
@@ -196,6 +255,17 @@ public final class FirestorePagingOptions<T> {
          */
         @NonNull
         public FirestorePagingOptions<T> build() {
+            if (mStaleWhileRevalidate && mQuery != null && mSource != Source.DEFAULT) {
+                throw new IllegalStateException("setStaleWhileRevalidate() requires a query " +
+                        "using Source.DEFAULT.");
+            }
+
+            if (mQuery != null) {
+                FirestoreDataSource.Factory factory = new FirestoreDataSource.Factory(
+                        mQuery, mSource, mRetryPolicy, mStaleWhileRevalidate, mMaxLivePages);
+                mData = new LivePagedListBuilder<>(factory, mConfig).build();
+            }
+
             if (mData == null || mParser == null) {
                 throw new IllegalStateException("Must call setQuery() or setDocumentSnapshot()" +
                         " before calling build().");
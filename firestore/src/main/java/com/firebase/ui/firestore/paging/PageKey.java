@@ -38,6 +38,32 @@ public class PageKey {
         return pageQuery;
     }
 
+    /**
+     * Query for the documents of this page, from its start cursor up to and including the given
+     * last document. Unlike {@link #getPageQuery(Query, int)}, the range does not shift when
+     * documents are added to or removed from earlier pages.
+     */
+    @NonNull
+    Query getRangeQuery(@NonNull Query baseQuery, @NonNull DocumentSnapshot last) {
+        Query rangeQuery = baseQuery;
+
+        if (mStartAfter != null) {
+            rangeQuery = rangeQuery.startAfter(mStartAfter);
+        }
+
+        return rangeQuery.endAt(last);
+    }
+
+    /**
+     * Identifies the page across data sources, based on the paths of its bounding documents.
+     */
+    @NonNull
+    String getPageId() {
+        String startAfter = mStartAfter == null ? null : mStartAfter.getReference().getPath();
+        String endBefore = mEndBefore == null ? null : mEndBefore.getReference().getPath();
+        return startAfter + "|" + endBefore;
+    }
+
     @Override
     @NonNull
     public String toString() {
@@ -0,0 +1,61 @@
+package com.firebase.ui.firestore.paging;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Hands the pages one {@link FirestoreDataSource} loaded to the next data source created by the
+ * same factory, so that an invalidation caused by fresh data reloads the whole list at once
+ * without downloading it again. The adapter then diffs the new list against the old one and keeps
+ * its scroll position.
+ *
+ * Only the pages of the latest invalidated data source are held, and they are handed out at most
+ * once.
+ *
+ * Also remembers whether live updates are paused, since a data source created while the adapter is
+ * stopped must not attach its snapshot listeners.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class PageStore {
+
+    private List<Page> mPages;
+    private boolean mLiveUpdatesPaused;
+
+    public synchronized void put(@NonNull List<Page> pages) {
+        mPages = new ArrayList<>(pages);
+    }
+
+    @Nullable
+    public synchronized List<Page> take() {
+        List<Page> pages = mPages;
+        mPages = null;
+        return pages;
+    }
+
+    public synchronized void setLiveUpdatesPaused(boolean paused) {
+        mLiveUpdatesPaused = paused;
+    }
+
+    public synchronized boolean isLiveUpdatesPaused() {
+        return mLiveUpdatesPaused;
+    }
+
+    /**
+     * A loaded page and the key it was loaded with.
+     */
+    public static final class Page {
+        final PageKey mKey;
+        final List<DocumentSnapshot> mDocuments;
+
+        public Page(@NonNull PageKey key, @NonNull List<DocumentSnapshot> documents) {
+            mKey = key;
+            mDocuments = documents;
+        }
+    }
+}
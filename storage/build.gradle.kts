@@ -1,4 +1,10 @@
+tasks.named("check").configure { dependsOn("compileDebugAndroidTestJavaWithJavac") }
+
 android {
+    defaultConfig {
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
     buildTypes {
         named("release").configure {
             isMinifyEnabled = false
@@ -9,9 +15,25 @@ android {
 
 dependencies {
     api(Config.Libs.Misc.glide)
+    implementation(Config.Libs.Misc.glideRecyclerView)
 
     implementation(platform(Config.Libs.Firebase.bom))
+    api(project(":common"))
     api(Config.Libs.Firebase.storage)
     // Override Play Services
     implementation(Config.Libs.Androidx.legacySupportv4)
+    implementation(Config.Libs.Androidx.exifInterface)
+    api(Config.Libs.Androidx.recyclerView)
+
+    compileOnly(Config.Libs.Androidx.paging)
+    annotationProcessor(Config.Libs.Androidx.lifecycleCompiler)
+
+    androidTestImplementation(Config.Libs.Test.archCoreTesting)
+    androidTestImplementation(Config.Libs.Test.core)
+    androidTestImplementation(Config.Libs.Test.junit)
+    androidTestImplementation(Config.Libs.Test.junitExt)
+    androidTestImplementation(Config.Libs.Test.runner)
+    androidTestImplementation(Config.Libs.Test.rules)
+    androidTestImplementation(Config.Libs.Test.mockito)
+    androidTestImplementation(Config.Libs.Androidx.paging)
 }
@@ -0,0 +1,289 @@
+package com.firebase.ui.storage.images;
+
+import com.bumptech.glide.Priority;
+import com.google.android.gms.tasks.OnCanceledListener;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.StreamDownloadTask;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class DownloadSchedulerTest {
+
+    private static final byte[] BYTES = {1, 2, 3, 4, 5};
+
+    @Test
+    public void testSchedule_capsConcurrentDownloads() throws IOException {
+        DownloadScheduler scheduler = new DownloadScheduler(2);
+        FakeDownload a = new FakeDownload("a");
+        FakeDownload b = new FakeDownload("b");
+        FakeDownload c = new FakeDownload("c");
+
+        RecordingCallback callbackA = new RecordingCallback();
+        DownloadScheduler.Request requestA = scheduler.schedule(a.mRef, Priority.NORMAL, callbackA);
+        scheduler.schedule(b.mRef, Priority.NORMAL, new RecordingCallback());
+        scheduler.schedule(c.mRef, Priority.NORMAL, new RecordingCallback());
+
+        verify(a.mRef).getStream();
+        verify(b.mRef).getStream();
+        verify(c.mRef, never()).getStream();
+
+        a.succeed();
+        readAll(callbackA.mStream);
+        requestA.release();
+
+        verify(c.mRef).getStream();
+    }
+
+    @Test
+    public void testSchedule_startsInPriorityOrder() throws IOException {
+        DownloadScheduler scheduler = new DownloadScheduler(1);
+        FakeDownload blocker = new FakeDownload("blocker");
+        FakeDownload low = new FakeDownload("low");
+        FakeDownload high = new FakeDownload("high");
+
+        RecordingCallback blockerCallback = new RecordingCallback();
+        DownloadScheduler.Request blockerRequest =
+                scheduler.schedule(blocker.mRef, Priority.NORMAL, blockerCallback);
+        scheduler.schedule(low.mRef, Priority.LOW, new RecordingCallback());
+        RecordingCallback highCallback = new RecordingCallback();
+        DownloadScheduler.Request highRequest =
+                scheduler.schedule(high.mRef, Priority.HIGH, highCallback);
+
+        blocker.succeed();
+        blockerRequest.release();
+
+        verify(high.mRef).getStream();
+        verify(low.mRef, never()).getStream();
+
+        high.succeed();
+        highRequest.release();
+
+        verify(low.mRef).getStream();
+    }
+
+    @Test
+    public void testSchedule_sharesWaitingDownload() throws IOException {
+        DownloadScheduler scheduler = new DownloadScheduler(1);
+        FakeDownload blocker = new FakeDownload("blocker");
+        FakeDownload shared = new FakeDownload("shared");
+
+        DownloadScheduler.Request blockerRequest =
+                scheduler.schedule(blocker.mRef, Priority.NORMAL, new RecordingCallback());
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        scheduler.schedule(shared.mRef, Priority.NORMAL, first);
+        scheduler.schedule(shared.mRef, Priority.NORMAL, second);
+
+        blocker.succeed();
+        blockerRequest.release();
+        shared.succeed();
+
+        assertArrayEquals(BYTES, readAll(first.mStream));
+        assertArrayEquals(BYTES, readAll(second.mStream));
+        verify(shared.mRef, times(1)).getStream();
+    }
+
+    @Test
+    public void testSchedule_sharesRunningDownload() throws IOException {
+        DownloadScheduler scheduler = new DownloadScheduler(2);
+        FakeDownload shared = new FakeDownload("shared");
+
+        RecordingCallback first = new RecordingCallback();
+        scheduler.schedule(shared.mRef, Priority.NORMAL, first);
+        shared.succeed();
+
+        // Requested again while the first request reads the download
+        RecordingCallback second = new RecordingCallback();
+        scheduler.schedule(shared.mRef, Priority.NORMAL, second);
+        assertNull(second.mStream);
+
+        assertArrayEquals(BYTES, readAll(first.mStream));
+        assertArrayEquals(BYTES, readAll(second.mStream));
+        verify(shared.mRef, times(1)).getStream();
+    }
+
+    @Test
+    public void testSchedule_sharedDownloadReleasedEarly_downloadsAgain() throws IOException {
+        DownloadScheduler scheduler = new DownloadScheduler(2);
+        FakeDownload shared = new FakeDownload("shared");
+
+        RecordingCallback first = new RecordingCallback();
+        DownloadScheduler.Request firstRequest =
+                scheduler.schedule(shared.mRef, Priority.NORMAL, first);
+        RecordingCallback second = new RecordingCallback();
+        scheduler.schedule(shared.mRef, Priority.NORMAL, second);
+        shared.succeed();
+
+        // The first request gives up before reading the whole download
+        assertNotNull(first.mStream);
+        firstRequest.release();
+
+        verify(shared.mRef, times(2)).getStream();
+        shared.succeed();
+        assertArrayEquals(BYTES, readAll(second.mStream));
+    }
+
+    @Test
+    public void testCancel_freesSlot() {
+        DownloadScheduler scheduler = new DownloadScheduler(1);
+        FakeDownload a = new FakeDownload("a");
+        FakeDownload b = new FakeDownload("b");
+
+        DownloadScheduler.Request requestA =
+                scheduler.schedule(a.mRef, Priority.NORMAL, new RecordingCallback());
+        scheduler.schedule(b.mRef, Priority.NORMAL, new RecordingCallback());
+        verify(b.mRef, never()).getStream();
+
+        requestA.cancel();
+        verify(a.mTask).cancel();
+        a.mCanceled.onCanceled();
+
+        verify(b.mRef).getStream();
+    }
+
+    @Test
+    public void testCancel_leavesQueue() throws IOException {
+        DownloadScheduler scheduler = new DownloadScheduler(1);
+        FakeDownload a = new FakeDownload("a");
+        FakeDownload b = new FakeDownload("b");
+
+        RecordingCallback callbackA = new RecordingCallback();
+        DownloadScheduler.Request requestA = scheduler.schedule(a.mRef, Priority.NORMAL, callbackA);
+        scheduler.schedule(b.mRef, Priority.NORMAL, new RecordingCallback()).cancel();
+
+        a.succeed();
+        readAll(callbackA.mStream);
+        requestA.release();
+
+        verify(b.mRef, never()).getStream();
+    }
+
+    @Test
+    public void testFailure_reportedToEveryRequest() {
+        DownloadScheduler scheduler = new DownloadScheduler(1);
+        FakeDownload a = new FakeDownload("a");
+
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        scheduler.schedule(a.mRef, Priority.NORMAL, first);
+        scheduler.schedule(a.mRef, Priority.NORMAL, second);
+
+        a.mFailure.onFailure(new IOException("Failed"));
+
+        assertNotNull(first.mError);
+        assertNotNull(second.mError);
+    }
+
+    private static byte[] readAll(InputStream stream) throws IOException {
+        assertNotNull(stream);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[2];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class RecordingCallback implements DownloadScheduler.Callback {
+
+        InputStream mStream;
+        Exception mError;
+
+        @Override
+        public void onStreamReady(@NonNull InputStream stream) {
+            mStream = stream;
+        }
+
+        @Override
+        public void onLoadFailed(@NonNull Exception e) {
+            mError = e;
+        }
+    }
+
+    /**
+     * A mocked object whose latest download completes when told to.
+     */
+    @SuppressWarnings("unchecked")
+    private static class FakeDownload {
+
+        final StorageReference mRef = mock(StorageReference.class);
+
+        StreamDownloadTask mTask;
+        OnSuccessListener<StreamDownloadTask.TaskSnapshot> mSuccess;
+        OnFailureListener mFailure;
+        OnCanceledListener mCanceled;
+
+        FakeDownload(String path) {
+            when(mRef.getPath()).thenReturn(path);
+            when(mRef.getStream()).thenAnswer(new Answer<StreamDownloadTask>() {
+                @Override
+                public StreamDownloadTask answer(InvocationOnMock invocation) {
+                    return newTask();
+                }
+            });
+        }
+
+        void succeed() {
+            StreamDownloadTask.TaskSnapshot snapshot = mock(StreamDownloadTask.TaskSnapshot.class);
+            when(snapshot.getStream()).thenReturn(new ByteArrayInputStream(BYTES));
+            when(mTask.isInProgress()).thenReturn(false);
+            mSuccess.onSuccess(snapshot);
+        }
+
+        private StreamDownloadTask newTask() {
+            final StreamDownloadTask task = mock(StreamDownloadTask.class);
+            when(task.isInProgress()).thenReturn(true);
+            when(task.addOnSuccessListener(any(OnSuccessListener.class))).thenAnswer(
+                    new Answer<StreamDownloadTask>() {
+                        @Override
+                        public StreamDownloadTask answer(InvocationOnMock invocation) {
+                            mSuccess = invocation.getArgument(0);
+                            return task;
+                        }
+                    });
+            when(task.addOnFailureListener(any(OnFailureListener.class))).thenAnswer(
+                    new Answer<StreamDownloadTask>() {
+                        @Override
+                        public StreamDownloadTask answer(InvocationOnMock invocation) {
+                            mFailure = invocation.getArgument(0);
+                            return task;
+                        }
+                    });
+            when(task.addOnCanceledListener(any(OnCanceledListener.class))).thenAnswer(
+                    new Answer<StreamDownloadTask>() {
+                        @Override
+                        public StreamDownloadTask answer(InvocationOnMock invocation) {
+                            mCanceled = invocation.getArgument(0);
+                            return task;
+                        }
+                    });
+            mTask = task;
+            return task;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.firebase.ui.storage.images;
+
+import android.content.Context;
+
+import com.google.firebase.storage.StorageReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class OfflineCacheTest {
+
+    private static final int FILE_SIZE = 100;
+
+    private Context mContext;
+    private OfflineCache mCache;
+    private long mNow;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mCache = new OfflineCache(mContext, 2 * FILE_SIZE + FILE_SIZE / 2);
+        mCache.clear();
+
+        // File systems may only keep the modification time to the second
+        mNow = (System.currentTimeMillis() / 1000) * 1000;
+    }
+
+    @After
+    public void tearDown() {
+        mCache.clear();
+    }
+
+    @Test
+    public void testTrim_evictsLeastRecentlyUsed() throws IOException {
+        StorageReference oldest = cache("oldest", mNow - 30000);
+        StorageReference newest = cache("newest", mNow - 10000);
+        StorageReference middle = cache("middle", mNow - 20000);
+
+        mCache.trimNow();
+
+        assertNull(mCache.get(oldest));
+        assertNotNull(mCache.get(middle));
+        assertNotNull(mCache.get(newest));
+    }
+
+    @Test
+    public void testTrim_keepsRecentlyRead() throws IOException {
+        StorageReference oldest = cache("oldest", mNow - 30000);
+        StorageReference middle = cache("middle", mNow - 20000);
+        cache("newest", mNow - 10000);
+
+        // Reading the oldest object makes the middle one the least recently used
+        assertNotNull(mCache.get(oldest));
+        mCache.trimNow();
+
+        assertNull(mCache.get(middle));
+        assertNotNull(mCache.get(oldest));
+    }
+
+    @Test
+    public void testTrim_withinCap() throws IOException {
+        StorageReference first = cache("first", mNow - 20000);
+        StorageReference second = cache("second", mNow - 10000);
+
+        mCache.trimNow();
+
+        assertNotNull(mCache.get(first));
+        assertNotNull(mCache.get(second));
+    }
+
+    @Test
+    public void testTrim_evictsUntilUnderCap() throws IOException {
+        OfflineCache cache = new OfflineCache(mContext, FILE_SIZE / 2);
+        StorageReference first = cache("first", mNow - 20000);
+        StorageReference second = cache("second", mNow - 10000);
+
+        cache.trimNow();
+
+        assertNull(cache.get(first));
+        assertNull(cache.get(second));
+    }
+
+    @Test
+    public void testTrim_ignoresPartialDownloads() throws IOException {
+        StorageReference first = cache("first", mNow - 20000);
+        StorageReference second = cache("second", mNow - 10000);
+        File part = new File(mCache.getCacheFile(mock(StorageReference.class)).getPath() + ".part");
+        write(part, 10 * FILE_SIZE, mNow - 30000);
+
+        mCache.trimNow();
+
+        assertTrue(part.exists());
+        assertNotNull(mCache.get(first));
+        assertNotNull(mCache.get(second));
+    }
+
+    @Test
+    public void testGet_notCached() {
+        StorageReference ref = mock(StorageReference.class);
+        when(ref.toString()).thenReturn("gs://bucket/missing");
+
+        assertNull(mCache.get(ref));
+        assertFalse(mCache.getCacheFile(ref).exists());
+    }
+
+    private StorageReference cache(String name, long usedAt) throws IOException {
+        StorageReference ref = mock(StorageReference.class);
+        when(ref.toString()).thenReturn("gs://bucket/" + name);
+        write(mCache.getCacheFile(ref), FILE_SIZE, usedAt);
+        return ref;
+    }
+
+    private static void write(File file, int size, long modifiedAt) throws IOException {
+        File dir = file.getParentFile();
+        assertTrue(dir.isDirectory() || dir.mkdirs());
+
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+        assertTrue(file.setLastModified(modifiedAt));
+    }
+}
@@ -0,0 +1,161 @@
+package com.firebase.ui.storage.images;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
+import com.google.firebase.storage.StorageReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.StaggeredGridLayoutManager;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class StorageImagePreloaderTest {
+
+    private static final int ITEM_COUNT = 100;
+    private static final int ROW_HEIGHT = 100;
+    private static final int MAX_PRELOAD = 10;
+
+    @Mock RequestManager mRequestManager;
+    @Mock RequestBuilder<Object> mRequest;
+    @Mock StorageImagePreloader.ReferenceProvider mReferences;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mRequest.clone()).thenReturn(mRequest);
+        when(mRequest.load(any(Object.class))).thenReturn(mRequest);
+    }
+
+    @Test
+    public void testGetPreloadItems() {
+        StorageReference ref = mock(StorageReference.class);
+        when(mReferences.getReferences(3)).thenReturn(Collections.singletonList(ref));
+        StoragePreloadModelProvider provider =
+                new StoragePreloadModelProvider(mRequest, mReferences);
+
+        assertEquals(Collections.singletonList(ref), provider.getPreloadItems(3));
+        // Positions without references preload nothing
+        assertTrue(provider.getPreloadItems(4).isEmpty());
+    }
+
+    @Test
+    public void testGetPreloadRequestBuilder_clonesRequest() {
+        StorageReference ref = mock(StorageReference.class);
+        StoragePreloadModelProvider provider =
+                new StoragePreloadModelProvider(mRequest, mReferences);
+
+        provider.getPreloadRequestBuilder(ref);
+
+        InOrder inOrder = inOrder(mRequest);
+        inOrder.verify(mRequest).clone();
+        inOrder.verify(mRequest).load(ref);
+    }
+
+    @Test
+    public void testOnScrolled_linearLayoutManager() {
+        RecyclerView recyclerView = layOut(new LinearLayoutManager(
+                ApplicationProvider.getApplicationContext()));
+
+        scroll(recyclerView);
+
+        // Rows 0 to 3 are visible
+        verify(mReferences).getReferences(4);
+        verify(mReferences, never()).getReferences(4 + MAX_PRELOAD);
+    }
+
+    @Test
+    public void testOnScrolled_staggeredGridLayoutManager() {
+        RecyclerView recyclerView = layOut(
+                new StaggeredGridLayoutManager(2, StaggeredGridLayoutManager.VERTICAL));
+
+        scroll(recyclerView);
+
+        // Items 0 to 7 are visible in two columns
+        verify(mReferences).getReferences(8);
+        verify(mReferences, never()).getReferences(8 + MAX_PRELOAD);
+    }
+
+    private void scroll(final RecyclerView recyclerView) {
+        final StorageImagePreloader preloader = new StorageImagePreloader(
+                mRequestManager,
+                mRequest,
+                mReferences,
+                new FixedPreloadSizeProvider<StorageReference>(10, 10),
+                MAX_PRELOAD);
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                preloader.onScrolled(recyclerView, 0, 1);
+            }
+        });
+    }
+
+    private static RecyclerView layOut(final RecyclerView.LayoutManager layoutManager) {
+        final RecyclerView[] recyclerView = new RecyclerView[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                RecyclerView view = new RecyclerView(ApplicationProvider.getApplicationContext());
+                view.setLayoutManager(layoutManager);
+                view.setAdapter(new RowAdapter());
+
+                int size = 4 * ROW_HEIGHT;
+                view.measure(View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY));
+                view.layout(0, 0, size, size);
+                recyclerView[0] = view;
+            }
+        });
+        return recyclerView[0];
+    }
+
+    private static class RowAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+        @NonNull
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View row = new View(parent.getContext());
+            row.setLayoutParams(new RecyclerView.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ROW_HEIGHT));
+            return new RecyclerView.ViewHolder(row) {};
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+            // Rows have no content
+        }
+
+        @Override
+        public int getItemCount() {
+            return ITEM_COUNT;
+        }
+    }
+}
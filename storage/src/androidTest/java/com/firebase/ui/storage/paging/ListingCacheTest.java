@@ -0,0 +1,93 @@
+package com.firebase.ui.storage.paging;
+
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class ListingCacheTest {
+
+    private static final long MAX_AGE_MILLIS = 60 * 1000;
+
+    @Test
+    public void testPutPage_thenGet() {
+        ListingCache cache = new ListingCache(10, 10, MAX_AGE_MILLIS);
+        List<StorageReference> items = Collections.singletonList(mockReference("a.jpg"));
+
+        cache.putPage("page1", items, "token2");
+
+        ListingCache.Page page = cache.getPage("page1");
+        assertNotNull(page);
+        assertEquals(items, page.getItems());
+        assertEquals("token2", page.getNextPageToken());
+    }
+
+    @Test
+    public void testGetPage_unknown() {
+        ListingCache cache = new ListingCache(10, 10, MAX_AGE_MILLIS);
+        assertNull(cache.getPage("page1"));
+    }
+
+    @Test
+    public void testGetPage_expired() {
+        ListingCache cache = new ListingCache(10, 10, 0);
+        cache.putPage("page1", Collections.singletonList(mockReference("a.jpg")), null);
+
+        assertNull(cache.getPage("page1"));
+    }
+
+    @Test
+    public void testPutPage_evictsLeastRecentlyUsed() {
+        ListingCache cache = new ListingCache(1, 10, MAX_AGE_MILLIS);
+        cache.putPage("page1", Collections.singletonList(mockReference("a.jpg")), "token2");
+        cache.putPage("page2", Collections.singletonList(mockReference("b.jpg")), null);
+
+        assertNull(cache.getPage("page1"));
+        assertNotNull(cache.getPage("page2"));
+    }
+
+    @Test
+    public void testClearPages_keepsMetadata() {
+        ListingCache cache = new ListingCache(10, 10, MAX_AGE_MILLIS);
+        StorageReference ref = mockReference("a.jpg");
+        StorageMetadata metadata = mock(StorageMetadata.class);
+        cache.putPage("page1", Collections.singletonList(ref), null);
+        cache.putMetadata(ref, metadata);
+
+        cache.clearPages();
+
+        assertNull(cache.getPage("page1"));
+        assertSame(metadata, cache.getMetadata(ref));
+    }
+
+    @Test
+    public void testGetMetadata_byPath() {
+        ListingCache cache = new ListingCache(10, 10, MAX_AGE_MILLIS);
+        StorageMetadata metadata = mock(StorageMetadata.class);
+        cache.putMetadata(mockReference("a.jpg"), metadata);
+
+        // Another reference to the same object shares its metadata
+        assertSame(metadata, cache.getMetadata(mockReference("a.jpg")));
+        assertNull(cache.getMetadata(mockReference("b.jpg")));
+    }
+
+    private static StorageReference mockReference(String path) {
+        StorageReference ref = mock(StorageReference.class);
+        when(ref.getPath()).thenReturn(path);
+        return ref;
+    }
+}
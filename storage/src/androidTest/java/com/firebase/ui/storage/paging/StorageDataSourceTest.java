@@ -0,0 +1,216 @@
+package com.firebase.ui.storage.paging;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.ListResult;
+import com.google.firebase.storage.StorageReference;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import androidx.annotation.Nullable;
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.Observer;
+import androidx.paging.PageKeyedDataSource;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link ListResult} cannot be created outside of the Storage SDK, so successful listings are
+ * served from the {@link ListingCache}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StorageDataSourceTest {
+
+    private static final int PAGE_SIZE = 20;
+
+    private StorageDataSource mDataSource;
+    private ListingCache mCache;
+
+    /**
+     * Needed to run tasks on the main thread so observeForever() doesn't throw.
+     */
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    @Mock StorageReference mFolder;
+    @Mock PageKeyedDataSource.LoadInitialCallback<String, StorageReference> mInitialCallback;
+    @Mock PageKeyedDataSource.LoadCallback<String, StorageReference> mAfterCallback;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        mCache = new ListingCache(10, 10, 60 * 1000);
+        mDataSource = new StorageDataSource(mFolder, null, false, mCache);
+    }
+
+    @Test
+    public void testLoadInitial_fromCache() throws Exception {
+        List<StorageReference> items = Collections.singletonList(mock(StorageReference.class));
+        mCache.putPage(StorageDataSource.getPageId(mFolder, null, PAGE_SIZE), items, "token2");
+
+        TestObserver<LoadingState> observer = new TestObserver<>(2);
+        mDataSource.getLoadingState().observeForever(observer);
+
+        mDataSource.loadInitial(
+                new PageKeyedDataSource.LoadInitialParams<String>(PAGE_SIZE, false),
+                mInitialCallback);
+
+        // Should go from LOADING_INITIAL --> LOADED without listing the folder
+        observer.await();
+        observer.assertResults(Arrays.asList(LoadingState.LOADING_INITIAL, LoadingState.LOADED));
+        verify(mInitialCallback).onResult(items, null, "token2");
+        verify(mFolder, never()).list(anyInt());
+    }
+
+    @Test
+    public void testLoadAfter_lastPageFromCache() throws Exception {
+        List<StorageReference> items = Collections.singletonList(mock(StorageReference.class));
+        mCache.putPage(StorageDataSource.getPageId(mFolder, "token2", PAGE_SIZE), items, null);
+
+        TestObserver<LoadingState> observer = new TestObserver<>(3);
+        mDataSource.getLoadingState().observeForever(observer);
+
+        mDataSource.loadAfter(
+                new PageKeyedDataSource.LoadParams<>("token2", PAGE_SIZE), mAfterCallback);
+
+        // Should go from LOADING_MORE --> LOADED --> FINISHED
+        observer.await();
+        observer.assertResults(Arrays.asList(
+                LoadingState.LOADING_MORE, LoadingState.LOADED, LoadingState.FINISHED));
+        verify(mAfterCallback).onResult(items, null);
+        verify(mFolder, never()).list(anyInt(), anyString());
+    }
+
+    @Test
+    public void testLoadInitial_capsPageSize() throws Exception {
+        mockListFailure();
+
+        TestObserver<LoadingState> observer = new TestObserver<>(2);
+        mDataSource.getLoadingState().observeForever(observer);
+
+        mDataSource.loadInitial(
+                new PageKeyedDataSource.LoadInitialParams<String>(5000, false),
+                mInitialCallback);
+
+        observer.await();
+        verify(mFolder).list(1000);
+    }
+
+    @Test
+    public void testLoadInitial_failure() throws Exception {
+        mockListFailure();
+
+        TestObserver<LoadingState> observer = new TestObserver<>(2);
+        TestObserver<Exception> errorObserver = new TestObserver<>(1);
+        mDataSource.getLoadingState().observeForever(observer);
+        mDataSource.getLastError().observeForever(errorObserver);
+
+        mDataSource.loadInitial(
+                new PageKeyedDataSource.LoadInitialParams<String>(PAGE_SIZE, false),
+                mInitialCallback);
+
+        // Should go from LOADING_INITIAL --> ERROR
+        observer.await();
+        observer.assertResults(Arrays.asList(LoadingState.LOADING_INITIAL, LoadingState.ERROR));
+        errorObserver.await();
+        assertEquals("Could not list folder.", errorObserver.getResults().get(0).getMessage());
+    }
+
+    @Test
+    public void testLoadInitial_retry() throws Exception {
+        mockListFailure();
+
+        TestObserver<LoadingState> observer = new TestObserver<>(2);
+        mDataSource.getLoadingState().observeForever(observer);
+
+        mDataSource.loadInitial(
+                new PageKeyedDataSource.LoadInitialParams<String>(PAGE_SIZE, false),
+                mInitialCallback);
+        observer.await();
+
+        // The folder became reachable in the meantime
+        List<StorageReference> items = Collections.singletonList(mock(StorageReference.class));
+        mCache.putPage(StorageDataSource.getPageId(mFolder, null, PAGE_SIZE), items, "token2");
+
+        TestObserver<LoadingState> retryObserver = new TestObserver<>(3);
+        mDataSource.getLoadingState().observeForever(retryObserver);
+        mDataSource.retry();
+
+        // Should go from ERROR --> LOADING_INITIAL --> LOADED
+        retryObserver.await();
+        retryObserver.assertResults(Arrays.asList(
+                LoadingState.ERROR, LoadingState.LOADING_INITIAL, LoadingState.LOADED));
+        verify(mInitialCallback).onResult(items, null, "token2");
+    }
+
+    @Test
+    public void testRefresh_clearsPagesAndInvalidates() {
+        String pageId = StorageDataSource.getPageId(mFolder, null, PAGE_SIZE);
+        mCache.putPage(pageId, Collections.singletonList(mock(StorageReference.class)), null);
+
+        mDataSource.refresh();
+
+        assertNull(mCache.getPage(pageId));
+        assertTrue(mDataSource.isInvalid());
+    }
+
+    private void mockListFailure() {
+        when(mFolder.list(anyInt())).thenReturn(
+                Tasks.<ListResult>forException(new Exception("Could not list folder.")));
+    }
+
+    private static class TestObserver<T> implements Observer<T> {
+
+        private final List<T> mResults = new ArrayList<>();
+        private final CountDownLatch mLatch;
+
+        public TestObserver(int expectedCount) {
+            mLatch = new CountDownLatch(expectedCount);
+        }
+
+        @Override
+        public void onChanged(@Nullable T t) {
+            if (t != null) {
+                mResults.add(t);
+                mLatch.countDown();
+            }
+        }
+
+        public List<T> getResults() {
+            return mResults;
+        }
+
+        public void await() throws InterruptedException {
+            mLatch.await();
+        }
+
+        public void assertResults(List<T> expected) {
+            assertEquals(expected.size(), mResults.size());
+
+            for (int i = 0; i < mResults.size(); i++) {
+                assertEquals(mResults.get(i), expected.get(i));
+            }
+        }
+
+    }
+}
@@ -0,0 +1,86 @@
+package com.firebase.ui.storage.paging;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.google.firebase.storage.StorageReference;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import androidx.annotation.NonNull;
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class StoragePagingAdapterTest {
+
+    /**
+     * Needed to run tasks on the main thread so observeForever() doesn't throw.
+     */
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    @Mock StorageReference mFolder;
+    @Mock LifecycleOwner mOldOwner;
+    @Mock LifecycleOwner mNewOwner;
+    @Mock Lifecycle mOldLifecycle;
+    @Mock Lifecycle mNewLifecycle;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        when(mOldOwner.getLifecycle()).thenReturn(mOldLifecycle);
+        when(mNewOwner.getLifecycle()).thenReturn(mNewLifecycle);
+    }
+
+    @Test
+    public void testUpdateOptions_movesLifecycleObserver() {
+        StoragePagingAdapter<RecyclerView.ViewHolder> adapter = createAdapter(mOldOwner);
+        verify(mOldLifecycle).addObserver(adapter);
+
+        adapter.updateOptions(buildOptions(mNewOwner));
+
+        // The adapter must stop following the previous owner, not the new one
+        verify(mOldLifecycle).removeObserver(adapter);
+        verify(mNewLifecycle, never()).removeObserver(adapter);
+        verify(mNewLifecycle).addObserver(adapter);
+    }
+
+    private StoragePagingAdapter<RecyclerView.ViewHolder> createAdapter(LifecycleOwner owner) {
+        return new StoragePagingAdapter<RecyclerView.ViewHolder>(buildOptions(owner)) {
+            @Override
+            protected void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder,
+                                            int position,
+                                            @NonNull StorageReference reference) {
+            }
+
+            @NonNull
+            @Override
+            public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent,
+                                                              int viewType) {
+                return new RecyclerView.ViewHolder(new View(parent.getContext())) {};
+            }
+        };
+    }
+
+    private StoragePagingOptions buildOptions(LifecycleOwner owner) {
+        return new StoragePagingOptions.Builder()
+                .setFolder(mFolder, new PagedList.Config.Builder().setPageSize(20).build())
+                .setLifecycleOwner(owner)
+                .build();
+    }
+}
@@ -0,0 +1,222 @@
+package com.firebase.ui.storage.upload;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import androidx.exifinterface.media.ExifInterface;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ImageDownscalerTest {
+
+    private Context mContext;
+    private File mDir;
+    private ImageDownscaler mDownscaler;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mDir = new File(mContext.getCacheDir(), "ImageDownscalerTest");
+        mDownscaler = new ImageDownscaler(100, 100, null, 90);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+        new File(mContext.getCacheDir(), "ImageDownscalerTest.jpg").delete();
+        new File(mContext.getCacheDir(), "ImageDownscalerTest.png").delete();
+    }
+
+    @Test
+    public void testDownscale_keepsAspectRatio() throws IOException {
+        File source = writeJpeg(400, 200, ExifInterface.ORIENTATION_NORMAL);
+
+        Bitmap result = decode(mDownscaler.downscale(mContext, Uri.fromFile(source), mDir));
+
+        assertEquals(100, result.getWidth());
+        assertEquals(50, result.getHeight());
+    }
+
+    @Test
+    public void testDownscale_keepsJpeg() throws IOException {
+        File source = writeJpeg(400, 200, ExifInterface.ORIENTATION_NORMAL);
+
+        File result = mDownscaler.downscale(mContext, Uri.fromFile(source), mDir);
+
+        assertNotNull(result);
+        assertTrue(result.getName().endsWith(".jpg"));
+    }
+
+    @Test
+    public void testDownscale_keepsPngTransparency() throws IOException {
+        File source = writePng(400, 200);
+
+        File result = mDownscaler.downscale(mContext, Uri.fromFile(source), mDir);
+
+        assertNotNull(result);
+        assertTrue(result.getName().endsWith(".png"));
+        Bitmap bitmap = decode(result);
+        assertTrue(bitmap.hasAlpha());
+        assertEquals(0, Color.alpha(bitmap.getPixel(75, 25)));
+    }
+
+    @Test
+    public void testDownscale_overridesFormat() throws IOException {
+        ImageDownscaler downscaler = new ImageDownscaler(100, 100, Bitmap.CompressFormat.JPEG, 90);
+        File source = writePng(400, 200);
+
+        File result = downscaler.downscale(mContext, Uri.fromFile(source), mDir);
+
+        assertNotNull(result);
+        assertTrue(result.getName().endsWith(".jpg"));
+        assertFalse(decode(result).hasAlpha());
+    }
+
+    @Test
+    public void testDownscale_fits() throws IOException {
+        File source = writeJpeg(80, 40, ExifInterface.ORIENTATION_NORMAL);
+
+        assertNull(mDownscaler.downscale(mContext, Uri.fromFile(source), mDir));
+    }
+
+    @Test
+    public void testDownscale_notAnImage() throws IOException {
+        File source = new File(mContext.getCacheDir(), "ImageDownscalerTest.txt");
+        OutputStream out = new FileOutputStream(source);
+        try {
+            out.write("Not an image".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        try {
+            assertNull(mDownscaler.downscale(mContext, Uri.fromFile(source), mDir));
+        } finally {
+            source.delete();
+        }
+    }
+
+    @Test
+    public void testDownscale_rotate90() throws IOException {
+        // Left half red and right half blue, displayed with the red half on top
+        File source = writeJpeg(400, 200, ExifInterface.ORIENTATION_ROTATE_90);
+
+        Bitmap result = decode(mDownscaler.downscale(mContext, Uri.fromFile(source), mDir));
+
+        // The pixels are rotated, since the copy has no orientation
+        assertEquals(50, result.getWidth());
+        assertEquals(100, result.getHeight());
+        assertRed(result.getPixel(25, 10));
+        assertBlue(result.getPixel(25, 90));
+    }
+
+    @Test
+    public void testDownscale_rotate270() throws IOException {
+        File source = writeJpeg(400, 200, ExifInterface.ORIENTATION_ROTATE_270);
+
+        Bitmap result = decode(mDownscaler.downscale(mContext, Uri.fromFile(source), mDir));
+
+        assertEquals(50, result.getWidth());
+        assertEquals(100, result.getHeight());
+        assertBlue(result.getPixel(25, 10));
+        assertRed(result.getPixel(25, 90));
+    }
+
+    @Test
+    public void testDownscale_rotate90_appliesMaxSizeAfterRotation() throws IOException {
+        ImageDownscaler downscaler = new ImageDownscaler(100, 50, Bitmap.CompressFormat.JPEG, 90);
+        File source = writeJpeg(400, 200, ExifInterface.ORIENTATION_ROTATE_90);
+
+        Bitmap result = decode(downscaler.downscale(mContext, Uri.fromFile(source), mDir));
+
+        assertEquals(25, result.getWidth());
+        assertEquals(50, result.getHeight());
+    }
+
+    private File writeJpeg(int width, int height, int orientation) throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        paint.setColor(Color.RED);
+        canvas.drawRect(0, 0, width / 2f, height, paint);
+        paint.setColor(Color.BLUE);
+        canvas.drawRect(width / 2f, 0, width, height, paint);
+
+        File file = new File(mContext.getCacheDir(), "ImageDownscalerTest.jpg");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            assertTrue(bitmap.compress(Bitmap.CompressFormat.JPEG, 100, out));
+        } finally {
+            out.close();
+            bitmap.recycle();
+        }
+
+        ExifInterface exif = new ExifInterface(file.getPath());
+        exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(orientation));
+        exif.saveAttributes();
+        return file;
+    }
+
+    /**
+     * Writes an image whose left half is red and right half is transparent.
+     */
+    private File writePng(int width, int height) throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Paint paint = new Paint();
+        paint.setColor(Color.RED);
+        new Canvas(bitmap).drawRect(0, 0, width / 2f, height, paint);
+
+        File file = new File(mContext.getCacheDir(), "ImageDownscalerTest.png");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            assertTrue(bitmap.compress(Bitmap.CompressFormat.PNG, 100, out));
+        } finally {
+            out.close();
+            bitmap.recycle();
+        }
+        return file;
+    }
+
+    private static Bitmap decode(File file) {
+        assertNotNull(file);
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        assertNotNull(bitmap);
+        return bitmap;
+    }
+
+    private static void assertRed(int color) {
+        assertTrue(Color.red(color) > 200 && Color.blue(color) < 60);
+    }
+
+    private static void assertBlue(int color) {
+        assertTrue(Color.blue(color) > 200 && Color.red(color) < 60);
+    }
+}
@@ -0,0 +1,245 @@
+package com.firebase.ui.storage.upload;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Base64;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.OnProgressListener;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class UploadManagerTest {
+
+    private static final byte[] BYTES = {1, 2, 3, 4, 5};
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private Context mContext;
+    private File mDir;
+    private UploadManager mManager;
+
+    private String mHex;
+    private String mBase64;
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = ApplicationProvider.getApplicationContext();
+        mDir = new File(mContext.getCacheDir(), "UploadManagerTest");
+        mDir.mkdirs();
+        mManager = new UploadManager.Builder(mContext)
+                .disableDownscaling()
+                .setExecutor(DIRECT)
+                .build();
+
+        byte[] md5 = MessageDigest.getInstance("MD5").digest(BYTES);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : md5) {
+            hex.append(String.format("%02x", b));
+        }
+        mHex = hex.toString();
+        mBase64 = Base64.encodeToString(md5, Base64.NO_WRAP);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void testUploadIfChanged_unchanged_skipsUpload() throws Exception {
+        StorageReference destination = mockObject(mBase64);
+
+        StorageReference result = await(uploadIfChanged(writeSource(), destination));
+
+        assertSame(destination, result);
+        verify(destination, never()).putFile(any(Uri.class), nullable(StorageMetadata.class));
+    }
+
+    @Test
+    public void testUploadIfChanged_changed_uploads() throws Exception {
+        StorageReference destination = mockObject("changed");
+        FakeUpload upload = new FakeUpload(destination);
+        Uri source = writeSource();
+
+        Task<StorageReference> task = uploadIfChanged(source, destination);
+
+        verify(destination, timeout(TIMEOUT_MILLIS))
+                .putFile(eq(source), nullable(StorageMetadata.class));
+        upload.succeed();
+        assertSame(destination, await(task));
+    }
+
+    @Test
+    public void testUploadToContentAddress_namesObjectAfterHash() throws Exception {
+        StorageReference folder = mock(StorageReference.class);
+        StorageReference object = mockObject(mBase64);
+        when(folder.child(anyString())).thenReturn(object);
+
+        StorageReference result = await(uploadToContentAddress(writeSource(), folder));
+
+        assertSame(object, result);
+        verify(folder).child(mHex);
+        verify(object, never()).putFile(any(Uri.class), nullable(StorageMetadata.class));
+    }
+
+    @Test
+    public void testGetDeduplicationHitRate() throws Exception {
+        assertEquals(0, mManager.getDeduplicationHitRate(), 0);
+
+        await(uploadIfChanged(writeSource(), mockObject(mBase64)));
+        assertEquals(1, mManager.getDeduplicationHitRate(), 0);
+
+        StorageReference changed = mockObject("changed");
+        FakeUpload upload = new FakeUpload(changed);
+        Uri source = writeSource();
+        Task<StorageReference> task = uploadIfChanged(source, changed);
+        verify(changed, timeout(TIMEOUT_MILLIS))
+                .putFile(eq(source), nullable(StorageMetadata.class));
+        upload.succeed();
+        await(task);
+
+        assertEquals(0.5f, mManager.getDeduplicationHitRate(), 0);
+    }
+
+    private Task<StorageReference> uploadIfChanged(final Uri source,
+                                                   final StorageReference destination) {
+        final Task<?>[] task = new Task<?>[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                task[0] = mManager.uploadIfChanged(source, destination, null);
+            }
+        });
+        return cast(task[0]);
+    }
+
+    private Task<StorageReference> uploadToContentAddress(final Uri source,
+                                                          final StorageReference folder) {
+        final Task<?>[] task = new Task<?>[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                task[0] = mManager.uploadToContentAddress(source, folder, null);
+            }
+        });
+        return cast(task[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Task<StorageReference> cast(Task<?> task) {
+        return (Task<StorageReference>) task;
+    }
+
+    private static StorageReference await(Task<StorageReference> task) throws Exception {
+        return Tasks.await(task, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return a new file holding {@link #BYTES}, so that each upload has its own id.
+     */
+    private Uri writeSource() throws IOException {
+        File file = File.createTempFile("source", ".bin", mDir);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(BYTES);
+        } finally {
+            out.close();
+        }
+        return Uri.fromFile(file);
+    }
+
+    /**
+     * @return an object whose metadata reports the given MD5 hash.
+     */
+    private static StorageReference mockObject(String md5Hash) {
+        StorageMetadata metadata = mock(StorageMetadata.class);
+        when(metadata.getMd5Hash()).thenReturn(md5Hash);
+
+        StorageReference ref = mock(StorageReference.class);
+        when(ref.getMetadata()).thenReturn(Tasks.forResult(metadata));
+        return ref;
+    }
+
+    /**
+     * A mocked upload to an object, which completes when told to.
+     */
+    @SuppressWarnings("unchecked")
+    private static class FakeUpload {
+
+        final UploadTask mTask = mock(UploadTask.class);
+        OnSuccessListener<UploadTask.TaskSnapshot> mSuccess;
+
+        FakeUpload(StorageReference ref) {
+            when(ref.putFile(any(Uri.class), nullable(StorageMetadata.class))).thenReturn(mTask);
+            when(mTask.addOnProgressListener(any(OnProgressListener.class))).thenReturn(mTask);
+            when(mTask.addOnFailureListener(any(OnFailureListener.class))).thenReturn(mTask);
+            when(mTask.addOnSuccessListener(any(OnSuccessListener.class))).thenAnswer(
+                    new Answer<UploadTask>() {
+                        @Override
+                        public UploadTask answer(InvocationOnMock invocation) {
+                            mSuccess = invocation.getArgument(0);
+                            return mTask;
+                        }
+                    });
+        }
+
+        void succeed() {
+            final UploadTask.TaskSnapshot snapshot = mock(UploadTask.TaskSnapshot.class);
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    mSuccess.onSuccess(snapshot);
+                }
+            });
+        }
+    }
+}
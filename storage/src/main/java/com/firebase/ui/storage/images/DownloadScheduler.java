@@ -0,0 +1,432 @@
+package com.firebase.ui.storage.images;
+
+import android.util.Log;
+
+import com.bumptech.glide.Priority;
+import com.google.android.gms.tasks.OnCanceledListener;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.StreamDownloadTask;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Schedules the downloads started by {@link FirebaseImageLoader}.
+ *
+ * At most a fixed number of downloads run at once. Waiting downloads start in order of their Glide
+ * {@link Priority}, then in the order they were requested, so images shown on screen are not
+ * stuck behind prefetches. Requests for the same object share a single download while it waits
+ * or runs, and cancelled requests leave the queue immediately.
+ *
+ * A scheduler can be shared between several loaders with
+ * {@link FirebaseImageLoader.Factory.Builder#setDownloadScheduler(DownloadScheduler)}.
+ */
+public class DownloadScheduler {
+
+    private static final String TAG = "DownloadScheduler";
+
+    /**
+     * The first request of a download reads its stream as it arrives, and the bytes read are kept
+     * for the other requests up to this size. Requests sharing a larger object download it again.
+     */
+    private static final int MAX_SHARED_BYTES = 4 * 1024 * 1024;
+
+    private static final Comparator<Job> BY_PRIORITY = new Comparator<Job>() {
+        @Override
+        public int compare(Job a, Job b) {
+            // Priority constants are declared from most to least urgent
+            int priority = a.mPriority.compareTo(b.mPriority);
+            if (priority != 0) {
+                return priority;
+            }
+            return a.mSequence < b.mSequence ? -1 : (a.mSequence == b.mSequence ? 0 : 1);
+        }
+    };
+
+    private final int mMaxConcurrentDownloads;
+
+    private final PriorityQueue<Job> mQueue = new PriorityQueue<>(11, BY_PRIORITY);
+
+    /**
+     * Waiting and running jobs which can still be shared, by path.
+     */
+    private final Map<String, Job> mJobs = new HashMap<>();
+    private int mRunning;
+    private long mNextSequence;
+
+    /**
+     * @param maxConcurrentDownloads the maximum number of downloads running at once.
+     */
+    public DownloadScheduler(int maxConcurrentDownloads) {
+        if (maxConcurrentDownloads < 1) {
+            throw new IllegalArgumentException("maxConcurrentDownloads must be at least 1.");
+        }
+        mMaxConcurrentDownloads = maxConcurrentDownloads;
+    }
+
+    /**
+     * Receives the result of a {@link Request}. Called on the main thread, or for a request
+     * sharing a running download, on the thread which read the download to its end.
+     */
+    interface Callback {
+
+        void onStreamReady(@NonNull InputStream stream);
+
+        void onLoadFailed(@NonNull Exception e);
+    }
+
+    /**
+     * Queue a download of the given object. The stream passed to the callback is closed by
+     * {@link Request#release()}.
+     */
+    @NonNull
+    Request schedule(@NonNull StorageReference ref,
+                     @NonNull Priority priority,
+                     @NonNull Callback callback) {
+        Request request = new Request(callback);
+
+        byte[] bytes;
+        synchronized (this) {
+            Job job = mJobs.get(ref.getPath());
+            if (job == null) {
+                job = new Job(ref, priority, mNextSequence++);
+                mJobs.put(ref.getPath(), job);
+                mQueue.add(job);
+            } else if (job.mTask == null && priority.compareTo(job.mPriority) < 0) {
+                // Re-insert the shared download with the more urgent priority
+                mQueue.remove(job);
+                job.mPriority = priority;
+                mQueue.add(job);
+            }
+
+            job.mRequests.add(request);
+            request.mJob = job;
+            // Set once the download was read to its end
+            bytes = job.mBytes;
+
+            startNext();
+        }
+
+        if (bytes != null) {
+            request.mCallback.onStreamReady(new ByteArrayInputStream(bytes));
+        }
+        return request;
+    }
+
+    private void cancel(@NonNull Request request) {
+        Job job = request.mJob;
+        synchronized (this) {
+            if (!job.mRequests.remove(request) || !job.mRequests.isEmpty()) {
+                return;
+            }
+
+            if (job.mTask == null) {
+                mQueue.remove(job);
+                forget(job);
+            } else if (job.mTask.isInProgress()) {
+                // Completion is reported through the cancellation listener, new requests need a
+                // download of their own
+                forget(job);
+                job.mTask.cancel();
+            }
+        }
+    }
+
+    private void release(@NonNull Request request) {
+        cancel(request);
+
+        InputStream stream;
+        synchronized (this) {
+            stream = request.mStream;
+            request.mStream = null;
+        }
+
+        if (stream != null) {
+            closeQuietly(stream);
+            // The stream was still being downloaded, so this frees the slot
+            finish(request.mJob);
+        }
+    }
+
+    private synchronized void startNext() {
+        while (mRunning < mMaxConcurrentDownloads && !mQueue.isEmpty()) {
+            start(mQueue.poll());
+        }
+    }
+
+    private void start(@NonNull final Job job) {
+        mRunning++;
+
+        // Hand the stream straight to the first request, the download continues while Glide
+        // decodes it. The other requests get the bytes once it was read to its end.
+        job.mTask = job.mRef.getStream();
+        job.mTask
+                .addOnSuccessListener(new OnSuccessListener<StreamDownloadTask.TaskSnapshot>() {
+                    @Override
+                    public void onSuccess(StreamDownloadTask.TaskSnapshot snapshot) {
+                        onStreamReady(job, snapshot.getStream());
+                    }
+                })
+                .addOnFailureListener(new OnFailureListener() {
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        onFailed(job, e);
+                    }
+                })
+                .addOnCanceledListener(new OnCanceledListener() {
+                    @Override
+                    public void onCanceled() {
+                        finish(job);
+                    }
+                });
+    }
+
+    private void onStreamReady(@NonNull Job job, @NonNull InputStream stream) {
+        Request request = null;
+        InputStream shared = null;
+        synchronized (this) {
+            if (!job.mRequests.isEmpty()) {
+                request = job.mRequests.get(0);
+                shared = new SharingInputStream(job, stream);
+                request.mStream = shared;
+                job.mReader = request;
+            }
+        }
+
+        if (request == null) {
+            closeQuietly(stream);
+            finish(job);
+        } else {
+            request.mCallback.onStreamReady(shared);
+        }
+    }
+
+    private void onFailed(@NonNull Job job, @NonNull Exception e) {
+        finish(job);
+
+        for (Request request : getRequests(job)) {
+            request.mCallback.onLoadFailed(e);
+        }
+    }
+
+    /**
+     * Called by the reader of a shared download once it read the stream to its end.
+     */
+    private void onBytesReady(@NonNull Job job, @NonNull byte[] bytes) {
+        List<Request> requests;
+        synchronized (this) {
+            job.mBytes = bytes;
+            requests = getRequests(job);
+            requests.remove(job.mReader);
+        }
+
+        for (Request request : requests) {
+            request.mCallback.onStreamReady(new ByteArrayInputStream(bytes));
+        }
+    }
+
+    /**
+     * Stop sharing a running download whose bytes cannot be kept, and start a new one for the
+     * other requests waiting for it.
+     */
+    private synchronized void stopSharing(@NonNull Job job) {
+        forget(job);
+
+        List<Request> waiting = getRequests(job);
+        waiting.remove(job.mReader);
+        if (waiting.isEmpty()) {
+            return;
+        }
+
+        Job retry = new Job(job.mRef, job.mPriority, mNextSequence++);
+        for (Request request : waiting) {
+            job.mRequests.remove(request);
+            retry.mRequests.add(request);
+            request.mJob = retry;
+        }
+        mJobs.put(retry.mRef.getPath(), retry);
+        mQueue.add(retry);
+        startNext();
+    }
+
+    /**
+     * Free the slot of a running job and start the next one. Safe to call more than once.
+     */
+    private void finish(@NonNull Job job) {
+        synchronized (this) {
+            if (job.mTask == null || job.mFinished) {
+                return;
+            }
+
+            job.mFinished = true;
+            mRunning--;
+
+            if (job.mBytes == null && job.mReader != null) {
+                // Released before the end of the stream, the others need a download of their own
+                stopSharing(job);
+            } else {
+                forget(job);
+            }
+            startNext();
+        }
+    }
+
+    private synchronized void forget(@NonNull Job job) {
+        if (mJobs.get(job.mRef.getPath()) == job) {
+            mJobs.remove(job.mRef.getPath());
+        }
+    }
+
+    @NonNull
+    private synchronized List<Request> getRequests(@NonNull Job job) {
+        return new ArrayList<>(job.mRequests);
+    }
+
+    private static void closeQuietly(@NonNull InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not close stream", e);
+        }
+    }
+
+    /**
+     * A request for the download of an object, possibly shared with other requests.
+     */
+    final class Request {
+
+        private final Callback mCallback;
+        private Job mJob;
+        private InputStream mStream;
+
+        private Request(@NonNull Callback callback) {
+            mCallback = callback;
+        }
+
+        /**
+         * Stop waiting for the download. The download itself is cancelled if no other request
+         * shares it.
+         */
+        void cancel() {
+            DownloadScheduler.this.cancel(this);
+        }
+
+        /**
+         * Close the stream passed to the callback, if any, and give up the request.
+         */
+        void release() {
+            DownloadScheduler.this.release(this);
+        }
+    }
+
+    private static class Job {
+
+        final StorageReference mRef;
+        final long mSequence;
+        final List<Request> mRequests = new ArrayList<>();
+
+        Priority mPriority;
+        @Nullable StreamDownloadTask mTask;
+        boolean mFinished;
+
+        /**
+         * The request reading the stream, and the bytes it read once it reached the end.
+         */
+        @Nullable Request mReader;
+        @Nullable byte[] mBytes;
+
+        Job(@NonNull StorageReference ref, @NonNull Priority priority, long sequence) {
+            mRef = ref;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+    }
+
+    /**
+     * Keeps the bytes read from a download, up to {@link #MAX_SHARED_BYTES}, for the requests
+     * sharing it.
+     */
+    private final class SharingInputStream extends FilterInputStream {
+
+        private final Job mJob;
+        @Nullable private ByteArrayOutputStream mBytes = new ByteArrayOutputStream();
+
+        SharingInputStream(@NonNull Job job, @NonNull InputStream in) {
+            super(in);
+            mJob = job;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                onEnd();
+            } else if (keep(1)) {
+                mBytes.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                onEnd();
+            } else if (keep(read)) {
+                mBytes.write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes cannot be shared
+            if (mBytes != null) {
+                mBytes = null;
+                stopSharing(mJob);
+            }
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            // Re-reading after reset() would record the bytes twice
+            return false;
+        }
+
+        private boolean keep(int count) {
+            if (mBytes == null) {
+                return false;
+            }
+
+            if (mBytes.size() + count > MAX_SHARED_BYTES) {
+                mBytes = null;
+                stopSharing(mJob);
+                return false;
+            }
+            return true;
+        }
+
+        private void onEnd() {
+            if (mBytes != null) {
+                byte[] bytes = mBytes.toByteArray();
+                mBytes = null;
+                onBytesReady(mJob, bytes);
+            }
+        }
+    }
+}
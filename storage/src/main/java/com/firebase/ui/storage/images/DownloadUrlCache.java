@@ -0,0 +1,68 @@
+package com.firebase.ui.storage.images;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import com.google.firebase.storage.StorageReference;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * In-memory LRU cache of download URLs, used by {@link FirebaseUrlImageLoader} so that
+ * {@link StorageReference#getDownloadUrl()} is resolved once per object rather than once per load.
+ */
+public class DownloadUrlCache {
+
+    private final LruCache<String, Entry> mUrls;
+    private final long mTtlMillis;
+
+    /**
+     * @param maxEntries the maximum number of URLs to keep.
+     * @param ttlMillis  how long a URL is used before it is resolved again.
+     */
+    public DownloadUrlCache(int maxEntries, long ttlMillis) {
+        mUrls = new LruCache<>(maxEntries);
+        mTtlMillis = ttlMillis;
+    }
+
+    /**
+     * @return the cached download URL of the object, or null if it is unknown or expired.
+     */
+    @Nullable
+    public Uri get(@NonNull StorageReference ref) {
+        Entry entry = mUrls.get(ref.getPath());
+        if (entry == null) {
+            return null;
+        }
+
+        if (SystemClock.elapsedRealtime() - entry.mResolvedAt >= mTtlMillis) {
+            mUrls.remove(ref.getPath());
+            return null;
+        }
+        return entry.mUrl;
+    }
+
+    public void put(@NonNull StorageReference ref, @NonNull Uri url) {
+        mUrls.put(ref.getPath(), new Entry(url, SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Forget the URL of an object, for example after its download token was revoked.
+     */
+    public void remove(@NonNull StorageReference ref) {
+        mUrls.remove(ref.getPath());
+    }
+
+    private static class Entry {
+
+        final Uri mUrl;
+        final long mResolvedAt;
+
+        Entry(@NonNull Uri url, long resolvedAt) {
+            mUrl = url;
+            mResolvedAt = resolvedAt;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.firebase.ui.storage.images;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.StreamDownloadTask;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * ModelLoader implementation which downloads images from FirebaseStorage into byte arrays,
+ * handed to Glide as {@link ByteBuffer}s.
+ *
+ * <p>
+ * Glide decodes and caches {@link ByteBuffer} data without copying it through its own stream
+ * buffers, which saves memory and time for large images. Each image is read into an array of its
+ * exact size, which Glide may keep reading after the load completes, so it is never pooled.
+ * Glide's {@link ArrayPool} only provides the scratch buffers used while the size of an object is
+ * not known, which are always returned to it.
+ *
+ * <p>
+ * Prepend this loader in your AppGlideModule so that Glide prefers it over
+ * {@link FirebaseImageLoader}:
+ * <pre>
+ *         {@literal @}Override
+ *         public void registerComponents(Context context, Glide glide, Registry registry) {
+ *             registry.prepend(StorageReference.class, ByteBuffer.class,
+ *                     new FirebaseByteBufferLoader.Factory(glide.getArrayPool()));
+ *         }
+ * </pre>
+ *
+ * Images are cached by their path in Cloud Storage, like with {@link FirebaseImageLoader}.
+ */
+public class FirebaseByteBufferLoader implements ModelLoader<StorageReference, ByteBuffer> {
+
+    /**
+     * Size of the scratch buffer reading objects whose size is not known in advance.
+     */
+    private static final int SCRATCH_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Factory to create {@link FirebaseByteBufferLoader}.
+     */
+    public static class Factory implements ModelLoaderFactory<StorageReference, ByteBuffer> {
+
+        private final ArrayPool mArrayPool;
+
+        /**
+         * @param arrayPool the pool to take scratch buffers from, usually
+         *                  {@code Glide#getArrayPool()}.
+         */
+        public Factory(@NonNull ArrayPool arrayPool) {
+            mArrayPool = arrayPool;
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<StorageReference, ByteBuffer> build(@NonNull MultiModelLoaderFactory factory) {
+            return new FirebaseByteBufferLoader(mArrayPool);
+        }
+
+        @Override
+        public void teardown() {
+            // No-op
+        }
+    }
+
+    private final ArrayPool mArrayPool;
+
+    public FirebaseByteBufferLoader(@NonNull ArrayPool arrayPool) {
+        mArrayPool = arrayPool;
+    }
+
+    @Nullable
+    @Override
+    public LoadData<ByteBuffer> buildLoadData(@NonNull StorageReference reference,
+                                              int width,
+                                              int height,
+                                              @NonNull Options options) {
+        return new LoadData<>(
+                new ObjectKey(reference.getPath()),
+                new ByteBufferFetcher(reference, mArrayPool));
+    }
+
+    @Override
+    public boolean handles(@NonNull StorageReference reference) {
+        return true;
+    }
+
+    private static class ByteBufferFetcher implements DataFetcher<ByteBuffer> {
+
+        private final StorageReference mRef;
+        private final ArrayPool mArrayPool;
+
+        private volatile StreamDownloadTask mStreamTask;
+
+        ByteBufferFetcher(@NonNull StorageReference ref, @NonNull ArrayPool arrayPool) {
+            mRef = ref;
+            mArrayPool = arrayPool;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority,
+                             @NonNull final DataCallback<? super ByteBuffer> callback) {
+            final byte[][] bytes = new byte[1][];
+            mStreamTask = mRef.getStream(new StreamDownloadTask.StreamProcessor() {
+                @Override
+                public void doInBackground(@NonNull StreamDownloadTask.TaskSnapshot snapshot,
+                                           @NonNull InputStream stream) throws IOException {
+                    bytes[0] = read(stream, snapshot.getTotalByteCount());
+                }
+            });
+            mStreamTask
+                    .addOnSuccessListener(new OnSuccessListener<StreamDownloadTask.TaskSnapshot>() {
+                        @Override
+                        public void onSuccess(StreamDownloadTask.TaskSnapshot snapshot) {
+                            // Glide may keep the buffer after cleanup(), for example to play an
+                            // animated GIF, so the array is never pooled.
+                            callback.onDataReady(ByteBuffer.wrap(bytes[0]));
+                        }
+                    })
+                    .addOnFailureListener(new OnFailureListener() {
+                        @Override
+                        public void onFailure(@NonNull Exception e) {
+                            callback.onLoadFailed(e);
+                        }
+                    });
+        }
+
+        /**
+         * Read the whole stream into an array of its exact size. Objects of a known size are read
+         * straight into it, others through a pooled scratch buffer.
+         */
+        @NonNull
+        private byte[] read(@NonNull InputStream stream, long totalByteCount) throws IOException {
+            byte[] bytes = new byte[totalByteCount > 0 && totalByteCount < Integer.MAX_VALUE
+                    ? (int) totalByteCount : 0];
+            int length = 0;
+            int read;
+            while (length < bytes.length
+                    && (read = stream.read(bytes, length, bytes.length - length)) != -1) {
+                length += read;
+            }
+            if (length < bytes.length) {
+                return Arrays.copyOf(bytes, length);
+            }
+
+            // The size was unknown, or the stream is longer than announced
+            byte[] scratch = mArrayPool.get(SCRATCH_BUFFER_SIZE, byte[].class);
+            try {
+                read = stream.read(scratch);
+                if (read == -1) {
+                    return bytes;
+                }
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream(
+                        Math.max(2 * length, SCRATCH_BUFFER_SIZE));
+                out.write(bytes, 0, length);
+                do {
+                    out.write(scratch, 0, read);
+                } while ((read = stream.read(scratch)) != -1);
+                return out.toByteArray();
+            } finally {
+                mArrayPool.put(scratch);
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            // No-op, the array belongs to Glide once handed over
+        }
+
+        @Override
+        public void cancel() {
+            // Cancel task if possible
+            if (mStreamTask != null && mStreamTask.isInProgress()) {
+                mStreamTask.cancel();
+            }
+        }
+
+        @NonNull
+        @Override
+        public Class<ByteBuffer> getDataClass() {
+            return ByteBuffer.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.REMOTE;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.firebase.ui.storage.images;
 
+import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.util.Log;
+import android.util.LruCache;
 
 import com.bumptech.glide.Priority;
 import com.bumptech.glide.load.DataSource;
@@ -10,15 +13,27 @@ import com.bumptech.glide.load.data.DataFetcher;
 import com.bumptech.glide.load.model.ModelLoader;
 import com.bumptech.glide.load.model.ModelLoaderFactory;
 import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
 import com.google.firebase.storage.StorageReference;
-import com.google.firebase.storage.StreamDownloadTask;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -47,38 +62,299 @@ import androidx.annotation.Nullable;
  *         .load(ref)
  *         .into(iv);
  * </pre>
+ *
+ * <p>
+ * To download resized copies of the images instead of the originals, pass a
+ * {@link VariantResolver} to the {@link Factory}. To invalidate cached images when the object in
+ * Cloud Storage is overwritten, pass a {@link StorageMetadataCache} with
+ * {@link Factory.Builder#setMetadataCache(StorageMetadataCache)}.
+ *
+ * <p>
+ * To serve images prefetched for offline use before using the network, pass an
+ * {@link OfflineCache} with {@link Factory.Builder#setOfflineCache(OfflineCache)}.
+ *
+ * <p>
+ * Downloads are started by a {@link DownloadScheduler}, which runs at most four at once by
+ * default. Use {@link Factory.Builder#setDownloadScheduler(DownloadScheduler)} to change the
+ * limit.
  */
 public class FirebaseImageLoader implements ModelLoader<StorageReference, InputStream> {
 
     private static final String TAG = "FirebaseImageLoader";
 
+    private static final int MAX_MISSING_VARIANTS = 1000;
+
+    /**
+     * How long a variant stays known to be missing while its original is unchanged. Resized
+     * copies are usually written some time after the original is uploaded, so they are looked for
+     * again after a while. Overwriting the original forgets its missing variants right away.
+     */
+    private static final long MISSING_VARIANT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 4;
+
+    private static final Comparator<ImageVariant> BY_AREA = new Comparator<ImageVariant>() {
+        @Override
+        public int compare(ImageVariant a, ImageVariant b) {
+            long areaA = (long) a.getWidth() * a.getHeight();
+            long areaB = (long) b.getWidth() * b.getHeight();
+            return areaA < areaB ? -1 : (areaA == areaB ? 0 : 1);
+        }
+    };
 
     /**
      * Factory to create {@link FirebaseImageLoader}.
      */
     public static class Factory implements ModelLoaderFactory<StorageReference, InputStream> {
 
+        private final VariantResolver mVariantResolver;
+        private final StorageMetadataCache mMetadataCache;
+        private final DownloadScheduler mDownloadScheduler;
+        private final OfflineCache mOfflineCache;
+
+        public Factory() {
+            this(null);
+        }
+
+        /**
+         * @param variantResolver lists the resized copies of each image, so that the smallest
+         *                        copy covering the target size is downloaded.
+         */
+        public Factory(@Nullable VariantResolver variantResolver) {
+            this(variantResolver, null, null, null);
+        }
+
+        private Factory(@Nullable VariantResolver variantResolver,
+                        @Nullable StorageMetadataCache metadataCache,
+                        @Nullable DownloadScheduler downloadScheduler,
+                        @Nullable OfflineCache offlineCache) {
+            mOfflineCache = offlineCache;
+            mVariantResolver = variantResolver;
+            mMetadataCache = metadataCache;
+            mDownloadScheduler = downloadScheduler == null
+                    ? new DownloadScheduler(DEFAULT_MAX_CONCURRENT_DOWNLOADS) : downloadScheduler;
+        }
+
         @NonNull
         @Override
         public ModelLoader<StorageReference, InputStream> build(@NonNull MultiModelLoaderFactory factory) {
-            return new FirebaseImageLoader();
+            return new FirebaseImageLoader(this);
         }
 
         @Override
         public void teardown() {
             // No-op
         }
+
+        /**
+         * Builder for a {@link Factory} with optional features.
+         */
+        public static final class Builder {
+
+            private VariantResolver mVariantResolver;
+            private StorageMetadataCache mMetadataCache;
+            private DownloadScheduler mDownloadScheduler;
+            private OfflineCache mOfflineCache;
+
+            /**
+             * Sets a {@link VariantResolver} listing the resized copies of each image, so that the
+             * smallest copy covering the target size is downloaded.
+             *
+             * @return this, for chaining.
+             */
+            @NonNull
+            public Builder setVariantResolver(@NonNull VariantResolver variantResolver) {
+                mVariantResolver = variantResolver;
+                return this;
+            }
+
+            /**
+             * Include the version of each object in the Glide cache key, so that overwritten
+             * objects are downloaded again while unchanged ones stay in the disk cache
+             * indefinitely. Versions are cached for the time to live of the given cache, after
+             * which the object metadata is fetched again in the background. Loading never waits
+             * for the metadata, so an overwritten object is shown as it was until the load after
+             * its new version arrives.
+             *
+             * @return this, for chaining.
+             */
+            @NonNull
+            public Builder setMetadataCache(@NonNull StorageMetadataCache metadataCache) {
+                mMetadataCache = metadataCache;
+                return this;
+            }
+
+            /**
+             * Sets the {@link DownloadScheduler} starting the downloads, for example to change
+             * the number of concurrent downloads or to share the limit with other loaders.
+             *
+             * @return this, for chaining.
+             */
+            @NonNull
+            public Builder setDownloadScheduler(@NonNull DownloadScheduler downloadScheduler) {
+                mDownloadScheduler = downloadScheduler;
+                return this;
+            }
+
+            /**
+             * Serve images from the given {@link OfflineCache} when they were prefetched, before
+             * using the network.
+             *
+             * @return this, for chaining.
+             */
+            @NonNull
+            public Builder setOfflineCache(@NonNull OfflineCache offlineCache) {
+                mOfflineCache = offlineCache;
+                return this;
+            }
+
+            @NonNull
+            public Factory build() {
+                return new Factory(
+                        mVariantResolver, mMetadataCache, mDownloadScheduler, mOfflineCache);
+            }
+        }
+    }
+
+    private final VariantResolver mVariantResolver;
+    private final StorageMetadataCache mMetadataCache;
+    private final DownloadScheduler mDownloadScheduler;
+    private final OfflineCache mOfflineCache;
+
+    /**
+     * Variants known not to exist for a version of their original, with the time they were found
+     * missing, shared by all loads of this loader.
+     */
+    private final MissingVariants mMissingVariants = new MissingVariants();
+
+    /**
+     * Paths whose metadata is being fetched.
+     */
+    private final Set<String> mRefreshing = Collections.synchronizedSet(new HashSet<String>());
+
+    public FirebaseImageLoader() {
+        this(new Factory());
+    }
+
+    public FirebaseImageLoader(@Nullable VariantResolver variantResolver) {
+        this(new Factory(variantResolver));
+    }
+
+    private FirebaseImageLoader(@NonNull Factory factory) {
+        mVariantResolver = factory.mVariantResolver;
+        mMetadataCache = factory.mMetadataCache;
+        mDownloadScheduler = factory.mDownloadScheduler;
+        mOfflineCache = factory.mOfflineCache;
     }
 
     @Nullable
     @Override
     public LoadData<InputStream> buildLoadData(@NonNull StorageReference reference,
-                                               int height,
                                                int width,
+                                               int height,
                                                @NonNull Options options) {
+        // Prefetched images are served as they are, without looking for variants or versions
+        if (mOfflineCache != null && mOfflineCache.get(reference) != null) {
+            List<StorageReference> candidates = Collections.singletonList(reference);
+            return new LoadData<>(
+                    new FirebaseStorageKey(candidates, null),
+                    new FirebaseStorageFetcher(candidates, null,
+                            mMissingVariants, mDownloadScheduler, mOfflineCache));
+        }
+
+        // Never wait for the metadata here: Glide builds load data on its disk cache executor,
+        // which has a single thread. The last known versions are used and a missing or expired
+        // one is fetched for the next load.
+        String originalVersion =
+                mMetadataCache == null ? null : mMetadataCache.getKeyVersion(reference);
+        List<StorageReference> candidates =
+                getCandidates(reference, originalVersion, width, height);
+        StorageReference first = candidates.get(0);
+        String version = null;
+        if (mMetadataCache != null) {
+            version = first == reference ? originalVersion : mMetadataCache.getKeyVersion(first);
+            if (mMetadataCache.needsRefresh(first)) {
+                refreshVersion(first, first == reference ? null : reference, originalVersion);
+            }
+        }
         return new LoadData<>(
-                new FirebaseStorageKey(reference),
-                new FirebaseStorageFetcher(reference));
+                new FirebaseStorageKey(candidates, version),
+                new FirebaseStorageFetcher(candidates, originalVersion,
+                        mMissingVariants, mDownloadScheduler, mOfflineCache));
+    }
+
+    /**
+     * Fetch the metadata of the given object in the background and cache its version. A missing
+     * variant is remembered so the next load skips it.
+     *
+     * @param original the original of the object if it is a variant, null otherwise.
+     */
+    private void refreshVersion(@NonNull final StorageReference ref,
+                                @Nullable final StorageReference original,
+                                @Nullable final String originalVersion) {
+        if (!mRefreshing.add(ref.getPath())) {
+            return;
+        }
+
+        ref.getMetadata()
+                .addOnSuccessListener(AsyncTask.THREAD_POOL_EXECUTOR,
+                        new OnSuccessListener<StorageMetadata>() {
+                            @Override
+                            public void onSuccess(StorageMetadata metadata) {
+                                mMetadataCache.put(ref, metadata);
+                            }
+                        })
+                .addOnFailureListener(AsyncTask.THREAD_POOL_EXECUTOR, new OnFailureListener() {
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        if (original != null && isObjectNotFound(e)) {
+                            mMissingVariants.add(ref, originalVersion);
+                        } else {
+                            Log.w(TAG, "Could not get metadata of " + ref.getPath(), e);
+                        }
+                    }
+                })
+                .addOnCompleteListener(AsyncTask.THREAD_POOL_EXECUTOR,
+                        new OnCompleteListener<StorageMetadata>() {
+                            @Override
+                            public void onComplete(@NonNull Task<StorageMetadata> task) {
+                                mRefreshing.remove(ref.getPath());
+                            }
+                        });
+    }
+
+    private static boolean isObjectNotFound(@Nullable Throwable e) {
+        return e instanceof StorageException
+                && ((StorageException) e).getErrorCode() == StorageException.ERROR_OBJECT_NOT_FOUND;
+    }
+
+    /**
+     * The variants covering the target size that are not known to be missing, smallest first,
+     * followed by the original.
+     */
+    @NonNull
+    private List<StorageReference> getCandidates(@NonNull StorageReference reference,
+                                                 @Nullable String originalVersion,
+                                                 int width,
+                                                 int height) {
+        List<StorageReference> candidates = new ArrayList<>();
+
+        // Target.SIZE_ORIGINAL and other non-positive sizes ask for the original
+        if (mVariantResolver != null && width > 0 && height > 0) {
+            List<ImageVariant> variants = new ArrayList<>(mVariantResolver.getVariants(reference));
+            Collections.sort(variants, BY_AREA);
+
+            for (ImageVariant variant : variants) {
+                StorageReference ref = variant.getReference();
+                if (variant.covers(width, height)
+                        && !mMissingVariants.contains(ref, originalVersion)) {
+                    candidates.add(ref);
+                }
+            }
+        }
+
+        candidates.add(reference);
+        return candidates;
     }
 
     @Override
@@ -86,17 +362,65 @@ public class FirebaseImageLoader implements ModelLoader<StorageReference, InputS
         return true;
     }
 
+    /**
+     * Bounded set of variants known not to exist, keyed by the version of their original so that
+     * overwriting the original forgets them. Entries expire after
+     * {@link #MISSING_VARIANT_TTL_MILLIS}.
+     */
+    private static class MissingVariants {
+
+        private final LruCache<String, Long> mFoundAt = new LruCache<>(MAX_MISSING_VARIANTS);
+
+        void add(@NonNull StorageReference ref, @Nullable String originalVersion) {
+            mFoundAt.put(getKey(ref, originalVersion), SystemClock.elapsedRealtime());
+        }
+
+        boolean contains(@NonNull StorageReference ref, @Nullable String originalVersion) {
+            String key = getKey(ref, originalVersion);
+            Long foundAt = mFoundAt.get(key);
+            if (foundAt == null) {
+                return false;
+            }
+
+            if (SystemClock.elapsedRealtime() - foundAt >= MISSING_VARIANT_TTL_MILLIS) {
+                mFoundAt.remove(key);
+                return false;
+            }
+            return true;
+        }
+
+        @NonNull
+        private static String getKey(@NonNull StorageReference ref,
+                                     @Nullable String originalVersion) {
+            return originalVersion == null ? ref.getPath() : ref.getPath() + "|" + originalVersion;
+        }
+    }
+
+    /**
+     * Names the first of the candidates which exists, so that the bytes of a fallback are cached
+     * under a key of their own rather than under the missing variant.
+     */
     private static class FirebaseStorageKey implements Key {
 
-        private StorageReference mRef;
+        private List<StorageReference> mCandidates;
+        private String mVersion;
 
-        public FirebaseStorageKey(StorageReference ref) {
-            mRef = ref;
+        /**
+         * @param version the version of the first candidate, if known.
+         */
+        public FirebaseStorageKey(List<StorageReference> candidates, @Nullable String version) {
+            mCandidates = candidates;
+            mVersion = version;
         }
 
         @Override
         public void updateDiskCacheKey(@NonNull MessageDigest digest) {
-            digest.update(mRef.getPath().getBytes(Charset.defaultCharset()));
+            for (StorageReference ref : mCandidates) {
+                digest.update(ref.getPath().getBytes(Charset.defaultCharset()));
+            }
+            if (mVersion != null) {
+                digest.update(mVersion.getBytes(Charset.defaultCharset()));
+            }
         }
 
         @Override
@@ -106,63 +430,121 @@ public class FirebaseImageLoader implements ModelLoader<StorageReference, InputS
 
             FirebaseStorageKey key = (FirebaseStorageKey) o;
 
-            return mRef.equals(key.mRef);
+            return mCandidates.equals(key.mCandidates)
+                    && (mVersion == null ? key.mVersion == null : mVersion.equals(key.mVersion));
         }
 
         @Override
         public int hashCode() {
-            return mRef.hashCode();
+            return 31 * mCandidates.hashCode() + (mVersion == null ? 0 : mVersion.hashCode());
         }
     }
 
     private static class FirebaseStorageFetcher implements DataFetcher<InputStream> {
 
-        private StorageReference mRef;
-        private StreamDownloadTask mStreamTask;
-        private InputStream mInputStream;
+        private final List<StorageReference> mCandidates;
+        private final String mOriginalVersion;
+        private final MissingVariants mMissingVariants;
+        private final DownloadScheduler mDownloadScheduler;
+        private final OfflineCache mOfflineCache;
+        private volatile DownloadScheduler.Request mRequest;
+        private volatile InputStream mLocalStream;
+        private volatile DataSource mDataSource = DataSource.REMOTE;
+        private volatile boolean mIsCancelled;
 
-        public FirebaseStorageFetcher(StorageReference ref) {
-            mRef = ref;
+        /**
+         * @param candidates      the references to try in order, the last one being the original.
+         * @param originalVersion the last known version of the original, if any.
+         */
+        public FirebaseStorageFetcher(List<StorageReference> candidates,
+                                      @Nullable String originalVersion,
+                                      MissingVariants missingVariants,
+                                      DownloadScheduler downloadScheduler,
+                                      @Nullable OfflineCache offlineCache) {
+            mCandidates = candidates;
+            mOriginalVersion = originalVersion;
+            mMissingVariants = missingVariants;
+            mDownloadScheduler = downloadScheduler;
+            mOfflineCache = offlineCache;
         }
 
         @Override
         public void loadData(@NonNull Priority priority,
                              @NonNull final DataCallback<? super InputStream> callback) {
-            mStreamTask = mRef.getStream();
-            mStreamTask
-                    .addOnSuccessListener(new OnSuccessListener<StreamDownloadTask.TaskSnapshot>() {
-                        @Override
-                        public void onSuccess(StreamDownloadTask.TaskSnapshot snapshot) {
-                            mInputStream = snapshot.getStream();
-                            callback.onDataReady(mInputStream);
-                        }
-                    })
-                    .addOnFailureListener(new OnFailureListener() {
-                        @Override
-                        public void onFailure(@NonNull Exception e) {
-                            callback.onLoadFailed(e);
-                        }
-                    });
+            load(0, priority, callback);
+        }
+
+        private void load(final int index,
+                          @NonNull final Priority priority,
+                          @NonNull final DataCallback<? super InputStream> callback) {
+            final StorageReference ref = mCandidates.get(index);
+
+            File file = mOfflineCache == null ? null : mOfflineCache.get(ref);
+            if (file != null) {
+                try {
+                    mLocalStream = new FileInputStream(file);
+                    mDataSource = DataSource.LOCAL;
+                    callback.onDataReady(mLocalStream);
+                    return;
+                } catch (IOException e) {
+                    // Evicted in the meantime, download it instead
+                    Log.w(TAG, "Could not open " + file, e);
+                }
+            }
+
+            mRequest = mDownloadScheduler.schedule(ref, priority, new DownloadScheduler.Callback() {
+                @Override
+                public void onStreamReady(@NonNull InputStream stream) {
+                    mDataSource = DataSource.REMOTE;
+                    callback.onDataReady(stream);
+                }
+
+                @Override
+                public void onLoadFailed(@NonNull Exception e) {
+                    boolean isLast = index == mCandidates.size() - 1;
+                    if (isLast || mIsCancelled || !isObjectNotFound(e)) {
+                        callback.onLoadFailed(e);
+                        return;
+                    }
+
+                    // Remember the missing variant and fall back to the next candidate
+                    mMissingVariants.add(ref, mOriginalVersion);
+                    load(index + 1, priority, callback);
+                }
+            });
+
+            // cancel() may have run before the request was assigned
+            if (mIsCancelled) {
+                mRequest.cancel();
+            }
         }
 
         @Override
         public void cleanup() {
-            // Close stream if possible
-            if (mInputStream != null) {
+            InputStream localStream = mLocalStream;
+            if (localStream != null) {
                 try {
-                    mInputStream.close();
-                    mInputStream = null;
+                    localStream.close();
                 } catch (IOException e) {
                     Log.w(TAG, "Could not close stream", e);
                 }
             }
+
+            // Close stream and free the download slot if possible
+            DownloadScheduler.Request request = mRequest;
+            if (request != null) {
+                request.release();
+            }
         }
 
         @Override
         public void cancel() {
-            // Cancel task if possible
-            if (mStreamTask != null && mStreamTask.isInProgress()) {
-                mStreamTask.cancel();
+            mIsCancelled = true;
+
+            // Leave the queue or cancel the download if possible
+            DownloadScheduler.Request request = mRequest;
+            if (request != null) {
+                request.cancel();
             }
         }
 
@@ -175,7 +557,7 @@ public class FirebaseImageLoader implements ModelLoader<StorageReference, InputS
         @NonNull
         @Override
         public DataSource getDataSource() {
-            return DataSource.REMOTE;
+            return mDataSource;
         }
     }
 }
@@ -0,0 +1,229 @@
+package com.firebase.ui.storage.images;
+
+import android.net.Uri;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.StorageReference;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * ModelLoader implementation which downloads images from FirebaseStorage through their download
+ * URL, using the URL loader registered with Glide.
+ *
+ * <p>
+ * Unlike {@link FirebaseImageLoader}, downloads go through the HTTP stack used by Glide, so they
+ * benefit from its connection pooling and HTTP cache, and from network integration libraries
+ * such as the OkHttp integration. Download URLs are resolved once per object and kept in a
+ * {@link DownloadUrlCache}.
+ *
+ * <p>
+ * Register this class in your AppGlideModule instead of {@link FirebaseImageLoader}:
+ * <pre>
+ *         {@literal @}Override
+ *         public void registerComponents(Context context, Glide glide, Registry registry) {
+ *             registry.append(StorageReference.class, InputStream.class,
+ *                     new FirebaseUrlImageLoader.Factory());
+ *         }
+ * </pre>
+ *
+ * Images are cached by their path in Cloud Storage, like with {@link FirebaseImageLoader}.
+ */
+public class FirebaseUrlImageLoader implements ModelLoader<StorageReference, InputStream> {
+
+    private static final int DEFAULT_MAX_URLS = 500;
+    private static final long DEFAULT_URL_TTL_MILLIS = 60 * 60 * 1000;
+    private static final long URL_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Factory to create {@link FirebaseUrlImageLoader}.
+     */
+    public static class Factory implements ModelLoaderFactory<StorageReference, InputStream> {
+
+        private final DownloadUrlCache mUrlCache;
+
+        public Factory() {
+            this(new DownloadUrlCache(DEFAULT_MAX_URLS, DEFAULT_URL_TTL_MILLIS));
+        }
+
+        public Factory(@NonNull DownloadUrlCache urlCache) {
+            mUrlCache = urlCache;
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<StorageReference, InputStream> build(@NonNull MultiModelLoaderFactory factory) {
+            return new FirebaseUrlImageLoader(
+                    factory.build(GlideUrl.class, InputStream.class), mUrlCache);
+        }
+
+        @Override
+        public void teardown() {
+            // No-op
+        }
+    }
+
+    private final ModelLoader<GlideUrl, InputStream> mUrlLoader;
+    private final DownloadUrlCache mUrlCache;
+
+    public FirebaseUrlImageLoader(@NonNull ModelLoader<GlideUrl, InputStream> urlLoader,
+                                  @NonNull DownloadUrlCache urlCache) {
+        mUrlLoader = urlLoader;
+        mUrlCache = urlCache;
+    }
+
+    @Nullable
+    @Override
+    public LoadData<InputStream> buildLoadData(@NonNull StorageReference reference,
+                                               int width,
+                                               int height,
+                                               @NonNull Options options) {
+        return new LoadData<>(
+                new ObjectKey(reference.getPath()),
+                new DownloadUrlFetcher(reference, width, height, options));
+    }
+
+    @Override
+    public boolean handles(@NonNull StorageReference reference) {
+        return true;
+    }
+
+    private class DownloadUrlFetcher implements DataFetcher<InputStream> {
+
+        private final StorageReference mRef;
+        private final int mWidth;
+        private final int mHeight;
+        private final Options mOptions;
+
+        private volatile DataFetcher<InputStream> mDelegate;
+        private volatile boolean mIsCancelled;
+
+        DownloadUrlFetcher(@NonNull StorageReference ref,
+                           int width,
+                           int height,
+                           @NonNull Options options) {
+            mRef = ref;
+            mWidth = width;
+            mHeight = height;
+            mOptions = options;
+        }
+
+        /**
+         * Called on a Glide source executor thread, which is expected to block on the network.
+         * Resolving the download URL is bounded by {@link #URL_TIMEOUT_SECONDS} and nothing is
+         * reported once the load is cancelled.
+         */
+        @Override
+        public void loadData(@NonNull Priority priority,
+                             @NonNull final DataCallback<? super InputStream> callback) {
+            Uri url = mUrlCache.get(mRef);
+            if (url == null) {
+                if (mIsCancelled) {
+                    return;
+                }
+
+                try {
+                    url = Tasks.await(
+                            mRef.getDownloadUrl(), URL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    mUrlCache.put(mRef, url);
+                } catch (ExecutionException e) {
+                    if (mIsCancelled) {
+                        return;
+                    }
+                    callback.onLoadFailed(e.getCause() instanceof Exception
+                            ? (Exception) e.getCause() : e);
+                    return;
+                } catch (TimeoutException e) {
+                    if (!mIsCancelled) {
+                        callback.onLoadFailed(e);
+                    }
+                    return;
+                } catch (InterruptedException e) {
+                    // Glide interrupts the thread of a cancelled load
+                    Thread.currentThread().interrupt();
+                    if (!mIsCancelled) {
+                        callback.onLoadFailed(e);
+                    }
+                    return;
+                }
+            }
+
+            if (mIsCancelled) {
+                return;
+            }
+
+            LoadData<InputStream> loadData =
+                    mUrlLoader.buildLoadData(new GlideUrl(url.toString()), mWidth, mHeight, mOptions);
+            if (loadData == null) {
+                callback.onLoadFailed(new IOException("No loader for download URL of " + mRef));
+                return;
+            }
+
+            DataFetcher<InputStream> delegate = loadData.fetcher;
+            mDelegate = delegate;
+            if (mIsCancelled) {
+                // Cancelled before the delegate was visible to cancel()
+                return;
+            }
+            delegate.loadData(priority, new DataCallback<InputStream>() {
+                @Override
+                public void onDataReady(@Nullable InputStream data) {
+                    callback.onDataReady(data);
+                }
+
+                @Override
+                public void onLoadFailed(@NonNull Exception e) {
+                    // The download token may have been revoked, resolve the URL again next time
+                    mUrlCache.remove(mRef);
+                    callback.onLoadFailed(e);
+                }
+            });
+        }
+
+        @Override
+        public void cleanup() {
+            DataFetcher<InputStream> delegate = mDelegate;
+            if (delegate != null) {
+                delegate.cleanup();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            mIsCancelled = true;
+
+            DataFetcher<InputStream> delegate = mDelegate;
+            if (delegate != null) {
+                delegate.cancel();
+            }
+        }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass() {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.REMOTE;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.firebase.ui.storage.images;
+
+import com.google.firebase.storage.StorageReference;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A resized copy of an image stored in Cloud Storage, see {@link VariantResolver}.
+ */
+public final class ImageVariant {
+
+    private final StorageReference mReference;
+    private final int mWidth;
+    private final int mHeight;
+
+    /**
+     * @param reference the location of the resized copy.
+     * @param width     the maximum width of the resized copy, in pixels.
+     * @param height    the maximum height of the resized copy, in pixels.
+     */
+    public ImageVariant(@NonNull StorageReference reference, int width, int height) {
+        mReference = reference;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    @NonNull
+    public StorageReference getReference() {
+        return mReference;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * True if this variant is at least as large as the given target size in both dimensions.
+     */
+    public boolean covers(int width, int height) {
+        return mWidth >= width && mHeight >= height;
+    }
+
+    @Override
+    @NonNull
+    public String toString() {
+        return "ImageVariant{" +
+                "path=" + mReference.getPath() +
+                ", width=" + mWidth +
+                ", height=" + mHeight +
+                '}';
+    }
+}
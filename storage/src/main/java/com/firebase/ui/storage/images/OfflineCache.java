@@ -0,0 +1,345 @@
+package com.firebase.ui.storage.images;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.FileDownloadTask;
+import com.google.firebase.storage.ListResult;
+import com.google.firebase.storage.StorageReference;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Size-capped disk cache of Cloud Storage objects, for apps which must keep working offline.
+ *
+ * <p>
+ * Use {@link #prefetch(List)} or {@link #prefetchFolder(StorageReference)} while online to
+ * download objects ahead of time, and {@link #getFile(StorageReference)} to read them. Pass the
+ * cache to {@link FirebaseImageLoader.Factory.Builder#setOfflineCache(OfflineCache)} so that
+ * images are served from it before the network is used.
+ *
+ * <p>
+ * At most a fixed number of downloads run at once. Downloaded objects are kept across restarts,
+ * so running a prefetch again only downloads the objects which are missing. A download which
+ * fails is started over the next time it is requested. When the cache grows
+ * beyond its maximum size, the least recently used objects are evicted. Cached objects are not
+ * refreshed automatically, use {@link #remove(StorageReference)} or {@link #clear()} to download
+ * them again.
+ *
+ * <p>
+ * Keep a single instance for the application. Methods returning tasks must be called on the
+ * main thread.
+ */
+public class OfflineCache {
+
+    private static final String TAG = "OfflineCache";
+    private static final String DIR = "firebaseui-offline";
+    private static final String PART_SUFFIX = ".part";
+    private static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 4;
+
+    private static final Comparator<File> BY_LAST_USE = new Comparator<File>() {
+        @Override
+        public int compare(File a, File b) {
+            long usedA = a.lastModified();
+            long usedB = b.lastModified();
+            return usedA < usedB ? -1 : (usedA == usedB ? 0 : 1);
+        }
+    };
+
+    private final File mDir;
+    private final long mMaxSizeBytes;
+    private final int mMaxConcurrentDownloads;
+
+    /**
+     * Uses of cached files not yet recorded in their modification time, written in batches off
+     * the calling thread.
+     */
+    private final Map<File, Long> mPendingUses = new ConcurrentHashMap<>();
+    private final AtomicBoolean mRecordScheduled = new AtomicBoolean();
+
+    // Main thread only
+    private final Queue<Download> mQueue = new ArrayDeque<>();
+    private final Map<String, Download> mDownloads = new HashMap<>();
+    private int mRunning;
+
+    public OfflineCache(@NonNull Context context, long maxSizeBytes) {
+        this(context, maxSizeBytes, DEFAULT_MAX_CONCURRENT_DOWNLOADS);
+    }
+
+    /**
+     * @param maxSizeBytes           the size above which the least recently used objects are
+     *                               evicted.
+     * @param maxConcurrentDownloads the maximum number of downloads running at once.
+     */
+    public OfflineCache(@NonNull Context context, long maxSizeBytes, int maxConcurrentDownloads) {
+        if (maxConcurrentDownloads < 1) {
+            throw new IllegalArgumentException("maxConcurrentDownloads must be at least 1.");
+        }
+
+        // Not in the cache directory, since the system may clear it while the device is offline
+        mDir = new File(context.getApplicationContext().getFilesDir(), DIR);
+        mMaxSizeBytes = maxSizeBytes;
+        mMaxConcurrentDownloads = maxConcurrentDownloads;
+    }
+
+    /**
+     * @return the cached copy of the object, or null if it is not cached. Never uses the
+     *         network, and can be called from any thread.
+     */
+    @Nullable
+    public File get(@NonNull StorageReference ref) {
+        File file = getCacheFile(ref);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        // The modification time records the last use for eviction
+        mPendingUses.put(file, System.currentTimeMillis());
+        if (mRecordScheduled.compareAndSet(false, true)) {
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    recordUses();
+                }
+            });
+        }
+        return file;
+    }
+
+    /**
+     * Get the cached copy of the object, downloading it into the cache first if needed.
+     */
+    @MainThread
+    @NonNull
+    public Task<File> getFile(@NonNull StorageReference ref) {
+        File file = get(ref);
+        if (file != null) {
+            return Tasks.forResult(file);
+        }
+
+        Download download = mDownloads.get(ref.getPath());
+        if (download == null) {
+            download = new Download(ref);
+            mDownloads.put(ref.getPath(), download);
+            mQueue.add(download);
+            startNext();
+        }
+        return download.mResult.getTask();
+    }
+
+    /**
+     * Download the given objects into the cache, skipping the ones already cached.
+     *
+     * @return a task completing once every object was attempted, failing if any download failed.
+     */
+    @MainThread
+    @NonNull
+    public Task<Void> prefetch(@NonNull List<StorageReference> refs) {
+        List<Task<File>> tasks = new ArrayList<>();
+        for (StorageReference ref : refs) {
+            tasks.add(getFile(ref));
+        }
+        return Tasks.whenAll(tasks);
+    }
+
+    /**
+     * Download the objects of a folder into the cache. Sub-folders are not included.
+     *
+     * @see #prefetch(List)
+     */
+    @MainThread
+    @NonNull
+    public Task<Void> prefetchFolder(@NonNull StorageReference folder) {
+        return folder.listAll().continueWithTask(new Continuation<ListResult, Task<Void>>() {
+            @Override
+            public Task<Void> then(@NonNull Task<ListResult> task) {
+                return prefetch(task.getResult().getItems());
+            }
+        });
+    }
+
+    public void remove(@NonNull StorageReference ref) {
+        File file = getCacheFile(ref);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Could not delete " + file);
+        }
+    }
+
+    public void clear() {
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (!file.delete()) {
+                Log.w(TAG, "Could not delete " + file);
+            }
+        }
+    }
+
+    private void startNext() {
+        while (mRunning < mMaxConcurrentDownloads && !mQueue.isEmpty()) {
+            start(mQueue.poll());
+        }
+    }
+
+    private void start(@NonNull final Download download) {
+        mRunning++;
+
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            finish(download);
+            download.mResult.setException(new IOException("Could not create " + mDir));
+            return;
+        }
+
+        final File file = getCacheFile(download.mRef);
+        final File part = new File(file.getPath() + PART_SUFFIX);
+
+        // The download is written next to the cached file and only moved there once complete
+        download.mRef.getFile(part)
+                .addOnSuccessListener(new OnSuccessListener<FileDownloadTask.TaskSnapshot>() {
+                    @Override
+                    public void onSuccess(FileDownloadTask.TaskSnapshot snapshot) {
+                        finish(download);
+                        if (part.renameTo(file)) {
+                            download.mResult.setResult(file);
+                            trim();
+                        } else {
+                            download.mResult.setException(
+                                    new IOException("Could not move download to " + file));
+                        }
+                    }
+                })
+                .addOnFailureListener(new OnFailureListener() {
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        finish(download);
+                        if (part.exists() && !part.delete()) {
+                            Log.w(TAG, "Could not delete " + part);
+                        }
+                        download.mResult.setException(e);
+                    }
+                });
+    }
+
+    private void finish(@NonNull Download download) {
+        mDownloads.remove(download.mRef.getPath());
+        mRunning--;
+        startNext();
+    }
+
+    private void trim() {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                trimNow();
+            }
+        });
+    }
+
+    /**
+     * Evict the least recently used objects until the cache fits its maximum size.
+     */
+    @VisibleForTesting
+    @WorkerThread
+    synchronized void trimNow() {
+        recordUses();
+
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<File> cached = new ArrayList<>();
+        long size = 0;
+        for (File file : files) {
+            if (file.isFile() && !file.getName().endsWith(PART_SUFFIX)) {
+                cached.add(file);
+                size += file.length();
+            }
+        }
+
+        Collections.sort(cached, BY_LAST_USE);
+        for (int i = 0; i < cached.size() && size > mMaxSizeBytes; i++) {
+            long length = cached.get(i).length();
+            if (cached.get(i).delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * Write the pending uses of cached files into their modification time.
+     */
+    @WorkerThread
+    private synchronized void recordUses() {
+        mRecordScheduled.set(false);
+        for (File file : new ArrayList<>(mPendingUses.keySet())) {
+            Long usedAt = mPendingUses.remove(file);
+            if (usedAt != null && !file.setLastModified(usedAt) && file.exists()) {
+                Log.w(TAG, "Could not record use of " + file);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    @NonNull
+    File getCacheFile(@NonNull StorageReference ref) {
+        return new File(mDir, hash(ref.toString()));
+    }
+
+    @NonNull
+    private static String hash(@NonNull String value) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(value.getBytes(Charset.forName("UTF-8")))) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static class Download {
+
+        final StorageReference mRef;
+        final TaskCompletionSource<File> mResult = new TaskCompletionSource<>();
+
+        Download(@NonNull StorageReference ref) {
+            mRef = ref;
+        }
+    }
+}
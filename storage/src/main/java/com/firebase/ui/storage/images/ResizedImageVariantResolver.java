@@ -0,0 +1,81 @@
+package com.firebase.ui.storage.images;
+
+import com.google.firebase.storage.StorageReference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * {@link VariantResolver} for images resized with the {@code name_WIDTHxHEIGHT.ext} naming
+ * convention, as produced by the "Resize Images" Firebase Extension.
+ *
+ * For example, with sizes {@code "200x200"} and {@code "680x680"}, the image
+ * {@code photos/cat.jpg} has the variants {@code photos/cat_200x200.jpg} and
+ * {@code photos/cat_680x680.jpg}.
+ */
+public class ResizedImageVariantResolver implements VariantResolver {
+
+    private final int[][] mSizes;
+    private final String mFolder;
+
+    /**
+     * @param sizes the sizes of the resized images, in the {@code WIDTHxHEIGHT} format.
+     */
+    public ResizedImageVariantResolver(@NonNull String... sizes) {
+        this(null, sizes);
+    }
+
+    /**
+     * @param folder the folder, relative to the original image, containing the resized images or
+     *               null if they are stored next to the original.
+     * @param sizes  the sizes of the resized images, in the {@code WIDTHxHEIGHT} format.
+     */
+    public ResizedImageVariantResolver(@Nullable String folder, @NonNull String... sizes) {
+        mFolder = folder;
+        mSizes = new int[sizes.length][];
+        for (int i = 0; i < sizes.length; i++) {
+            mSizes[i] = parseSize(sizes[i]);
+        }
+    }
+
+    @NonNull
+    @Override
+    public List<ImageVariant> getVariants(@NonNull StorageReference original) {
+        StorageReference parent = original.getParent();
+        if (parent == null) {
+            return new ArrayList<>();
+        }
+        if (mFolder != null) {
+            parent = parent.child(mFolder);
+        }
+
+        String name = original.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+
+        List<ImageVariant> variants = new ArrayList<>(mSizes.length);
+        for (int[] size : mSizes) {
+            String variantName = base + "_" + size[0] + "x" + size[1] + extension;
+            variants.add(new ImageVariant(parent.child(variantName), size[0], size[1]));
+        }
+        return variants;
+    }
+
+    @NonNull
+    private static int[] parseSize(@NonNull String size) {
+        int separator = size.indexOf('x');
+        try {
+            return new int[]{
+                    Integer.parseInt(size.substring(0, separator)),
+                    Integer.parseInt(size.substring(separator + 1))
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(
+                    "Size must be in the WIDTHxHEIGHT format, got: " + size, e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.firebase.ui.storage.images;
+
+import android.view.View;
+
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.google.firebase.storage.StorageReference;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Loads the images of the rows about to scroll into view of a RecyclerView, so that they are in
+ * Glide's caches by the time the rows are bound.
+ *
+ * <p>
+ * Works with any adapter, including the Firebase and Firestore recycler and paging adapters: the
+ * {@link ReferenceProvider} maps adapter positions to the {@link StorageReference}s displayed at
+ * that position. Images are preloaded with the same request options and target size as the rows,
+ * so the preloaded images are the ones the rows request. Preloads are cancelled when the scroll
+ * direction changes.
+ *
+ * <p>
+ * With a {@link LinearLayoutManager} or one of its subclasses, such as {@code GridLayoutManager},
+ * scrolling is handled by Glide's {@link RecyclerViewPreloader}. Other layout managers, such as
+ * {@code StaggeredGridLayoutManager}, are supported through the positions of their laid out
+ * rows.
+ *
+ * <pre>
+ *     RequestManager glide = GlideApp.with(this);
+ *     recyclerView.addOnScrollListener(new StorageImagePreloader(
+ *             glide,
+ *             glide.asDrawable().centerCrop(),
+ *             new StorageImagePreloader.ReferenceProvider() {
+ *                 {@literal @}NonNull
+ *                 {@literal @}Override
+ *                 public List&lt;StorageReference&gt; getReferences(int position) {
+ *                     return Collections.singletonList(adapter.getItem(position).getImageRef());
+ *                 }
+ *             },
+ *             new ViewPreloadSizeProvider&lt;StorageReference&gt;(),
+ *             10));
+ * </pre>
+ *
+ * @see StoragePreloadModelProvider
+ */
+public class StorageImagePreloader extends RecyclerView.OnScrollListener {
+
+    /**
+     * Maps adapter positions to the images displayed at those positions.
+     */
+    public interface ReferenceProvider {
+
+        /**
+         * @return the images shown by the row at the given position, empty if there are none.
+         *         Called on the main thread.
+         */
+        @NonNull
+        List<StorageReference> getReferences(int position);
+    }
+
+    private final RecyclerViewPreloader<StorageReference> mLinearPreloader;
+    private final ListPreloader<StorageReference> mPreloader;
+
+    private int mLastFirstVisible = -1;
+    private int mLastVisibleCount = -1;
+    private int mLastItemCount = -1;
+
+    /**
+     * Preload images with the default request options of the given request manager.
+     *
+     * @see #StorageImagePreloader(RequestManager, RequestBuilder, ReferenceProvider,
+     * ListPreloader.PreloadSizeProvider, int)
+     */
+    public StorageImagePreloader(@NonNull RequestManager requestManager,
+                                 @NonNull ReferenceProvider references,
+                                 @NonNull ListPreloader.PreloadSizeProvider<StorageReference> sizeProvider,
+                                 int maxPreload) {
+        this(requestManager, requestManager.asDrawable(), references, sizeProvider, maxPreload);
+    }
+
+    /**
+     * @param requestManager the request manager of the Activity or Fragment showing the list.
+     * @param request      the request the rows load their images with, including transformations
+     *                     such as {@code centerCrop()}. It is cloned for each preload.
+     * @param references   the images of each position.
+     * @param sizeProvider the size the rows display images at, for example a
+     *                     {@code ViewPreloadSizeProvider} attached to a row's ImageView.
+     * @param maxPreload   how many positions ahead of the visible rows to preload.
+     */
+    public StorageImagePreloader(@NonNull RequestManager requestManager,
+                                 @NonNull RequestBuilder<?> request,
+                                 @NonNull ReferenceProvider references,
+                                 @NonNull ListPreloader.PreloadSizeProvider<StorageReference> sizeProvider,
+                                 int maxPreload) {
+        if (maxPreload <= 0) {
+            throw new IllegalArgumentException("maxPreload must be positive.");
+        }
+
+        ListPreloader.PreloadModelProvider<StorageReference> modelProvider =
+                new StoragePreloadModelProvider(request, references);
+        mLinearPreloader = new RecyclerViewPreloader<>(
+                requestManager, modelProvider, sizeProvider, maxPreload);
+        mPreloader = new ListPreloader<>(requestManager, modelProvider, sizeProvider, maxPreload);
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            mLinearPreloader.onScrolled(recyclerView, dx, dy);
+            return;
+        }
+
+        RecyclerView.Adapter<?> adapter = recyclerView.getAdapter();
+        if (layoutManager == null || adapter == null) {
+            return;
+        }
+
+        // The laid out rows span the visible positions, whatever their arrangement
+        int firstVisible = RecyclerView.NO_POSITION;
+        int lastVisible = RecyclerView.NO_POSITION;
+        for (int i = 0; i < layoutManager.getChildCount(); i++) {
+            View child = layoutManager.getChildAt(i);
+            int position = child == null
+                    ? RecyclerView.NO_POSITION : layoutManager.getPosition(child);
+            if (position == RecyclerView.NO_POSITION) {
+                continue;
+            }
+
+            firstVisible = firstVisible == RecyclerView.NO_POSITION
+                    ? position : Math.min(firstVisible, position);
+            lastVisible = Math.max(lastVisible, position);
+        }
+        if (firstVisible == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        int visibleCount = lastVisible - firstVisible + 1;
+        int itemCount = adapter.getItemCount();
+        if (firstVisible == mLastFirstVisible
+                && visibleCount == mLastVisibleCount
+                && itemCount == mLastItemCount) {
+            return;
+        }
+
+        // ListPreloader tracks the scroll direction and cancels stale preloads when it changes
+        mPreloader.onScroll(null, firstVisible, visibleCount, itemCount);
+        mLastFirstVisible = firstVisible;
+        mLastVisibleCount = visibleCount;
+        mLastItemCount = itemCount;
+    }
+}
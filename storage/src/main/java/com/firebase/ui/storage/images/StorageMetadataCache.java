@@ -0,0 +1,180 @@
+package com.firebase.ui.storage.images;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.LruCache;
+
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * In-memory and on-disk cache of the version of Cloud Storage objects, used by
+ * {@link FirebaseImageLoader} to include the object version in Glide cache keys without fetching
+ * {@link StorageMetadata} for every image.
+ *
+ * The version is the object generation, or its MD5 hash if the generation is not available.
+ * Entries expire after the configured time to live, after which the metadata is fetched again in
+ * the background while the expired version keeps being used.
+ *
+ * Images are always cached under their real version once it is known. Loads made before then,
+ * such as the first load of an object, are cached without a version and downloaded again once the
+ * version arrives, so an image overwritten while its entry was missing is never served stale for
+ * longer than it takes to fetch its metadata.
+ */
+public class StorageMetadataCache {
+
+    private static final String PREFS_NAME = "com.firebase.ui.storage.images.MetadataCache";
+    private static final String SEPARATOR = "|";
+    private static final int MAX_MEMORY_ENTRIES = 500;
+
+    /**
+     * How long an entry is kept on disk after it was last fetched. Much longer than the time to
+     * live, since the next load of an object whose entry was dropped is downloaded again.
+     */
+    private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    private final Context mContext;
+    private final long mTtlMillis;
+    private final LruCache<String, Entry> mMemory = new LruCache<>(MAX_MEMORY_ENTRIES);
+
+    private SharedPreferences mPrefs;
+
+    /**
+     * @param ttlMillis how long a cached version is trusted before the metadata is fetched again.
+     */
+    public StorageMetadataCache(@NonNull Context context, long ttlMillis) {
+        mContext = context.getApplicationContext();
+        mTtlMillis = ttlMillis;
+    }
+
+    @WorkerThread
+    public void put(@NonNull StorageReference ref, @NonNull StorageMetadata metadata) {
+        String version = getVersion(metadata);
+        if (version == null) {
+            return;
+        }
+
+        String path = ref.getPath();
+        Entry entry = new Entry(version, System.currentTimeMillis());
+        mMemory.put(path, entry);
+        getPrefs().edit().putString(path, entry.toString()).apply();
+    }
+
+    /**
+     * @return the last known version of the object to include in its cache key, even if expired,
+     * or null if the object is unknown.
+     */
+    @Nullable
+    @WorkerThread
+    String getKeyVersion(@NonNull StorageReference ref) {
+        Entry entry = getEntry(ref.getPath());
+        return entry == null ? null : entry.mVersion;
+    }
+
+    /**
+     * @return true if the version of the object is unknown or expired and should be fetched.
+     */
+    @WorkerThread
+    boolean needsRefresh(@NonNull StorageReference ref) {
+        Entry entry = getEntry(ref.getPath());
+        return entry == null || isExpired(entry);
+    }
+
+    private boolean isExpired(@NonNull Entry entry) {
+        return System.currentTimeMillis() - entry.mFetchedAt >= mTtlMillis;
+    }
+
+    @Nullable
+    private Entry getEntry(@NonNull String path) {
+        Entry entry = mMemory.get(path);
+        if (entry == null) {
+            entry = Entry.parse(getPrefs().getString(path, null));
+            if (entry != null) {
+                mMemory.put(path, entry);
+            }
+        }
+        return entry;
+    }
+
+    @Nullable
+    private static String getVersion(@NonNull StorageMetadata metadata) {
+        String generation = metadata.getGeneration();
+        if (generation != null) {
+            return generation;
+        }
+        return metadata.getMd5Hash();
+    }
+
+    @NonNull
+    private synchronized SharedPreferences getPrefs() {
+        if (mPrefs == null) {
+            mPrefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            pruneExpired();
+        }
+        return mPrefs;
+    }
+
+    /**
+     * Drop the entries not fetched for {@link #MAX_AGE_MILLIS}, so the store stays bounded by the
+     * images shown within that time.
+     */
+    private void pruneExpired() {
+        long now = System.currentTimeMillis();
+        long maxAge = Math.max(mTtlMillis, MAX_AGE_MILLIS);
+        SharedPreferences.Editor editor = mPrefs.edit();
+        for (Map.Entry<String, ?> stored : mPrefs.getAll().entrySet()) {
+            Object value = stored.getValue();
+            Entry entry = value instanceof String ? Entry.parse((String) value) : null;
+            if (entry == null || now - entry.mFetchedAt >= maxAge) {
+                editor.remove(stored.getKey());
+            }
+        }
+        editor.apply();
+    }
+
+    private static class Entry {
+
+        final String mVersion;
+        final long mFetchedAt;
+
+        Entry(@NonNull String version, long fetchedAt) {
+            mVersion = version;
+            mFetchedAt = fetchedAt;
+        }
+
+        /**
+         * Parses "version|fetchedAt".
+         */
+        @Nullable
+        static Entry parse(@Nullable String value) {
+            if (value == null) {
+                return null;
+            }
+
+            String[] parts = value.split(Pattern.quote(SEPARATOR), -1);
+            if (parts.length != 2) {
+                return null;
+            }
+
+            try {
+                return new Entry(parts[0], Long.parseLong(parts[1]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        @NonNull
+        public String toString() {
+            return mVersion + SEPARATOR + mFetchedAt;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.firebase.ui.storage.images;
+
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.google.firebase.storage.StorageReference;
+
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Provides the {@link StorageReference}s shown at each adapter position to Glide's preloaders,
+ * loaded with the same request as the rows.
+ *
+ * <p>
+ * {@link StorageImagePreloader} uses it for RecyclerViews. It can also be passed to Glide's
+ * {@code ListPreloader} or {@code RecyclerViewPreloader} directly.
+ */
+public class StoragePreloadModelProvider
+        implements ListPreloader.PreloadModelProvider<StorageReference> {
+
+    private final RequestBuilder<?> mRequest;
+    private final StorageImagePreloader.ReferenceProvider mReferences;
+
+    /**
+     * @param request    the request the rows load their images with, including transformations
+     *                   such as {@code centerCrop()}. It is cloned for each preload.
+     * @param references the images of each position.
+     */
+    public StoragePreloadModelProvider(
+            @NonNull RequestBuilder<?> request,
+            @NonNull StorageImagePreloader.ReferenceProvider references) {
+        mRequest = request;
+        mReferences = references;
+    }
+
+    @NonNull
+    @Override
+    public List<StorageReference> getPreloadItems(int position) {
+        List<StorageReference> items = mReferences.getReferences(position);
+        return items == null ? Collections.<StorageReference>emptyList() : items;
+    }
+
+    @Nullable
+    @Override
+    public RequestBuilder<?> getPreloadRequestBuilder(@NonNull StorageReference item) {
+        return mRequest.clone().load(item);
+    }
+}
@@ -0,0 +1,25 @@
+package com.firebase.ui.storage.images;
+
+import com.google.firebase.storage.StorageReference;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Lists the resized copies which may exist for an image stored in Cloud Storage, so that
+ * {@link FirebaseImageLoader} can download the smallest one covering the target size instead of
+ * the original.
+ *
+ * Variants do not need to exist: when a variant is missing, the loader falls back to the next
+ * larger variant or the original, and does not probe the missing variant again.
+ */
+public interface VariantResolver {
+
+    /**
+     * @param original the image requested by the app.
+     * @return the possible variants of the image, in any order.
+     */
+    @NonNull
+    List<ImageVariant> getVariants(@NonNull StorageReference original);
+}
@@ -0,0 +1,26 @@
+package com.firebase.ui.storage.paging;
+
+import com.google.firebase.storage.StorageReference;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * Default diff callback implementation for listed Cloud Storage objects.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class DefaultReferenceDiffCallback extends DiffUtil.ItemCallback<StorageReference> {
+
+    @Override
+    public boolean areItemsTheSame(@NonNull StorageReference oldItem,
+                                   @NonNull StorageReference newItem) {
+        return oldItem.getPath().equals(newItem.getPath());
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull StorageReference oldItem,
+                                      @NonNull StorageReference newItem) {
+        return oldItem.equals(newItem);
+    }
+}
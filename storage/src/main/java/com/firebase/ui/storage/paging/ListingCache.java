@@ -0,0 +1,101 @@
+package com.firebase.ui.storage.paging;
+
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Bounded in-memory cache of listed pages, with their next page tokens, and of the metadata of
+ * listed objects. Shared by the data sources of one {@link StoragePagingOptions}, so that
+ * recreating the list, for example after a configuration change, does not list the folder again.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class ListingCache {
+
+    private final LruCache<String, Page> mPages;
+    private final LruCache<String, StorageMetadata> mMetadata;
+    private final long mMaxAgeMillis;
+
+    public ListingCache(int maxPages, int maxMetadata, long maxAgeMillis) {
+        mPages = new LruCache<>(maxPages);
+        mMetadata = new LruCache<>(maxMetadata);
+        mMaxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * @return the cached page, or null if it is unknown or older than the maximum age.
+     */
+    @Nullable
+    public Page getPage(@NonNull String pageId) {
+        Page page = mPages.get(pageId);
+        if (page == null) {
+            return null;
+        }
+
+        if (SystemClock.elapsedRealtime() - page.mListedAt >= mMaxAgeMillis) {
+            mPages.remove(pageId);
+            return null;
+        }
+        return page;
+    }
+
+    public void putPage(@NonNull String pageId,
+                        @NonNull List<StorageReference> items,
+                        @Nullable String nextPageToken) {
+        mPages.put(pageId, new Page(items, nextPageToken, SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Forget every listed page, so the folder is listed again. Metadata is kept.
+     */
+    public void clearPages() {
+        mPages.evictAll();
+    }
+
+    @Nullable
+    public StorageMetadata getMetadata(@NonNull StorageReference ref) {
+        return mMetadata.get(ref.getPath());
+    }
+
+    public void putMetadata(@NonNull StorageReference ref, @NonNull StorageMetadata metadata) {
+        mMetadata.put(ref.getPath(), metadata);
+    }
+
+    /**
+     * A listed page of objects.
+     */
+    public static final class Page {
+
+        private final List<StorageReference> mItems;
+        private final String mNextPageToken;
+        private final long mListedAt;
+
+        Page(@NonNull List<StorageReference> items, @Nullable String nextPageToken, long listedAt) {
+            mItems = Collections.unmodifiableList(items);
+            mNextPageToken = nextPageToken;
+            mListedAt = listedAt;
+        }
+
+        @NonNull
+        public List<StorageReference> getItems() {
+            return mItems;
+        }
+
+        /**
+         * The token of the following page, or null if this is the last page.
+         */
+        @Nullable
+        public String getNextPageToken() {
+            return mNextPageToken;
+        }
+    }
+}
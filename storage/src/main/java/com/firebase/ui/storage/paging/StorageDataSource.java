@@ -0,0 +1,375 @@
+package com.firebase.ui.storage.paging;
+
+import android.util.Log;
+
+import com.firebase.ui.common.LoadStats;
+import com.firebase.ui.common.RetryPolicy;
+import com.firebase.ui.common.RetryScheduler;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.ListResult;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.paging.DataSource;
+import androidx.paging.PageKeyedDataSource;
+
+/**
+ * Data source to power a {@link StoragePagingAdapter}. Pages are keyed by the page token returned
+ * by {@link StorageReference#list(int, String)}.
+ *
+ * Note: although loadInitial, loadBefore, and loadAfter are not called on the main thread by the
+ *       paging library, we treat them as if they were so that we can facilitate retry without
+ *       managing our own thread pool or requiring the user to pass us an executor.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class StorageDataSource extends PageKeyedDataSource<String, StorageReference> {
+
+    private static final String TAG = "StorageDataSource";
+
+    /**
+     * Largest page size accepted by {@link StorageReference#list(int)}.
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    public static class Factory extends DataSource.Factory<String, StorageReference> {
+
+        private final StorageReference mFolder;
+        private final RetryPolicy mRetryPolicy;
+        private final boolean mLoadMetadata;
+        private final ListingCache mCache;
+
+        public Factory(@NonNull StorageReference folder,
+                       @Nullable RetryPolicy retryPolicy,
+                       boolean loadMetadata,
+                       @NonNull ListingCache cache) {
+            mFolder = folder;
+            mRetryPolicy = retryPolicy;
+            mLoadMetadata = loadMetadata;
+            mCache = cache;
+        }
+
+        @Override
+        @NonNull
+        public DataSource<String, StorageReference> create() {
+            return new StorageDataSource(mFolder, mRetryPolicy, mLoadMetadata, mCache);
+        }
+    }
+
+    private final MutableLiveData<LoadingState> mLoadingState = new MutableLiveData<>();
+    private final MutableLiveData<Exception> mException = new MutableLiveData<>();
+    private final MutableLiveData<LoadStats> mLoadStats = new MutableLiveData<>();
+
+    private final StorageReference mFolder;
+    private final RetryScheduler mRetryScheduler;
+    private final boolean mLoadMetadata;
+    private final ListingCache mCache;
+
+    private Runnable mRetryRunnable;
+
+    /**
+     * @param loadMetadata fetch the {@link StorageMetadata} of each listed object before its page
+     *                     is shown, so it can be read from the cache while binding.
+     * @param cache        pages and metadata, shared with the other data sources of the same
+     *                     factory.
+     */
+    public StorageDataSource(@NonNull StorageReference folder,
+                             @Nullable RetryPolicy retryPolicy,
+                             boolean loadMetadata,
+                             @NonNull ListingCache cache) {
+        mFolder = folder;
+        mLoadMetadata = loadMetadata;
+        mCache = cache;
+        mRetryScheduler = new RetryScheduler(retryPolicy, new RetryScheduler.Listener() {
+            @Override
+            public void onStatsChanged(@NonNull LoadStats stats) {
+                mLoadStats.postValue(stats);
+            }
+        });
+
+        addInvalidatedCallback(new InvalidatedCallback() {
+            @Override
+            public void onInvalidated() {
+                mRetryScheduler.cancel();
+            }
+        });
+    }
+
+    @Override
+    public void loadInitial(@NonNull final LoadInitialParams<String> params,
+                            @NonNull final LoadInitialCallback<String, StorageReference> callback) {
+
+        // Set initial loading state
+        mLoadingState.postValue(LoadingState.LOADING_INITIAL);
+        mRetryScheduler.onLoadStarted();
+
+        loadPage(null,
+                getPageSize(params.requestedLoadSize),
+                new OnLoadSuccessListener() {
+                    @Override
+                    protected void setResult(@NonNull List<StorageReference> items,
+                                             @Nullable String nextPageToken) {
+                        callback.onResult(items, null, nextPageToken);
+                    }
+                },
+                new OnLoadFailureListener() {
+                    @Override
+                    protected Runnable getRetryRunnable() {
+                        return getRetryLoadInitial(params, callback);
+                    }
+                });
+    }
+
+    @Override
+    public void loadBefore(@NonNull LoadParams<String> params,
+                           @NonNull LoadCallback<String, StorageReference> callback) {
+        // Ignored, since we only ever append to the initial load.
+    }
+
+    @Override
+    public void loadAfter(@NonNull final LoadParams<String> params,
+                          @NonNull final LoadCallback<String, StorageReference> callback) {
+        // Set loading state
+        mLoadingState.postValue(LoadingState.LOADING_MORE);
+        mRetryScheduler.onLoadStarted();
+
+        loadPage(params.key,
+                getPageSize(params.requestedLoadSize),
+                new OnLoadSuccessListener() {
+                    @Override
+                    protected void setResult(@NonNull List<StorageReference> items,
+                                             @Nullable String nextPageToken) {
+                        callback.onResult(items, nextPageToken);
+                    }
+                },
+                new OnLoadFailureListener() {
+                    @Override
+                    protected Runnable getRetryRunnable() {
+                        return getRetryLoadAfter(params, callback);
+                    }
+                });
+    }
+
+    private void loadPage(@Nullable final String pageToken,
+                          final int pageSize,
+                          @NonNull final OnLoadSuccessListener onSuccess,
+                          @NonNull final OnLoadFailureListener onFailure) {
+        final String pageId = getPageId(mFolder, pageToken, pageSize);
+        ListingCache.Page cached = mCache.getPage(pageId);
+        if (cached != null) {
+            onSuccess.onPage(cached.getItems(), cached.getNextPageToken());
+            return;
+        }
+
+        Task<ListResult> list = pageToken == null
+                ? mFolder.list(pageSize) : mFolder.list(pageSize, pageToken);
+        list
+                .addOnSuccessListener(new OnSuccessListener<ListResult>() {
+                    @Override
+                    public void onSuccess(final ListResult result) {
+                        final List<StorageReference> items = result.getItems();
+                        final String nextPageToken = result.getPageToken();
+
+                        // A page may only hold sub-folders, keep going until there are objects
+                        // to show since the paging library stops on empty pages.
+                        if (items.isEmpty() && nextPageToken != null) {
+                            loadPage(nextPageToken, pageSize, onSuccess, onFailure);
+                            return;
+                        }
+
+                        loadMetadata(items, new Runnable() {
+                            @Override
+                            public void run() {
+                                mCache.putPage(pageId, items, nextPageToken);
+                                onSuccess.onPage(items, nextPageToken);
+                            }
+                        });
+                    }
+                })
+                .addOnFailureListener(onFailure);
+    }
+
+    /**
+     * Fetch the metadata of the given objects which is not cached yet, then run the action.
+     * Objects whose metadata cannot be fetched are shown without it.
+     */
+    private void loadMetadata(@NonNull List<StorageReference> items, @NonNull final Runnable then) {
+        if (!mLoadMetadata) {
+            then.run();
+            return;
+        }
+
+        List<Task<?>> tasks = new ArrayList<>();
+        for (final StorageReference item : items) {
+            if (mCache.getMetadata(item) != null) {
+                continue;
+            }
+
+            tasks.add(item.getMetadata()
+                    .addOnSuccessListener(new OnSuccessListener<StorageMetadata>() {
+                        @Override
+                        public void onSuccess(StorageMetadata metadata) {
+                            mCache.putMetadata(item, metadata);
+                        }
+                    })
+                    .addOnFailureListener(new OnFailureListener() {
+                        @Override
+                        public void onFailure(@NonNull Exception e) {
+                            Log.w(TAG, "getMetadata:onFailure", e);
+                        }
+                    }));
+        }
+
+        if (tasks.isEmpty()) {
+            then.run();
+            return;
+        }
+
+        Tasks.whenAllComplete(tasks).addOnCompleteListener(new OnCompleteListener<List<Task<?>>>() {
+            @Override
+            public void onComplete(@NonNull Task<List<Task<?>>> task) {
+                then.run();
+            }
+        });
+    }
+
+    @NonNull
+    @VisibleForTesting
+    static String getPageId(@NonNull StorageReference folder,
+                            @Nullable String pageToken,
+                            int pageSize) {
+        return folder.toString() + "|" + pageSize + "|" + (pageToken == null ? "" : pageToken);
+    }
+
+    private static int getPageSize(int requestedLoadSize) {
+        return Math.max(1, Math.min(requestedLoadSize, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Forget the cached pages and reload the folder from the beginning.
+     */
+    public void refresh() {
+        mCache.clearPages();
+        invalidate();
+    }
+
+    @NonNull
+    public LiveData<LoadingState> getLoadingState() {
+        return mLoadingState;
+    }
+
+    @NonNull
+    public LiveData<Exception> getLastError() {
+        return mException;
+    }
+
+    /**
+     * Retry counts and load latencies, updated as loads complete or retries are scheduled.
+     */
+    @NonNull
+    public LiveData<LoadStats> getLoadStats() {
+        return mLoadStats;
+    }
+
+    public void retry() {
+        LoadingState currentState = mLoadingState.getValue();
+        if (currentState != LoadingState.ERROR) {
+            Log.w(TAG, "retry() not valid when in state: " + currentState);
+            return;
+        }
+
+        if (mRetryRunnable == null) {
+            Log.w(TAG, "retry() called with no eligible retry runnable.");
+            return;
+        }
+
+        mRetryScheduler.reset();
+        mRetryRunnable.run();
+    }
+
+    @NonNull
+    private Runnable getRetryLoadAfter(@NonNull final LoadParams<String> params,
+                                       @NonNull final LoadCallback<String, StorageReference> callback) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                loadAfter(params, callback);
+            }
+        };
+    }
+
+    @NonNull
+    private Runnable getRetryLoadInitial(@NonNull final LoadInitialParams<String> params,
+                                         @NonNull final LoadInitialCallback<String, StorageReference> callback) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                loadInitial(params, callback);
+            }
+        };
+    }
+
+    /**
+     * Success listener that sets success state and nullifies the retry runnable.
+     */
+    private abstract class OnLoadSuccessListener {
+
+        public void onPage(@NonNull List<StorageReference> items, @Nullable String nextPageToken) {
+            setResult(items, nextPageToken);
+            mRetryScheduler.onLoadSucceeded();
+            mLoadingState.postValue(LoadingState.LOADED);
+
+            // Post the 'FINISHED' state when no more pages will be loaded. A null next page token
+            // tells the paging library to stop loading.
+            if (nextPageToken == null) {
+                mLoadingState.postValue(LoadingState.FINISHED);
+            }
+
+            mRetryRunnable = null;
+        }
+
+        protected abstract void setResult(@NonNull List<StorageReference> items,
+                                          @Nullable String nextPageToken);
+    }
+
+    /**
+     * Error listener that logs, schedules an automatic retry if the {@link RetryPolicy} allows
+     * it, and otherwise sets the error state and sets up manual retry.
+     */
+    private abstract class OnLoadFailureListener implements OnFailureListener {
+
+        @Override
+        public void onFailure(@NonNull Exception e) {
+            Log.w(TAG, "load:onFailure", e);
+
+            // Stay in the loading state while an automatic retry is pending
+            if (mRetryScheduler.onLoadFailed(getRetryRunnable())) {
+                return;
+            }
+
+            // On error we do NOT post any value to the PagedList, we just tell
+            // the developer that we are now in the error state.
+            mLoadingState.postValue(LoadingState.ERROR);
+
+            // Set the retry action
+            mRetryRunnable = getRetryRunnable();
+
+            //Set to the MutableLiveData to determine Latest Error
+            mException.postValue(e);
+        }
+
+        protected abstract Runnable getRetryRunnable();
+    }
+}
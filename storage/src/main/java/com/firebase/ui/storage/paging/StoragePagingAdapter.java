@@ -0,0 +1,271 @@
+package com.firebase.ui.storage.paging;
+
+import android.util.Log;
+
+import com.firebase.ui.common.LoadStats;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.arch.core.util.Function;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.OnLifecycleEvent;
+import androidx.lifecycle.Transformations;
+import androidx.paging.PagedList;
+import androidx.paging.PagedListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Paginated RecyclerView Adapter for the objects of a Cloud Storage folder.
+ *
+ * Configured with {@link StoragePagingOptions}.
+ */
+public abstract class StoragePagingAdapter<VH extends RecyclerView.ViewHolder>
+        extends PagedListAdapter<StorageReference, VH>
+        implements LifecycleObserver {
+
+    private static final String TAG = "StoragePagingAdapter";
+    /*
+        LiveData created via Transformation do not have a value until an Observer is attached.
+        We attach this empty observer so that our getValue() calls return non-null later.
+    */
+    private final Observer<StorageDataSource> mDataSourceObserver = new Observer<StorageDataSource>() {
+        @Override
+        public void onChanged(@Nullable StorageDataSource source) {
+
+        }
+    };
+    //Error observer to determine last occurred Error
+    private final Observer<Exception> mErrorObserver = new Observer<Exception>() {
+        @Override
+        public void onChanged(@Nullable Exception e) {
+            onError(e);
+        }
+    };
+    private final Observer<LoadingState> mStateObserver =
+            new Observer<LoadingState>() {
+                @Override
+                public void onChanged(@Nullable LoadingState state) {
+                    if (state == null) {
+                        return;
+                    }
+
+                    onLoadingStateChanged(state);
+                }
+            };
+    private final Observer<LoadStats> mStatsObserver =
+            new Observer<LoadStats>() {
+                @Override
+                public void onChanged(@Nullable LoadStats stats) {
+                    if (stats == null) {
+                        return;
+                    }
+
+                    onLoadStatsChanged(stats);
+                }
+            };
+    private final Observer<PagedList<StorageReference>> mDataObserver =
+            new Observer<PagedList<StorageReference>>() {
+                @Override
+                public void onChanged(@Nullable PagedList<StorageReference> references) {
+                    if (references == null) {
+                        return;
+                    }
+
+                    submitList(references);
+                }
+            };
+    private StoragePagingOptions mOptions;
+    private LiveData<PagedList<StorageReference>> mReferences;
+    private LiveData<LoadingState> mLoadingState;
+    private LiveData<Exception> mException;
+    private LiveData<LoadStats> mLoadStats;
+    private LiveData<StorageDataSource> mDataSource;
+
+    /**
+     * Construct a new StoragePagingAdapter from the given {@link StoragePagingOptions}.
+     */
+    public StoragePagingAdapter(@NonNull StoragePagingOptions options) {
+        super(options.getDiffCallback());
+
+        mOptions = options;
+
+        init();
+    }
+
+    /**
+     * Initializes References and LiveData
+     */
+    private void init() {
+        mReferences = mOptions.getData();
+
+        mLoadingState = Transformations.switchMap(mReferences,
+                new Function<PagedList<StorageReference>, LiveData<LoadingState>>() {
+                    @Override
+                    public LiveData<LoadingState> apply(PagedList<StorageReference> input) {
+                        StorageDataSource dataSource = (StorageDataSource) input.getDataSource();
+                        return dataSource.getLoadingState();
+                    }
+                });
+
+        mDataSource = Transformations.map(mReferences,
+                new Function<PagedList<StorageReference>, StorageDataSource>() {
+                    @Override
+                    public StorageDataSource apply(PagedList<StorageReference> input) {
+                        return (StorageDataSource) input.getDataSource();
+                    }
+                });
+
+        mException = Transformations.switchMap(mReferences,
+                new Function<PagedList<StorageReference>, LiveData<Exception>>() {
+                    @Override
+                    public LiveData<Exception> apply(PagedList<StorageReference> input) {
+                        StorageDataSource dataSource = (StorageDataSource) input.getDataSource();
+                        return dataSource.getLastError();
+                    }
+                });
+
+        mLoadStats = Transformations.switchMap(mReferences,
+                new Function<PagedList<StorageReference>, LiveData<LoadStats>>() {
+                    @Override
+                    public LiveData<LoadStats> apply(PagedList<StorageReference> input) {
+                        StorageDataSource dataSource = (StorageDataSource) input.getDataSource();
+                        return dataSource.getLoadStats();
+                    }
+                });
+
+        if (mOptions.getOwner() != null) {
+            mOptions.getOwner().getLifecycle().addObserver(this);
+        }
+    }
+
+    /**
+     * If {@link #onLoadingStateChanged(LoadingState)} indicates error state, call this method to
+     * attempt to retry the most recent failure.
+     */
+    public void retry() {
+        StorageDataSource source = mDataSource.getValue();
+        if (source == null) {
+            Log.w(TAG, "Called retry() when StorageDataSource is null!");
+            return;
+        }
+
+        source.retry();
+    }
+
+    /**
+     * To attempt to refresh the list. It will list the folder again from the beginning.
+     */
+    public void refresh() {
+        StorageDataSource source = mDataSource.getValue();
+        if (source == null) {
+            Log.w(TAG, "Called refresh() when StorageDataSource is null!");
+            return;
+        }
+        source.refresh();
+    }
+
+    /**
+     * Re-initialize the Adapter with a new set of options. Can be used to change the folder
+     * without re-constructing the entire adapter.
+     */
+    public void updateOptions(@NonNull StoragePagingOptions options) {
+        // Tear down old options
+        boolean hasObservers = mReferences.hasObservers();
+        if (mOptions.getOwner() != null) {
+            mOptions.getOwner().getLifecycle().removeObserver(this);
+        }
+        stopListening();
+
+        // Reinit Options
+        mOptions = options;
+        init();
+
+        if (hasObservers) {
+            startListening();
+        }
+    }
+
+    /**
+     * Start listening to paging / scrolling events and populating adapter data.
+     */
+    @OnLifecycleEvent(Lifecycle.Event.ON_START)
+    public void startListening() {
+        mReferences.observeForever(mDataObserver);
+        mLoadingState.observeForever(mStateObserver);
+        mDataSource.observeForever(mDataSourceObserver);
+        mException.observeForever(mErrorObserver);
+        mLoadStats.observeForever(mStatsObserver);
+    }
+
+    /**
+     * Unsubscribe from paging / scrolling events, no more data will be populated, but the existing
+     * data will remain.
+     */
+    @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+    public void stopListening() {
+        mReferences.removeObserver(mDataObserver);
+        mLoadingState.removeObserver(mStateObserver);
+        mDataSource.removeObserver(mDataSourceObserver);
+        mException.removeObserver(mErrorObserver);
+        mLoadStats.removeObserver(mStatsObserver);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull VH holder, int position) {
+        StorageReference reference = getItem(position);
+        onBindViewHolder(holder, position, reference);
+    }
+
+    /**
+     * @param reference the listed object that should be used to populate the view.
+     * @see #onBindViewHolder(RecyclerView.ViewHolder, int)
+     */
+    protected abstract void onBindViewHolder(@NonNull VH holder,
+                                             int position,
+                                             @NonNull StorageReference reference);
+
+    /**
+     * Returns the cached metadata of a listed object, which is fetched along with its page when
+     * {@link StoragePagingOptions.Builder#setLoadMetadata(boolean)} is enabled.
+     *
+     * @return the metadata, or null if it was not fetched or was evicted from the cache.
+     */
+    @Nullable
+    public StorageMetadata getMetadata(@NonNull StorageReference reference) {
+        return mOptions.getCache().getMetadata(reference);
+    }
+
+    /**
+     * Called whenever the loading state of the adapter changes.
+     * <p>
+     * When the state is {@link LoadingState#ERROR} the adapter will stop loading any data unless
+     * {@link #retry()} is called.
+     */
+    protected void onLoadingStateChanged(@NonNull LoadingState state) {
+        // For overriding
+    }
+
+    /**
+     * Called whenever a page load completes or an automatic retry is scheduled, with the retry
+     * counts and latencies of the current data source.
+     *
+     * @see StoragePagingOptions.Builder#setRetryPolicy
+     */
+    protected void onLoadStatsChanged(@NonNull LoadStats stats) {
+        // For overriding
+    }
+
+    /**
+     * Called whenever the {@link Exception} is caught.
+     * <p>
+     * When {@link Exception} is caught the adapter will stop loading any data
+     */
+    protected void onError(@NonNull Exception e) {
+        Log.w(TAG, "onError", e);
+    }
+}
@@ -0,0 +1,183 @@
+package com.firebase.ui.storage.paging;
+
+import com.firebase.ui.common.RetryPolicy;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * Options to configure a {@link StoragePagingAdapter}.
+ *
+ * Use {@link Builder} to create a new instance.
+ */
+public final class StoragePagingOptions {
+
+    private static final int MAX_CACHED_PAGES = 50;
+    private static final int MAX_CACHED_METADATA = 1000;
+    private static final long DEFAULT_CACHE_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final LiveData<PagedList<StorageReference>> mData;
+    private final ListingCache mCache;
+    private final DiffUtil.ItemCallback<StorageReference> mDiffCallback;
+    private final LifecycleOwner mOwner;
+
+    private StoragePagingOptions(@NonNull LiveData<PagedList<StorageReference>> data,
+                                 @NonNull ListingCache cache,
+                                 @NonNull DiffUtil.ItemCallback<StorageReference> diffCallback,
+                                 @Nullable LifecycleOwner owner) {
+        mData = data;
+        mCache = cache;
+        mDiffCallback = diffCallback;
+        mOwner = owner;
+    }
+
+    @NonNull
+    public LiveData<PagedList<StorageReference>> getData() {
+        return mData;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    @NonNull
+    public ListingCache getCache() {
+        return mCache;
+    }
+
+    @NonNull
+    public DiffUtil.ItemCallback<StorageReference> getDiffCallback() {
+        return mDiffCallback;
+    }
+
+    @Nullable
+    public LifecycleOwner getOwner() {
+        return mOwner;
+    }
+
+    /**
+     * Builder for {@link StoragePagingOptions}.
+     */
+    public static final class Builder {
+
+        private StorageReference mFolder;
+        private PagedList.Config mConfig;
+        private LifecycleOwner mOwner;
+        private DiffUtil.ItemCallback<StorageReference> mDiffCallback;
+        private RetryPolicy mRetryPolicy;
+        private boolean mLoadMetadata;
+        private long mCacheMaxAgeMillis = DEFAULT_CACHE_MAX_AGE_MILLIS;
+
+        /**
+         * Sets the Cloud Storage folder to list.
+         *
+         * @param folder the folder whose objects are listed. Sub-folders are not included.
+         * @param config paging configuration, passed directly to the support paging library.
+         *               Page sizes above 1000 are capped.
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setFolder(@NonNull StorageReference folder,
+                                 @NonNull PagedList.Config config) {
+            mFolder = folder;
+            mConfig = config;
+            return this;
+        }
+
+        /**
+         * Fetch the {@link StorageMetadata} of each object before its page is shown, so that it
+         * is available from {@link StoragePagingAdapter#getMetadata(StorageReference)} while
+         * binding. Metadata is cached for the objects listed most recently.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setLoadMetadata(boolean loadMetadata) {
+            mLoadMetadata = loadMetadata;
+            return this;
+        }
+
+        /**
+         * Sets how long listed pages are reused, for example when the adapter is recreated after
+         * a configuration change, before the folder is listed again. Defaults to five minutes.
+         * {@link StoragePagingAdapter#refresh()} always lists the folder again.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setCacheMaxAge(long maxAgeMillis) {
+            mCacheMaxAgeMillis = maxAgeMillis;
+            return this;
+        }
+
+        /**
+         * Sets an optional custom {@link DiffUtil.ItemCallback} to compare
+         * {@link StorageReference} objects.
+         *
+         * The default implementation is {@link DefaultReferenceDiffCallback}.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setDiffCallback(@NonNull DiffUtil.ItemCallback<StorageReference> diffCallback) {
+            mDiffCallback = diffCallback;
+            return this;
+        }
+
+        /**
+         * Sets an optional {@link RetryPolicy} used to automatically retry failed page loads
+         * with exponential backoff. Without a policy, failed loads are only retried when
+         * {@link StoragePagingAdapter#retry()} is called.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setRetryPolicy(@NonNull RetryPolicy retryPolicy) {
+            mRetryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Sets an optional {@link LifecycleOwner} to control the lifecycle of the adapter. Otherwise,
+         * you must manually call {@link StoragePagingAdapter#startListening()}
+         * and {@link StoragePagingAdapter#stopListening()}.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setLifecycleOwner(@NonNull LifecycleOwner owner) {
+            mOwner = owner;
+            return this;
+        }
+
+        /**
+         * Build the {@link StoragePagingOptions} object.
+         */
+        @NonNull
+        public StoragePagingOptions build() {
+            if (mFolder == null) {
+                throw new IllegalStateException("Must call setFolder() before calling build().");
+            }
+
+            ListingCache cache =
+                    new ListingCache(MAX_CACHED_PAGES, MAX_CACHED_METADATA, mCacheMaxAgeMillis);
+            StorageDataSource.Factory factory =
+                    new StorageDataSource.Factory(mFolder, mRetryPolicy, mLoadMetadata, cache);
+            LiveData<PagedList<StorageReference>> data =
+                    new LivePagedListBuilder<>(factory, mConfig).build();
+
+            if (mDiffCallback == null) {
+                mDiffCallback = new DefaultReferenceDiffCallback();
+            }
+
+            return new StoragePagingOptions(data, cache, mDiffCallback, mOwner);
+        }
+    }
+}
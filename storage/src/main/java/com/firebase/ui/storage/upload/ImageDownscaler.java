@@ -0,0 +1,239 @@
+package com.firebase.ui.storage.upload;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.WorkerThread;
+import androidx.exifinterface.media.ExifInterface;
+
+/**
+ * Downscales and re-encodes images to fit within a maximum size before they are uploaded.
+ *
+ * Re-encoding drops the EXIF metadata, so the pixels of the copy are rotated according to the
+ * EXIF orientation of the source and the maximum size applies to the image as it is displayed.
+ * Unless a format is given, copies are encoded in the format of their source so that PNG and WebP
+ * images keep their transparency, and other formats are encoded as JPEG.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class ImageDownscaler {
+
+    private static final String TAG = "ImageDownscaler";
+
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    @Nullable private final Bitmap.CompressFormat mFormat;
+    private final int mQuality;
+
+    /**
+     * @param format the format copies are encoded with, or null to keep the format of the source.
+     */
+    public ImageDownscaler(int maxWidth,
+                           int maxHeight,
+                           @Nullable Bitmap.CompressFormat format,
+                           int quality) {
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mFormat = format;
+        mQuality = quality;
+    }
+
+    /**
+     * Write a downscaled copy of the image into the given directory. The name of the copy ends
+     * with the extension of its format.
+     *
+     * @return the copy, or null if the source is not a decodable image or already fits.
+     */
+    @Nullable
+    @WorkerThread
+    public File downscale(@NonNull Context context, @NonNull Uri source, @NonNull File dir)
+            throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        decode(context, source, bounds);
+
+        int width = bounds.outWidth;
+        int height = bounds.outHeight;
+        if (width <= 0 || height <= 0) {
+            // Not an image, upload it as is
+            return null;
+        }
+
+        int orientation = getOrientation(context, source);
+        // The maximum size applies to the image as displayed, after rotation
+        boolean transposed = isTransposed(orientation);
+        int maxWidth = transposed ? mMaxHeight : mMaxWidth;
+        int maxHeight = transposed ? mMaxWidth : mMaxHeight;
+        float scale = Math.min((float) maxWidth / width, (float) maxHeight / height);
+        if (scale >= 1) {
+            return null;
+        }
+
+        // Decode at the largest power of two subsample that is still at least the target size,
+        // then scale the rest of the way.
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        while (width / (options.inSampleSize * 2) >= width * scale
+                && height / (options.inSampleSize * 2) >= height * scale) {
+            options.inSampleSize *= 2;
+        }
+
+        Bitmap sampled = decode(context, source, options);
+        if (sampled == null) {
+            return null;
+        }
+
+        int targetWidth = Math.max(1, Math.round(width * scale));
+        int targetHeight = Math.max(1, Math.round(height * scale));
+
+        // Scale and rotate in one pass
+        Matrix matrix = new Matrix();
+        matrix.setScale((float) targetWidth / sampled.getWidth(),
+                (float) targetHeight / sampled.getHeight());
+        applyOrientation(matrix, orientation);
+        Bitmap scaled = Bitmap.createBitmap(
+                sampled, 0, 0, sampled.getWidth(), sampled.getHeight(), matrix, true);
+        if (scaled != sampled) {
+            sampled.recycle();
+        }
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        Bitmap.CompressFormat format = mFormat == null ? getFormat(bounds.outMimeType) : mFormat;
+        File file = new File(dir, UUID.randomUUID() + "." + getExtension(format));
+        OutputStream out = new FileOutputStream(file);
+        try {
+            if (!scaled.compress(format, mQuality, out)) {
+                throw new IOException("Could not encode " + source);
+            }
+        } finally {
+            out.close();
+            scaled.recycle();
+        }
+
+        return file;
+    }
+
+    /**
+     * @return the format which keeps the transparency of the source if it may have any, JPEG
+     * otherwise.
+     */
+    @NonNull
+    private static Bitmap.CompressFormat getFormat(@Nullable String mimeType) {
+        if ("image/png".equals(mimeType) || "image/gif".equals(mimeType)) {
+            return Bitmap.CompressFormat.PNG;
+        } else if ("image/webp".equals(mimeType)) {
+            return Bitmap.CompressFormat.WEBP;
+        } else {
+            return Bitmap.CompressFormat.JPEG;
+        }
+    }
+
+    @NonNull
+    private static String getExtension(@NonNull Bitmap.CompressFormat format) {
+        switch (format) {
+            case PNG:
+                return "png";
+            case WEBP:
+                return "webp";
+            default:
+                return "jpg";
+        }
+    }
+
+    /**
+     * @return the EXIF orientation of the source, or {@link ExifInterface#ORIENTATION_UNDEFINED}
+     * if it has none.
+     */
+    private static int getOrientation(@NonNull Context context, @NonNull Uri source) {
+        try {
+            InputStream in = context.getContentResolver().openInputStream(source);
+            if (in == null) {
+                return ExifInterface.ORIENTATION_UNDEFINED;
+            }
+
+            try {
+                return new ExifInterface(in).getAttributeInt(
+                        ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read the orientation of " + source, e);
+            return ExifInterface.ORIENTATION_UNDEFINED;
+        }
+    }
+
+    private static boolean isTransposed(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+            case ExifInterface.ORIENTATION_ROTATE_90:
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void applyOrientation(@NonNull Matrix matrix, int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(-90);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Nullable
+    private static Bitmap decode(@NonNull Context context,
+                                 @NonNull Uri source,
+                                 @NonNull BitmapFactory.Options options) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(source);
+        if (in == null) {
+            throw new IOException("Could not open " + source);
+        }
+
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,670 @@
+package com.firebase.ui.storage.upload;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Base64;
+import android.util.Log;
+import android.webkit.MimeTypeMap;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.storage.OnProgressListener;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Uploads files, typically camera images, to Cloud Storage.
+ *
+ * <p>
+ * Images larger than the configured maximum size are downscaled and re-encoded on a background
+ * executor before they are uploaded, and at most a fixed number of uploads run at once. The file
+ * being uploaded and the resumable session of each upload are persisted, so calling
+ * {@link #upload(Uri, StorageReference, StorageMetadata)} again with the same arguments after the
+ * process was restarted resumes the upload where it stopped instead of starting over. Calling it
+ * again while the upload is still running returns the task of the running upload.
+ *
+ * <p>
+ * To avoid uploading the same bytes twice, use
+ * {@link #uploadIfChanged(Uri, StorageReference, StorageMetadata)} or
+ * {@link #uploadToContentAddress(Uri, StorageReference, StorageMetadata)}, which hash the file
+ * before uploading it and skip the transfer when the object already holds the same content.
+ *
+ * <p>
+ * Use {@link Builder} to create a new instance, and keep a single instance for the application.
+ * All methods must be called on the main thread.
+ */
+public final class UploadManager {
+
+    private static final String TAG = "UploadManager";
+    private static final String PREPARED_DIR = "firebaseui-uploads";
+
+    /**
+     * Downscaled copies older than this are deleted when the manager is created. Resumable upload
+     * sessions expire after a week, so an upload which failed and was not retried in that time
+     * would start over anyway.
+     */
+    private static final long PREPARED_FILE_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Receives the aggregate progress of all uploads. Called on the main thread.
+     */
+    public interface ProgressListener {
+        void onProgress(@NonNull UploadProgress progress);
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final List<ProgressListener> mListeners = new CopyOnWriteArrayList<>();
+
+    private final Context mContext;
+    private final ImageDownscaler mDownscaler;
+    private final int mMaxConcurrentUploads;
+    private final Executor mExecutor;
+    private final UploadSessionStore mSessions;
+
+    private final Queue<Upload> mQueue = new ArrayDeque<>();
+    private final List<Upload> mActive = new ArrayList<>();
+    private final Map<String, Upload> mUploads = new HashMap<>();
+
+    // Progress since the manager was last idle
+    private int mTotalUploads;
+    private int mCompletedUploads;
+    private long mCompletedBytes;
+    private long mResumedBytes;
+    private long mStartMillis;
+    private int mSkippedUploads;
+
+    // De-duplication checks over the lifetime of the manager
+    private int mDeduplicationChecks;
+    private int mDeduplicationHits;
+
+    private UploadManager(@NonNull Context context,
+                          @Nullable ImageDownscaler downscaler,
+                          int maxConcurrentUploads,
+                          @NonNull Executor executor) {
+        mContext = context.getApplicationContext();
+        mDownscaler = downscaler;
+        mMaxConcurrentUploads = maxConcurrentUploads;
+        mExecutor = executor;
+        mSessions = new UploadSessionStore(mContext);
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deleteStalePreparedFiles();
+            }
+        });
+    }
+
+    public void addProgressListener(@NonNull ProgressListener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeProgressListener(@NonNull ProgressListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Upload a file, resuming a previous upload of the same file to the same destination if one
+     * was interrupted.
+     *
+     * @param source      the file to upload, for example a content URI returned by the camera.
+     * @param destination the object to write.
+     * @param metadata    optional metadata for the object. The content type is replaced when
+     *                    the file is re-encoded.
+     * @return a task completing with the result of the upload.
+     */
+    @MainThread
+    @NonNull
+    public Task<UploadTask.TaskSnapshot> upload(@NonNull Uri source,
+                                                @NonNull StorageReference destination,
+                                                @Nullable StorageMetadata metadata) {
+        return add(new Upload(source, destination, metadata, Deduplication.NONE))
+                .mResult.getTask();
+    }
+
+    /**
+     * Upload a file unless the destination already holds the same bytes, compared with the MD5
+     * hash of its metadata. The file is hashed after it was downscaled, so the hash matches the
+     * bytes which would be uploaded.
+     *
+     * @return a task completing with the destination, whether it was uploaded or not.
+     * @see #upload(Uri, StorageReference, StorageMetadata)
+     */
+    @MainThread
+    @NonNull
+    public Task<StorageReference> uploadIfChanged(@NonNull Uri source,
+                                                  @NonNull StorageReference destination,
+                                                  @Nullable StorageMetadata metadata) {
+        return add(new Upload(source, destination, metadata, Deduplication.IF_CHANGED))
+                .mReference.getTask();
+    }
+
+    /**
+     * Upload a file into the given folder, named after the hex MD5 hash of its content. If an
+     * object with the same content was already uploaded, the transfer is skipped and that object
+     * is returned.
+     *
+     * @return a task completing with the content-addressed object.
+     * @see #upload(Uri, StorageReference, StorageMetadata)
+     */
+    @MainThread
+    @NonNull
+    public Task<StorageReference> uploadToContentAddress(@NonNull Uri source,
+                                                         @NonNull StorageReference folder,
+                                                         @Nullable StorageMetadata metadata) {
+        return add(new Upload(source, folder, metadata, Deduplication.CONTENT_ADDRESSED))
+                .mReference.getTask();
+    }
+
+    /**
+     * The share of de-duplicated uploads whose transfer was skipped because the content was
+     * already uploaded, between 0 and 1.
+     */
+    public float getDeduplicationHitRate() {
+        return mDeduplicationChecks == 0 ? 0 : (float) mDeduplicationHits / mDeduplicationChecks;
+    }
+
+    /**
+     * Start the upload, unless the same upload is already running.
+     *
+     * @return the running upload.
+     */
+    @NonNull
+    private Upload add(@NonNull final Upload upload) {
+        Upload running = mUploads.get(upload.mId);
+        if (running != null) {
+            // Both would share the persisted session and the downscaled copy
+            return running;
+        }
+        mUploads.put(upload.mId, upload);
+
+        if (mCompletedUploads == mTotalUploads) {
+            // Idle, start a new batch
+            mTotalUploads = 0;
+            mCompletedUploads = 0;
+            mCompletedBytes = 0;
+            mResumedBytes = 0;
+            mSkippedUploads = 0;
+            mStartMillis = SystemClock.elapsedRealtime();
+        }
+        mTotalUploads++;
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    prepare(upload);
+                    if (upload.mDeduplication != Deduplication.NONE) {
+                        hash(upload);
+                    }
+                } catch (Exception e) {
+                    onPrepareFailed(upload, e);
+                    return;
+                }
+
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (upload.mDeduplication == Deduplication.NONE) {
+                            enqueue(upload);
+                        } else {
+                            checkExisting(upload);
+                        }
+                    }
+                });
+            }
+        });
+
+        publish();
+        return upload;
+    }
+
+    private void enqueue(@NonNull Upload upload) {
+        mQueue.add(upload);
+        startNext();
+        publish();
+    }
+
+    /**
+     * Find the file to upload: the one of an interrupted upload if it still exists, otherwise a
+     * downscaled copy of the source or the source itself.
+     */
+    private void prepare(@NonNull Upload upload) throws IOException {
+        Uri file = mSessions.getFile(upload.mId);
+        if (file != null && (!"file".equals(file.getScheme()) || new File(file.getPath()).exists())) {
+            upload.mFile = file;
+            upload.mSession = mSessions.getSession(upload.mId);
+            upload.mReencoded = !file.equals(upload.mSource);
+            return;
+        }
+        mSessions.remove(upload.mId);
+
+        File downscaled = mDownscaler == null ? null : mDownscaler.downscale(
+                mContext, upload.mSource, new File(mContext.getCacheDir(), PREPARED_DIR));
+        upload.mFile = downscaled == null ? upload.mSource : Uri.fromFile(downscaled);
+        upload.mReencoded = downscaled != null;
+        mSessions.putFile(upload.mId, upload.mFile);
+    }
+
+    /**
+     * Stream the prepared file once to compute its MD5 hash, and pick the content-addressed
+     * destination if needed.
+     */
+    private void hash(@NonNull Upload upload) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        InputStream in = mContext.getContentResolver().openInputStream(upload.mFile);
+        if (in == null) {
+            throw new IOException("Could not open " + upload.mFile);
+        }
+
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+
+        byte[] md5 = digest.digest();
+        // Cloud Storage reports the MD5 hash of objects in base64
+        upload.mMd5 = Base64.encodeToString(md5, Base64.NO_WRAP);
+
+        if (upload.mDeduplication == Deduplication.CONTENT_ADDRESSED) {
+            StringBuilder name = new StringBuilder();
+            for (byte b : md5) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+
+            String extension = getExtension(upload);
+            if (!TextUtils.isEmpty(extension)) {
+                name.append('.').append(extension);
+            }
+            upload.mDestination = upload.mTarget.child(name.toString());
+        }
+    }
+
+    @Nullable
+    private String getExtension(@NonNull Upload upload) {
+        if (upload.mReencoded) {
+            return MimeTypeMap.getFileExtensionFromUrl(upload.mFile.toString());
+        }
+
+        String type = mContext.getContentResolver().getType(upload.mSource);
+        return type == null ? null : MimeTypeMap.getSingleton().getExtensionFromMimeType(type);
+    }
+
+    /**
+     * Skip the upload if the destination already holds the same bytes, otherwise queue it.
+     */
+    private void checkExisting(@NonNull final Upload upload) {
+        upload.mDestination.getMetadata()
+                .addOnSuccessListener(new OnSuccessListener<StorageMetadata>() {
+                    @Override
+                    public void onSuccess(StorageMetadata metadata) {
+                        mDeduplicationChecks++;
+                        if (!upload.mMd5.equals(metadata.getMd5Hash())) {
+                            enqueue(upload);
+                            return;
+                        }
+
+                        mDeduplicationHits++;
+                        mSkippedUploads++;
+                        discard(upload);
+                        finish(upload);
+                        upload.mReference.setResult(upload.mDestination);
+                    }
+                })
+                .addOnFailureListener(new OnFailureListener() {
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        mDeduplicationChecks++;
+                        if (!isObjectNotFound(e)) {
+                            // Uploading is still correct, only potentially redundant
+                            Log.w(TAG, "Could not check " + upload.mDestination, e);
+                        }
+                        enqueue(upload);
+                    }
+                });
+    }
+
+    private void onPrepareFailed(@NonNull final Upload upload, @NonNull final Exception e) {
+        Log.w(TAG, "Could not prepare " + upload.mSource, e);
+        discard(upload);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                finish(upload);
+                upload.setException(e);
+            }
+        });
+    }
+
+    private void startNext() {
+        while (mActive.size() < mMaxConcurrentUploads && !mQueue.isEmpty()) {
+            start(mQueue.poll());
+        }
+    }
+
+    private void start(@NonNull final Upload upload) {
+        mActive.add(upload);
+
+        StorageMetadata metadata = upload.mMetadata;
+        String reencodedType = upload.mReencoded ? MimeTypeMap.getSingleton()
+                .getMimeTypeFromExtension(getExtension(upload)) : null;
+        if (reencodedType != null) {
+            StorageMetadata.Builder builder = metadata == null
+                    ? new StorageMetadata.Builder() : new StorageMetadata.Builder(metadata);
+            metadata = builder.setContentType(reencodedType).build();
+        }
+
+        final boolean resumed = upload.mSession != null;
+        upload.mTask = resumed
+                ? upload.mDestination.putFile(upload.mFile, metadata, upload.mSession)
+                : upload.mDestination.putFile(upload.mFile, metadata);
+        upload.mTask
+                .addOnProgressListener(new OnProgressListener<UploadTask.TaskSnapshot>() {
+                    @Override
+                    public void onProgress(@NonNull UploadTask.TaskSnapshot snapshot) {
+                        onUploadProgress(upload, snapshot);
+                    }
+                })
+                .addOnSuccessListener(new OnSuccessListener<UploadTask.TaskSnapshot>() {
+                    @Override
+                    public void onSuccess(UploadTask.TaskSnapshot snapshot) {
+                        discard(upload);
+                        finish(upload);
+                        upload.mResult.setResult(snapshot);
+                        upload.mReference.setResult(upload.mDestination);
+                    }
+                })
+                .addOnFailureListener(new OnFailureListener() {
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        // Keep a new session for the next attempt, but start over if resuming
+                        // failed since the session may have expired.
+                        if (resumed || isCanceled(e)) {
+                            discard(upload);
+                        }
+                        finish(upload);
+                        upload.setException(e);
+                    }
+                });
+    }
+
+    private void onUploadProgress(@NonNull Upload upload, @NonNull UploadTask.TaskSnapshot snapshot) {
+        if (upload.mTotalBytes < 0) {
+            // First report, bytes uploaded before an interruption are not part of the throughput
+            mResumedBytes += snapshot.getBytesTransferred();
+        }
+        upload.mBytesTransferred = snapshot.getBytesTransferred();
+        upload.mTotalBytes = snapshot.getTotalByteCount();
+
+        Uri session = snapshot.getUploadSessionUri();
+        if (session != null && !session.equals(upload.mSession)) {
+            upload.mSession = session;
+            mSessions.putSession(upload.mId, session);
+        }
+
+        publish();
+    }
+
+    /**
+     * Forget the persisted state of an upload and delete its downscaled copy.
+     */
+    private void discard(@NonNull Upload upload) {
+        mSessions.remove(upload.mId);
+        if (upload.mReencoded && upload.mFile != null) {
+            if (!new File(upload.mFile.getPath()).delete()) {
+                Log.w(TAG, "Could not delete " + upload.mFile);
+            }
+        }
+    }
+
+    /**
+     * Delete the downscaled copies of uploads which failed long ago and were never retried.
+     */
+    private void deleteStalePreparedFiles() {
+        File[] files = new File(mContext.getCacheDir(), PREPARED_DIR).listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (now - file.lastModified() > PREPARED_FILE_MAX_AGE_MILLIS && !file.delete()) {
+                Log.w(TAG, "Could not delete " + file);
+            }
+        }
+    }
+
+    private void finish(@NonNull Upload upload) {
+        mUploads.remove(upload.mId);
+        mActive.remove(upload);
+        mCompletedUploads++;
+        mCompletedBytes += Math.max(0, upload.mBytesTransferred);
+
+        startNext();
+        publish();
+    }
+
+    private void publish() {
+        if (mListeners.isEmpty()) {
+            return;
+        }
+
+        long transferred = mCompletedBytes;
+        long total = mCompletedBytes;
+        for (Upload upload : mActive) {
+            transferred += Math.max(0, upload.mBytesTransferred);
+            total += Math.max(0, upload.mTotalBytes);
+        }
+
+        long elapsed = SystemClock.elapsedRealtime() - mStartMillis;
+        long bytesPerSecond = elapsed <= 0 ? 0 : (transferred - mResumedBytes) * 1000 / elapsed;
+
+        UploadProgress progress = new UploadProgress(mCompletedUploads,
+                mTotalUploads,
+                mSkippedUploads,
+                transferred,
+                total,
+                Math.max(0, bytesPerSecond));
+        for (ProgressListener listener : mListeners) {
+            listener.onProgress(progress);
+        }
+    }
+
+    private static boolean isObjectNotFound(@NonNull Exception e) {
+        return e instanceof StorageException
+                && ((StorageException) e).getErrorCode() == StorageException.ERROR_OBJECT_NOT_FOUND;
+    }
+
+    private static boolean isCanceled(@NonNull Exception e) {
+        return e instanceof StorageException
+                && ((StorageException) e).getErrorCode() == StorageException.ERROR_CANCELED;
+    }
+
+    private enum Deduplication {
+        NONE, IF_CHANGED, CONTENT_ADDRESSED
+    }
+
+    private static class Upload {
+
+        final Uri mSource;
+        final StorageReference mTarget;
+        final StorageMetadata mMetadata;
+        final Deduplication mDeduplication;
+        final String mId;
+        final TaskCompletionSource<UploadTask.TaskSnapshot> mResult =
+                new TaskCompletionSource<>();
+        final TaskCompletionSource<StorageReference> mReference =
+                new TaskCompletionSource<>();
+
+        // Set on the executor before the upload is queued
+        StorageReference mDestination;
+        Uri mFile;
+        Uri mSession;
+        boolean mReencoded;
+        String mMd5;
+
+        UploadTask mTask;
+        long mBytesTransferred = -1;
+        long mTotalBytes = -1;
+
+        /**
+         * @param target the destination, or the folder of a content-addressed upload.
+         */
+        Upload(@NonNull Uri source,
+               @NonNull StorageReference target,
+               @Nullable StorageMetadata metadata,
+               @NonNull Deduplication deduplication) {
+            mSource = source;
+            mTarget = target;
+            mDestination = target;
+            mMetadata = metadata;
+            mDeduplication = deduplication;
+            mId = deduplication + "|" + target + "|" + source;
+        }
+
+        void setException(@NonNull Exception e) {
+            mResult.setException(e);
+            mReference.setException(e);
+        }
+    }
+
+    /**
+     * Builder for {@link UploadManager}.
+     */
+    public static final class Builder {
+
+        private final Context mContext;
+        private int mMaxWidth = 2048;
+        private int mMaxHeight = 2048;
+        private Bitmap.CompressFormat mFormat;
+        private int mQuality = 85;
+        private boolean mDownscale = true;
+        private int mMaxConcurrentUploads = 2;
+        private Executor mExecutor;
+
+        public Builder(@NonNull Context context) {
+            mContext = context;
+        }
+
+        /**
+         * Sets the size images are downscaled to fit, keeping their aspect ratio. Defaults to
+         * 2048 by 2048 pixels.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setMaxDimensions(int maxWidth, int maxHeight) {
+            if (maxWidth <= 0 || maxHeight <= 0) {
+                throw new IllegalArgumentException("Dimensions must be positive.");
+            }
+            mMaxWidth = maxWidth;
+            mMaxHeight = maxHeight;
+            return this;
+        }
+
+        /**
+         * Sets the format and quality downscaled images are encoded with. Defaults to quality 85
+         * in the format of the source image, or JPEG if it cannot be encoded in that format.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setEncoding(@NonNull Bitmap.CompressFormat format, int quality) {
+            if (quality < 0 || quality > 100) {
+                throw new IllegalArgumentException("quality must be between 0 and 100.");
+            }
+            mFormat = format;
+            mQuality = quality;
+            return this;
+        }
+
+        /**
+         * Upload files as they are, without downscaling images.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder disableDownscaling() {
+            mDownscale = false;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of uploads running at once. Defaults to 2.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setMaxConcurrentUploads(int maxConcurrentUploads) {
+            if (maxConcurrentUploads < 1) {
+                throw new IllegalArgumentException("maxConcurrentUploads must be at least 1.");
+            }
+            mMaxConcurrentUploads = maxConcurrentUploads;
+            return this;
+        }
+
+        /**
+         * Sets the executor images are downscaled on. Defaults to a single background thread,
+         * which bounds the memory used by decoded images.
+         *
+         * @return this, for chaining.
+         */
+        @NonNull
+        public Builder setExecutor(@NonNull Executor executor) {
+            mExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Build the {@link UploadManager} object.
+         */
+        @NonNull
+        public UploadManager build() {
+            ImageDownscaler downscaler = mDownscale
+                    ? new ImageDownscaler(mMaxWidth, mMaxHeight, mFormat, mQuality) : null;
+            Executor executor = mExecutor == null ? Executors.newSingleThreadExecutor() : mExecutor;
+            return new UploadManager(mContext, downscaler, mMaxConcurrentUploads, executor);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.firebase.ui.storage.upload;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Aggregate progress of the uploads started by an {@link UploadManager} since it was last idle.
+ */
+public final class UploadProgress {
+
+    private final int mCompletedUploads;
+    private final int mTotalUploads;
+    private final int mSkippedUploads;
+    private final long mBytesTransferred;
+    private final long mTotalBytes;
+    private final long mBytesPerSecond;
+
+    UploadProgress(int completedUploads,
+                   int totalUploads,
+                   int skippedUploads,
+                   long bytesTransferred,
+                   long totalBytes,
+                   long bytesPerSecond) {
+        mCompletedUploads = completedUploads;
+        mTotalUploads = totalUploads;
+        mSkippedUploads = skippedUploads;
+        mBytesTransferred = bytesTransferred;
+        mTotalBytes = totalBytes;
+        mBytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * The number of uploads which succeeded or failed.
+     */
+    public int getCompletedUploads() {
+        return mCompletedUploads;
+    }
+
+    /**
+     * The number of uploads started since the manager was last idle, including completed ones.
+     */
+    public int getTotalUploads() {
+        return mTotalUploads;
+    }
+
+    /**
+     * The number of completed uploads whose transfer was skipped because the destination already
+     * held the same content.
+     */
+    public int getSkippedUploads() {
+        return mSkippedUploads;
+    }
+
+    public long getBytesTransferred() {
+        return mBytesTransferred;
+    }
+
+    /**
+     * The total size of the uploads whose size is known. Uploads which are still being downscaled
+     * are not included yet.
+     */
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    /**
+     * The average upload throughput since the manager was last idle. Bytes uploaded before a
+     * resumed upload was interrupted are not counted.
+     */
+    public long getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    /**
+     * True once every upload has completed.
+     */
+    public boolean isIdle() {
+        return mCompletedUploads == mTotalUploads;
+    }
+
+    @Override
+    @NonNull
+    public String toString() {
+        return "UploadProgress{" +
+                "completedUploads=" + mCompletedUploads +
+                ", totalUploads=" + mTotalUploads +
+                ", skippedUploads=" + mSkippedUploads +
+                ", bytesTransferred=" + mBytesTransferred +
+                ", totalBytes=" + mTotalBytes +
+                ", bytesPerSecond=" + mBytesPerSecond +
+                '}';
+    }
+}
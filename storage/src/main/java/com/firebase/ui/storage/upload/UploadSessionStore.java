@@ -0,0 +1,61 @@
+package com.firebase.ui.storage.upload;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Persists, for each upload in progress, the file being uploaded and the resumable session URI
+ * of its {@code UploadTask}, so that the upload can resume after the process is restarted.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public class UploadSessionStore {
+
+    private static final String PREFS_NAME = "com.firebase.ui.storage.upload.UploadSessionStore";
+    private static final String FILE_SUFFIX = ".file";
+    private static final String SESSION_SUFFIX = ".session";
+
+    private final SharedPreferences mPrefs;
+
+    public UploadSessionStore(@NonNull Context context) {
+        mPrefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return the URI of the file being uploaded, or null if there is no upload in progress.
+     */
+    @Nullable
+    public Uri getFile(@NonNull String uploadId) {
+        String file = mPrefs.getString(uploadId + FILE_SUFFIX, null);
+        return file == null ? null : Uri.parse(file);
+    }
+
+    /**
+     * @return the resumable session URI, or null if the upload did not start a session yet.
+     */
+    @Nullable
+    public Uri getSession(@NonNull String uploadId) {
+        String session = mPrefs.getString(uploadId + SESSION_SUFFIX, null);
+        return session == null ? null : Uri.parse(session);
+    }
+
+    public void putFile(@NonNull String uploadId, @NonNull Uri file) {
+        mPrefs.edit().putString(uploadId + FILE_SUFFIX, file.toString()).apply();
+    }
+
+    public void putSession(@NonNull String uploadId, @NonNull Uri session) {
+        mPrefs.edit().putString(uploadId + SESSION_SUFFIX, session.toString()).apply();
+    }
+
+    public void remove(@NonNull String uploadId) {
+        mPrefs.edit()
+                .remove(uploadId + FILE_SUFFIX)
+                .remove(uploadId + SESSION_SUFFIX)
+                .apply();
+    }
+}